@@ -1,11 +1,16 @@
 package com.mindplus.optimizer;
 
+import com.mindplus.optimizer.command.PregenCommand;
 import com.mindplus.optimizer.coordinator.GenerationCoordinator;
 import com.mindplus.optimizer.coordinator.RuntimeCoordinator;
+import com.mindplus.optimizer.coordinator.WorkerTopology;
 import com.mindplus.optimizer.config.ModConfig;
 import com.mindplus.optimizer.process.ProcessManager;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.util.WorldSavePath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,9 +18,12 @@ public class MindPlusOptimizer implements ModInitializer {
     public static final String MOD_ID = "mindplus-optimizer";
     public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
 
+    private static WorkerTopology topology;
     private static ProcessManager processManager;
     private static GenerationCoordinator generationCoordinator;
     private static RuntimeCoordinator runtimeCoordinator;
+    // 当前 tick 的开始时间，只在服务器线程上访问
+    private static long tickStartNanos;
 
     @Override
     public void onInitialize() {
@@ -31,26 +39,60 @@ public class MindPlusOptimizer implements ModInitializer {
             return;
         }
 
+        // 专用服务器不需要渲染和音频进程，客户端只在集成服务器运行期间需要服务端角色
+        topology = WorkerTopology.detect();
         processManager = new ProcessManager();
         generationCoordinator = new GenerationCoordinator(processManager);
-        runtimeCoordinator = new RuntimeCoordinator(processManager);
+        runtimeCoordinator = new RuntimeCoordinator(processManager, topology);
 
+        // 只登记工作进程，第一次使用时才启动
         generationCoordinator.initialize();
         runtimeCoordinator.initialize();
 
-        // 注册服务器停止事件监听器，确保游戏关闭时清理所有工作进程
+        // 每个服务器 tick 结束时把采集到的实体 AI 快照合并成一帧发送；tick 耗时交给预生成控制窗口
+        ServerTickEvents.START_SERVER_TICK.register(server -> tickStartNanos = System.nanoTime());
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            runtimeCoordinator.flushAITasks(server.getTicks());
+            generationCoordinator.getPregen().onServerTick(System.nanoTime() - tickStartNanos);
+        });
+
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
+            PregenCommand.register(dispatcher));
+
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+            topology.setServerRunning(true);
+            LOGGER.info("{} server starting, server-side workers enabled",
+                topology.isDedicatedServer() ? "Dedicated" : "Integrated");
+            generationCoordinator.onServerStarting();
+            runtimeCoordinator.onServerStarting();
+        });
+
+        // 世界加载完成后继续上次中断的预生成任务
+        ServerLifecycleEvents.SERVER_STARTED.register(server ->
+            generationCoordinator.getPregen().onServerStarted(
+                server.getSavePath(WorldSavePath.ROOT).resolve("mindplus-pregen"),
+                server.getOverworld().getSeed()));
+
+        // 专用服务器停止时清理所有工作进程；集成服务器停止时只休眠服务端角色，客户端退出时再全部清理
         ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
-            LOGGER.info("Server stopping, shutting down all worker processes");
-            gracefulShutdown();
+            topology.setServerRunning(false);
+            if (topology.isDedicatedServer()) {
+                LOGGER.info("Server stopping, shutting down all worker processes");
+                gracefulShutdown();
+            } else {
+                LOGGER.info("Integrated server stopping, hibernating server-side workers");
+                generationCoordinator.onServerStopping();
+                runtimeCoordinator.onServerStopping();
+            }
         });
 
-        LOGGER.info("All worker processes started successfully");
+        LOGGER.info("Worker processes registered for {}", topology);
     }
 
     /**
      * 优雅关闭所有协调器和工作进程
      */
-    private void gracefulShutdown() {
+    public static void gracefulShutdown() {
         if (generationCoordinator != null) {
             try {
                 generationCoordinator.shutdown();
@@ -72,6 +114,10 @@ public class MindPlusOptimizer implements ModInitializer {
         LOGGER.info("All worker processes stopped");
     }
 
+    public static WorkerTopology getTopology() {
+        return topology;
+    }
+
     public static ProcessManager getProcessManager() {
         return processManager;
     }
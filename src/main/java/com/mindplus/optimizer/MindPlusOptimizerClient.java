@@ -7,6 +7,7 @@ import com.mindplus.optimizer.command.SuperRenderCommand;
 import me.shedaniel.autoconfig.AutoConfig;
 import me.shedaniel.autoconfig.serializer.JanksonConfigSerializer;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +45,12 @@ public class MindPlusOptimizerClient implements ClientModInitializer {
         SuperRenderInputHandler.init(superRenderController);
         LOGGER.info("Super render input handler registered");
 
+        // 集成服务器停止时工作进程不会关闭，客户端退出时统一清理
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            LOGGER.info("Client stopping, shutting down all worker processes");
+            MindPlusOptimizer.gracefulShutdown();
+        });
+
         // 延迟初始化，等待游戏完全启动
         new Thread(() -> {
             try {
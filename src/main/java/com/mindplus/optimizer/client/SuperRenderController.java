@@ -1,6 +1,9 @@
 package com.mindplus.optimizer.client;
 
-import com.mindplus.optimizer.coordinator.RuntimeCoordinator;
+import com.mindplus.optimizer.communication.Endpoints;
+import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.RenderCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
@@ -12,15 +15,15 @@ import org.zeromq.ZMQ;
 public class SuperRenderController {
     private static final Logger LOGGER = LoggerFactory.getLogger("SuperRenderController");
 
-    private static final int RENDERER_PORT = 5580;
-    private ZMQ.Socket socket;
+    private static final int RENDERER_CONTROL_PORT = 5582;
+    private IPCChannel channel;
 
     public SuperRenderController() {
         try {
-            ZMQ.Context context = ZMQ.context(1);
-            socket = context.socket(ZMQ.PUSH);
-            socket.connect("tcp://localhost:" + RENDERER_PORT);
-            LOGGER.info("SuperRenderController connected to renderer on port {}", RENDERER_PORT);
+            // 指令走独立的控制通道，不与区块渲染任务争用同一个生产端
+            channel = new IPCChannel(ZMQ.PUSH, Endpoints.connect("renderer-control", RENDERER_CONTROL_PORT));
+            channel.connect();
+            LOGGER.info("SuperRenderController connected to renderer control channel {}", channel.getAddress());
         } catch (Exception e) {
             LOGGER.warn("Failed to connect to renderer: {}", e.getMessage());
         }
@@ -30,39 +33,38 @@ public class SuperRenderController {
      * 设置渲染距离
      */
     public void setRenderDistance(int distance) {
-        sendCommand("RENDER_DISTANCE:" + distance);
+        sendCommand(new RenderCommand(WorkerProtos.RenderCommand.Type.RENDER_DISTANCE, distance));
     }
 
     /**
      * 设置模拟距离
      */
     public void setSimulationDistance(int distance) {
-        sendCommand("SIMULATION_DISTANCE:" + distance);
+        sendCommand(new RenderCommand(WorkerProtos.RenderCommand.Type.SIMULATION_DISTANCE, distance));
     }
 
     /**
      * 设置 FOV 缩放倍数
      */
     public void setFovZoom(double zoom) {
-        sendCommand("FOV_ZOOM:" + zoom);
+        sendCommand(new RenderCommand(WorkerProtos.RenderCommand.Type.FOV_ZOOM, zoom));
     }
 
     /**
      * 设置面朝方向渲染距离（/long 命令）
      */
     public void setLookAheadDistance(int distance) {
-        sendCommand("LOOK_AHEAD:" + distance);
+        sendCommand(new RenderCommand(WorkerProtos.RenderCommand.Type.LOOK_AHEAD, distance));
     }
 
     /**
      * 发送超渲染指令
      */
-    private void sendCommand(String command) {
-        if (socket != null) {
+    private void sendCommand(RenderCommand command) {
+        if (channel != null) {
             try {
-                String fullCommand = "SUPER_RENDER:" + command;
-                socket.send(fullCommand.getBytes(), ZMQ.NOBLOCK);
-                LOGGER.debug("Sent super render command: {}", fullCommand);
+                channel.send(command.toBytes(), ZMQ.NOBLOCK);
+                LOGGER.debug("Sent super render command: {} = {}", command.getType(), command.getValue());
             } catch (Exception e) {
                 LOGGER.warn("Failed to send command: {}", e.getMessage());
             }
@@ -73,8 +75,8 @@ public class SuperRenderController {
      * 关闭连接
      */
     public void close() {
-        if (socket != null) {
-            socket.close();
+        if (channel != null) {
+            channel.close();
         }
     }
 }
\ No newline at end of file
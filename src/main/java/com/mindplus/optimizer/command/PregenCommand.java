@@ -0,0 +1,142 @@
+package com.mindplus.optimizer.command;
+
+import com.mindplus.optimizer.MindPlusOptimizer;
+import com.mindplus.optimizer.coordinator.GenerationCoordinator;
+import com.mindplus.optimizer.coordinator.PregenJob;
+import com.mindplus.optimizer.coordinator.PregenManager;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.command.CommandSource;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 预生成命令（需要 2 级权限）
+ * /pregen start <id> radius <半径> [spiral|region] - 以执行者所在区块为中心
+ * /pregen start <id> rect <x1> <z1> <x2> <z2> [spiral|region] - 区块坐标
+ * /pregen pause|resume|cancel <id>
+ * /pregen status
+ * 任务在执行者所在的维度中运行，操作在预生成线程上执行，结果回到服务器线程上反馈
+ */
+public class PregenCommand {
+    private static final List<String> ORDERS = List.of("spiral", "region");
+
+    public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("pregen")
+            .requires(source -> source.hasPermissionLevel(2))
+            .then(CommandManager.literal("start")
+                .then(CommandManager.argument("id", StringArgumentType.word())
+                    .then(CommandManager.literal("radius")
+                        .then(CommandManager.argument("radius", IntegerArgumentType.integer(0, 20000))
+                            .executes(context -> start(context, "radius", null))
+                            .then(order("radius"))))
+                    .then(CommandManager.literal("rect")
+                        .then(CommandManager.argument("x1", IntegerArgumentType.integer())
+                            .then(CommandManager.argument("z1", IntegerArgumentType.integer())
+                                .then(CommandManager.argument("x2", IntegerArgumentType.integer())
+                                    .then(CommandManager.argument("z2", IntegerArgumentType.integer())
+                                        .executes(context -> start(context, "rect", null))
+                                        .then(order("rect")))))))))
+            .then(CommandManager.literal("pause")
+                .then(CommandManager.argument("id", StringArgumentType.word())
+                    .executes(context -> reply(context, manager().pause(id(context)), "已暂停"))))
+            .then(CommandManager.literal("resume")
+                .then(CommandManager.argument("id", StringArgumentType.word())
+                    .executes(context -> reply(context, manager().resume(id(context)), "已继续"))))
+            .then(CommandManager.literal("cancel")
+                .then(CommandManager.argument("id", StringArgumentType.word())
+                    .executes(context -> reply(context, manager().cancel(id(context)), "已取消"))))
+            .then(CommandManager.literal("status")
+                .executes(PregenCommand::status)));
+    }
+
+    /**
+     * 可选的顺序参数，不带时为螺旋
+     */
+    private static ArgumentBuilder<ServerCommandSource, ?> order(String kind) {
+        return CommandManager.argument("order", StringArgumentType.word())
+            .suggests((context, builder) -> CommandSource.suggestMatching(ORDERS, builder))
+            .executes(context -> start(context, kind, StringArgumentType.getString(context, "order")));
+    }
+
+    private static int start(CommandContext<ServerCommandSource> context, String kind, String orderName) {
+        ServerCommandSource source = context.getSource();
+        PregenJob.Area area;
+        PregenJob.Order order;
+        try {
+            order = orderName == null ? PregenJob.Order.SPIRAL
+                : PregenJob.Order.valueOf(orderName.toUpperCase(Locale.ROOT));
+            if ("radius".equals(kind)) {
+                Vec3d position = source.getPosition();
+                area = PregenJob.Area.radius(MathHelper.floor(position.x) >> 4, MathHelper.floor(position.z) >> 4,
+                    IntegerArgumentType.getInteger(context, "radius"));
+            } else {
+                area = PregenJob.Area.rectangle(
+                    IntegerArgumentType.getInteger(context, "x1"), IntegerArgumentType.getInteger(context, "z1"),
+                    IntegerArgumentType.getInteger(context, "x2"), IntegerArgumentType.getInteger(context, "z2"));
+            }
+        } catch (IllegalArgumentException e) {
+            source.sendError(Text.literal(e.getMessage()));
+            return 0;
+        }
+        String dimension = source.getWorld().getRegistryKey().getValue().toString();
+        return reply(context, manager().start(id(context), dimension, area, order), "已开始");
+    }
+
+    private static int status(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        manager().getStats().whenCompleteAsync((stats, error) -> {
+            if (error != null) {
+                source.sendError(Text.literal(message(error)));
+            } else if (stats.isEmpty()) {
+                source.sendFeedback(() -> Text.literal("没有预生成任务"), false);
+            } else {
+                for (PregenJob.Stats job : stats) {
+                    source.sendFeedback(() -> Text.literal(job.toString()), false);
+                }
+            }
+        }, source.getServer());
+        return 1;
+    }
+
+    private static int reply(CommandContext<ServerCommandSource> context, CompletableFuture<PregenJob> result,
+                             String action) {
+        ServerCommandSource source = context.getSource();
+        result.whenCompleteAsync((job, error) -> {
+            if (error != null) {
+                source.sendError(Text.literal(message(error)));
+            } else {
+                source.sendFeedback(() -> Text.literal("预生成任务 " + job.getId() + " " + action), true);
+            }
+        }, source.getServer());
+        return 1;
+    }
+
+    private static PregenManager manager() {
+        GenerationCoordinator coordinator = MindPlusOptimizer.getGenerationCoordinator();
+        if (coordinator == null) {
+            throw new IllegalStateException("MindPlus Optimizer is disabled");
+        }
+        return coordinator.getPregen();
+    }
+
+    private static String id(CommandContext<ServerCommandSource> context) {
+        return StringArgumentType.getString(context, "id");
+    }
+
+    private static String message(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return String.valueOf(cause.getMessage());
+    }
+}
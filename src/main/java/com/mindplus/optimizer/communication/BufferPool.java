@@ -0,0 +1,132 @@
+package com.mindplus.optimizer.communication;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按大小分级的直接内存缓冲区池
+ * 容量按 2 的幂分级（256B ~ 16MB），每级缓存有上限；超过最大级别的请求直接分配、不回收
+ * IPCHandler、IPCChannel 和 RenderResult 共用 {@link #SHARED}，避免每条消息都分配新数组
+ */
+public final class BufferPool {
+    private static final int MIN_SHIFT = 8;   // 256B
+    private static final int MAX_SHIFT = 24;  // 16MB
+    private static final long RETAINED_BYTES_PER_CLASS = 8L * 1024 * 1024;
+    private static final int MIN_RETAINED_PER_CLASS = 4;
+
+    public static final BufferPool SHARED = new BufferPool();
+
+    private final SizeClass[] classes = new SizeClass[MAX_SHIFT - MIN_SHIFT + 1];
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong oversized = new AtomicLong();
+
+    public BufferPool() {
+        for (int i = 0; i < classes.length; i++) {
+            int capacity = 1 << (MIN_SHIFT + i);
+            int maxRetained = (int) Math.max(MIN_RETAINED_PER_CLASS, RETAINED_BYTES_PER_CLASS / capacity);
+            classes[i] = new SizeClass(capacity, maxRetained);
+        }
+    }
+
+    /**
+     * 取一个至少 size 字节的直接缓冲区，position 为 0，limit 为 size，字节序为大端
+     */
+    public ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative buffer size " + size);
+        }
+
+        int index = classIndex(size);
+        if (index >= classes.length) {
+            oversized.incrementAndGet();
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        SizeClass sizeClass = classes[index];
+        ByteBuffer buffer = sizeClass.free.poll();
+        if (buffer != null) {
+            sizeClass.retained.decrementAndGet();
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(sizeClass.capacity);
+        }
+        buffer.clear().limit(size);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区；非本池分配的容量或该级已满时直接丢弃交给 GC
+     * 归还后调用方不得再访问该缓冲区及其视图
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int index = Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+        if (index < 0 || index >= classes.length) {
+            return;
+        }
+
+        SizeClass sizeClass = classes[index];
+        if (sizeClass.retained.incrementAndGet() > sizeClass.maxRetained) {
+            sizeClass.retained.decrementAndGet();
+            return;
+        }
+        sizeClass.free.offer(buffer);
+    }
+
+    public Stats getStats() {
+        long retainedBytes = 0;
+        for (SizeClass sizeClass : classes) {
+            retainedBytes += (long) sizeClass.retained.get() * sizeClass.capacity;
+        }
+        return new Stats(hits.get(), misses.get(), oversized.get(), retainedBytes);
+    }
+
+    private static int classIndex(int size) {
+        if (size <= (1 << MIN_SHIFT)) {
+            return 0;
+        }
+        return (32 - Integer.numberOfLeadingZeros(size - 1)) - MIN_SHIFT;
+    }
+
+    private static class SizeClass {
+        final int capacity;
+        final int maxRetained;
+        final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+        final AtomicInteger retained = new AtomicInteger();
+
+        SizeClass(int capacity, int maxRetained) {
+            this.capacity = capacity;
+            this.maxRetained = maxRetained;
+        }
+    }
+
+    /**
+     * 缓冲池统计信息
+     */
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long oversized;
+        public final long retainedBytes;
+
+        public Stats(long hits, long misses, long oversized, long retainedBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.oversized = oversized;
+            this.retainedBytes = retainedBytes;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.mindplus.optimizer.communication;
+
+import com.mindplus.optimizer.tasks.CreditGrant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生产者侧的信用闸门
+ * 每发送一个任务消耗一个信用，工作进程处理完成后通过回传通道归还
+ * 在途任务达到窗口大小时 tryAcquire() 返回 false，调用方应延后或丢弃任务而不是继续塞进 PUSH 队列
+ * 工作进程重启（epoch 变化）后，发给旧实例的在途任务视为丢失，信用全部恢复
+ */
+public class CreditGate {
+    private static final Logger LOGGER = LoggerFactory.getLogger("CreditGate");
+
+    private static final long UNKNOWN_EPOCH = 0;
+
+    private final String name;
+    private final IPCChannel channel;
+    private final int window;
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long epoch = UNKNOWN_EPOCH;
+    private long acquired;
+    private long consumed;
+    private long sent;
+
+    public CreditGate(String name, int port, int window) {
+        this.name = name;
+        this.channel = new IPCChannel(ZMQ.PULL, Endpoints.connectCredits(name, port));
+        this.window = Math.max(1, window);
+    }
+
+    public void connect() {
+        channel.connect();
+    }
+
+    /**
+     * 尝试获取一个信用，成功后调用方必须发送任务，发送失败时调用 cancel() 归还
+     */
+    public synchronized boolean tryAcquire() {
+        pollGrants();
+        if (acquired - consumed >= window) {
+            return false;
+        }
+        acquired++;
+        sent++;
+        return true;
+    }
+
+    /**
+     * 归还一个已获取但没有发出去的信用
+     */
+    public synchronized void cancel() {
+        acquired--;
+        sent--;
+    }
+
+    /**
+     * 当前可用信用数
+     */
+    public synchronized int available() {
+        pollGrants();
+        return (int) Math.max(0, window - (acquired - consumed));
+    }
+
+    public void recordDeferred() {
+        deferred.incrementAndGet();
+    }
+
+    public void recordDropped() {
+        dropped.incrementAndGet();
+    }
+
+    private void pollGrants() {
+        byte[] data;
+        while ((data = channel.receive(ZMQ.DONTWAIT)) != null) {
+            CreditGrant grant;
+            try {
+                grant = CreditGrant.fromBytes(data);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Ignoring invalid credit grant from {}: {}", name, e.getMessage());
+                continue;
+            }
+            apply(grant);
+        }
+    }
+
+    private void apply(CreditGrant grant) {
+        if (grant.getEpoch() != epoch) {
+            if (epoch != UNKNOWN_EPOCH) {
+                // 工作进程已重启，旧实例上的在途任务不会再被确认
+                LOGGER.info("{} restarted, resetting {} in-flight credits", name, acquired - consumed);
+                acquired = grant.getConsumed();
+            }
+            epoch = grant.getEpoch();
+            consumed = grant.getConsumed();
+        } else if (grant.getConsumed() > consumed) {
+            consumed = grant.getConsumed();
+        }
+        // 确认数不会超过已发送数，多出的部分来自本生产者之外（例如上一次运行残留的任务）
+        if (consumed > acquired) {
+            acquired = consumed;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (this) {
+            pollGrants();
+            return new Stats(window, (int) (acquired - consumed), sent, deferred.get(), dropped.get());
+        }
+    }
+
+    public void close() {
+        channel.close();
+    }
+
+    public static class Stats {
+        public final int window;
+        public final int inFlight;
+        public final long sent;
+        public final long deferred;
+        public final long dropped;
+
+        public Stats(int window, int inFlight, long sent, long deferred, long dropped) {
+            this.window = window;
+            this.inFlight = inFlight;
+            this.sent = sent;
+            this.deferred = deferred;
+            this.dropped = dropped;
+        }
+    }
+}
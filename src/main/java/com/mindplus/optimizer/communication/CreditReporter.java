@@ -0,0 +1,90 @@
+package com.mindplus.optimizer.communication;
+
+import com.mindplus.optimizer.tasks.CreditGrant;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工作进程侧的信用回传
+ * 任务处理完成后调用 release()，主循环定期调用 flush() 把累计完成数发回生产者
+ * release() 可在任意线程调用，flush() 只能由一个线程调用
+ */
+public class CreditReporter {
+    // 累计到这么多完成数立即回传，否则等待刷新间隔
+    private static final int FLUSH_BATCH = 16;
+    private static final long FLUSH_INTERVAL_NANOS = 5_000_000L;
+    // 没有新进展时也定期重发，生产者晚连接或丢包后能恢复
+    private static final long RESEND_INTERVAL_NANOS = 200_000_000L;
+
+    private final String channelName;
+    private final IPCChannel channel;
+    private final long epoch;
+    private final AtomicLong consumed = new AtomicLong();
+    private long reported = -1;
+    private long lastSentNanos;
+
+    public CreditReporter(String name, int port) {
+        this.channelName = Endpoints.creditsName(name);
+        this.channel = new IPCChannel(ZMQ.PUSH, Endpoints.bindCredits(name, port));
+        long epoch = ThreadLocalRandom.current().nextLong();
+        this.epoch = epoch != 0 ? epoch : 1;
+    }
+
+    public void bind() {
+        channel.bind();
+    }
+
+    /**
+     * 一个任务已处理完成（无论成功与否）
+     */
+    public void release() {
+        consumed.incrementAndGet();
+    }
+
+    /**
+     * @return true 表示本次发出了授权
+     */
+    public boolean flush() {
+        long current = consumed.get();
+        long now = System.nanoTime();
+        long elapsed = now - lastSentNanos;
+
+        boolean due;
+        if (current != reported) {
+            due = current - reported >= FLUSH_BATCH || elapsed >= FLUSH_INTERVAL_NANOS;
+        } else {
+            due = elapsed >= RESEND_INTERVAL_NANOS;
+        }
+        if (!due) {
+            return false;
+        }
+
+        lastSentNanos = now;
+        if (channel.send(new CreditGrant(epoch, current).toBytes(), ZMQ.DONTWAIT)) {
+            reported = current;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 信用回传通道名与通道本身，READY 时上报其实际地址
+     */
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public IPCChannel getChannel() {
+        return channel;
+    }
+
+    public long getConsumed() {
+        return consumed.get();
+    }
+
+    public void close() {
+        channel.close();
+    }
+}
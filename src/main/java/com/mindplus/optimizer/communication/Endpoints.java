@@ -0,0 +1,170 @@
+package com.mindplus.optimizer.communication;
+
+import com.mindplus.optimizer.config.ModConfig;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IPC 地址解析
+ * 根据配置的传输方式生成 bind/connect 地址：
+ * tcp - ZeroMQ 回环 TCP（默认）
+ * shm - 运行目录下的内存映射环形缓冲区（shm://名称）
+ * 游戏进程读取 ModConfig，工作进程读取 ProcessManager 传入的系统属性
+ *
+ * 由 ProcessManager 管理的工作进程绑定系统分配的端口，通过 READY 上报实际地址，
+ * ProcessManager 登记后游戏进程按通道名连接；配置中的固定端口只用于单独运行的工作进程
+ */
+public final class Endpoints {
+    public static final String SHM_SCHEME = "shm://";
+
+    public static final String TRANSPORT_PROPERTY = "mindplus.ipc.transport";
+    public static final String DIRECTORY_PROPERTY = "mindplus.ipc.dir";
+    public static final String RING_SIZE_PROPERTY = "mindplus.ipc.ringSize";
+    /** 重启时沿用上一实例的地址：mindplus.endpoint.<通道名>=tcp://127.0.0.1:端口 */
+    public static final String ENDPOINT_PROPERTY_PREFIX = "mindplus.endpoint.";
+
+    public static final String TRANSPORT_TCP = "tcp";
+    public static final String TRANSPORT_SHM = "shm";
+
+    /** 信用回传通道的端口偏移 */
+    public static final int CREDIT_PORT_OFFSET = 100;
+    private static final String CREDIT_SUFFIX = "-credits";
+
+    private static final String DEFAULT_DIRECTORY = "mindplus-ipc";
+    private static final int DEFAULT_RING_SIZE = 4 * 1024 * 1024;
+    private static final String LOOPBACK_PREFIX = "tcp://127.0.0.1:";
+    private static final String EPHEMERAL = LOOPBACK_PREFIX + "*";
+
+    // 通道名 -> 工作进程上报的实际地址
+    private static final Map<String, String> REGISTERED = new ConcurrentHashMap<>();
+
+    private Endpoints() {
+    }
+
+    /**
+     * 工作进程绑定地址
+     * 受管理时绑定系统分配的回环端口（重启时优先沿用上一实例的端口），单独运行时绑定配置端口
+     */
+    public static String bind(String name, int port) {
+        if (useSharedMemory()) {
+            return SHM_SCHEME + name;
+        }
+        String pinned = WorkerControl.property(ENDPOINT_PROPERTY_PREFIX + name);
+        if (pinned != null && !pinned.isEmpty()) {
+            return pinned;
+        }
+        if (WorkerControl.property(WorkerControl.ADDRESS_PROPERTY) != null) {
+            return EPHEMERAL;
+        }
+        return "tcp://*:" + port;
+    }
+
+    /**
+     * 游戏进程连接地址，优先使用工作进程上报的地址
+     */
+    public static String connect(String name, int port) {
+        if (useSharedMemory()) {
+            return SHM_SCHEME + name;
+        }
+        String registered = REGISTERED.get(name);
+        if (registered != null) {
+            return registered;
+        }
+        String host = ModConfig.INSTANCE != null ? ModConfig.INSTANCE.network.host : "localhost";
+        return "tcp://" + host + ":" + port;
+    }
+
+    /**
+     * 登记工作进程上报的通道地址
+     */
+    public static void register(String name, String endpoint) {
+        REGISTERED.put(name, endpoint);
+    }
+
+    /**
+     * 移除登记，只有地址仍为 endpoint 时才移除
+     */
+    public static void unregister(String name, String endpoint) {
+        REGISTERED.remove(name, endpoint);
+    }
+
+    public static String registered(String name) {
+        return REGISTERED.get(name);
+    }
+
+    /**
+     * 沿用的固定回环地址绑定失败（端口已被占用）时改用系统分配的端口
+     * @return null 表示 address 不是沿用的地址，不应重试
+     */
+    static String ephemeralFallback(String address) {
+        if (address.startsWith(LOOPBACK_PREFIX) && !address.equals(EPHEMERAL)) {
+            return EPHEMERAL;
+        }
+        return null;
+    }
+
+    /**
+     * 由系统分配端口的绑定地址，bind 后通过 IPCChannel.getEndpoint() 取得实际地址
+     */
+    public static String bindEphemeral(String name) {
+        if (useSharedMemory()) {
+            return SHM_SCHEME + name;
+        }
+        return EPHEMERAL;
+    }
+
+    /**
+     * 信用回传通道名
+     */
+    public static String creditsName(String name) {
+        return name + CREDIT_SUFFIX;
+    }
+
+    /**
+     * 工作进程信用回传绑定地址
+     */
+    public static String bindCredits(String name, int port) {
+        return bind(creditsName(name), port + CREDIT_PORT_OFFSET);
+    }
+
+    /**
+     * 生产者信用回传连接地址
+     */
+    public static String connectCredits(String name, int port) {
+        return connect(creditsName(name), port + CREDIT_PORT_OFFSET);
+    }
+
+    public static boolean isSharedMemory(String address) {
+        return address.startsWith(SHM_SCHEME);
+    }
+
+    public static String transport() {
+        String transport = System.getProperty(TRANSPORT_PROPERTY);
+        if (transport == null && ModConfig.INSTANCE != null) {
+            transport = ModConfig.INSTANCE.network.transport;
+        }
+        return transport != null ? transport.trim().toLowerCase() : TRANSPORT_TCP;
+    }
+
+    public static boolean useSharedMemory() {
+        return TRANSPORT_SHM.equals(transport());
+    }
+
+    public static Path sharedMemoryDirectory() {
+        return Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)).toAbsolutePath();
+    }
+
+    public static int sharedMemoryRingSize() {
+        String size = System.getProperty(RING_SIZE_PROPERTY);
+        if (size != null) {
+            return Integer.parseInt(size);
+        }
+        if (ModConfig.INSTANCE != null) {
+            return ModConfig.INSTANCE.network.sharedMemoryRingKb * 1024;
+        }
+        return DEFAULT_RING_SIZE;
+    }
+}
@@ -1,53 +1,44 @@
 package com.mindplus.optimizer.communication;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.zeromq.ZContext;
-import org.zeromq.ZMQ;
-import org.zeromq.ZMQ.Socket;
+import java.nio.ByteBuffer;
 
+/**
+ * IPC 通道
+ * 地址以 shm:// 开头时使用共享内存环形缓冲区，否则使用 ZeroMQ
+ */
 public class IPCChannel {
-    private static final Logger LOGGER = LoggerFactory.getLogger("IPCChannel");
-
-    private final ZContext context;
-    private final int type;
     private final String address;
-    private Socket socket;
+    private final IPCTransport transport;
 
     public IPCChannel(int type, String address) {
-        this.context = new ZContext();
-        this.type = type;
         this.address = address;
+        this.transport = Endpoints.isSharedMemory(address)
+            ? new SharedMemoryTransport(type, address)
+            : new ZmqTransport(type, address);
     }
     
     public void connect() {
-        try {
-            socket = context.createSocket(type);
-            socket.connect(address);
-            LOGGER.info("Connected to {}", address);
-        } catch (Exception e) {
-            LOGGER.error("Failed to connect to {}", address, e);
-        }
+        transport.connect();
     }
     
     public void bind() {
-        try {
-            socket = context.createSocket(type);
-            socket.bind(address);
-            LOGGER.info("Bound to {}", address);
-        } catch (Exception e) {
-            LOGGER.error("Failed to bind to {}", address, e);
-        }
+        transport.bind();
+    }
+    
+    public boolean send(byte[] data) {
+        return send(data, 0);
     }
     
-    public void send(byte[] data) {
-        send(data, 0);
+    public boolean send(byte[] data, int flags) {
+        return transport.send(data, flags);
     }
     
-    public void send(byte[] data, int flags) {
-        if (socket != null) {
-            socket.send(data, flags);
-        }
+    /**
+     * 发送池化缓冲区中的数据（position 到 limit），返回后缓冲区可立即归还 BufferPool
+     * 共享内存传输直接从该缓冲区复制到映射区域，不经过中间数组
+     */
+    public boolean send(ByteBuffer data, int flags) {
+        return transport.send(data, flags);
     }
     
     public byte[] receive() {
@@ -55,16 +46,32 @@ public class IPCChannel {
     }
     
     public byte[] receive(int flags) {
-        if (socket != null) {
-            return socket.recv(flags);
-        }
-        return null;
+        return transport.receive(flags);
+    }
+
+    /**
+     * 发送多帧消息（DEALER/ROUTER 使用，ROUTER 端第一帧为对端标识）
+     */
+    public boolean sendMultipart(byte[][] frames, int flags) {
+        return transport.sendMultipart(frames, flags);
+    }
+    
+    public byte[][] receiveMultipart(int flags) {
+        return transport.receiveMultipart(flags);
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * bind 后的实际地址（通配端口已解析）
+     */
+    public String getEndpoint() {
+        return transport.getEndpoint();
     }
     
     public void close() {
-        if (socket != null) {
-            socket.close();
-        }
-        context.close();
+        transport.close();
     }
-}
\ No newline at end of file
+}
@@ -3,44 +3,74 @@ package com.mindplus.optimizer.communication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 高性能 IPC 处理器
- * 使用 TCP Socket 实现高效的进程间通信
+ * 单个 Selector 事件循环驱动所有非阻塞 SocketChannel，线程数与连接数无关
+ * 帧格式：[帧长度 4B][类型 4B][数据长度 4B][数据][时间戳 8B]
+ * 每个连接有独立的写队列，写不完的帧等待 OP_WRITE 后继续
+ * 帧和读缓冲区都来自 BufferPool，广播时多个连接共享同一块帧缓冲区
  */
 public class IPCHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger("IPCHandler");
 
-    private final int port;
-    private ServerSocket serverSocket;
-    private final ExecutorService executor;
+    private static final int MAX_FRAME_SIZE = 10 * 1024 * 1024; // 最大 10MB
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024; // 单个连接最多积压 64MB
+
+    private volatile int port;
     private final AtomicBoolean running;
-    private final BlockingQueue<IPCMessage> messageQueue;
-    private final ConcurrentHashMap<String, Socket> clients;
+    private final AtomicInteger connectionIds;
+    private final Queue<ByteBuffer> outbound;
+    private final Queue<Runnable> loopTasks;
+    private final ConcurrentHashMap<String, Connection> clients;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread loopThread;
 
+    /**
+     * @param port 监听端口，0 表示由系统分配，start() 后通过 getPort() 取得
+     */
     public IPCHandler(int port) {
         this.port = port;
-        this.executor = Executors.newCachedThreadPool();
         this.running = new AtomicBoolean(false);
-        this.messageQueue = new LinkedBlockingQueue<>();
+        this.connectionIds = new AtomicInteger();
+        this.outbound = new ConcurrentLinkedQueue<>();
+        this.loopTasks = new ConcurrentLinkedQueue<>();
         this.clients = new ConcurrentHashMap<>();
     }
 
     /**
-     * 启动 IPC 服务器
+     * 启动 IPC 服务器，只监听回环地址
      */
     public void start() {
         try {
-            serverSocket = new ServerSocket(port);
-            running.set(true);
-
-            executor.submit(this::acceptConnections);
-            executor.submit(this::processMessages);
+            ensureLoopStarted();
+
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            serverChannel = channel;
+            runInLoop(() -> {
+                try {
+                    channel.register(selector, SelectionKey.OP_ACCEPT);
+                } catch (ClosedChannelException e) {
+                    LOGGER.debug("Server channel closed before registration", e);
+                }
+            });
 
             LOGGER.info("IPC server started on port {}", port);
         } catch (IOException e) {
@@ -52,74 +82,247 @@ public class IPCHandler {
      * 连接到 IPC 服务器
      */
     public void connect(String host, int port) {
-        executor.submit(() -> {
-            try {
-                Socket socket = new Socket(host, port);
-                clients.put("client-" + System.currentTimeMillis(), socket);
-                LOGGER.info("Connected to IPC server {}:{}", host, port);
-
-                // 启动接收线程
-                executor.submit(() -> receiveMessages(socket));
-            } catch (IOException e) {
-                LOGGER.error("Failed to connect to IPC server {}:{}", host, port, e);
-            }
-        });
+        try {
+            ensureLoopStarted();
+
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            boolean connected = channel.connect(new InetSocketAddress(host, port));
+
+            runInLoop(() -> {
+                try {
+                    if (connected) {
+                        registerConnection(channel);
+                    } else {
+                        channel.register(selector, SelectionKey.OP_CONNECT);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Failed to connect to IPC server {}:{}", host, port, e);
+                    closeQuietly(channel);
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.error("Failed to connect to IPC server {}:{}", host, port, e);
+        }
     }
 
     /**
-     * 发送消息
+     * 发送消息（广播到所有连接，可在任意线程调用）
      */
     public void sendMessage(IPCMessage message) {
-        messageQueue.offer(message);
+        if (!running.get()) {
+            return;
+        }
+        outbound.offer(message.toFrame());
+        selector.wakeup();
+    }
+
+    /**
+     * 监听端口，端口由系统分配时 start() 之后才是实际端口
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 当前连接数
+     */
+    public int getConnectionCount() {
+        return clients.size();
+    }
+
+    private synchronized void ensureLoopStarted() throws IOException {
+        if (loopThread != null) {
+            return;
+        }
+        selector = Selector.open();
+        running.set(true);
+        loopThread = new Thread(this::eventLoop, "IPCHandler-" + port);
+        loopThread.setDaemon(true);
+        loopThread.start();
+    }
+
+    private void runInLoop(Runnable task) {
+        loopTasks.offer(task);
+        selector.wakeup();
     }
 
     /**
-     * 接受客户端连接
+     * 事件循环：处理注册任务、待发送消息以及就绪的 I/O 事件
      */
-    private void acceptConnections() {
+    private void eventLoop() {
         while (running.get()) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                String clientId = "client-" + System.currentTimeMillis();
-                clients.put(clientId, clientSocket);
-                LOGGER.info("Accepted IPC connection: {}", clientId);
+                selector.select();
+
+                Runnable task;
+                while ((task = loopTasks.poll()) != null) {
+                    task.run();
+                }
 
-                executor.submit(() -> receiveMessages(clientSocket));
+                ByteBuffer frame;
+                while ((frame = outbound.poll()) != null) {
+                    broadcastFrame(frame);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
             } catch (IOException e) {
                 if (running.get()) {
-                    LOGGER.error("Error accepting connection", e);
+                    LOGGER.error("IPC event loop error", e);
                 }
             }
         }
+
+        closeAll();
     }
 
-    /**
-     * 接收消息
-     */
-    private void receiveMessages(Socket socket) {
-        try (DataInputStream input = new DataInputStream(socket.getInputStream())) {
-            while (running.get() && !socket.isClosed()) {
-                // 读取消息长度
-                int length = input.readInt();
-                if (length <= 0 || length > 10 * 1024 * 1024) { // 最大 10MB
-                    break;
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        try {
+            if (key.isAcceptable()) {
+                SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+                if (channel != null) {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    Connection connection = registerConnection(channel);
+                    LOGGER.info("Accepted IPC connection: {}", connection.id);
                 }
+                return;
+            }
 
-                // 读取消息数据
-                byte[] data = new byte[length];
-                input.readFully(data);
+            if (key.isConnectable()) {
+                SocketChannel channel = (SocketChannel) key.channel();
+                if (channel.finishConnect()) {
+                    attachConnection(channel, key);
+                    LOGGER.info("Connected to IPC server {}", channel.getRemoteAddress());
+                }
+                return;
+            }
 
-                IPCMessage message = IPCMessage.deserialize(data);
-                handleMessage(message);
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                readFrames(connection);
             }
-        } catch (IOException e) {
+            if (key.isValid() && key.isWritable()) {
+                flushWrites(connection);
+            }
+        } catch (IOException | RuntimeException e) {
             if (running.get()) {
                 LOGGER.debug("Connection closed", e);
             }
-        } finally {
-            clients.values().remove(socket);
-            closeQuietly(socket);
+            Object attachment = key.attachment();
+            if (attachment instanceof Connection connection) {
+                dropConnection(connection);
+            } else {
+                key.cancel();
+                closeQuietly(key.channel());
+            }
+        }
+    }
+
+    private Connection registerConnection(SocketChannel channel) throws IOException {
+        return attachConnection(channel, channel.register(selector, SelectionKey.OP_READ));
+    }
+
+    private Connection attachConnection(SocketChannel channel, SelectionKey key) {
+        Connection connection = new Connection("client-" + connectionIds.incrementAndGet(), channel);
+        connection.key = key;
+        key.attach(connection);
+        key.interestOps(SelectionKey.OP_READ);
+        clients.put(connection.id, connection);
+        return connection;
+    }
+
+    /**
+     * 读取并解析所有完整的帧，残留的半帧留在缓冲区等待下一次读
+     */
+    private void readFrames(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.readBuffer);
+        if (read < 0) {
+            throw new ClosedChannelException();
+        }
+
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (buffer.remaining() < Integer.BYTES + length) {
+                if (Integer.BYTES + length > buffer.capacity()) {
+                    connection.growReadBuffer(Integer.BYTES + length);
+                    return;
+                }
+                break;
+            }
+
+            buffer.position(buffer.position() + Integer.BYTES);
+            int frameEnd = buffer.position() + length;
+            ByteBuffer frame = buffer.slice(buffer.position(), length);
+            buffer.position(frameEnd);
+
+            handleMessage(IPCMessage.decode(frame));
         }
+        buffer.compact();
+    }
+
+    /**
+     * 把一帧追加到每个连接的写队列并尝试立即写出
+     */
+    private void broadcastFrame(ByteBuffer frame) {
+        // 持有一个引用，保证在遍历过程中不会被提前归还
+        Frame shared = new Frame(frame);
+        for (Connection connection : clients.values()) {
+            if (connection.pendingBytes + frame.remaining() > MAX_PENDING_BYTES) {
+                LOGGER.debug("Dropping message for slow connection {}", connection.id);
+                continue;
+            }
+            shared.refs++;
+            connection.writeQueue.add(new PendingWrite(shared, frame.duplicate()));
+            connection.pendingBytes += frame.remaining();
+
+            try {
+                flushWrites(connection);
+            } catch (IOException e) {
+                dropConnection(connection);
+            }
+        }
+        shared.release();
+    }
+
+    private void flushWrites(Connection connection) throws IOException {
+        PendingWrite head;
+        while ((head = connection.writeQueue.peek()) != null) {
+            int written = connection.channel.write(head.view);
+            connection.pendingBytes -= written;
+            if (head.view.hasRemaining()) {
+                // 内核发送缓冲区已满，等待可写事件
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.writeQueue.poll();
+            head.frame.release();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void dropConnection(Connection connection) {
+        clients.remove(connection.id);
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        closeQuietly(connection.channel);
+        connection.releaseBuffers();
     }
 
     /**
@@ -155,59 +358,34 @@ public class IPCHandler {
         // TODO: 处理渲染结果
     }
 
-    /**
-     * 处理消息队列
-     */
-    private void processMessages() {
-        while (running.get()) {
-            try {
-                IPCMessage message = messageQueue.poll(100, TimeUnit.MILLISECONDS);
-                if (message != null) {
-                    broadcastMessage(message);
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
+    private void closeAll() {
+        for (Connection connection : clients.values()) {
+            closeQuietly(connection.channel);
+            connection.releaseBuffers();
         }
-    }
-
-    /**
-     * 广播消息到所有客户端
-     */
-    private void broadcastMessage(IPCMessage message) {
-        byte[] data = message.serialize();
+        clients.clear();
 
-        for (Socket socket : clients.values()) {
-            try {
-                DataOutputStream output = new DataOutputStream(socket.getOutputStream());
-                output.writeInt(data.length);
-                output.write(data);
-                output.flush();
-            } catch (IOException e) {
-                closeQuietly(socket);
-                clients.values().remove(socket);
-            }
+        ByteBuffer frame;
+        while ((frame = outbound.poll()) != null) {
+            BufferPool.SHARED.release(frame);
         }
-    }
 
-    /**
-     * 关闭连接
-     */
-    private void closeQuietly(Socket socket) {
+        if (serverChannel != null) {
+            closeQuietly(serverChannel);
+        }
         try {
-            socket.close();
+            selector.close();
         } catch (IOException e) {
             // Ignore
         }
     }
 
     /**
-     * 关闭服务器套接字
+     * 关闭通道
      */
-    private void closeQuietly(ServerSocket serverSocket) {
+    private void closeQuietly(Channel channel) {
         try {
-            serverSocket.close();
+            channel.close();
         } catch (IOException e) {
             // Ignore
         }
@@ -218,22 +396,93 @@ public class IPCHandler {
      */
     public void shutdown() {
         running.set(false);
-        executor.shutdown();
 
-        // 关闭所有客户端连接
-        for (Socket socket : clients.values()) {
-            closeQuietly(socket);
+        Thread thread;
+        synchronized (this) {
+            thread = loopThread;
         }
-        clients.clear();
-
-        // 关闭服务器套接字
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            closeQuietly(serverSocket);
+        if (thread != null) {
+            selector.wakeup();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
         LOGGER.info("IPC server shutdown");
     }
 
+    /**
+     * 单个连接的状态，只在事件循环线程访问
+     */
+    private static class Connection {
+        final String id;
+        final SocketChannel channel;
+        final ArrayDeque<PendingWrite> writeQueue = new ArrayDeque<>();
+        ByteBuffer readBuffer = BufferPool.SHARED.acquire(READ_BUFFER_SIZE);
+        long pendingBytes;
+        SelectionKey key;
+
+        Connection(String id, SocketChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+
+        void growReadBuffer(int required) {
+            int capacity = readBuffer.capacity();
+            while (capacity < required) {
+                capacity *= 2;
+            }
+            ByteBuffer larger = BufferPool.SHARED.acquire(capacity);
+            larger.put(readBuffer);
+            BufferPool.SHARED.release(readBuffer);
+            readBuffer = larger;
+        }
+
+        void releaseBuffers() {
+            PendingWrite pending;
+            while ((pending = writeQueue.poll()) != null) {
+                pending.frame.release();
+            }
+            pendingBytes = 0;
+            BufferPool.SHARED.release(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    /**
+     * 广播帧：同一块池化缓冲区被多个连接共享，全部写完后归还
+     * 引用计数只在事件循环线程修改
+     */
+    private static class Frame {
+        final ByteBuffer buffer;
+        int refs = 1;
+
+        Frame(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void release() {
+            if (--refs == 0) {
+                BufferPool.SHARED.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * 某个连接上待写出的帧及其写位置
+     */
+    private static class PendingWrite {
+        final Frame frame;
+        final ByteBuffer view;
+
+        PendingWrite(Frame frame, ByteBuffer view) {
+            this.frame = frame;
+            this.view = view;
+        }
+    }
+
     /**
      * 消息类型
      */
@@ -247,50 +496,79 @@ public class IPCHandler {
      * IPC 消息
      */
     public static class IPCMessage {
+        private static final MessageType[] TYPES = MessageType.values();
+        private static final int HEADER_SIZE = Integer.BYTES * 2;
+
         public final MessageType type;
         public final byte[] data;
         public final long timestamp;
 
         public IPCMessage(MessageType type, byte[] data) {
+            this(type, data, System.currentTimeMillis());
+        }
+
+        private IPCMessage(MessageType type, byte[] data, long timestamp) {
             this.type = type;
             this.data = data;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * 消息体长度（不含帧长度前缀）
+         */
+        public int encodedSize() {
+            return HEADER_SIZE + data.length + Long.BYTES;
+        }
+
+        /**
+         * 编码为带长度前缀的池化直接内存帧，消息只写一次，之后直接交给 SocketChannel
+         */
+        ByteBuffer toFrame() {
+            ByteBuffer frame = BufferPool.SHARED.acquire(Integer.BYTES + encodedSize());
+            frame.putInt(encodedSize());
+            writeTo(frame);
+            return frame.flip();
+        }
+
+        private void writeTo(ByteBuffer buffer) {
+            buffer.putInt(type.ordinal());
+            buffer.putInt(data.length);
+            buffer.put(data);
+            buffer.putLong(timestamp);
         }
 
         /**
          * 序列化消息
          */
         public byte[] serialize() {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (DataOutputStream output = new DataOutputStream(baos)) {
-                output.writeInt(type.ordinal());
-                output.writeInt(data.length);
-                output.write(data);
-                output.writeLong(timestamp);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to serialize message", e);
-            }
-            return baos.toByteArray();
+            ByteBuffer buffer = ByteBuffer.allocate(encodedSize());
+            writeTo(buffer);
+            return buffer.array();
         }
 
         /**
          * 反序列化消息
          */
         public static IPCMessage deserialize(byte[] bytes) {
-            try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
-                int typeOrdinal = input.readInt();
-                MessageType type = MessageType.values()[typeOrdinal];
-                int dataLength = input.readInt();
-                byte[] data = new byte[dataLength];
-                input.readFully(data);
-                long timestamp = input.readLong();
-
-                IPCMessage message = new IPCMessage(type, data);
-                // timestamp 是 final 的，无法设置
-                return message;
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to deserialize message", e);
+            return decode(ByteBuffer.wrap(bytes));
+        }
+
+        static IPCMessage decode(ByteBuffer buffer) {
+            if (buffer.remaining() < HEADER_SIZE + Long.BYTES) {
+                throw new IllegalArgumentException("IPC message too short: " + buffer.remaining());
+            }
+            int typeOrdinal = buffer.getInt();
+            if (typeOrdinal < 0 || typeOrdinal >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown IPC message type " + typeOrdinal);
+            }
+            int dataLength = buffer.getInt();
+            if (dataLength < 0 || dataLength > buffer.remaining() - Long.BYTES) {
+                throw new IllegalArgumentException("Invalid IPC payload length " + dataLength);
             }
+            byte[] data = new byte[dataLength];
+            buffer.get(data);
+            long timestamp = buffer.getLong();
+            return new IPCMessage(TYPES[typeOrdinal], data, timestamp);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.mindplus.optimizer.communication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * IPC 传输层
+ * IPCChannel 的 send/receive 语义由具体传输实现（ZeroMQ 或共享内存）
+ */
+interface IPCTransport {
+    void connect();
+
+    void bind();
+
+    boolean send(byte[] data, int flags);
+
+    /**
+     * 发送 data 中 position 到 limit 之间的数据
+     * 返回时数据已被传输层复制或写出，调用方可以立即复用或归还缓冲区
+     */
+    boolean send(ByteBuffer data, int flags);
+
+    byte[] receive(int flags);
+
+    /**
+     * 发送多帧消息（ROUTER 端第一帧为对端标识）
+     */
+    boolean sendMultipart(byte[][] frames, int flags);
+
+    /**
+     * 接收一条完整的多帧消息
+     * @return null 表示非阻塞模式下没有消息
+     */
+    byte[][] receiveMultipart(int flags);
+
+    /**
+     * 实际绑定的地址，tcp 通配端口在 bind 后解析为系统分配的端口
+     */
+    String getEndpoint();
+
+    void close();
+}
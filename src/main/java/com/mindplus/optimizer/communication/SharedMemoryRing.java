@@ -0,0 +1,245 @@
+package com.mindplus.optimizer.communication;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于内存映射文件的单生产者/单消费者环形缓冲区
+ * 文件布局：[元数据行 64B][消费者游标 64B][生产者游标 64B][数据区]
+ * 每条记录为 [长度 4B][数据]，按 8 字节对齐；长度为 -1 表示回绕填充
+ * 两个进程映射同一个文件，通过 acquire/release 语义发布游标，不需要任何锁
+ */
+public class SharedMemoryRing implements AutoCloseable {
+    private static final int MAGIC = 0x4D505352; // "MPSR"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int HEAD_OFFSET = 64;
+    private static final int TAIL_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+    private static final int RECORD_HEADER = 4;
+    private static final int PADDING = -1;
+
+    private static final VarHandle LONG_VIEW =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    // 对端游标的本地缓存，减少跨核缓存行争用
+    private long cachedHead;
+    private long cachedTail;
+
+    private SharedMemoryRing(Path file, FileChannel fileChannel, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.fileChannel = fileChannel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.cachedHead = (long) LONG_VIEW.getAcquire(buffer, HEAD_OFFSET);
+        this.cachedTail = (long) LONG_VIEW.getAcquire(buffer, TAIL_OFFSET);
+    }
+
+    /**
+     * 打开（必要时创建）环形缓冲区文件
+     * 已存在的文件沿用其中记录的容量，保证两端看到同一布局
+     */
+    public static SharedMemoryRing open(Path file, int requestedCapacity) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        int capacity = Integer.highestOneBit(Math.max(4096, requestedCapacity));
+
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if (header.getInt(MAGIC_OFFSET) == MAGIC) {
+                capacity = header.getInt(CAPACITY_OFFSET);
+            } else {
+                header.putInt(CAPACITY_OFFSET, capacity);
+                header.putInt(MAGIC_OFFSET, MAGIC);
+                header.force();
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+            buffer.order(ByteOrder.nativeOrder());
+            return new SharedMemoryRing(file, channel, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 写入一条记录（仅生产者调用）
+     * @return false 表示空间不足
+     */
+    public boolean offer(byte[] data, int offset, int length) {
+        long tail = (long) LONG_VIEW.getOpaque(buffer, TAIL_OFFSET);
+        int index = reserve(tail, length);
+        if (index < 0) {
+            return false;
+        }
+        buffer.put(HEADER_SIZE + index + RECORD_HEADER, data, offset, length);
+        publish(tail, index, length);
+        return true;
+    }
+
+    /**
+     * 写入 data 中 position 到 limit 之间的数据（仅生产者调用），直接从源缓冲区复制到映射区域
+     * 不修改 data 的 position
+     * @return false 表示空间不足
+     */
+    public boolean offer(ByteBuffer data) {
+        int length = data.remaining();
+        long tail = (long) LONG_VIEW.getOpaque(buffer, TAIL_OFFSET);
+        int index = reserve(tail, length);
+        if (index < 0) {
+            return false;
+        }
+        buffer.put(HEADER_SIZE + index + RECORD_HEADER, data, data.position(), length);
+        publish(tail, index, length);
+        return true;
+    }
+
+    /**
+     * 为一条记录预留空间，必要时写入回绕填充
+     * @return 记录在数据区中的起始下标，-1 表示空间不足
+     */
+    private int reserve(long tail, int length) {
+        int recordSize = align(RECORD_HEADER + length);
+        if (recordSize > capacity / 2) {
+            throw new IllegalArgumentException("Message of " + length + " bytes exceeds ring capacity " + capacity);
+        }
+
+        int index = (int) (tail & mask);
+        int padding = index + recordSize > capacity ? capacity - index : 0;
+        long required = padding + recordSize;
+
+        if (tail + required - cachedHead > capacity) {
+            cachedHead = (long) LONG_VIEW.getAcquire(buffer, HEAD_OFFSET);
+            if (tail + required - cachedHead > capacity) {
+                return -1;
+            }
+        }
+
+        if (padding > 0) {
+            buffer.putInt(HEADER_SIZE + index, PADDING);
+            index = 0;
+        }
+        buffer.putInt(HEADER_SIZE + index, length);
+        return index;
+    }
+
+    /**
+     * 发布记录，使消费者可见
+     */
+    private void publish(long tail, int index, int length) {
+        int start = (int) (tail & mask);
+        long padding = index < start ? capacity - start : 0;
+        LONG_VIEW.setRelease(buffer, TAIL_OFFSET, tail + padding + align(RECORD_HEADER + length));
+    }
+
+    /**
+     * 读取一条记录（仅消费者调用）
+     * @return null 表示当前没有数据
+     */
+    public byte[] poll() {
+        long head = (long) LONG_VIEW.getOpaque(buffer, HEAD_OFFSET);
+        if (head == cachedTail) {
+            cachedTail = (long) LONG_VIEW.getAcquire(buffer, TAIL_OFFSET);
+            if (head == cachedTail) {
+                return null;
+            }
+        }
+
+        int index = (int) (head & mask);
+        int length = buffer.getInt(HEADER_SIZE + index);
+        if (length == PADDING) {
+            head += capacity - index;
+            index = 0;
+            length = buffer.getInt(HEADER_SIZE);
+        }
+
+        byte[] data = new byte[length];
+        buffer.get(HEADER_SIZE + index + RECORD_HEADER, data, 0, length);
+
+        LONG_VIEW.setRelease(buffer, HEAD_OFFSET, head + align(RECORD_HEADER + length));
+        return data;
+    }
+
+    /**
+     * 丢弃所有未读数据（仅消费者调用，用于跳过上一次运行遗留的消息）
+     */
+    public void drain() {
+        long tail = (long) LONG_VIEW.getAcquire(buffer, TAIL_OFFSET);
+        cachedTail = tail;
+        LONG_VIEW.setRelease(buffer, HEAD_OFFSET, tail);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileChannel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * 自旋后挂起的等待策略
+     * 跨进程无法唤醒对端线程，因此不使用 futex，而是先自旋、再让出、最后定时挂起
+     */
+    public static class Idler {
+        private static final int SPIN_LIMIT = 200;
+        private static final int YIELD_LIMIT = 50;
+        private static final long MIN_PARK_NS = 1_000;
+        private static final long MAX_PARK_NS = 1_000_000;
+
+        private int spins;
+        private int yields;
+        private long parkNs = MIN_PARK_NS;
+
+        public void idle() {
+            if (spins < SPIN_LIMIT) {
+                spins++;
+                Thread.onSpinWait();
+            } else if (yields < YIELD_LIMIT) {
+                yields++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNs);
+                parkNs = Math.min(parkNs << 1, MAX_PARK_NS);
+            }
+        }
+
+        public void reset() {
+            spins = 0;
+            yields = 0;
+            parkNs = MIN_PARK_NS;
+        }
+    }
+}
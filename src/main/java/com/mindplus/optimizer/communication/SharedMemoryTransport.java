@@ -0,0 +1,186 @@
+package com.mindplus.optimizer.communication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 基于共享内存环形缓冲区的传输实现
+ * 每个通道对应两个文件：up（connect 端 -> bind 端）和 down（bind 端 -> connect 端）
+ * 每个方向恰好一个生产者和一个消费者，因此同一地址只能有一个 connect 端
+ */
+class SharedMemoryTransport implements IPCTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger("IPCChannel");
+
+    // 只有一个对端，ROUTER 端用固定标识模拟 ZeroMQ 的对端标识帧
+    private static final byte[] PEER_IDENTITY = { 0 };
+
+    private final int type;
+    private final String address;
+    private final String name;
+    private final SharedMemoryRing.Idler receiveIdler = new SharedMemoryRing.Idler();
+    private final SharedMemoryRing.Idler sendIdler = new SharedMemoryRing.Idler();
+    // 同一进程内多个线程共用通道时，按方向串行化，保证环形缓冲区的单生产者/单消费者约束
+    private final Object sendLock = new Object();
+    private final Object receiveLock = new Object();
+    private SharedMemoryRing inbound;
+    private SharedMemoryRing outbound;
+    private volatile boolean closed = false;
+
+    SharedMemoryTransport(int type, String address) {
+        this.type = type;
+        this.address = address;
+        this.name = address.substring(Endpoints.SHM_SCHEME.length());
+    }
+
+    @Override
+    public void connect() {
+        try {
+            open(false);
+            LOGGER.info("Connected to {}", address);
+        } catch (Exception e) {
+            LOGGER.error("Failed to connect to {}", address, e);
+        }
+    }
+
+    @Override
+    public void bind() {
+        try {
+            open(true);
+            // 跳过上一次运行遗留在上行缓冲区中的消息
+            inbound.drain();
+            LOGGER.info("Bound to {} ({} KB per direction)", address, inbound.capacity() / 1024);
+        } catch (Exception e) {
+            LOGGER.error("Failed to bind to {}", address, e);
+        }
+    }
+
+    private void open(boolean server) throws Exception {
+        Path directory = Endpoints.sharedMemoryDirectory();
+        int capacity = Endpoints.sharedMemoryRingSize();
+        SharedMemoryRing up = SharedMemoryRing.open(directory.resolve(name + ".up.ring"), capacity);
+        SharedMemoryRing down = SharedMemoryRing.open(directory.resolve(name + ".down.ring"), capacity);
+        inbound = server ? up : down;
+        outbound = server ? down : up;
+    }
+
+    @Override
+    public boolean send(byte[] data, int flags) {
+        if (outbound == null || closed) {
+            return false;
+        }
+
+        boolean noBlock = (flags & ZMQ.DONTWAIT) != 0;
+        synchronized (sendLock) {
+            sendIdler.reset();
+            while (!outbound.offer(data, 0, data.length)) {
+                if (noBlock || closed) {
+                    return false;
+                }
+                sendIdler.idle();
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public boolean send(ByteBuffer data, int flags) {
+        if (outbound == null || closed) {
+            return false;
+        }
+
+        boolean noBlock = (flags & ZMQ.DONTWAIT) != 0;
+        synchronized (sendLock) {
+            sendIdler.reset();
+            while (!outbound.offer(data)) {
+                if (noBlock || closed) {
+                    return false;
+                }
+                sendIdler.idle();
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public byte[] receive(int flags) {
+        if (inbound == null) {
+            return null;
+        }
+
+        boolean noBlock = (flags & ZMQ.DONTWAIT) != 0;
+        synchronized (receiveLock) {
+            receiveIdler.reset();
+            while (!closed) {
+                byte[] data = inbound.poll();
+                if (data != null || noBlock) {
+                    return data;
+                }
+                receiveIdler.idle();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 多帧消息编码为一条记录：[帧数 4B]([帧长度 4B][帧数据])*
+     * 同一通道上不要混用单帧与多帧收发
+     */
+    @Override
+    public boolean sendMultipart(byte[][] frames, int flags) {
+        int first = type == ZMQ.ROUTER ? 1 : 0;
+        int size = Integer.BYTES;
+        for (int i = first; i < frames.length; i++) {
+            size += Integer.BYTES + frames[i].length;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.putInt(frames.length - first);
+        for (int i = first; i < frames.length; i++) {
+            record.putInt(frames[i].length);
+            record.put(frames[i]);
+        }
+        return send(record.array(), flags);
+    }
+
+    @Override
+    public byte[][] receiveMultipart(int flags) {
+        byte[] data = receive(flags);
+        if (data == null) {
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.wrap(data);
+        int count = record.getInt();
+        int first = type == ZMQ.ROUTER ? 1 : 0;
+        byte[][] frames = new byte[count + first][];
+        if (first == 1) {
+            frames[0] = PEER_IDENTITY;
+        }
+        for (int i = first; i < frames.length; i++) {
+            byte[] frame = new byte[record.getInt()];
+            record.get(frame);
+            frames[i] = frame;
+        }
+        return frames;
+    }
+
+    @Override
+    public String getEndpoint() {
+        return address;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (inbound != null) {
+            inbound.close();
+        }
+        if (outbound != null) {
+            outbound.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mindplus.optimizer.communication;
+
+import org.zeromq.ZMQ;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * TCP 与共享内存传输的对比基准
+ * 用法: java -cp <classpath> com.mindplus.optimizer.communication.TransportBenchmark [消息数] [消息字节数] [往返次数]
+ * 吞吐：PUSH/PULL 单向发送；延迟：REQ/REP 往返，报告 p50/p99/p999
+ */
+public class TransportBenchmark {
+    private static final int DEFAULT_MESSAGES = 200_000;
+    private static final int DEFAULT_SIZE = 64;
+    private static final int DEFAULT_ROUND_TRIPS = 20_000;
+    private static final int WARMUP_ROUND_TRIPS = 2_000;
+    private static final int THROUGHPUT_PORT = 5590;
+    private static final int LATENCY_PORT = 5591;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGES;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SIZE;
+        int roundTrips = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUND_TRIPS;
+
+        Path directory = Files.createTempDirectory("mindplus-ipc-bench");
+        System.setProperty(Endpoints.DIRECTORY_PROPERTY, directory.toString());
+
+        System.out.printf("Transport benchmark: %d messages x %d bytes, %d round trips%n", messages, size, roundTrips);
+
+        runSuite("tcp",
+            "tcp://127.0.0.1:" + THROUGHPUT_PORT, "tcp://127.0.0.1:" + LATENCY_PORT,
+            messages, size, roundTrips);
+        runSuite("shm",
+            Endpoints.SHM_SCHEME + "bench-throughput", Endpoints.SHM_SCHEME + "bench-latency",
+            messages, size, roundTrips);
+    }
+
+    private static void runSuite(String name, String throughputAddress, String latencyAddress,
+                                 int messages, int size, int roundTrips) throws Exception {
+        double perSecond = measureThroughput(throughputAddress, messages, size);
+        long[] latencies = measureLatency(latencyAddress, roundTrips, size);
+
+        System.out.printf("[%s] throughput: %,.0f msg/s (%.1f MB/s)%n",
+            name, perSecond, perSecond * size / (1024 * 1024));
+        System.out.printf("[%s] round trip: p50 %.1f us, p99 %.1f us, p999 %.1f us%n",
+            name, percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999));
+    }
+
+    private static double measureThroughput(String address, int messages, int size) throws Exception {
+        IPCChannel pull = new IPCChannel(ZMQ.PULL, address);
+        IPCChannel push = new IPCChannel(ZMQ.PUSH, address);
+        pull.bind();
+        push.connect();
+
+        Thread consumer = new Thread(() -> {
+            for (int received = 0; received < messages; received++) {
+                pull.receive();
+            }
+        }, "TransportBenchmark-Consumer");
+
+        byte[] payload = new byte[size];
+        long start = System.nanoTime();
+        consumer.start();
+        for (int i = 0; i < messages; i++) {
+            push.send(payload);
+        }
+        consumer.join();
+        long elapsed = System.nanoTime() - start;
+
+        push.close();
+        pull.close();
+        return messages * 1_000_000_000.0 / elapsed;
+    }
+
+    private static long[] measureLatency(String address, int roundTrips, int size) throws Exception {
+        IPCChannel server = new IPCChannel(ZMQ.REP, address);
+        IPCChannel client = new IPCChannel(ZMQ.REQ, address);
+        server.bind();
+        client.connect();
+
+        int total = WARMUP_ROUND_TRIPS + roundTrips;
+        Thread echo = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                server.send(server.receive());
+            }
+        }, "TransportBenchmark-Echo");
+        echo.start();
+
+        byte[] payload = new byte[size];
+        long[] latencies = new long[roundTrips];
+        for (int i = 0; i < total; i++) {
+            long start = System.nanoTime();
+            client.send(payload);
+            client.receive();
+            if (i >= WARMUP_ROUND_TRIPS) {
+                latencies[i - WARMUP_ROUND_TRIPS] = System.nanoTime() - start;
+            }
+        }
+        echo.join();
+
+        client.close();
+        server.close();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
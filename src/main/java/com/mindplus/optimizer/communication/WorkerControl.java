@@ -0,0 +1,209 @@
+package com.mindplus.optimizer.communication;
+
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.WorkerStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 工作进程侧的控制通道
+ * 连接 ProcessManager 为本进程绑定的控制地址，绑定完所有通道后用 endpoint() 登记实际地址并调用一次 ready()，
+ * 之后主循环每轮调用 heartbeat()，按间隔上报心跳
+ * 心跳来自主循环本身，主循环卡死时 ProcessManager 能够发现并重启进程；READY 和心跳都附带本 JVM 的资源统计
+ * 单独运行（没有控制地址）时所有方法都是空操作
+ * 多角色宿主中每个角色线程通过 setScopedProperties() 设置自己的工作进程 ID、控制地址和固定端点
+ */
+public class WorkerControl {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WorkerControl");
+
+    public static final String WORKER_ID_PROPERTY = "mindplus.worker.id";
+    public static final String ADDRESS_PROPERTY = "mindplus.control.address";
+    public static final String HEARTBEAT_INTERVAL_PROPERTY = "mindplus.heartbeat.interval";
+
+    private static final long DEFAULT_HEARTBEAT_INTERVAL_MS = 500;
+
+    // 当前角色线程的属性，优先于系统属性
+    private static final ThreadLocal<Map<String, String>> SCOPED_PROPERTIES = new ThreadLocal<>();
+
+    private final String workerId;
+    private final IPCChannel channel;
+    private final long epoch;
+    private final long pid;
+    private final long intervalNanos;
+    private final Map<String, String> endpoints = new LinkedHashMap<>();
+    private long sequence;
+    private long lastHeartbeatNanos;
+
+    private WorkerControl(String workerId, IPCChannel channel, long intervalMs) {
+        this.workerId = workerId;
+        this.channel = channel;
+        long epoch = ThreadLocalRandom.current().nextLong();
+        this.epoch = epoch != 0 ? epoch : 1;
+        this.pid = ProcessHandle.current().pid();
+        this.intervalNanos = intervalMs * 1_000_000L;
+    }
+
+    /**
+     * 按系统属性连接控制通道
+     * @param defaultWorkerId 没有指定 mindplus.worker.id 时使用的标识
+     */
+    public static WorkerControl connect(String defaultWorkerId) {
+        String workerId = property(WORKER_ID_PROPERTY, defaultWorkerId);
+        long intervalMs = parseLong(property(HEARTBEAT_INTERVAL_PROPERTY), DEFAULT_HEARTBEAT_INTERVAL_MS);
+        String address = property(ADDRESS_PROPERTY);
+
+        IPCChannel channel = null;
+        if (address != null && !address.isEmpty()) {
+            channel = new IPCChannel(ZMQ.PUSH, address);
+            channel.connect();
+        } else {
+            LOGGER.info("No control address for {}, running unsupervised", workerId);
+        }
+        WorkerLog.open(workerId);
+        return new WorkerControl(workerId, channel, intervalMs);
+    }
+
+    /**
+     * 为当前线程设置角色属性，之后在本线程上连接的控制通道和绑定的端点使用这些值
+     * @param properties 为 null 时清除
+     */
+    public static void setScopedProperties(Map<String, String> properties) {
+        if (properties == null) {
+            SCOPED_PROPERTIES.remove();
+        } else {
+            SCOPED_PROPERTIES.set(Map.copyOf(properties));
+        }
+    }
+
+    /**
+     * 当前线程的角色属性，没有时返回 null；线程池据此把角色属性带到执行任务的线程上
+     */
+    public static Map<String, String> getScopedProperties() {
+        return SCOPED_PROPERTIES.get();
+    }
+
+    /**
+     * 读取工作进程属性，当前线程的角色属性优先于系统属性
+     */
+    public static String property(String key) {
+        Map<String, String> scoped = SCOPED_PROPERTIES.get();
+        if (scoped != null) {
+            String value = scoped.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return System.getProperty(key);
+    }
+
+    public static String property(String key, String defaultValue) {
+        String value = property(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 登记一个已绑定通道的实际地址，随 READY 上报，第一个登记的通道为主通道
+     */
+    public WorkerControl endpoint(String name, IPCChannel bound) {
+        endpoints.put(name, bound.getEndpoint());
+        return this;
+    }
+
+    /**
+     * 登记信用回传通道的实际地址
+     */
+    public WorkerControl endpoint(CreditReporter credits) {
+        return endpoint(credits.getChannelName(), credits.getChannel());
+    }
+
+    /**
+     * 通知 ProcessManager 本进程已就绪，协调器据此结束启动等待
+     * @param capabilities 能力标签，例如 "credits"、"threads=8"
+     */
+    public boolean ready(String... capabilities) {
+        if (channel == null) {
+            return false;
+        }
+        lastHeartbeatNanos = System.nanoTime();
+        String main = endpoints.isEmpty() ? "" : endpoints.values().iterator().next();
+        WorkerStatus status = new WorkerStatus(WorkerProtos.WorkerStatus.Type.READY, workerId, epoch, pid,
+            ++sequence, main, List.of(capabilities), endpoints, sampleUsage());
+        // 控制通道刚连上时对端可能还没建立连接，阻塞发送保证 READY 不丢
+        return channel.send(status.toBytes(), 0);
+    }
+
+    /**
+     * 距上次心跳超过间隔时发送一次，只能由主循环线程调用
+     * @return true 表示本次发出了心跳
+     */
+    public boolean heartbeat() {
+        if (channel == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (sequence > 0 && now - lastHeartbeatNanos < intervalNanos) {
+            return false;
+        }
+        lastHeartbeatNanos = now;
+        return send(WorkerProtos.WorkerStatus.Type.HEARTBEAT);
+    }
+
+    private boolean send(WorkerProtos.WorkerStatus.Type type) {
+        WorkerStatus status = new WorkerStatus(type, workerId, epoch, pid, ++sequence, sampleUsage());
+        return channel.send(status.toBytes(), ZMQ.DONTWAIT);
+    }
+
+    /**
+     * 读取本 JVM 的 CPU 时间、堆、GC 和线程统计，ProcessManager 在没有 /proc 的系统上也能据此计算负载
+     */
+    public static WorkerStatus.JvmUsage sampleUsage() {
+        long cpuTimeNanos = -1;
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            cpuTimeNanos = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+
+        long gcCount = 0;
+        long gcTimeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTimeMs += Math.max(0, gc.getCollectionTime());
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return new WorkerStatus.JvmUsage(cpuTimeNanos, heap.getUsed(), heap.getMax(), gcCount, gcTimeMs,
+            ManagementFactory.getThreadMXBean().getThreadCount(), os.getAvailableProcessors());
+    }
+
+    public void close() {
+        WorkerLog.close(workerId);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
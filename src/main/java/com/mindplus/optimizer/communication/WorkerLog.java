@@ -0,0 +1,250 @@
+package com.mindplus.optimizer.communication;
+
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.LogBatch;
+import com.mindplus.optimizer.tasks.LogControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工作进程日志的异步发送
+ * 每个工作进程（多角色宿主中每个角色）有一条日志通道连接到 ProcessManager，
+ * WorkerLogger 在调用线程上按级别过滤、限速并格式化，记录放入有界队列后立即返回；
+ * 一个后台线程定期把队列里的记录打包成 LogBatch 发送，同时接收 ProcessManager 下发的级别调整
+ * 限速或队列满时丢弃记录（WARN 和 ERROR 不限速），丢弃条数随下一批上报
+ * 没有日志地址（单独运行）时 WorkerLogger 直接写 SLF4J
+ */
+public final class WorkerLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WorkerLog");
+
+    public static final String ADDRESS_PROPERTY = "mindplus.log.address";
+    public static final String LEVEL_PROPERTY = "mindplus.log.level";
+    public static final String RATE_PROPERTY = "mindplus.log.rate";
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH_RECORDS = 256;
+    private static final long FLUSH_INTERVAL_MS = 100;
+    private static final int DEFAULT_RATE = 200;
+
+    // 工作进程 ID 到日志通道
+    private static final Map<String, Shipper> SHIPPERS = new ConcurrentHashMap<>();
+    // 已关闭或被新实例替换的通道，发送线程发完剩余记录后关闭
+    private static final Queue<Shipper> RETIRED = new ConcurrentLinkedQueue<>();
+    private static Thread sender;
+
+    private WorkerLog() {
+    }
+
+    public static WorkerLogger getLogger(String name) {
+        return new WorkerLogger(name);
+    }
+
+    /**
+     * 按当前线程的工作进程属性打开日志通道，由 WorkerControl.connect() 调用
+     */
+    static void open(String workerId) {
+        String address = WorkerControl.property(ADDRESS_PROPERTY);
+        if (address == null || address.isEmpty()) {
+            return;
+        }
+        WorkerProtos.LogRecord.Level level = parseLevel(WorkerControl.property(LEVEL_PROPERTY),
+            WorkerProtos.LogRecord.Level.INFO);
+        int rate = DEFAULT_RATE;
+        try {
+            rate = Integer.parseInt(WorkerControl.property(RATE_PROPERTY, String.valueOf(DEFAULT_RATE)).trim());
+        } catch (NumberFormatException e) {
+            // 使用默认值
+        }
+
+        Shipper previous = SHIPPERS.put(workerId, new Shipper(workerId, address, level, rate));
+        if (previous != null) {
+            RETIRED.add(previous);
+        }
+        ensureSender();
+    }
+
+    /**
+     * 发送剩余记录后关闭日志通道
+     */
+    static void close(String workerId) {
+        Shipper shipper = SHIPPERS.remove(workerId);
+        if (shipper != null) {
+            RETIRED.add(shipper);
+        }
+    }
+
+    /**
+     * 当前线程所属工作进程的日志通道，没有时返回 null
+     */
+    static Shipper current() {
+        String workerId = WorkerControl.property(WorkerControl.WORKER_ID_PROPERTY);
+        return workerId != null ? SHIPPERS.get(workerId) : null;
+    }
+
+    /**
+     * 解析级别名（不区分大小写），无法识别时返回默认值
+     */
+    public static WorkerProtos.LogRecord.Level parseLevel(String value, WorkerProtos.LogRecord.Level defaultLevel) {
+        if (value == null || value.isBlank()) {
+            return defaultLevel;
+        }
+        try {
+            WorkerProtos.LogRecord.Level level =
+                WorkerProtos.LogRecord.Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            return level == WorkerProtos.LogRecord.Level.UNRECOGNIZED
+                || level == WorkerProtos.LogRecord.Level.UNSPECIFIED ? defaultLevel : level;
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+    private static synchronized void ensureSender() {
+        if (sender != null) {
+            return;
+        }
+        sender = new Thread(WorkerLog::sendLoop, "worker-log-shipper");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * 通道只在发送线程上创建和使用
+     */
+    private static void sendLoop() {
+        List<LogBatch.Record> batch = new ArrayList<>(MAX_BATCH_RECORDS);
+        while (true) {
+            for (Shipper shipper : SHIPPERS.values()) {
+                flush(shipper, batch);
+            }
+            Shipper retired;
+            while ((retired = RETIRED.poll()) != null) {
+                flush(retired, batch);
+                retired.closeChannel();
+            }
+            try {
+                Thread.sleep(FLUSH_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void flush(Shipper shipper, List<LogBatch.Record> batch) {
+        try {
+            shipper.flush(batch);
+        } catch (Exception e) {
+            LOGGER.debug("Failed to ship logs for {}: {}", shipper.workerId, e.getMessage());
+        }
+    }
+
+    /**
+     * 一个工作进程的日志队列和通道
+     */
+    static class Shipper {
+        final String workerId;
+        private final String address;
+        private final BlockingQueue<LogBatch.Record> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicLong dropped = new AtomicLong();
+        private final int rate;
+        volatile WorkerProtos.LogRecord.Level level;
+        private IPCChannel channel;
+
+        // 令牌桶，容量为每秒条数
+        private double tokens;
+        private long refilledNanos = System.nanoTime();
+
+        Shipper(String workerId, String address, WorkerProtos.LogRecord.Level level, int rate) {
+            this.workerId = workerId;
+            this.address = address;
+            this.level = level;
+            this.rate = rate;
+            this.tokens = rate;
+        }
+
+        boolean isEnabled(WorkerProtos.LogRecord.Level recordLevel) {
+            return recordLevel.getNumber() >= level.getNumber() && level != WorkerProtos.LogRecord.Level.OFF;
+        }
+
+        /**
+         * 限速，rate 不大于 0 表示不限
+         */
+        synchronized boolean tryAcquire(WorkerProtos.LogRecord.Level recordLevel) {
+            if (rate <= 0 || recordLevel.getNumber() >= WorkerProtos.LogRecord.Level.WARN.getNumber()) {
+                return true;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - refilledNanos) * rate / (double) TimeUnit.SECONDS.toNanos(1));
+            refilledNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        void offer(LogBatch.Record record) {
+            if (!queue.offer(record)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        void recordDropped() {
+            dropped.incrementAndGet();
+        }
+
+        private void flush(List<LogBatch.Record> batch) {
+            if (channel == null) {
+                channel = new IPCChannel(ZMQ.DEALER, address);
+                channel.connect();
+                // 空批次让 ProcessManager 记下本通道的对端标识，之后才能下发级别调整
+                send(new LogBatch(workerId, List.of(), 0));
+            }
+
+            byte[] control;
+            while ((control = channel.receive(ZMQ.DONTWAIT)) != null) {
+                try {
+                    level = LogControl.fromBytes(control).getLevel();
+                } catch (IllegalArgumentException e) {
+                    LOGGER.debug("Ignoring invalid log control for {}: {}", workerId, e.getMessage());
+                }
+            }
+
+            do {
+                batch.clear();
+                queue.drainTo(batch, MAX_BATCH_RECORDS);
+                long lost = dropped.getAndSet(0);
+                if (batch.isEmpty() && lost == 0) {
+                    return;
+                }
+                if (!send(new LogBatch(workerId, batch, lost))) {
+                    dropped.addAndGet(lost + batch.size());
+                    return;
+                }
+            } while (batch.size() == MAX_BATCH_RECORDS);
+        }
+
+        private boolean send(LogBatch logBatch) {
+            return channel.send(logBatch.toBytes(), ZMQ.DONTWAIT);
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mindplus.optimizer.communication;
+
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.LogBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * 工作进程中使用的日志记录器，用法与 SLF4J 相同
+ * 当前线程属于有日志通道的工作进程时记录经 WorkerLog 异步发送给游戏进程，否则直接写 SLF4J
+ * 级别未启用或被限速时不格式化参数
+ */
+public class WorkerLogger {
+    private final String name;
+    private final Logger fallback;
+
+    WorkerLogger(String name) {
+        this.name = name;
+        this.fallback = LoggerFactory.getLogger(name);
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(WorkerProtos.LogRecord.Level.TRACE);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(WorkerProtos.LogRecord.Level.DEBUG);
+    }
+
+    public void trace(String format, Object... args) {
+        log(WorkerProtos.LogRecord.Level.TRACE, format, args);
+    }
+
+    public void debug(String format, Object... args) {
+        log(WorkerProtos.LogRecord.Level.DEBUG, format, args);
+    }
+
+    public void info(String format, Object... args) {
+        log(WorkerProtos.LogRecord.Level.INFO, format, args);
+    }
+
+    public void warn(String format, Object... args) {
+        log(WorkerProtos.LogRecord.Level.WARN, format, args);
+    }
+
+    public void error(String format, Object... args) {
+        log(WorkerProtos.LogRecord.Level.ERROR, format, args);
+    }
+
+    private boolean isEnabled(WorkerProtos.LogRecord.Level level) {
+        WorkerLog.Shipper shipper = WorkerLog.current();
+        if (shipper != null) {
+            return shipper.isEnabled(level);
+        }
+        return level == WorkerProtos.LogRecord.Level.TRACE ? fallback.isTraceEnabled() : fallback.isDebugEnabled();
+    }
+
+    private void log(WorkerProtos.LogRecord.Level level, String format, Object[] args) {
+        WorkerLog.Shipper shipper = WorkerLog.current();
+        if (shipper == null) {
+            logDirectly(level, format, args);
+            return;
+        }
+        if (!shipper.isEnabled(level)) {
+            return;
+        }
+        if (!shipper.tryAcquire(level)) {
+            shipper.recordDropped();
+            return;
+        }
+
+        FormattingTuple formatted = MessageFormatter.arrayFormat(format, args);
+        Throwable throwable = formatted.getThrowable();
+        shipper.offer(new LogBatch.Record(System.currentTimeMillis(), level, name, Thread.currentThread().getName(),
+            String.valueOf(formatted.getMessage()), throwable != null ? stackTrace(throwable) : ""));
+    }
+
+    private void logDirectly(WorkerProtos.LogRecord.Level level, String format, Object[] args) {
+        switch (level) {
+            case TRACE:
+                fallback.trace(format, args);
+                break;
+            case DEBUG:
+                fallback.debug(format, args);
+                break;
+            case INFO:
+                fallback.info(format, args);
+                break;
+            case WARN:
+                fallback.warn(format, args);
+                break;
+            default:
+                fallback.error(format, args);
+                break;
+        }
+    }
+
+    private static String stackTrace(Throwable throwable) {
+        StringWriter writer = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+}
@@ -0,0 +1,174 @@
+package com.mindplus.optimizer.communication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+import org.zeromq.ZMQException;
+import org.zeromq.ZMQ.Socket;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 ZeroMQ 的传输实现
+ * 同一进程内的所有通道共用一个 ZContext（一个 I/O 线程），最后一个通道关闭时释放
+ */
+class ZmqTransport implements IPCTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger("IPCChannel");
+
+    private static ZContext sharedContext;
+    private static int contextUsers;
+
+    private final ZContext context;
+    private final int type;
+    private final String address;
+    private Socket socket;
+    private boolean closed = false;
+
+    ZmqTransport(int type, String address) {
+        this.context = acquireContext();
+        this.type = type;
+        this.address = address;
+    }
+
+    private static synchronized ZContext acquireContext() {
+        if (sharedContext == null) {
+            sharedContext = new ZContext();
+        }
+        contextUsers++;
+        return sharedContext;
+    }
+
+    private static synchronized void releaseContext(ZContext context) {
+        if (context != sharedContext) {
+            return;
+        }
+        if (--contextUsers == 0) {
+            sharedContext.close();
+            sharedContext = null;
+        }
+    }
+
+    @Override
+    public void connect() {
+        try {
+            socket = context.createSocket(type);
+            socket.connect(address);
+            LOGGER.info("Connected to {}", address);
+        } catch (Exception e) {
+            LOGGER.error("Failed to connect to {}", address, e);
+        }
+    }
+
+    @Override
+    public void bind() {
+        try {
+            socket = context.createSocket(type);
+            try {
+                socket.bind(address);
+            } catch (ZMQException e) {
+                String fallback = Endpoints.ephemeralFallback(address);
+                if (fallback == null) {
+                    throw e;
+                }
+                LOGGER.warn("Failed to bind to {} ({}), using {}", address, e.getMessage(), fallback);
+                socket.bind(fallback);
+            }
+            LOGGER.info("Bound to {}", getEndpoint());
+        } catch (Exception e) {
+            LOGGER.error("Failed to bind to {}", address, e);
+        }
+    }
+
+    @Override
+    public boolean send(byte[] data, int flags) {
+        if (socket != null) {
+            return socket.send(data, flags);
+        }
+        return false;
+    }
+
+    /**
+     * ZeroMQ 的 Msg 只引用传入的 ByteBuffer，由 I/O 线程异步写出，
+     * 为了让调用方可以立即归还池化缓冲区，这里复制一次到消息自己的数组
+     */
+    @Override
+    public boolean send(ByteBuffer data, int flags) {
+        if (socket != null) {
+            byte[] copy = new byte[data.remaining()];
+            data.get(data.position(), copy);
+            return socket.send(copy, flags);
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] receive(int flags) {
+        if (socket != null) {
+            return socket.recv(flags);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean sendMultipart(byte[][] frames, int flags) {
+        if (socket == null) {
+            return false;
+        }
+        int last = frames.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (!socket.send(frames[i], flags | ZMQ.SNDMORE)) {
+                return false;
+            }
+        }
+        return socket.send(frames[last], flags);
+    }
+
+    @Override
+    public byte[][] receiveMultipart(int flags) {
+        if (socket == null) {
+            return null;
+        }
+        byte[] first = socket.recv(flags);
+        if (first == null) {
+            return null;
+        }
+        if (!socket.hasReceiveMore()) {
+            return new byte[][] { first };
+        }
+
+        List<byte[]> frames = new ArrayList<>(4);
+        frames.add(first);
+        while (socket.hasReceiveMore()) {
+            // 多帧消息是原子到达的，后续帧不会阻塞
+            frames.add(socket.recv(0));
+        }
+        return frames.toArray(new byte[0][]);
+    }
+
+    @Override
+    public String getEndpoint() {
+        if (socket != null) {
+            String endpoint = socket.getLastEndpoint();
+            if (endpoint != null && !endpoint.isEmpty()) {
+                return endpoint;
+            }
+        }
+        return address;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (socket != null) {
+            context.destroySocket(socket);
+            socket = null;
+        }
+        releaseContext(context);
+    }
+}
@@ -25,6 +25,10 @@ public class ModConfig implements ConfigData {
     @ConfigEntry.Category("network")
     @ConfigEntry.Gui.TransitiveObject
     public Network network = new Network();
+
+    @ConfigEntry.Category("workers")
+    @ConfigEntry.Gui.TransitiveObject
+    public Workers workers = new Workers();
     
     public static class General {
         @ConfigEntry.Gui.Tooltip
@@ -35,6 +39,40 @@ public class ModConfig implements ConfigData {
         
         @ConfigEntry.Gui.Tooltip
         public int maxProcesses = 8;
+
+        @ConfigEntry.Gui.Tooltip
+        public int heartbeatIntervalMs = 500;
+
+        @ConfigEntry.Gui.Tooltip
+        public int livenessTimeoutMs = 3000;
+
+        @ConfigEntry.Gui.Tooltip
+        public int restartBackoffMs = 500;
+
+        @ConfigEntry.Gui.Tooltip
+        public int maxRestartBackoffMs = 30000;
+
+        @ConfigEntry.Gui.Tooltip
+        public int resourceSampleIntervalMs = 1000;
+
+        @ConfigEntry.Gui.Tooltip
+        public boolean enableClassDataSharing = true;
+
+        @ConfigEntry.Gui.Tooltip
+        public int warmWorkerPool = 2;
+
+        @ConfigEntry.Gui.Tooltip
+        public String workerMode = "isolated";
+
+        @ConfigEntry.Gui.Tooltip
+        public String hostedRoles = "structure-generator,terrain-generator,biome-generator,entity-spawner,"
+            + "ai-processor,chunk-preloader,world-generator,audio-processor";
+
+        @ConfigEntry.Gui.Tooltip
+        public boolean lazyWorkerStart = true;
+
+        @ConfigEntry.Gui.Tooltip
+        public int workerIdleHibernateSeconds = 300;
     }
     
     public static class Generation {
@@ -61,6 +99,30 @@ public class ModConfig implements ConfigData {
         
         @ConfigEntry.Gui.Tooltip
         public int entitySpawnerPort = 5558;
+
+        @ConfigEntry.Gui.Tooltip
+        public int pipelineStageWindow = 32;
+
+        @ConfigEntry.Gui.Tooltip
+        public int pipelineMaxActiveChunks = 1024;
+
+        @ConfigEntry.Gui.Tooltip
+        public int regionBatchSize = 8;
+
+        @ConfigEntry.Gui.Tooltip
+        public boolean enableResultCache = true;
+
+        @ConfigEntry.Gui.Tooltip
+        public String resultCacheDirectory = "mindplus-cache";
+
+        @ConfigEntry.Gui.Tooltip
+        public int pregenWindow = 512;
+
+        @ConfigEntry.Gui.Tooltip
+        public int pregenMaxTickMs = 45;
+
+        @ConfigEntry.Gui.Tooltip
+        public int hedgeBudgetPercent = 5;
     }
     
     public static class Runtime {
@@ -116,5 +178,81 @@ public class ModConfig implements ConfigData {
         
         @ConfigEntry.Gui.Tooltip
         public int retryDelay = 1000;
+
+        @ConfigEntry.Gui.Tooltip
+        public String transport = "tcp";
+
+        @ConfigEntry.Gui.Tooltip
+        public int sharedMemoryRingKb = 4096;
+
+        @ConfigEntry.Gui.Tooltip
+        public int creditWindow = 256;
+    }
+
+    public static class Workers {
+        @ConfigEntry.Gui.Tooltip
+        public boolean enableCpuPinning = false;
+
+        @ConfigEntry.Gui.Tooltip
+        public String workerCpus = "";
+
+        @ConfigEntry.Gui.Tooltip
+        public int reservedCpus = 2;
+
+        @ConfigEntry.Gui.Tooltip
+        public boolean enableLogShipping = true;
+
+        @ConfigEntry.Gui.Tooltip
+        public String workerLogLevel = "INFO";
+
+        @ConfigEntry.Gui.Tooltip
+        public String roleLogLevels = "";
+
+        @ConfigEntry.Gui.Tooltip
+        public int logRecordsPerSecond = 200;
+
+        @ConfigEntry.Gui.CollapsibleObject
+        public JvmProfile generation = new JvmProfile(512, "Parallel");
+
+        @ConfigEntry.Gui.CollapsibleObject
+        public JvmProfile ai = new JvmProfile(256, "Serial");
+
+        @ConfigEntry.Gui.CollapsibleObject
+        public JvmProfile render = new JvmProfile(512, "G1");
+
+        @ConfigEntry.Gui.CollapsibleObject
+        public JvmProfile audio = new JvmProfile(128, "Serial");
+
+        @ConfigEntry.Gui.CollapsibleObject
+        public JvmProfile host = new JvmProfile(1536, "G1");
+    }
+
+    /**
+     * 一类工作进程的 JVM 参数，0 或空字符串表示使用 JVM 默认值
+     */
+    public static class JvmProfile {
+        @ConfigEntry.Gui.Tooltip
+        public int maxHeapMb;
+
+        @ConfigEntry.Gui.Tooltip
+        public String gc;
+
+        @ConfigEntry.Gui.Tooltip
+        public int activeProcessorCount = 0;
+
+        @ConfigEntry.Gui.Tooltip
+        public int threads = 0;
+
+        @ConfigEntry.Gui.Tooltip
+        public String extraJvmArgs = "";
+
+        public JvmProfile() {
+            this(0, "");
+        }
+
+        public JvmProfile(int maxHeapMb, String gc) {
+            this.maxHeapMb = maxHeapMb;
+            this.gc = gc;
+        }
     }
-}
\ No newline at end of file
+}
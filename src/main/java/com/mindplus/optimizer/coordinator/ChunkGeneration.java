@@ -0,0 +1,101 @@
+package com.mindplus.optimizer.coordinator;
+
+import com.mindplus.optimizer.tasks.ChunkResult;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一个区块的生成过程，每个阶段一个 Future，结果带有该阶段工作进程返回的数据
+ * 未启用的阶段直接以跳过结果完成
+ * 可以取消或设置截止时间：不再被任何请求需要的区块移出流水线，已发给工作进程但尚未开始的任务被丢弃
+ * 注意：Future 在生成流水线线程上完成，耗时回调请使用 *Async 变体
+ */
+public class ChunkGeneration {
+    private final int chunkX;
+    private final int chunkZ;
+    private final String dimension;
+    private final Map<GenerationStage, CompletableFuture<ChunkResult>> stages;
+    private final CompletableFuture<Void> all;
+    private final GenerationPipeline pipeline;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ChunkGeneration(int chunkX, int chunkZ, String dimension,
+                    Map<GenerationStage, CompletableFuture<ChunkResult>> stages, GenerationPipeline pipeline) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.dimension = dimension;
+        this.stages = new EnumMap<>(stages);
+        this.all = CompletableFuture.allOf(this.stages.values().toArray(new CompletableFuture[0]));
+        this.pipeline = pipeline;
+    }
+
+    public int getChunkX() { return chunkX; }
+    public int getChunkZ() { return chunkZ; }
+    public String getDimension() { return dimension; }
+
+    /**
+     * 指定阶段的结果
+     */
+    public CompletableFuture<ChunkResult> stage(GenerationStage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * 所有阶段完成（任一阶段失败则异常完成）
+     */
+    public CompletableFuture<Void> all() {
+        return all;
+    }
+
+    /**
+     * 取消生成，可在任意线程调用：尚未完成的阶段以 CancellationException 完成
+     * 同一区块的其他请求不受影响
+     * @return 是否有阶段因此取消（全部完成后调用返回 false）
+     */
+    public boolean cancel() {
+        return abandon(new CancellationException("Chunk (" + chunkX + ", " + chunkZ + ") generation cancelled"));
+    }
+
+    /**
+     * 设置截止时间：到期时尚未完成的阶段以 TimeoutException 完成，其余与 cancel() 相同
+     */
+    public ChunkGeneration orTimeout(long timeout, TimeUnit unit) {
+        if (!all.isDone()) {
+            pipeline.expireAfter(this, unit.toNanos(timeout));
+        }
+        return this;
+    }
+
+    public boolean isCancelled() {
+        return stages.values().stream().anyMatch(CompletableFuture::isCancelled);
+    }
+
+    /**
+     * 以 reason 完成尚未完成的阶段，并通知流水线本请求不再需要这个区块
+     */
+    boolean abandon(Throwable reason) {
+        boolean abandoned = false;
+        for (CompletableFuture<ChunkResult> future : stages.values()) {
+            abandoned |= future.completeExceptionally(reason);
+        }
+        if (abandoned && released.compareAndSet(false, true)) {
+            pipeline.release(this);
+        }
+        return abandoned;
+    }
+
+    boolean expire(long timeoutNanos) {
+        return abandon(new TimeoutException("Chunk (" + chunkX + ", " + chunkZ + ") not generated within "
+            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+    }
+
+    Map<GenerationStage, CompletableFuture<ChunkResult>> getStages() {
+        return stages;
+    }
+}
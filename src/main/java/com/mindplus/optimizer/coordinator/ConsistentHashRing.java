@@ -0,0 +1,99 @@
+package com.mindplus.optimizer.coordinator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * 一个生成阶段各实例的一致性哈希环
+ * 每个实例在环上有 VIRTUAL_NODES 个虚拟节点，键归顺时针方向第一个节点所属的实例；
+ * 增加或移除一个实例时只有约 1/N 的键换了实例，其余实例的缓存保持有效
+ * 环创建后不可变，成员变化时整体替换
+ */
+final class ConsistentHashRing {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final List<String> members;
+    private final TreeMap<Long, String> nodes = new TreeMap<>();
+
+    ConsistentHashRing(List<String> members) {
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+        for (String member : members) {
+            long base = hash(member);
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                nodes.put(mix(base + i * 0x9E3779B97F4A7C15L), member);
+            }
+        }
+    }
+
+    List<String> getMembers() {
+        return members;
+    }
+
+    boolean contains(String member) {
+        return members.contains(member);
+    }
+
+    /**
+     * 键所属的实例，跳过 available 不接受的实例（相当于把它临时移出环）；都不可用时返回键原本所属的实例
+     */
+    String route(long key, Predicate<String> available) {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        long point = mix(key);
+        String owner = null;
+        int visited = 0;
+        for (Map.Entry<Long, String> entry : nodes.tailMap(point).entrySet()) {
+            if (owner == null) {
+                owner = entry.getValue();
+            }
+            if (available.test(entry.getValue())) {
+                return entry.getValue();
+            }
+            if (++visited >= nodes.size()) {
+                return owner;
+            }
+        }
+        for (Map.Entry<Long, String> entry : nodes.entrySet()) {
+            if (owner == null) {
+                owner = entry.getValue();
+            }
+            if (available.test(entry.getValue())) {
+                return entry.getValue();
+            }
+            if (++visited >= nodes.size()) {
+                break;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * 区域的路由键，同一维度中同一区域的区块落在同一实例上
+     */
+    static long regionKey(String dimension, int regionX, int regionZ) {
+        return ((long) regionX << 32 | (regionZ & 0xFFFFFFFFL)) ^ ((long) dimension.hashCode() * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static long hash(String member) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : member.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * SplitMix64 的最终混合
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
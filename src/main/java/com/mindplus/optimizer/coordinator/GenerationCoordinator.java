@@ -1,224 +1,849 @@
 package com.mindplus.optimizer.coordinator;
 
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.SharedMemoryRing;
 import com.mindplus.optimizer.config.ModConfig;
-import com.mindplus.optimizer.process.PortCleaner;
 import com.mindplus.optimizer.process.ProcessManager;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.tasks.RegionTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * 区块生成协调器
+ * 每个生成阶段运行一个或多个工作进程实例，每个实例一个 DEALER 通道连接到它的 ROUTER，消息格式为 [关联 ID][负载]
+ * 请求按区块所在区域（ROUTING_REGION_SIZE 边长的对齐正方形）的一致性哈希分给实例，同一区域总在同一实例上生成，
+ * 实例的噪声缓存、气候缓存和打开的结果缓存文件保持命中；实例崩溃等待重启期间它的区域临时改由环上的下一个实例处理，
+ * 实例数变化时只有约 1/N 的区域换了实例
+ * 所有通道只由一个 I/O 线程访问，调用方通过 Future 拿到结果，每个工作进程可同时处理多个请求
+ * 工作进程崩溃重启后，发给它的在途请求会重新发送给替代进程
+ * 工作进程内存紧张（GC 频繁或堆将满）时限制发给它的在途请求数，其余请求留在本地排队，避免堆积在工作进程的堆里
+ * 各阶段的工作进程是按需进程：第一次提交时启动，就绪后才连接通道，空闲后由 ProcessManager 休眠
+ * 区域请求 [关联 ID][RegionTask.KIND][RegionTask] 的回复是同一关联 ID 的多条消息，每个区块一条，空负载表示结束
+ * 已发出的请求被取消（Future.cancel）时向实例发送 [关联 ID][ChunkTask.CANCEL]，工作进程丢弃尚未开始的任务
+ * 对冲请求：单区块请求超过本阶段最近延迟的 p95 仍未回复时，以同一关联 ID 发给环上的下一个实例，先到的回复生效，
+ * 另一个实例收到取消；生成结果只取决于种子、维度和坐标，重复执行是安全的。对冲次数受每阶段的预算限制
+ * （hedgeBudgetPercent，按已发请求数累积），不会让额外负载超过这个比例
+ */
 public class GenerationCoordinator {
     private static final Logger LOGGER = LoggerFactory.getLogger("GenerationCoordinator");
-    
+
+    private static final long REQUEST_TIMEOUT_MS = 30_000;
+    // 区域请求每多这么多区块，超时时间增加一个 REQUEST_TIMEOUT_MS
+    private static final int REGION_CHUNKS_PER_TIMEOUT = 256;
+    // 同一请求最多重放次数，超过后判定为导致工作进程崩溃的任务
+    private static final int MAX_REPLAYS = 3;
+    // 工作进程内存紧张时每个阶段最多同时在途的请求数
+    private static final int PRESSURED_IN_FLIGHT = 4;
+    // 路由区域的边长（区块），与结果缓存的区域文件一致，同一文件只由一个实例写入
+    private static final int ROUTING_REGION_SHIFT = 5;
+    // 每阶段保留的最近延迟样本数，以及开始对冲前至少需要的样本数
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int HEDGE_MIN_SAMPLES = 64;
+    private static final double HEDGE_PERCENTILE = 0.95;
+    // 对冲等待时间的下限，命中缓存的请求延迟很低，不值得对冲
+    private static final long HEDGE_MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // 对冲预算最多累积的次数
+    private static final double HEDGE_BURST = 8;
+
     private final ProcessManager processManager;
-    private IPCChannel structureChannel;
-    private IPCChannel terrainChannel;
-    private IPCChannel biomeChannel;
-    private IPCChannel entityChannel;
-    
+    private final GenerationPipeline pipeline;
+    private final PregenManager pregen;
+    // 实例进程 ID -> 通道，只由 I/O 线程访问
+    private final Map<String, IPCChannel> channels = new HashMap<>();
+    // 各阶段当前的实例环，实例数变化时整体替换
+    private final Map<GenerationStage, ConsistentHashRing> rings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Request> pending = new ConcurrentHashMap<>();
+    // 每个实例已发出但尚未完成的请求数
+    private final Map<String, AtomicInteger> outstanding = new ConcurrentHashMap<>();
+    private final Queue<Request> outgoing = new ConcurrentLinkedQueue<>();
+    // 已发出后被取消的请求，由 I/O 线程通知实例
+    private final Queue<Request> cancellations = new ConcurrentLinkedQueue<>();
+    // 各阶段的延迟样本和对冲预算
+    private final Map<GenerationStage, Hedging> hedging = new EnumMap<>(GenerationStage.class);
+    // 重启或被移除的实例，由 I/O 线程检查地址变化或关闭通道
+    private final Queue<String> changedInstances = new ConcurrentLinkedQueue<>();
+    private final AtomicLong correlationIds = new AtomicLong();
+    private volatile boolean running = false;
+    private Thread ioThread;
+
     public GenerationCoordinator(ProcessManager processManager) {
         this.processManager = processManager;
+        processManager.addRestartListener(this::onWorkerRestarted);
+        this.pipeline = new GenerationPipeline(this);
+        this.pregen = new PregenManager(this);
+        for (GenerationStage stage : GenerationStage.values()) {
+            hedging.put(stage, new Hedging());
+        }
     }
-    
+
+    /**
+     * 登记各阶段的工作进程，实际启动推迟到第一次提交（或服务器启动时，见 onServerStarting）
+     */
     public void initialize() {
+        registerWorkerProcesses();
+        LOGGER.info("Generation workers registered, they will start on first use");
+    }
+
+    /**
+     * 服务器启动：按当前配置调整各阶段的实例数，关闭按需启动时立即启动所有实例并等待就绪
+     */
+    public void onServerStarting() {
         ModConfig config = ModConfig.INSTANCE;
+        rebalance(config);
+        if (config.general.lazyWorkerStart) {
+            return;
+        }
+
+        List<String> workers = enabledWorkers();
+        workers.forEach(processManager::acquire);
 
-        // 清理可能被占用的端口
-        LOGGER.info("Checking for port conflicts...");
-        cleanupPorts(config);
+        // 并行等待所有工作进程绑定端口后上报 READY，实际地址由 ProcessManager 登记
+        long startNanos = System.nanoTime();
+        if (processManager.awaitReady(workers, config.network.connectionTimeout)) {
+            LOGGER.info("{} generation workers ready in {}ms", workers.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } else {
+            LOGGER.warn("Not all generation workers are ready, requests to them will queue until they are");
+        }
+    }
 
-        // 先启动工作进程（它们会 bind 端口）
-        startWorkerProcesses();
+    /**
+     * 集成服务器关闭后不再有生成请求，立即休眠各阶段的工作进程，未完成的请求取消
+     */
+    public void onServerStopping() {
+        // 先保存预生成检查点，再取消流水线中的区块
+        pregen.onServerStopping();
+        pipeline.cancelAll("Server stopped");
+        CancellationException cancelled = new CancellationException("Server stopped");
+        for (Request request : pending.values()) {
+            request.future.completeExceptionally(cancelled);
+        }
+        for (String worker : enabledWorkers()) {
+            processManager.hibernate(worker);
+        }
+    }
 
-        // 等待工作进程启动并绑定端口
-        try {
-            Thread.sleep(1000); // 等待 1 秒让工作进程完全启动
-        } catch (InterruptedException e) {
-            LOGGER.warn("Interrupted while waiting for workers to start", e);
+    /**
+     * 第一次提交请求时启动 I/O 线程并连接通道
+     */
+    private synchronized void ensureStarted() {
+        if (ioThread != null) {
+            return;
         }
+        running = true;
+        ioThread = new Thread(this::ioLoop, "GenerationCoordinator-IO");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
 
-        // 延迟连接到工作进程，在第一次使用时才建立连接
-        // 这样可以避免端口冲突问题
-        LOGGER.info("Worker processes started, channels will be connected on first use");
+    private IPCChannel connectInstance(GenerationStage stage, String instance, ModConfig config) {
+        IPCChannel channel = new IPCChannel(ZMQ.DEALER, Endpoints.connect(instance, stage.getPort(config)));
+        channel.connect();
+        LOGGER.info("Connected to {} on {}", instance, channel.getAddress());
+        return channel;
     }
 
     /**
-     * 延迟初始化通道连接
+     * 已移出环的实例关闭通道；重启后的实例没能沿用原端口时，重新连接到它上报的新地址
      */
-    private void ensureChannelsConnected() {
+    private void refreshChannel(String instance) {
+        IPCChannel channel = channels.get(instance);
+        GenerationStage stage = GenerationStage.fromWorkerName(instance);
+        if (channel == null || stage == null) {
+            return;
+        }
+        ConsistentHashRing ring = rings.get(stage);
+        if (ring == null || !ring.contains(instance)) {
+            // 迟到的回复随通道一起丢弃，请求已经重新路由
+            channel.close();
+            channels.remove(instance);
+            return;
+        }
         ModConfig config = ModConfig.INSTANCE;
+        String address = Endpoints.connect(instance, stage.getPort(config));
+        if (!address.equals(channel.getAddress())) {
+            channel.close();
+            channels.put(instance, connectInstance(stage, instance, config));
+        }
+    }
 
-        if (config.generation.enableStructureGenerator && structureChannel == null) {
-            structureChannel = new IPCChannel(ZMQ.REQ,
-                "tcp://" + config.network.host + ":" + config.generation.structureGeneratorPort);
-            structureChannel.connect();
-            LOGGER.info("Connected to structure generator on port {}", config.generation.structureGeneratorPort);
+    /**
+     * I/O 循环：发送排队的请求，收取所有通道的回复
+     */
+    private void ioLoop() {
+        SharedMemoryRing.Idler idler = new SharedMemoryRing.Idler();
+        ArrayDeque<Request> retry = new ArrayDeque<>();
+
+        while (running) {
+            boolean busy = false;
+
+            String changed;
+            while ((changed = changedInstances.poll()) != null) {
+                refreshChannel(changed);
+            }
+
+            // 上一轮因对端未就绪而没发出去的请求优先重试
+            int retries = retry.size();
+            for (int i = 0; i < retries; i++) {
+                Request request = retry.poll();
+                busy |= dispatch(request, retry);
+            }
+
+            Request request;
+            while ((request = outgoing.poll()) != null) {
+                busy |= dispatch(request, retry);
+            }
+
+            while ((request = cancellations.poll()) != null) {
+                busy = true;
+                sendCancel(request);
+            }
+
+            busy |= hedgeSlowRequests();
+
+            for (Map.Entry<String, IPCChannel> entry : channels.entrySet()) {
+                byte[][] reply;
+                while ((reply = entry.getValue().receiveMultipart(ZMQ.DONTWAIT)) != null) {
+                    busy = true;
+                    completeReply(entry.getKey(), reply);
+                }
+            }
+
+            if (busy) {
+                idler.reset();
+            } else {
+                idler.idle();
+            }
         }
 
-        if (config.generation.enableTerrainGenerator && terrainChannel == null) {
-            terrainChannel = new IPCChannel(ZMQ.REQ,
-                "tcp://" + config.network.host + ":" + config.generation.terrainGeneratorPort);
-            terrainChannel.connect();
-            LOGGER.info("Connected to terrain generator on port {}", config.generation.terrainGeneratorPort);
+        for (IPCChannel channel : channels.values()) {
+            channel.close();
         }
+        channels.clear();
+    }
 
-        if (config.generation.enableBiomeGenerator && biomeChannel == null) {
-            biomeChannel = new IPCChannel(ZMQ.REQ,
-                "tcp://" + config.network.host + ":" + config.generation.biomeGeneratorPort);
-            biomeChannel.connect();
-            LOGGER.info("Connected to biome generator on port {}", config.generation.biomeGeneratorPort);
+    /**
+     * @return true 表示请求已发出或已失败，false 表示进入重试队列
+     */
+    private boolean dispatch(Request request, ArrayDeque<Request> retry) {
+        if (request.future.isDone()) {
+            return true;
+        }
+
+        ModConfig config = ModConfig.INSTANCE;
+        ConsistentHashRing ring = rings.get(request.stage);
+        if (ring == null || !request.stage.isEnabled(config)) {
+            request.future.completeExceptionally(
+                new IllegalStateException(request.stage.getWorkerName() + " is disabled"));
+            return true;
+        }
+        String instance = route(request, ring);
+        if (!instance.equals(request.instance)) {
+            // 原实例已移出环：在途计数转到新实例
+            release(request);
+            request.instance = instance;
+        }
+        processManager.acquire(instance);
+
+        IPCChannel channel = channels.get(instance);
+        if (channel == null) {
+            // 按需启动的工作进程就绪后才登记实际地址
+            if (!processManager.isReady(instance)) {
+                retry.add(request);
+                return false;
+            }
+            channel = connectInstance(request.stage, instance, config);
+            channels.put(instance, channel);
         }
 
-        if (config.generation.enableEntitySpawner && entityChannel == null) {
-            entityChannel = new IPCChannel(ZMQ.REQ,
-                "tcp://" + config.network.host + ":" + config.generation.entitySpawnerPort);
-            entityChannel.connect();
-            LOGGER.info("Connected to entity spawner on port {}", config.generation.entitySpawnerPort);
+        // 重放的请求已经计入在途数，不受限制
+        if (!request.outstanding.get() && isThrottled(instance)) {
+            retry.add(request);
+            return false;
         }
+
+        byte[][] frames = request.stream != null
+            ? new byte[][] { encodeId(request.correlationId), RegionTask.KIND, request.payload }
+            : new byte[][] { encodeId(request.correlationId), request.payload };
+        if (channel.sendMultipart(frames, ZMQ.DONTWAIT)) {
+            if (request.outstanding.compareAndSet(false, true)) {
+                outstandingFor(instance).incrementAndGet();
+            }
+            request.sentNanos = System.nanoTime();
+            if (request.stream == null) {
+                hedging.get(request.stage).sent(request, config.generation.hedgeBudgetPercent);
+            }
+            // 发送期间超时或被取消
+            if (request.future.isDone()) {
+                if (request.future.isCancelled()) {
+                    sendCancel(request);
+                }
+                release(request);
+            }
+            return true;
+        }
+        retry.add(request);
+        return false;
     }
 
-    private void cleanupPorts(ModConfig config) {
-        List<Integer> portsToCheck = new ArrayList<>();
+    /**
+     * 通知实例丢弃被取消的请求，实例的通道已关闭（重启或移除）时无需通知
+     */
+    private void sendCancel(Request request) {
+        sendCancel(request, request.instance);
+        sendCancel(request, request.hedgeInstance);
+    }
 
-        if (config.generation.enableStructureGenerator) {
-            portsToCheck.add(config.generation.structureGeneratorPort);
+    private void sendCancel(Request request, String instance) {
+        IPCChannel channel = instance != null ? channels.get(instance) : null;
+        if (channel != null) {
+            channel.sendMultipart(new byte[][] { encodeId(request.correlationId), ChunkTask.CANCEL }, ZMQ.DONTWAIT);
         }
-        if (config.generation.enableTerrainGenerator) {
-            portsToCheck.add(config.generation.terrainGeneratorPort);
+    }
+
+    /**
+     * 超过本阶段 p95 延迟仍未回复的请求在预算内对冲
+     * 各阶段的请求按发送时间排队，队首未超时时后面的也不会超时
+     * @return 是否发出了对冲请求
+     */
+    private boolean hedgeSlowRequests() {
+        boolean hedged = false;
+        long now = System.nanoTime();
+        for (Map.Entry<GenerationStage, Hedging> entry : hedging.entrySet()) {
+            Hedging stage = entry.getValue();
+            long delay = stage.delayNanos();
+            Sent sent;
+            while ((sent = stage.sent.peek()) != null) {
+                Request request = sent.request;
+                if (request.future.isDone() || request.sentNanos != sent.nanos || request.hedgeInstance != null) {
+                    stage.sent.poll();
+                    continue;
+                }
+                if (delay >= 0 && now - sent.nanos < delay) {
+                    break;
+                }
+                stage.sent.poll();
+                if (delay >= 0 && stage.tokens >= 1 && hedge(request)) {
+                    stage.tokens -= 1;
+                    stage.hedged++;
+                    hedged = true;
+                }
+            }
         }
-        if (config.generation.enableBiomeGenerator) {
-            portsToCheck.add(config.generation.biomeGeneratorPort);
+        return hedged;
+    }
+
+    /**
+     * 把请求再发给环上的下一个可用实例，只有一个实例或其他实例都不可用时不对冲
+     */
+    private boolean hedge(Request request) {
+        String primary = request.instance;
+        ConsistentHashRing ring = rings.get(request.stage);
+        if (primary == null || ring == null || ring.getMembers().size() < 2) {
+            return false;
+        }
+        String instance = ring.route(request.routingKey, candidate -> !candidate.equals(primary)
+            && !processManager.isFailing(candidate) && processManager.isReady(candidate));
+        if (instance == null || instance.equals(primary) || !processManager.isReady(instance)
+            || isThrottled(instance)) {
+            return false;
+        }
+        processManager.acquire(instance);
+        IPCChannel channel = channels.get(instance);
+        if (channel == null) {
+            channel = connectInstance(request.stage, instance, ModConfig.INSTANCE);
+            channels.put(instance, channel);
+        }
+        if (!channel.sendMultipart(new byte[][] { encodeId(request.correlationId), request.payload }, ZMQ.DONTWAIT)) {
+            return false;
         }
-        if (config.generation.enableEntitySpawner) {
-            portsToCheck.add(config.generation.entitySpawnerPort);
+        request.hedgeInstance = instance;
+        if (request.hedgeOutstanding.compareAndSet(false, true)) {
+            outstandingFor(instance).incrementAndGet();
         }
+        // 发送期间已完成
+        if (request.future.isDone()) {
+            releaseHedge(request);
+        }
+        return true;
+    }
 
-        if (!portsToCheck.isEmpty()) {
-            int[] portsArray = portsToCheck.stream().mapToInt(i -> i).toArray();
-            boolean success = PortCleaner.cleanupPorts(portsArray);
-            if (success) {
-                LOGGER.info("Port cleanup completed successfully");
-            } else {
-                LOGGER.warn("Some ports could not be cleaned, workers may fail to start");
-            }
+    /**
+     * 选择请求的实例：已发出的请求留在原实例（重放给它的替代进程），其余按区域路由，跳过等待重启的实例
+     */
+    private String route(Request request, ConsistentHashRing ring) {
+        String current = request.instance;
+        if (current != null && request.outstanding.get() && ring.contains(current)) {
+            return current;
         }
+        return ring.route(request.routingKey, instance -> !processManager.isFailing(instance));
     }
-    
-    private void startWorkerProcesses() {
-        ModConfig config = ModConfig.INSTANCE;
-        List<String> args = new ArrayList<>();
 
-        LOGGER.info("Starting generation worker processes...");
+    /**
+     * 工作进程内存紧张且在途请求已达上限时暂缓发送
+     */
+    private boolean isThrottled(String instance) {
+        return outstandingFor(instance).get() >= PRESSURED_IN_FLIGHT
+            && processManager.getResourceUsage(instance).isMemoryPressured();
+    }
 
-        if (config.generation.enableStructureGenerator) {
-            processManager.startProcess("structure-generator",
-                "com.mindplus.optimizer.workers.StructureGenerator", args);
+    private AtomicInteger outstandingFor(String instance) {
+        return outstanding.computeIfAbsent(instance, key -> new AtomicInteger());
+    }
+
+    private void release(Request request) {
+        if (request.outstanding.compareAndSet(true, false)) {
+            outstandingFor(request.instance).decrementAndGet();
         }
+    }
 
-        if (config.generation.enableTerrainGenerator) {
-            processManager.startProcess("terrain-generator",
-                "com.mindplus.optimizer.workers.TerrainGenerator", args);
+    private void releaseHedge(Request request) {
+        if (request.hedgeOutstanding.compareAndSet(true, false)) {
+            outstandingFor(request.hedgeInstance).decrementAndGet();
         }
+    }
 
-        if (config.generation.enableBiomeGenerator) {
-            processManager.startProcess("biome-generator",
-                "com.mindplus.optimizer.workers.BiomeGenerator", args);
+    private void completeReply(String instance, byte[][] reply) {
+        if (reply.length < 2 || reply[0].length != Long.BYTES) {
+            LOGGER.warn("Dropping malformed generation reply with {} frames", reply.length);
+            return;
+        }
+        long id = decodeId(reply[0]);
+        Request request = pending.get(id);
+        if (request == null) {
+            return;
+        }
+        if (request.stream != null && reply[1].length > 0) {
+            // 区域请求中一个区块的结果
+            request.stream.accept(reply[1]);
+            return;
+        }
+        if (pending.remove(id) == null) {
+            return;
         }
+        if (request.stream == null) {
+            Hedging stage = hedging.get(request.stage);
+            stage.record(System.nanoTime() - request.sentNanos);
+            if (request.hedgeInstance != null) {
+                // 对冲请求：另一个实例不必再做
+                boolean hedgeWon = instance.equals(request.hedgeInstance);
+                if (hedgeWon) {
+                    stage.won++;
+                }
+                sendCancel(request, hedgeWon ? request.instance : request.hedgeInstance);
+            }
+        }
+        request.future.complete(reply[1]);
+    }
 
-        if (config.generation.enableEntitySpawner) {
-            processManager.startProcess("entity-spawner",
-                "com.mindplus.optimizer.workers.EntitySpawner", args);
+    /**
+     * 工作进程重启后把发给它的在途请求重新排队，重复的回复会因为关联 ID 已移除而被忽略
+     */
+    private void onWorkerRestarted(String processId) {
+        GenerationStage stage = GenerationStage.fromWorkerName(processId);
+        if (stage == null || !running) {
+            return;
         }
 
-        LOGGER.info("Generation worker processes started");
+        // 先让 I/O 线程检查地址变化，再重放请求
+        changedInstances.offer(processId);
+
+        int replayed = 0;
+        for (Request request : pending.values()) {
+            if (!processId.equals(request.instance) || !request.outstanding.get() || request.future.isDone()) {
+                continue;
+            }
+            if (++request.replays > MAX_REPLAYS) {
+                request.future.completeExceptionally(new IllegalStateException(
+                    processId + " crashed " + MAX_REPLAYS + " times while processing request"));
+                continue;
+            }
+            outgoing.offer(request);
+            replayed++;
+        }
+        if (replayed > 0) {
+            LOGGER.info("Replaying {} in-flight requests to restarted {}", replayed, processId);
+        }
     }
-    
-    public CompletableFuture<String> generateChunk(String chunkX, String chunkZ) {
-        return CompletableFuture.supplyAsync(() -> {
-            ensureChannelsConnected();
-            ModConfig config = ModConfig.INSTANCE;
-            String chunkData = chunkX + "," + chunkZ;
 
-            if (config.generation.enableBiomeGenerator && biomeChannel != null) {
-                biomeChannel.send(chunkData.getBytes());
-                byte[] biomeResult = biomeChannel.receive();
+    private static byte[] encodeId(long id) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+    }
+
+    private static long decodeId(byte[] frame) {
+        return ByteBuffer.wrap(frame).getLong();
+    }
+
+    private void registerWorkerProcesses() {
+        ModConfig config = ModConfig.INSTANCE;
+        int instances = instancesPerStage(config);
+        for (GenerationStage stage : GenerationStage.values()) {
+            if (stage.isEnabled(config)) {
+                resize(stage, instancesFor(stage, instances));
             }
+        }
+    }
 
-            if (config.generation.enableTerrainGenerator && terrainChannel != null) {
-                terrainChannel.send(chunkData.getBytes());
-                byte[] terrainResult = terrainChannel.receive();
+    /**
+     * 按配置和可用核心数重新计算各阶段的实例数，增加的实例登记为按需进程，
+     * 减少的实例停止，发给它们的在途请求重新路由到环上的新归属实例
+     */
+    public synchronized void rebalance(ModConfig config) {
+        int instances = instancesPerStage(config);
+        for (GenerationStage stage : rings.keySet()) {
+            resize(stage, instancesFor(stage, instances));
+        }
+    }
+
+    /**
+     * 每个阶段的实例数：maxProcesses 和核心数平均分给启用的阶段，至少一个
+     */
+    private static int instancesPerStage(ModConfig config) {
+        int stages = 0;
+        for (GenerationStage stage : GenerationStage.values()) {
+            if (stage.isEnabled(config)) {
+                stages++;
             }
+        }
+        if (stages == 0) {
+            return 1;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(config.general.maxProcesses, cores) / stages);
+    }
+
+    /**
+     * 合并宿主中的角色共用宿主的线程池，多个实例不会带来更多核心，只运行一个
+     */
+    private int instancesFor(GenerationStage stage, int instances) {
+        return processManager.isHosted(stage.getWorkerName()) ? 1 : instances;
+    }
+
+    private void resize(GenerationStage stage, int count) {
+        ConsistentHashRing current = rings.get(stage);
+        List<String> previous = current != null ? current.getMembers() : List.of();
+        if (previous.size() == count) {
+            return;
+        }
 
-            if (config.generation.enableStructureGenerator && structureChannel != null) {
-                structureChannel.send(chunkData.getBytes());
-                byte[] structureResult = structureChannel.receive();
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String instance = stage.instanceId(i);
+            members.add(instance);
+            if (!previous.contains(instance)) {
+                processManager.registerProcess(instance, stage.getMainClass(), new ArrayList<>());
             }
+        }
+        // 先替换环，之后发出的请求不再路由到被移除的实例
+        rings.put(stage, new ConsistentHashRing(members));
 
-            if (config.generation.enableEntitySpawner && entityChannel != null) {
-                entityChannel.send(chunkData.getBytes());
-                byte[] entityResult = entityChannel.receive();
+        for (String instance : previous) {
+            if (members.contains(instance)) {
+                continue;
             }
+            processManager.stopProcess(instance);
+            changedInstances.offer(instance);
+            for (Request request : pending.values()) {
+                if (instance.equals(request.instance) && !request.future.isDone()) {
+                    outgoing.offer(request);
+                }
+            }
+        }
+        if (current != null) {
+            LOGGER.info("Resized {} from {} to {} instances", stage.getWorkerName(), previous.size(), count);
+        } else if (count > 1) {
+            LOGGER.info("Running {} instances of {}", count, stage.getWorkerName());
+        }
+    }
 
-            LOGGER.info("Chunk generation completed: {}", chunkData);
-            return "GENERATED";
+    private List<String> enabledWorkers() {
+        List<String> workers = new ArrayList<>();
+        ModConfig config = ModConfig.INSTANCE;
+        rings.forEach((stage, ring) -> {
+            if (stage.isEnabled(config)) {
+                workers.addAll(ring.getMembers());
+            }
         });
+        return workers;
+    }
+
+    /**
+     * 向某个阶段的工作进程发送请求，可在任意线程调用
+     * 负载是 ChunkTask 时按区块所在区域路由，否则交给第一个实例
+     */
+    public CompletableFuture<byte[]> submit(GenerationStage stage, byte[] payload) {
+        long routingKey = 0;
+        try {
+            ChunkTask task = ChunkTask.fromBytes(payload);
+            routingKey = routingKey(task.getDimension(), task.getChunkX(), task.getChunkZ());
+        } catch (RuntimeException e) {
+            // 不是区块任务
+        }
+        return submit(stage, routingKey, payload, null, REQUEST_TIMEOUT_MS);
+    }
+
+    /**
+     * 向负责 (chunkX, chunkZ) 所在区域的实例发送请求，可在任意线程调用
+     */
+    public CompletableFuture<byte[]> submit(GenerationStage stage, String dimension, int chunkX, int chunkZ,
+                                            byte[] payload) {
+        return submit(stage, routingKey(dimension, chunkX, chunkZ), payload, null, REQUEST_TIMEOUT_MS);
+    }
+
+    /**
+     * 向某个阶段的工作进程发送区域请求，可在任意线程调用
+     * 每个区块的结果到达时在 I/O 线程上交给 onChunk（工作进程重启后重放时同一区块可能交付多次），
+     * 返回的 Future 在所有区块完成后完成；区块结果少于请求数时由调用方判定缺失的区块失败
+     */
+    public CompletableFuture<byte[]> submitRegion(GenerationStage stage, RegionTask task, Consumer<byte[]> onChunk) {
+        long timeoutMs = REQUEST_TIMEOUT_MS * (1 + task.getChunkCount() / REGION_CHUNKS_PER_TIMEOUT);
+        long routingKey = routingKey(task.getDimension(), task.getOriginX(), task.getOriginZ());
+        return submit(stage, routingKey, task.toBytes(), onChunk, timeoutMs);
+    }
+
+    private static long routingKey(String dimension, int chunkX, int chunkZ) {
+        return ConsistentHashRing.regionKey(dimension, chunkX >> ROUTING_REGION_SHIFT, chunkZ >> ROUTING_REGION_SHIFT);
+    }
+
+    private CompletableFuture<byte[]> submit(GenerationStage stage, long routingKey, byte[] payload,
+                                             Consumer<byte[]> stream, long timeoutMs) {
+        ensureStarted();
+
+        long id = correlationIds.incrementAndGet();
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        Request request = new Request(id, stage, routingKey, payload, stream, future);
+        pending.put(id, request);
+        future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .whenComplete((result, error) -> {
+                pending.remove(id);
+                if (error instanceof CancellationException && request.outstanding.get()) {
+                    // 已发给工作进程：通知它丢弃
+                    cancellations.offer(request);
+                }
+                release(request);
+                releaseHedge(request);
+            });
+
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("GenerationCoordinator is shut down"));
+            return future;
+        }
+        outgoing.offer(request);
+        return future;
+    }
+
+    /**
+     * 生成一个区块：交给生成流水线按群系、地形、结构、实体的顺序执行各阶段
+     * 同一区块的阶段串行，不同区块可以同时处于不同阶段，结构阶段等待周围区块的地形完成
+     */
+    public ChunkGeneration generateChunk(int chunkX, int chunkZ, long worldSeed, String dimension) {
+        return pipeline.submit(chunkX, chunkZ, worldSeed, dimension);
+    }
+
+    /**
+     * 带截止时间生成一个区块：到期时未完成的阶段以 TimeoutException 完成，区块不再被其他请求需要时移出流水线
+     */
+    public ChunkGeneration generateChunk(int chunkX, int chunkZ, long worldSeed, String dimension,
+                                         long timeout, TimeUnit unit) {
+        return pipeline.submit(chunkX, chunkZ, worldSeed, dimension).orTimeout(timeout, unit);
+    }
+
+    public GenerationPipeline getPipeline() {
+        return pipeline;
     }
-    
+
+    public PregenManager getPregen() {
+        return pregen;
+    }
+
     public byte[] sendTaskToWorker(String workerName, byte[] taskData) {
-        ensureChannelsConnected();
-        IPCChannel channel = null;
-
-        switch (workerName) {
-            case "structure-generator":
-                channel = structureChannel;
-                break;
-            case "terrain-generator":
-                channel = terrainChannel;
-                break;
-            case "biome-generator":
-                channel = biomeChannel;
-                break;
-            case "entity-spawner":
-                channel = entityChannel;
-                break;
-            default:
-                LOGGER.warn("Unknown worker: {}", workerName);
-                return null;
+        GenerationStage stage = GenerationStage.fromWorkerName(workerName);
+        if (stage == null) {
+            LOGGER.warn("Unknown worker: {}", workerName);
+            return null;
         }
 
-        if (channel != null) {
-            try {
-                channel.send(taskData);
-                byte[] response = channel.receive();
-                return response;
-            } catch (Exception e) {
-                LOGGER.error("Failed to send task to {}", workerName, e);
-                return null;
-            }
+        try {
+            return submit(stage, taskData).join();
+        } catch (Exception e) {
+            LOGGER.error("Failed to send task to {}", workerName, e);
+            return null;
         }
+    }
 
-        return null;
+    /**
+     * 阶段当前的实例数，未启用的阶段为 1
+     */
+    public int getInstanceCount(GenerationStage stage) {
+        ConsistentHashRing ring = rings.get(stage);
+        return ring != null ? Math.max(1, ring.getMembers().size()) : 1;
+    }
+
+    /**
+     * 各阶段的对冲统计
+     */
+    public Map<GenerationStage, HedgeStats> getHedgeStats() {
+        Map<GenerationStage, HedgeStats> stats = new EnumMap<>(GenerationStage.class);
+        hedging.forEach((stage, state) -> stats.put(stage,
+            new HedgeStats(state.p95Nanos / 1_000_000.0, state.hedged, state.won)));
+        return stats;
     }
-    
+
+    /**
+     * 当前在途请求数
+     */
+    public int getInFlightCount() {
+        return pending.size();
+    }
+
     public void shutdown() {
+        pregen.shutdown();
+        pipeline.shutdown();
         processManager.stopAll();
-        
-        if (structureChannel != null) {
-            structureChannel.close();
+
+        running = false;
+        Thread thread;
+        synchronized (this) {
+            thread = ioThread;
+        }
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        CancellationException cancelled = new CancellationException("GenerationCoordinator shut down");
+        for (Request request : pending.values()) {
+            request.future.completeExceptionally(cancelled);
+        }
+        pending.clear();
+    }
+
+    /**
+     * 待发送的请求
+     */
+    private static class Request {
+        final long correlationId;
+        final GenerationStage stage;
+        final long routingKey;
+        final byte[] payload;
+        // 区域请求的区块结果回调，单区块请求为 null
+        final Consumer<byte[]> stream;
+        final CompletableFuture<byte[]> future;
+        // 已发给工作进程且计入 outstanding
+        final AtomicBoolean outstanding = new AtomicBoolean();
+        // 最近一次发往的实例，由 I/O 线程设置
+        volatile String instance;
+        // 最近一次发送的时间，只由 I/O 线程访问
+        long sentNanos;
+        // 对冲请求发往的实例，没有对冲时为 null
+        volatile String hedgeInstance;
+        final AtomicBoolean hedgeOutstanding = new AtomicBoolean();
+        // 只在 ProcessManager 的监督线程上修改
+        int replays;
+
+        Request(long correlationId, GenerationStage stage, long routingKey, byte[] payload, Consumer<byte[]> stream,
+                CompletableFuture<byte[]> future) {
+            this.correlationId = correlationId;
+            this.stage = stage;
+            this.routingKey = routingKey;
+            this.payload = payload;
+            this.stream = stream;
+            this.future = future;
         }
-        if (terrainChannel != null) {
-            terrainChannel.close();
+    }
+
+    /**
+     * 一次发送，请求重发后旧的记录作废
+     */
+    private static final class Sent {
+        final Request request;
+        final long nanos;
+
+        Sent(Request request, long nanos) {
+            this.request = request;
+            this.nanos = nanos;
         }
-        if (biomeChannel != null) {
-            biomeChannel.close();
+    }
+
+    /**
+     * 一个阶段的延迟样本、待检查的请求和对冲预算，除统计字段外只由 I/O 线程访问
+     */
+    private static final class Hedging {
+        final ArrayDeque<Sent> sent = new ArrayDeque<>();
+        final long[] samples = new long[LATENCY_SAMPLES];
+        int sampleCount;
+        int samplesSinceUpdate;
+        double tokens;
+        volatile long p95Nanos;
+        volatile long hedged;
+        volatile long won;
+
+        void sent(Request request, int budgetPercent) {
+            sent.add(new Sent(request, request.sentNanos));
+            tokens = Math.min(HEDGE_BURST, tokens + Math.max(0, budgetPercent) / 100.0);
         }
-        if (entityChannel != null) {
-            entityChannel.close();
+
+        void record(long nanos) {
+            samples[sampleCount++ % LATENCY_SAMPLES] = nanos;
+            if (++samplesSinceUpdate >= LATENCY_SAMPLES / 8) {
+                samplesSinceUpdate = 0;
+                long[] sorted = Arrays.copyOf(samples, Math.min(sampleCount, LATENCY_SAMPLES));
+                Arrays.sort(sorted);
+                p95Nanos = sorted[(int) Math.min(sorted.length - 1, (long) (sorted.length * HEDGE_PERCENTILE))];
+            }
+        }
+
+        /**
+         * 对冲前的等待时间，样本不足时为 -1
+         */
+        long delayNanos() {
+            if (sampleCount < HEDGE_MIN_SAMPLES) {
+                return -1;
+            }
+            return Math.max(HEDGE_MIN_DELAY_NANOS, p95Nanos);
+        }
+    }
+
+    /**
+     * 一个阶段的对冲统计
+     */
+    public static class HedgeStats {
+        // 最近请求延迟的 p95（毫秒）
+        public final double p95Ms;
+        public final long hedged;
+        // 对冲请求先于原请求回复的次数
+        public final long won;
+
+        public HedgeStats(double p95Ms, long hedged, long won) {
+            this.p95Ms = p95Ms;
+            this.hedged = hedged;
+            this.won = won;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Hedge - p95: %.1fms, Hedged: %d, Won: %d", p95Ms, hedged, won);
         }
     }
-}
\ No newline at end of file
+}
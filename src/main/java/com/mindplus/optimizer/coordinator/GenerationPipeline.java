@@ -0,0 +1,834 @@
+package com.mindplus.optimizer.coordinator;
+
+import com.mindplus.optimizer.config.ModConfig;
+import com.mindplus.optimizer.tasks.ChunkResult;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.tasks.RegionTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区块生成流水线
+ * 每个阶段一个就绪队列，区块完成一个阶段后进入下一阶段的队列，不同区块可以同时处于不同阶段；
+ * 每个阶段最多同时在途 pipelineStageWindow × 实例数 个请求，队列不空时窗口始终填满，预生成时各阶段的工作进程都不会空等
+ * 同一阶段队列中位于同一区域（边长 regionBatchSize 的对齐正方形）的区块合并为一个区域请求，结果逐个区块返回
+ * 依赖：地形依赖本区块的群系，实体依赖本区块的结构，结构除本区块的地形外还依赖周围 8 个区块的地形；
+ * 没有被请求的邻居自动加入流水线，只生成到地形
+ * 同时进入流水线的请求数有上限（作为依赖加入的邻居不计），超出的请求排队等待进入
+ * 同一区块的多个请求共用一个任务，所有请求都取消（或超过截止时间）后任务移出流水线：
+ * 排队的直接移除，在途的通知协调器取消请求，工作进程丢弃尚未开始的任务；邻居仍需要它的地形时只降级为生成到地形
+ * 所有状态只在流水线线程上访问，ChunkGeneration 的 Future 也在这个线程上完成
+ */
+public class GenerationPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger("GenerationPipeline");
+
+    private static final long STATS_INTERVAL_MS = 1000;
+    // 繁忙时每隔多少个统计周期写一次日志
+    private static final int LOG_EVERY_INTERVALS = 10;
+    // 吞吐量的指数平滑系数
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+
+    private static final GenerationStage[] STAGES = GenerationStage.values();
+    private static final GenerationStage LAST_STAGE = STAGES[STAGES.length - 1];
+
+    private final GenerationCoordinator coordinator;
+    private final ScheduledExecutorService executor;
+    private final Map<Key, Job> jobs = new HashMap<>();
+    // 等待进入流水线的请求
+    private final ArrayDeque<Job> admission = new ArrayDeque<>();
+    private final Map<GenerationStage, StageQueue> queues = new EnumMap<>(GenerationStage.class);
+    // 进入流水线的区块数（含邻居）和其中按请求进入、计入上限的区块数
+    private int activeChunks;
+    private int admittedChunks;
+    // 因请求取消而移出流水线的区块数
+    private long droppedChunks;
+    private int statsIntervals;
+    private volatile PipelineStats stats = new PipelineStats(0, 0, 0, Collections.emptyMap());
+
+    GenerationPipeline(GenerationCoordinator coordinator) {
+        this.coordinator = coordinator;
+        for (GenerationStage stage : STAGES) {
+            queues.put(stage, new StageQueue());
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GenerationPipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::updateStats, STATS_INTERVAL_MS, STATS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 请求生成一个区块的所有阶段，可在任意线程调用
+     * 同一区块已在流水线中时共用它的进度
+     */
+    public ChunkGeneration submit(int chunkX, int chunkZ, long worldSeed, String dimension) {
+        ChunkGeneration generation = new ChunkGeneration(chunkX, chunkZ, dimension, newFutures(), this);
+        Map<GenerationStage, CompletableFuture<ChunkResult>> futures = generation.getStages();
+
+        Key key = new Key(dimension, chunkX, chunkZ);
+        try {
+            executor.execute(() -> {
+                try {
+                    request(key, worldSeed, generation);
+                } catch (Exception e) {
+                    LOGGER.error("Error scheduling chunk ({}, {})", chunkX, chunkZ, e);
+                    futures.values().forEach(future -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            CancellationException cancelled = new CancellationException("GenerationPipeline is shut down");
+            futures.values().forEach(future -> future.completeExceptionally(cancelled));
+        }
+        return generation;
+    }
+
+    /**
+     * 一个请求被取消或超时：不再有请求需要的区块移出流水线
+     */
+    void release(ChunkGeneration generation) {
+        try {
+            executor.execute(() -> {
+                try {
+                    abandon(generation);
+                } catch (Exception e) {
+                    LOGGER.error("Error cancelling chunk ({}, {})", generation.getChunkX(), generation.getChunkZ(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+        }
+    }
+
+    /**
+     * 到期时以超时结束请求，请求先完成时取消计时
+     */
+    void expireAfter(ChunkGeneration generation, long timeoutNanos) {
+        try {
+            ScheduledFuture<?> timer = executor.schedule(() -> generation.expire(timeoutNanos),
+                timeoutNanos, TimeUnit.NANOSECONDS);
+            generation.all().whenComplete((result, error) -> timer.cancel(false));
+        } catch (RejectedExecutionException e) {
+            // 已关闭，请求已经取消
+        }
+    }
+
+    /**
+     * 当前统计，每秒更新一次
+     */
+    public PipelineStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 取消流水线中和等待进入的所有区块，在途请求的回复到达后被忽略
+     */
+    public void cancelAll(String reason) {
+        try {
+            executor.execute(() -> cancelJobs(new CancellationException(reason)));
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+        }
+    }
+
+    public void shutdown() {
+        cancelAll("GenerationPipeline shut down");
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void request(Key key, long seed, ChunkGeneration generation) {
+        if (generation.all().isDone()) {
+            // 进入流水线之前已被取消
+            return;
+        }
+        Job job = jobs.get(key);
+        boolean created = job == null;
+        if (created) {
+            job = new Job(key, seed, LAST_STAGE, newFutures());
+            jobs.put(key, job);
+        }
+
+        // 结果从任务转发给各个请求
+        job.requesters.add(generation);
+        Map<GenerationStage, CompletableFuture<ChunkResult>> futures = generation.getStages();
+        for (GenerationStage stage : STAGES) {
+            CompletableFuture<ChunkResult> target = futures.get(stage);
+            job.futures.get(stage).whenComplete((result, error) -> {
+                if (error != null) {
+                    target.completeExceptionally(error);
+                } else {
+                    target.complete(result);
+                }
+            });
+        }
+        if (created) {
+            admission.add(job);
+            admit();
+            return;
+        }
+        if (job.target != LAST_STAGE) {
+            // 原来只作为邻居生成到地形，升级为完整请求
+            job.target = LAST_STAGE;
+            if (job.counted) {
+                holdNeighbours(job);
+                advance(job);
+                dispatch();
+            } else {
+                // 作为邻居进入的任务没有计入上限，排队由 admit() 计入后再占住邻居
+                if (!admission.contains(job)) {
+                    admission.add(job);
+                }
+                admit();
+            }
+        }
+    }
+
+    /**
+     * 请求取消后，任务没有其他请求时：邻居仍依赖它的地形则只生成到地形，否则移出流水线
+     */
+    private void abandon(ChunkGeneration generation) {
+        Job job = jobs.get(new Key(generation.getDimension(), generation.getChunkX(), generation.getChunkZ()));
+        if (job == null || !job.requesters.remove(generation) || !job.requesters.isEmpty()) {
+            return;
+        }
+        if (job.holds == 0) {
+            drop(job);
+        } else if (job.target != GenerationStage.TERRAIN) {
+            job.target = GenerationStage.TERRAIN;
+            admission.remove(job);
+            if (job.busy && job.done >= GenerationStage.TERRAIN.ordinal() && unqueue(job)) {
+                job.busy = false;
+            }
+            releaseNeighbours(job);
+            retireIfDone(job);
+        }
+        admit();
+    }
+
+    /**
+     * 把没有请求、也没有邻居依赖的任务移出流水线：排队的直接移除，在途的取消请求
+     */
+    private void drop(Job job) {
+        if (!jobs.remove(job.key, job)) {
+            return;
+        }
+        admission.remove(job);
+        if (job.busy && !unqueue(job)) {
+            cancelInFlight(job);
+        }
+        job.busy = false;
+        CancellationException cancelled = new CancellationException("Chunk no longer requested");
+        for (CompletableFuture<ChunkResult> future : job.futures.values()) {
+            future.completeExceptionally(cancelled);
+        }
+        if (job.admitted) {
+            activeChunks--;
+            if (job.counted) {
+                admittedChunks--;
+            }
+        }
+        droppedChunks++;
+        releaseNeighbours(job);
+    }
+
+    /**
+     * 从下一阶段的就绪队列中移除
+     * @return false 表示不在队列中（已经发出）
+     */
+    private boolean unqueue(Job job) {
+        return job.done + 1 < STAGES.length && queues.get(STAGES[job.done + 1]).ready.remove(job);
+    }
+
+    /**
+     * 取消在途的请求，协调器通知工作进程丢弃；区域请求中的其他区块仍需要时只从批次中去掉
+     */
+    private void cancelInFlight(Job job) {
+        CompletableFuture<byte[]> request = job.request;
+        if (job.region != null) {
+            job.region.remove(job.key);
+            if (!job.region.isEmpty()) {
+                return;
+            }
+        }
+        if (request != null) {
+            request.cancel(false);
+        }
+    }
+
+    /**
+     * 按上限让等待的请求进入流水线
+     */
+    private void admit() {
+        int limit = Math.max(1, ModConfig.INSTANCE.generation.pipelineMaxActiveChunks);
+        Job job;
+        while (admittedChunks < limit && (job = admission.poll()) != null) {
+            if (jobs.get(job.key) != job) {
+                continue;
+            }
+            // 作为邻居提前进入的请求此时才计入上限并占住自己的邻居
+            if (!job.admitted) {
+                enter(job);
+            }
+            job.counted = true;
+            admittedChunks++;
+            holdNeighbours(job);
+            advance(job);
+        }
+        dispatch();
+    }
+
+    private void enter(Job job) {
+        job.admitted = true;
+        activeChunks++;
+    }
+
+    /**
+     * 需要结构阶段的区块占住周围 8 个邻居，邻居的地形完成前不能生成结构，结构完成前邻居不会移出流水线
+     */
+    private void holdNeighbours(Job job) {
+        if (job.holdingNeighbours || !needsNeighbours(job) || job.failed) {
+            return;
+        }
+        job.holdingNeighbours = true;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (dx == 0 && dz == 0) {
+                    continue;
+                }
+                Key key = job.key.offset(dx, dz);
+                Job neighbour = jobs.get(key);
+                if (neighbour == null) {
+                    neighbour = new Job(key, job.seed, GenerationStage.TERRAIN, newFutures());
+                    jobs.put(key, neighbour);
+                }
+                neighbour.holds++;
+                if (!neighbour.admitted) {
+                    // 还在等待进入的请求作为依赖先进入，轮到它时再占住它自己的邻居，避免连锁放入整个等待队列
+                    enter(neighbour);
+                    advance(neighbour);
+                }
+            }
+        }
+    }
+
+    private void releaseNeighbours(Job job) {
+        if (!job.holdingNeighbours) {
+            return;
+        }
+        job.holdingNeighbours = false;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (dx == 0 && dz == 0) {
+                    continue;
+                }
+                Job neighbour = jobs.get(job.key.offset(dx, dz));
+                if (neighbour == null) {
+                    continue;
+                }
+                neighbour.holds--;
+                if (neighbour.holds == 0 && neighbour.requesters.isEmpty() && !neighbour.failed
+                    && neighbour.done < neighbour.target.ordinal()) {
+                    // 只作为依赖加入（或请求已全部取消）、尚未完成的邻居不再被需要
+                    drop(neighbour);
+                } else {
+                    retireIfDone(neighbour);
+                }
+            }
+        }
+    }
+
+    private static boolean needsNeighbours(Job job) {
+        return job.target.ordinal() >= GenerationStage.STRUCTURE.ordinal()
+            && GenerationStage.STRUCTURE.isEnabled(ModConfig.INSTANCE)
+            && job.done < GenerationStage.STRUCTURE.ordinal();
+    }
+
+    /**
+     * 把区块推进到下一个可执行的阶段：跳过未启用的阶段，依赖满足时放入该阶段的队列
+     */
+    private void advance(Job job) {
+        if (job.busy || job.failed || !job.admitted) {
+            return;
+        }
+        ModConfig config = ModConfig.INSTANCE;
+        while (job.done < job.target.ordinal()) {
+            GenerationStage next = STAGES[job.done + 1];
+            if (!next.isEnabled(config)) {
+                completeStage(job, next, new ChunkResult(true, "Stage disabled", job.key.x, job.key.z));
+                continue;
+            }
+            if (next == GenerationStage.STRUCTURE) {
+                if (!job.holdingNeighbours) {
+                    // 还没占住邻居（作为依赖提前进入），轮到它进入时再推进
+                    return;
+                }
+                Job failedNeighbour = failedNeighbour(job);
+                if (failedNeighbour != null) {
+                    fail(job, next, new IllegalStateException("Neighbour chunk (" + failedNeighbour.key.x + ", "
+                        + failedNeighbour.key.z + ") failed before terrain"));
+                    return;
+                }
+                if (!neighboursHaveTerrain(job)) {
+                    // 邻居地形完成时再次推进
+                    return;
+                }
+            }
+            job.busy = true;
+            queues.get(next).ready.add(job);
+            return;
+        }
+        retireIfDone(job);
+    }
+
+    private boolean neighboursHaveTerrain(Job job) {
+        if (!GenerationStage.TERRAIN.isEnabled(ModConfig.INSTANCE)) {
+            return true;
+        }
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                Job neighbour = jobs.get(job.key.offset(dx, dz));
+                if (neighbour != null && neighbour.done < GenerationStage.TERRAIN.ordinal()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Job failedNeighbour(Job job) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                Job neighbour = jobs.get(job.key.offset(dx, dz));
+                if (neighbour != null && neighbour != job && neighbour.failed
+                    && neighbour.done < GenerationStage.TERRAIN.ordinal()) {
+                    return neighbour;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 各阶段在窗口内从队列取区块发送，下游阶段优先，让已经走到后面的区块尽快离开流水线
+     */
+    private void dispatch() {
+        int perInstance = Math.max(1, ModConfig.INSTANCE.generation.pipelineStageWindow);
+        int regionSize = Math.max(1, Math.min(RegionTask.MAX_SIZE, ModConfig.INSTANCE.generation.regionBatchSize));
+        for (int i = STAGES.length - 1; i >= 0; i--) {
+            GenerationStage stage = STAGES[i];
+            StageQueue queue = queues.get(stage);
+            int window = perInstance * coordinator.getInstanceCount(stage);
+            Job job;
+            while (queue.inFlight < window && (job = queue.ready.poll()) != null) {
+                if (jobs.get(job.key) != job) {
+                    continue;
+                }
+                queue.inFlight++;
+                Map<Key, Job> batch = regionSize > 1 ? collectRegion(queue, job, regionSize) : null;
+                if (batch != null) {
+                    dispatchRegion(stage, job, batch, regionSize);
+                    continue;
+                }
+                Job dispatched = job;
+                job.region = null;
+                job.request = coordinator.submit(stage, job.key.dimension, job.key.x, job.key.z, job.payload);
+                job.request.thenApply(ChunkResult::fromBytes)
+                    .whenCompleteAsync((result, error) -> onStageComplete(dispatched, stage, result, error), executor);
+            }
+        }
+    }
+
+    /**
+     * 从队列中取出与 first 同一区域、同一世界的其他区块
+     * @return 包含 first 的区块表，没有其他区块时返回 null
+     */
+    private Map<Key, Job> collectRegion(StageQueue queue, Job first, int regionSize) {
+        int originX = Math.floorDiv(first.key.x, regionSize) * regionSize;
+        int originZ = Math.floorDiv(first.key.z, regionSize) * regionSize;
+        Map<Key, Job> batch = null;
+        for (Iterator<Job> iterator = queue.ready.iterator(); iterator.hasNext(); ) {
+            Job job = iterator.next();
+            if (job.seed != first.seed || !job.key.dimension.equals(first.key.dimension)
+                || job.key.x - originX < 0 || job.key.x - originX >= regionSize
+                || job.key.z - originZ < 0 || job.key.z - originZ >= regionSize) {
+                continue;
+            }
+            iterator.remove();
+            if (jobs.get(job.key) != job) {
+                continue;
+            }
+            if (batch == null) {
+                batch = new HashMap<>();
+                batch.put(first.key, first);
+            }
+            batch.put(job.key, job);
+        }
+        return batch;
+    }
+
+    private void dispatchRegion(GenerationStage stage, Job first, Map<Key, Job> batch, int regionSize) {
+        int originX = Math.floorDiv(first.key.x, regionSize) * regionSize;
+        int originZ = Math.floorDiv(first.key.z, regionSize) * regionSize;
+        byte[] mask = new byte[RegionTask.maskLength(regionSize)];
+        for (Key key : batch.keySet()) {
+            RegionTask.include(mask, regionSize, key.x - originX, key.z - originZ);
+        }
+        RegionTask task = new RegionTask(originX, originZ, regionSize, mask, first.seed, first.key.dimension);
+
+        String dimension = first.key.dimension;
+        CompletableFuture<byte[]> request = coordinator.submitRegion(stage, task, payload -> {
+            try {
+                executor.execute(() -> onRegionChunk(stage, dimension, batch, payload));
+            } catch (RejectedExecutionException e) {
+                // 已关闭
+            }
+        });
+        for (Job job : batch.values()) {
+            job.region = batch;
+            job.request = request;
+        }
+        request.whenCompleteAsync((result, error) -> onRegionComplete(stage, batch, error), executor);
+    }
+
+    /**
+     * 区域请求中一个区块完成，区域请求本身仍占着阶段窗口
+     */
+    private void onRegionChunk(GenerationStage stage, String dimension, Map<Key, Job> batch, byte[] payload) {
+        try {
+            ChunkResult result = ChunkResult.fromBytes(payload);
+            Job job = batch.remove(new Key(dimension, result.getChunkX(), result.getChunkZ()));
+            if (job != null) {
+                handleStageComplete(job, stage, result, null);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error handling region result from {}", stage.getWorkerName(), e);
+        }
+    }
+
+    /**
+     * 区域请求结束：释放阶段窗口，没有收到结果的区块判定失败
+     */
+    private void onRegionComplete(GenerationStage stage, Map<Key, Job> batch, Throwable error) {
+        try {
+            queues.get(stage).inFlight--;
+            Throwable failure = error != null ? error
+                : new IllegalStateException(stage.getWorkerName() + " returned no result for chunk in region");
+            for (Job job : batch.values()) {
+                handleStageComplete(job, stage, null, failure);
+            }
+            batch.clear();
+            admit();
+        } catch (Exception e) {
+            LOGGER.error("Error completing region request to {}", stage.getWorkerName(), e);
+        }
+    }
+
+    private void onStageComplete(Job job, GenerationStage stage, ChunkResult result, Throwable error) {
+        try {
+            queues.get(stage).inFlight--;
+            handleStageComplete(job, stage, result, error);
+        } catch (Exception e) {
+            LOGGER.error("Error advancing chunk ({}, {}) after {}", job.key.x, job.key.z, stage, e);
+        }
+    }
+
+    private void handleStageComplete(Job job, GenerationStage stage, ChunkResult result, Throwable error) {
+        StageQueue queue = queues.get(stage);
+        // 已被取消并移出流水线
+        if (jobs.get(job.key) != job) {
+            dispatch();
+            return;
+        }
+        job.busy = false;
+        job.request = null;
+        job.region = null;
+
+        if (error != null) {
+            queue.failed++;
+            fail(job, stage, error);
+        } else if (!result.isSuccess()) {
+            // worker 以 success=false 报告的失败
+            queue.failed++;
+            fail(job, stage, new IllegalStateException(stage.getWorkerName() + " failed chunk ("
+                + job.key.x + ", " + job.key.z + "): " + result.getMessage()));
+        } else {
+            queue.completed++;
+            completeStage(job, stage, result);
+            advance(job);
+        }
+        admit();
+    }
+
+    private void completeStage(Job job, GenerationStage stage, ChunkResult result) {
+        job.done = stage.ordinal();
+        job.futures.get(stage).complete(result);
+
+        if (stage == GenerationStage.TERRAIN) {
+            // 周围等待邻居地形的区块可能可以生成结构了
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx != 0 || dz != 0) {
+                        Job neighbour = jobs.get(job.key.offset(dx, dz));
+                        if (neighbour != null) {
+                            advance(neighbour);
+                        }
+                    }
+                }
+            }
+        } else if (stage == GenerationStage.STRUCTURE) {
+            releaseNeighbours(job);
+        }
+    }
+
+    /**
+     * 某个阶段失败：该阶段和后续阶段都以同一异常完成，等待本区块地形的邻居也随之失败
+     */
+    private void fail(Job job, GenerationStage stage, Throwable error) {
+        job.failed = true;
+        job.busy = false;
+        for (int i = stage.ordinal(); i < STAGES.length; i++) {
+            job.futures.get(STAGES[i]).completeExceptionally(error);
+        }
+        releaseNeighbours(job);
+
+        if (job.done < GenerationStage.TERRAIN.ordinal()) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx != 0 || dz != 0) {
+                        Job neighbour = jobs.get(job.key.offset(dx, dz));
+                        if (neighbour != null) {
+                            advance(neighbour);
+                        }
+                    }
+                }
+            }
+        }
+        retireIfDone(job);
+    }
+
+    /**
+     * 已完成（或失败）且没有邻居依赖时移出流水线
+     */
+    private void retireIfDone(Job job) {
+        if (!job.admitted || job.busy || job.holds > 0) {
+            return;
+        }
+        if (!job.failed && job.done < job.target.ordinal()) {
+            return;
+        }
+        if (jobs.remove(job.key, job)) {
+            activeChunks--;
+            if (job.counted) {
+                admittedChunks--;
+            }
+        }
+    }
+
+    private void cancelJobs(CancellationException cancelled) {
+        int cancelledJobs = 0;
+        for (Job job : jobs.values()) {
+            for (CompletableFuture<ChunkResult> future : job.futures.values()) {
+                future.completeExceptionally(cancelled);
+            }
+            cancelledJobs++;
+        }
+        jobs.clear();
+        admission.clear();
+        for (StageQueue queue : queues.values()) {
+            queue.ready.clear();
+        }
+        activeChunks = 0;
+        admittedChunks = 0;
+        if (cancelledJobs > 0) {
+            LOGGER.info("Cancelled {} chunks in the generation pipeline: {}", cancelledJobs, cancelled.getMessage());
+        }
+    }
+
+    private void updateStats() {
+        double seconds = STATS_INTERVAL_MS / 1000.0;
+        Map<GenerationStage, StageStats> stages = new EnumMap<>(GenerationStage.class);
+        boolean busy = false;
+        for (GenerationStage stage : STAGES) {
+            StageQueue queue = queues.get(stage);
+            double rate = (queue.completed - queue.completedAtLastSample) / seconds;
+            queue.completedAtLastSample = queue.completed;
+            queue.throughput += THROUGHPUT_SMOOTHING * (rate - queue.throughput);
+            stages.put(stage, new StageStats(queue.ready.size(), queue.inFlight, queue.completed, queue.failed,
+                queue.throughput));
+            busy |= queue.inFlight > 0 || !queue.ready.isEmpty();
+        }
+        stats = new PipelineStats(activeChunks, jobs.size() - activeChunks, droppedChunks, stages);
+
+        if (busy && ++statsIntervals % LOG_EVERY_INTERVALS == 0) {
+            LOGGER.info("{}", stats);
+            coordinator.getHedgeStats().forEach((stage, hedge) -> {
+                if (hedge.hedged > 0) {
+                    LOGGER.info("{} {}", stage.getWorkerName(), hedge);
+                }
+            });
+        }
+    }
+
+    private static Map<GenerationStage, CompletableFuture<ChunkResult>> newFutures() {
+        Map<GenerationStage, CompletableFuture<ChunkResult>> futures = new EnumMap<>(GenerationStage.class);
+        for (GenerationStage stage : STAGES) {
+            futures.put(stage, new CompletableFuture<>());
+        }
+        return futures;
+    }
+
+    /**
+     * 区块坐标（含维度）
+     */
+    private static final class Key {
+        final String dimension;
+        final int x;
+        final int z;
+
+        Key(String dimension, int x, int z) {
+            this.dimension = dimension;
+            this.x = x;
+            this.z = z;
+        }
+
+        Key offset(int dx, int dz) {
+            return new Key(dimension, x + dx, z + dz);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return x == key.x && z == key.z && dimension.equals(key.dimension);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dimension, x, z);
+        }
+    }
+
+    /**
+     * 流水线中的一个区块
+     */
+    private static final class Job {
+        final Key key;
+        final long seed;
+        final byte[] payload;
+        final Map<GenerationStage, CompletableFuture<ChunkResult>> futures;
+        // 需要完成到的阶段：被请求的区块为最后一个阶段，只作为邻居的区块为地形
+        GenerationStage target;
+        // 已完成的最后一个阶段的序号，-1 表示都未完成
+        int done = -1;
+        // 在某个阶段的队列中或在途
+        boolean busy;
+        boolean admitted;
+        // 按请求进入，计入上限
+        boolean counted;
+        boolean failed;
+        boolean holdingNeighbours;
+        // 依赖本区块地形、尚未完成结构阶段的邻居数
+        int holds;
+        // 直接请求本区块、尚未取消的请求，只作为邻居加入的区块为空
+        final List<ChunkGeneration> requesters = new ArrayList<>(1);
+        // 在途的请求；属于区域请求时 region 为该请求中尚未返回结果的区块
+        CompletableFuture<byte[]> request;
+        Map<Key, Job> region;
+
+        Job(Key key, long seed, GenerationStage target, Map<GenerationStage, CompletableFuture<ChunkResult>> futures) {
+            this.key = key;
+            this.seed = seed;
+            this.target = target;
+            this.futures = futures;
+            this.payload = new ChunkTask(key.x, key.z, seed, key.dimension).toBytes();
+        }
+    }
+
+    /**
+     * 一个阶段的就绪队列和计数
+     */
+    private static final class StageQueue {
+        final ArrayDeque<Job> ready = new ArrayDeque<>();
+        int inFlight;
+        long completed;
+        long failed;
+        long completedAtLastSample;
+        double throughput;
+    }
+
+    /**
+     * 一个阶段的统计
+     */
+    public static class StageStats {
+        public final int queued;
+        public final int inFlight;
+        public final long completed;
+        public final long failed;
+        // 每秒完成数（平滑后）
+        public final double throughput;
+
+        public StageStats(int queued, int inFlight, long completed, long failed, double throughput) {
+            this.queued = queued;
+            this.inFlight = inFlight;
+            this.completed = completed;
+            this.failed = failed;
+            this.throughput = throughput;
+        }
+    }
+
+    /**
+     * 流水线统计
+     */
+    public static class PipelineStats {
+        // 流水线中的区块数（含只生成到地形的邻居）
+        public final int activeChunks;
+        // 等待进入流水线的请求数
+        public final int waitingChunks;
+        // 因请求取消或超时而移出流水线的区块总数
+        public final long droppedChunks;
+        public final Map<GenerationStage, StageStats> stages;
+
+        public PipelineStats(int activeChunks, int waitingChunks, long droppedChunks,
+                             Map<GenerationStage, StageStats> stages) {
+            this.activeChunks = activeChunks;
+            this.waitingChunks = waitingChunks;
+            this.droppedChunks = droppedChunks;
+            this.stages = stages;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Pipeline - Active: ").append(activeChunks)
+                .append(", Waiting: ").append(waitingChunks)
+                .append(", Dropped: ").append(droppedChunks);
+            stages.forEach((stage, stageStats) -> builder.append(", ").append(stage.getWorkerName())
+                .append(": ").append(String.format("%.1f/s", stageStats.throughput))
+                .append(" q=").append(stageStats.queued)
+                .append(" f=").append(stageStats.inFlight));
+            return builder.toString();
+        }
+    }
+}
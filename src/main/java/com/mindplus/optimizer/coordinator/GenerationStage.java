@@ -0,0 +1,85 @@
+package com.mindplus.optimizer.coordinator;
+
+import com.mindplus.optimizer.config.ModConfig;
+
+/**
+ * 区块生成阶段，按执行顺序排列
+ * 每个阶段对应一个或多个工作进程实例：第一个实例的进程 ID 就是角色名，其余为 角色名-2、角色名-3……
+ */
+public enum GenerationStage {
+    BIOME("biome-generator", "com.mindplus.optimizer.workers.BiomeGenerator"),
+    TERRAIN("terrain-generator", "com.mindplus.optimizer.workers.TerrainGenerator"),
+    STRUCTURE("structure-generator", "com.mindplus.optimizer.workers.StructureGenerator"),
+    ENTITY("entity-spawner", "com.mindplus.optimizer.workers.EntitySpawner");
+
+    private final String workerName;
+    private final String mainClass;
+
+    GenerationStage(String workerName, String mainClass) {
+        this.workerName = workerName;
+        this.mainClass = mainClass;
+    }
+
+    public String getWorkerName() {
+        return workerName;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    public boolean isEnabled(ModConfig config) {
+        switch (this) {
+            case BIOME: return config.generation.enableBiomeGenerator;
+            case TERRAIN: return config.generation.enableTerrainGenerator;
+            case STRUCTURE: return config.generation.enableStructureGenerator;
+            case ENTITY: return config.generation.enableEntitySpawner;
+            default: return false;
+        }
+    }
+
+    public int getPort(ModConfig config) {
+        switch (this) {
+            case BIOME: return config.generation.biomeGeneratorPort;
+            case TERRAIN: return config.generation.terrainGeneratorPort;
+            case STRUCTURE: return config.generation.structureGeneratorPort;
+            case ENTITY: return config.generation.entitySpawnerPort;
+            default: throw new IllegalStateException("Unknown stage " + this);
+        }
+    }
+
+    /**
+     * 第 index 个实例（从 0 开始）的进程 ID
+     */
+    public String instanceId(int index) {
+        return index == 0 ? workerName : workerName + "-" + (index + 1);
+    }
+
+    /**
+     * 角色名或实例的进程 ID 所属的阶段
+     */
+    public static GenerationStage fromWorkerName(String workerName) {
+        for (GenerationStage stage : values()) {
+            if (stage.workerName.equals(workerName)) {
+                return stage;
+            }
+            if (workerName.startsWith(stage.workerName + "-")
+                && isInstanceNumber(workerName.substring(stage.workerName.length() + 1))) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInstanceNumber(String suffix) {
+        if (suffix.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (!Character.isDigit(suffix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
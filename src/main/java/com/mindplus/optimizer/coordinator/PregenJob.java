@@ -0,0 +1,589 @@
+package com.mindplus.optimizer.coordinator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 预生成任务
+ * 按螺旋（从中心向外）或区域（32x32 区块的区域逐个，区域内按 z 再 x）顺序把一个维度内矩形范围的区块交给生成流水线，
+ * 同时在途的区块数不超过窗口，每完成一个区块立即补上下一个；
+ * 顺序是确定的，检查点只记录从头开始连续完成的区块数，重启后从这里继续（之后已完成的少量区块会再请求一次，结果缓存直接命中）
+ * 服务器 tick 超时时窗口减半，恢复后逐步加回
+ * 所有状态只在 PregenManager 的线程上访问
+ */
+public class PregenJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger("PregenJob");
+
+    private static final int MIN_WINDOW = 16;
+    // 速率的指数平滑系数（每秒一次）
+    private static final double RATE_ALPHA = 0.2;
+    private static final long CHECKPOINT_INTERVAL_MS = 5_000;
+    private static final long REPORT_INTERVAL_MS = 10_000;
+
+    public enum Order { SPIRAL, REGION }
+
+    public enum Status { RUNNING, PAUSED, COMPLETED, CANCELLED }
+
+    private final String id;
+    private final long seed;
+    private final String dimension;
+    private final Area area;
+    private final Order order;
+    private final int maxWindow;
+    private final Path checkpoint;
+    private final GenerationCoordinator coordinator;
+    private final ScheduledExecutorService executor;
+
+    private Status status;
+    private ChunkCursor cursor;
+    // 下一个要发送的区块序号
+    private long next;
+    // 从头开始连续完成的区块数，检查点只保存这个值
+    private long completed;
+    // completed 之后已完成的区块
+    private final BitSet done = new BitSet();
+    private long finishedAhead;
+    private long failed;
+    // 在途的区块，按序号；只包含本次运行发出的请求
+    private final Map<Long, ChunkGeneration> inFlight = new HashMap<>();
+    // 每次 start() 加一，之前运行发出的请求完成时忽略
+    private int run;
+    private int window;
+    private double rate;
+    private long finishedSinceSample;
+    private long lastCheckpointMs;
+    private long lastReportMs;
+    // 从检查点恢复时任务仍在运行（服务器关闭时中断），启动时自动继续
+    private boolean interrupted;
+    private volatile Stats stats;
+
+    PregenJob(String id, long seed, String dimension, Area area, Order order, int maxWindow, Path checkpoint,
+              GenerationCoordinator coordinator, ScheduledExecutorService executor) {
+        this.id = id;
+        this.seed = seed;
+        this.dimension = dimension;
+        this.area = area;
+        this.order = order;
+        this.maxWindow = Math.max(1, maxWindow);
+        this.window = this.maxWindow;
+        this.checkpoint = checkpoint;
+        this.coordinator = coordinator;
+        this.executor = executor;
+        this.status = Status.PAUSED;
+        this.stats = snapshot();
+    }
+
+    public String getId() { return id; }
+    public long getSeed() { return seed; }
+    public String getDimension() { return dimension; }
+
+    /**
+     * 最近一次统计，每秒更新，可在任意线程调用
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * 从 completed 处开始或继续发送
+     */
+    void start() {
+        if (status == Status.RUNNING || status == Status.COMPLETED || status == Status.CANCELLED) {
+            return;
+        }
+        status = Status.RUNNING;
+        interrupted = false;
+        // 暂停前在途的请求不再跟踪，其中的区块会重新请求
+        run++;
+        inFlight.clear();
+        // 检查点之后完成的区块没有保存，从 completed 处重新开始
+        cursor = new ChunkCursor(area, order);
+        cursor.skip(completed);
+        next = completed;
+        done.clear();
+        finishedAhead = 0;
+        LOGGER.info("Pregen {} {} at {}/{} chunks in {} ({} order)", id, completed > 0 ? "resuming" : "starting",
+            completed, area.getChunkCount(), dimension, order.name().toLowerCase(Locale.ROOT));
+        fill();
+    }
+
+    /**
+     * 停止发送新的区块并保存检查点，在途的区块完成后不计入进度，继续时重新请求
+     * @param byUser false 表示服务器关闭，检查点保持运行状态，下次启动时自动继续
+     */
+    void pause(boolean byUser) {
+        if (status != Status.RUNNING) {
+            return;
+        }
+        status = Status.PAUSED;
+        saveCheckpoint(byUser ? Status.PAUSED : Status.RUNNING);
+        stats = snapshot();
+    }
+
+    /**
+     * 取消任务并删除检查点，在途的区块一并取消，其他请求不需要的区块移出流水线
+     */
+    void cancel() {
+        if (status == Status.COMPLETED) {
+            return;
+        }
+        status = Status.CANCELLED;
+        // 完成回调异步回到本线程，遍历期间不会修改 inFlight
+        inFlight.values().forEach(ChunkGeneration::cancel);
+        try {
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete pregen checkpoint {}", checkpoint, e);
+        }
+        stats = snapshot();
+    }
+
+    boolean wasInterrupted() {
+        return interrupted;
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    /**
+     * 窗口内发送区块，直到窗口填满或全部发完
+     */
+    private void fill() {
+        while (status == Status.RUNNING && inFlight.size() < window && cursor.hasNext()) {
+            long packed = cursor.next();
+            long index = next++;
+            int chunkX = (int) (packed >> 32);
+            int chunkZ = (int) packed;
+            ChunkGeneration generation = coordinator.generateChunk(chunkX, chunkZ, seed, dimension);
+            inFlight.put(index, generation);
+            int sentRun = run;
+            generation.all()
+                .whenCompleteAsync((ignored, error) -> onChunkDone(sentRun, index, chunkX, chunkZ, error), executor);
+        }
+    }
+
+    private void onChunkDone(int sentRun, long index, int chunkX, int chunkZ, Throwable error) {
+        // 之前运行的请求，同一序号可能已被重新请求，不能移除新的条目
+        if (sentRun != run) {
+            return;
+        }
+        inFlight.remove(index);
+        // 暂停后完成的区块不再影响进度，继续时会重新请求
+        if (status != Status.RUNNING || index < completed) {
+            return;
+        }
+        finishedSinceSample++;
+        if (error != null) {
+            failed++;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            LOGGER.debug("Pregen {} failed chunk ({}, {}): {}", id, chunkX, chunkZ, cause.toString());
+        }
+        if (index == completed) {
+            completed++;
+            // 连上之后已完成的区块
+            int offset = 0;
+            while (done.get(offset + 1)) {
+                offset++;
+            }
+            if (offset > 0) {
+                completed += offset;
+                finishedAhead -= offset;
+            }
+            // BitSet 以 completed 为起点，移动起点
+            BitSet shifted = done.get(offset + 1, Math.max(offset + 1, done.length()));
+            done.clear();
+            done.or(shifted);
+        } else if (!done.get((int) (index - completed))) {
+            done.set((int) (index - completed));
+            finishedAhead++;
+        }
+
+        if (completed >= area.getChunkCount()) {
+            status = Status.COMPLETED;
+            saveCheckpoint(Status.COMPLETED);
+            stats = snapshot();
+            LOGGER.info("Pregen {} completed {} chunks in {} ({} failed)", id, completed, dimension, failed);
+            return;
+        }
+        fill();
+    }
+
+    /**
+     * 每秒调用一次：更新速率和窗口，到期时写检查点和输出进度
+     * @param serverLagging 服务器 tick 超出预算
+     */
+    void update(long nowMs, boolean serverLagging) {
+        if (status == Status.RUNNING) {
+            rate = rate == 0 && finishedSinceSample > 0
+                ? finishedSinceSample
+                : rate + RATE_ALPHA * (finishedSinceSample - rate);
+            finishedSinceSample = 0;
+
+            if (serverLagging) {
+                window = Math.max(Math.min(MIN_WINDOW, maxWindow), window / 2);
+            } else if (window < maxWindow) {
+                window = Math.min(maxWindow, window + Math.max(1, maxWindow / 16));
+                fill();
+            }
+            if (nowMs - lastCheckpointMs >= CHECKPOINT_INTERVAL_MS) {
+                saveCheckpoint(Status.RUNNING);
+                lastCheckpointMs = nowMs;
+            }
+        }
+        stats = snapshot();
+        if (status == Status.RUNNING && nowMs - lastReportMs >= REPORT_INTERVAL_MS) {
+            LOGGER.info("{}", stats);
+            lastReportMs = nowMs;
+        }
+    }
+
+    private Stats snapshot() {
+        long total = area.getChunkCount();
+        long finished = completed + finishedAhead;
+        long etaSeconds = rate > 0 && status == Status.RUNNING ? (long) ((total - finished) / rate) : -1;
+        return new Stats(id, dimension, status, finished, total, failed, inFlight.size(), window, rate, etaSeconds);
+    }
+
+    /**
+     * 先写临时文件再替换，写到一半时崩溃不会损坏检查点
+     */
+    private void saveCheckpoint(Status saved) {
+        Properties properties = new Properties();
+        properties.setProperty("id", id);
+        properties.setProperty("seed", Long.toString(seed));
+        properties.setProperty("dimension", dimension);
+        properties.setProperty("order", order.name());
+        properties.setProperty("minX", Integer.toString(area.minX));
+        properties.setProperty("minZ", Integer.toString(area.minZ));
+        properties.setProperty("maxX", Integer.toString(area.maxX));
+        properties.setProperty("maxZ", Integer.toString(area.maxZ));
+        properties.setProperty("centerX", Integer.toString(area.centerX));
+        properties.setProperty("centerZ", Integer.toString(area.centerZ));
+        properties.setProperty("window", Integer.toString(maxWindow));
+        properties.setProperty("completed", Long.toString(completed));
+        properties.setProperty("failed", Long.toString(failed));
+        properties.setProperty("status", saved.name());
+        try {
+            Files.createDirectories(checkpoint.getParent());
+            Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, "MindPlus pregen checkpoint");
+            }
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save pregen checkpoint {}", checkpoint, e);
+        }
+    }
+
+    /**
+     * 从检查点恢复任务，状态为暂停，调用 start() 继续
+     * @return 已完成或已取消的任务返回 null
+     */
+    static PregenJob load(Path checkpoint, GenerationCoordinator coordinator, ScheduledExecutorService executor)
+        throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            properties.load(in);
+        }
+        try {
+            Status saved = Status.valueOf(properties.getProperty("status"));
+            if (saved == Status.COMPLETED || saved == Status.CANCELLED) {
+                return null;
+            }
+            Area area = new Area(
+                Integer.parseInt(properties.getProperty("minX")), Integer.parseInt(properties.getProperty("minZ")),
+                Integer.parseInt(properties.getProperty("maxX")), Integer.parseInt(properties.getProperty("maxZ")),
+                Integer.parseInt(properties.getProperty("centerX")), Integer.parseInt(properties.getProperty("centerZ")));
+            PregenJob job = new PregenJob(properties.getProperty("id"),
+                Long.parseLong(properties.getProperty("seed")), properties.getProperty("dimension"), area,
+                Order.valueOf(properties.getProperty("order")), Integer.parseInt(properties.getProperty("window")),
+                checkpoint, coordinator, executor);
+            job.completed = Math.min(Long.parseLong(properties.getProperty("completed")), area.getChunkCount());
+            job.failed = Long.parseLong(properties.getProperty("failed"));
+            job.stats = job.snapshot();
+            job.interrupted = saved == Status.RUNNING;
+            return job;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed pregen checkpoint " + checkpoint, e);
+        }
+    }
+
+    /**
+     * 预生成范围：区块坐标的闭区间矩形，螺旋顺序从中心开始
+     */
+    public static final class Area {
+        final int minX;
+        final int minZ;
+        final int maxX;
+        final int maxZ;
+        final int centerX;
+        final int centerZ;
+
+        private Area(int minX, int minZ, int maxX, int maxZ, int centerX, int centerZ) {
+            if (minX > maxX || minZ > maxZ) {
+                throw new IllegalArgumentException("Empty pregen area");
+            }
+            if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Pregen area has more than " + Integer.MAX_VALUE + " chunks");
+            }
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+        }
+
+        /**
+         * 以 (centerX, centerZ) 为中心、边长 2 * radius + 1 的正方形
+         */
+        public static Area radius(int centerX, int centerZ, int radius) {
+            if (radius < 0) {
+                throw new IllegalArgumentException("Negative pregen radius " + radius);
+            }
+            return new Area(centerX - radius, centerZ - radius, centerX + radius, centerZ + radius, centerX, centerZ);
+        }
+
+        public static Area rectangle(int x1, int z1, int x2, int z2) {
+            int minX = Math.min(x1, x2);
+            int minZ = Math.min(z1, z2);
+            int maxX = Math.max(x1, x2);
+            int maxZ = Math.max(z1, z2);
+            return new Area(minX, minZ, maxX, maxZ, minX + (maxX - minX) / 2, minZ + (maxZ - minZ) / 2);
+        }
+
+        public long getChunkCount() {
+            return (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        }
+
+        boolean contains(int x, int z) {
+            return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+        }
+    }
+
+    /**
+     * 按顺序枚举范围内的区块，坐标打包为 (x << 32) | z
+     */
+    static final class ChunkCursor {
+        private static final int REGION_SHIFT = 5;
+        private static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+        private final Area area;
+        private final Order order;
+        private long pending;
+        private boolean hasPending;
+        private boolean exhausted;
+        // 螺旋：当前环和环上的位置
+        private int ring;
+        private int step;
+        private final int maxRing;
+        // 区域：当前区域和区域内的位置
+        private int regionX;
+        private int regionZ;
+        private int x;
+        private int z;
+
+        ChunkCursor(Area area, Order order) {
+            this.area = area;
+            this.order = order;
+            this.maxRing = Math.max(Math.max(area.centerX - area.minX, area.maxX - area.centerX),
+                Math.max(area.centerZ - area.minZ, area.maxZ - area.centerZ));
+            this.regionX = area.minX >> REGION_SHIFT;
+            this.regionZ = area.minZ >> REGION_SHIFT;
+            this.x = Math.max(area.minX, regionX << REGION_SHIFT);
+            this.z = Math.max(area.minZ, regionZ << REGION_SHIFT);
+        }
+
+        boolean hasNext() {
+            if (!hasPending && !exhausted) {
+                advance();
+            }
+            return hasPending;
+        }
+
+        long next() {
+            hasNext();
+            hasPending = false;
+            return pending;
+        }
+
+        void skip(long count) {
+            for (long i = 0; i < count && hasNext(); i++) {
+                hasPending = false;
+            }
+        }
+
+        private void advance() {
+            if (order == Order.SPIRAL) {
+                advanceSpiral();
+            } else {
+                advanceRegion();
+            }
+        }
+
+        /**
+         * 环上四条边依次为北、东、南、西，每条边 2 * ring 个位置；整条边在范围外或已走出范围时直接跳到下一条边，
+         * 细长的矩形不用逐个走完范围外的环
+         */
+        private void advanceSpiral() {
+            if (ring == 0) {
+                ring = 1;
+                step = 0;
+                emit(area.centerX, area.centerZ);
+                return;
+            }
+            while (ring <= maxRing) {
+                int length = 2 * ring;
+                int side = step / length;
+                int offset = step % length;
+                // 这条边所在的行或列是否与范围相交，以及边上落在范围内的位置区间
+                boolean crosses;
+                long low;
+                long high;
+                switch (side) {
+                    case 0:
+                        crosses = area.centerZ - ring >= area.minZ;
+                        low = area.minX - (area.centerX - ring);
+                        high = area.maxX - (area.centerX - ring);
+                        break;
+                    case 1:
+                        crosses = area.centerX + ring <= area.maxX;
+                        low = area.minZ - (area.centerZ - ring);
+                        high = area.maxZ - (area.centerZ - ring);
+                        break;
+                    case 2:
+                        crosses = area.centerZ + ring <= area.maxZ;
+                        low = (area.centerX + ring) - area.maxX;
+                        high = (area.centerX + ring) - area.minX;
+                        break;
+                    default:
+                        crosses = area.centerX - ring >= area.minX;
+                        low = (area.centerZ + ring) - area.maxZ;
+                        high = (area.centerZ + ring) - area.minZ;
+                        break;
+                }
+                if (!crosses || offset > high || low >= length) {
+                    nextSide(side, length);
+                    continue;
+                }
+                if (offset < low) {
+                    offset = (int) low;
+                }
+                int px;
+                int pz;
+                switch (side) {
+                    case 0: px = area.centerX - ring + offset; pz = area.centerZ - ring; break;
+                    case 1: px = area.centerX + ring; pz = area.centerZ - ring + offset; break;
+                    case 2: px = area.centerX + ring - offset; pz = area.centerZ + ring; break;
+                    default: px = area.centerX - ring; pz = area.centerZ + ring - offset; break;
+                }
+                step = side * length + offset + 1;
+                if (step == 4 * length) {
+                    ring++;
+                    step = 0;
+                }
+                emit(px, pz);
+                return;
+            }
+            exhausted = true;
+        }
+
+        private void nextSide(int side, int length) {
+            if (side == 3) {
+                ring++;
+                step = 0;
+            } else {
+                step = (side + 1) * length;
+            }
+        }
+
+        private void advanceRegion() {
+            if (z > area.maxZ) {
+                exhausted = true;
+                return;
+            }
+            emit(x, z);
+            int regionMaxX = Math.min(area.maxX, (regionX << REGION_SHIFT) + REGION_SIZE - 1);
+            int regionMaxZ = Math.min(area.maxZ, (regionZ << REGION_SHIFT) + REGION_SIZE - 1);
+            if (x < regionMaxX) {
+                x++;
+                return;
+            }
+            x = Math.max(area.minX, regionX << REGION_SHIFT);
+            if (z < regionMaxZ) {
+                z++;
+                return;
+            }
+            // 下一个区域：先沿 x，再换一行区域
+            if ((regionX << REGION_SHIFT) + REGION_SIZE <= area.maxX) {
+                regionX++;
+            } else {
+                regionX = area.minX >> REGION_SHIFT;
+                regionZ++;
+            }
+            x = Math.max(area.minX, regionX << REGION_SHIFT);
+            z = (regionZ << REGION_SHIFT) > area.maxZ ? area.maxZ + 1 : Math.max(area.minZ, regionZ << REGION_SHIFT);
+        }
+
+        private void emit(int px, int pz) {
+            pending = ((long) px << 32) | (pz & 0xFFFFFFFFL);
+            hasPending = true;
+        }
+    }
+
+    public static class Stats {
+        public final String id;
+        public final String dimension;
+        public final Status status;
+        public final long finished;
+        public final long total;
+        public final long failed;
+        public final int inFlight;
+        public final int window;
+        public final double chunksPerSecond;
+        // 未运行或尚无速率时为 -1
+        public final long etaSeconds;
+
+        public Stats(String id, String dimension, Status status, long finished, long total, long failed,
+                     int inFlight, int window, double chunksPerSecond, long etaSeconds) {
+            this.id = id;
+            this.dimension = dimension;
+            this.status = status;
+            this.finished = finished;
+            this.total = total;
+            this.failed = failed;
+            this.inFlight = inFlight;
+            this.window = window;
+            this.chunksPerSecond = chunksPerSecond;
+            this.etaSeconds = etaSeconds;
+        }
+
+        public double getProgress() {
+            return total > 0 ? (double) finished / total : 1.0;
+        }
+
+        @Override
+        public String toString() {
+            String eta = etaSeconds < 0 ? "-"
+                : String.format("%d:%02d:%02d", etaSeconds / 3600, etaSeconds / 60 % 60, etaSeconds % 60);
+            return String.format("Pregen %s - Status: %s, Progress: %d/%d (%.1f%%), Rate: %.1f/s, ETA: %s, "
+                    + "In flight: %d/%d, Failed: %d",
+                id, status, finished, total, getProgress() * 100, chunksPerSecond, eta, inFlight, window, failed);
+        }
+    }
+}
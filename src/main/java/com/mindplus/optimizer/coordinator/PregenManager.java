@@ -0,0 +1,239 @@
+package com.mindplus.optimizer.coordinator;
+
+import com.mindplus.optimizer.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 预生成任务管理
+ * 任务的检查点保存在世界存档的 mindplus-pregen 目录下，每个任务一个文件；服务器启动时继续上次中断的任务
+ * 所有任务在同一个线程上调度，区块完成的回调也回到这个线程，服务器主线程只做 tick 计时
+ * 服务器 tick 平均耗时超过 pregenMaxTickMs 时各任务的窗口减半，给主线程让出 CPU
+ */
+public class PregenManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger("PregenManager");
+
+    private static final long UPDATE_INTERVAL_MS = 1_000;
+    private static final String CHECKPOINT_SUFFIX = ".properties";
+    // tick 耗时的指数平滑系数（每 tick 一次）
+    private static final double TICK_ALPHA = 0.05;
+
+    private final GenerationCoordinator coordinator;
+    private final ScheduledExecutorService executor;
+    // 以下只在任务线程上访问
+    private final Map<String, PregenJob> jobs = new LinkedHashMap<>();
+    private Path directory;
+    private long seed;
+    // 服务器线程写，任务线程读
+    private volatile double averageTickMs;
+
+    PregenManager(GenerationCoordinator coordinator) {
+        this.coordinator = coordinator;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PregenManager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::update, UPDATE_INTERVAL_MS, UPDATE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 服务器启动后调用：读取世界存档中的检查点，继续中断的任务，用户暂停的任务保持暂停
+     */
+    public void onServerStarted(Path directory, long seed) {
+        executor.execute(() -> {
+            this.directory = directory;
+            this.seed = seed;
+            jobs.clear();
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + CHECKPOINT_SUFFIX)) {
+                for (Path file : files) {
+                    load(file);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to list pregen checkpoints in {}", directory, e);
+            }
+        });
+    }
+
+    private void load(Path file) {
+        try {
+            PregenJob job = PregenJob.load(file, coordinator, executor);
+            if (job == null) {
+                return;
+            }
+            if (job.getSeed() != seed) {
+                LOGGER.warn("Ignoring pregen checkpoint {} for seed {}", file, job.getSeed());
+                return;
+            }
+            jobs.put(job.getId(), job);
+            if (job.wasInterrupted()) {
+                job.start();
+            } else {
+                LOGGER.info("{}", job.getStats());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load pregen checkpoint {}", file, e);
+        }
+    }
+
+    /**
+     * 服务器停止：保存所有任务的检查点，下次启动时继续
+     */
+    public void onServerStopping() {
+        runAndWait(() -> {
+            for (PregenJob job : jobs.values()) {
+                job.pause(false);
+            }
+            jobs.clear();
+            directory = null;
+        });
+    }
+
+    /**
+     * 每个服务器 tick 结束时调用
+     * @param tickNanos 本 tick 耗时
+     */
+    public void onServerTick(long tickNanos) {
+        double tickMs = tickNanos / 1_000_000.0;
+        averageTickMs += TICK_ALPHA * (tickMs - averageTickMs);
+    }
+
+    /**
+     * 开始一个新任务，同名任务未完成时失败
+     */
+    public CompletableFuture<PregenJob> start(String id, String dimension, PregenJob.Area area, PregenJob.Order order) {
+        if (!id.matches("[A-Za-z0-9_-]+")) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid pregen job id: " + id));
+        }
+        return supply(() -> {
+            if (directory == null) {
+                throw new IllegalStateException("No server is running");
+            }
+            PregenJob existing = jobs.get(id);
+            if (existing != null && existing.getStatus() != PregenJob.Status.COMPLETED
+                && existing.getStatus() != PregenJob.Status.CANCELLED) {
+                throw new IllegalStateException("Pregen job " + id + " already exists");
+            }
+            int window = ModConfig.INSTANCE.generation.pregenWindow;
+            PregenJob job = new PregenJob(id, seed, dimension, area, order, window,
+                directory.resolve(id + CHECKPOINT_SUFFIX), coordinator, executor);
+            jobs.put(id, job);
+            job.start();
+            return job;
+        });
+    }
+
+    /**
+     * 暂停任务，检查点记为暂停，服务器重启后不会自动继续
+     */
+    public CompletableFuture<PregenJob> pause(String id) {
+        return supply(() -> {
+            PregenJob job = find(id);
+            job.pause(true);
+            return job;
+        });
+    }
+
+    /**
+     * 继续暂停的任务
+     */
+    public CompletableFuture<PregenJob> resume(String id) {
+        return supply(() -> {
+            PregenJob job = find(id);
+            job.start();
+            return job;
+        });
+    }
+
+    /**
+     * 取消任务并删除检查点，已经生成的结果保留在缓存中
+     */
+    public CompletableFuture<PregenJob> cancel(String id) {
+        return supply(() -> {
+            PregenJob job = find(id);
+            job.cancel();
+            jobs.remove(id);
+            return job;
+        });
+    }
+
+    /**
+     * 所有任务的最近统计
+     */
+    public CompletableFuture<List<PregenJob.Stats>> getStats() {
+        return supply(() -> {
+            List<PregenJob.Stats> stats = new ArrayList<>();
+            for (PregenJob job : jobs.values()) {
+                stats.add(job.getStats());
+            }
+            return stats;
+        });
+    }
+
+    public void shutdown() {
+        onServerStopping();
+        executor.shutdownNow();
+    }
+
+    private PregenJob find(String id) {
+        PregenJob job = jobs.get(id);
+        if (job == null) {
+            throw new IllegalArgumentException("No pregen job " + id);
+        }
+        return job;
+    }
+
+    private void update() {
+        try {
+            long now = System.currentTimeMillis();
+            boolean lagging = averageTickMs > ModConfig.INSTANCE.generation.pregenMaxTickMs;
+            for (PregenJob job : jobs.values()) {
+                job.update(now, lagging);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error updating pregen jobs", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> supply(Callable<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(action.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IllegalStateException("PregenManager is shut down"));
+        }
+        return future;
+    }
+
+    private void runAndWait(Runnable action) {
+        try {
+            supply(() -> {
+                action.run();
+                return null;
+            }).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Failed to save pregen checkpoints", e);
+        }
+    }
+}
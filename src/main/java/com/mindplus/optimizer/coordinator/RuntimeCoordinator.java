@@ -1,71 +1,107 @@
 package com.mindplus.optimizer.coordinator;
 
+import com.mindplus.optimizer.communication.CreditGate;
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
 import com.mindplus.optimizer.config.ModConfig;
 import com.mindplus.optimizer.generator.WorldGenerator;
 import com.mindplus.optimizer.preloader.ChunkPreloader;
 import com.mindplus.optimizer.renderer.RenderOptimizer;
-import com.mindplus.optimizer.process.PortCleaner;
 import com.mindplus.optimizer.process.ProcessManager;
+import com.mindplus.optimizer.process.ResourceUsage;
+import com.mindplus.optimizer.tasks.AITaskBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 运行时工作进程协调器
+ * 服务端角色（AI、预加载、世界生成）和客户端角色（渲染、音频）按 WorkerTopology 登记为按需进程，
+ * 生产者在对应工作进程就绪后创建，集成服务器关闭时服务端角色随之休眠
+ */
 public class RuntimeCoordinator {
     private static final Logger LOGGER = LoggerFactory.getLogger("RuntimeCoordinator");
+
+    // AI 快照过期很快，只允许少量 tick 在途，积压时直接丢弃当前 tick
+    private static final int AI_CREDIT_WINDOW = 4;
     
     private final ProcessManager processManager;
+    private final WorkerTopology topology;
     private IPCChannel aiChannel;
-    private ChunkPreloader chunkPreloader;
-    private WorldGenerator worldGenerator;
-    private RenderOptimizer renderOptimizer;
-    
-    public RuntimeCoordinator(ProcessManager processManager) {
+    private CreditGate aiCredits;
+    private final AITaskBatch aiTaskBatch = new AITaskBatch();
+    private volatile ChunkPreloader chunkPreloader;
+    private volatile WorldGenerator worldGenerator;
+    private volatile RenderOptimizer renderOptimizer;
+    // 当前运行的服务器，生产者就绪时据此判断服务器是否已经换掉
+    private volatile Object server;
+
+    public RuntimeCoordinator(ProcessManager processManager, WorkerTopology topology) {
         this.processManager = processManager;
+        this.topology = topology;
+        processManager.addRestartListener(this::onWorkerRestarted);
     }
     
     public void initialize() {
         ModConfig config = ModConfig.INSTANCE;
 
-        // 清理可能被占用的端口
-        LOGGER.info("Checking for port conflicts...");
-        cleanupPorts(config);
-
-        // 初始化区块预加载器
-        if (config.runtime.enableChunkPreloader) {
-            chunkPreloader = new ChunkPreloader();
-            // 注意：需要在服务器启动后才能初始化
-            LOGGER.info("Chunk preloader created (will be initialized when server starts)");
+        // 音频处理器暂时不实现，因为涉及复杂的音频处理
+        if (config.runtime.enableAudioProcessor) {
+            LOGGER.info("Audio processor is not yet implemented");
         }
 
-        // 初始化世界生成器
-        worldGenerator = new WorldGenerator();
-        LOGGER.info("World generator created (will be initialized when server starts)");
+        registerWorkerProcesses();
 
-        // 渲染优化器只在客户端初始化时创建
-        LOGGER.info("Render optimizer will be created on client initialization");
+        // 客户端角色在客户端上始终需要，关闭按需启动时现在就启动；渲染优化器在渲染进程就绪后创建
+        if (!config.general.lazyWorkerStart) {
+            clientWorkers(config).forEach(processManager::acquire);
+        }
+        LOGGER.info("Runtime workers registered for {}, they will start on first use", topology);
+    }
 
-        // 音频处理器暂时不实现，因为涉及复杂的音频处理
-        if (config.runtime.enableAudioProcessor) {
-            LOGGER.info("Audio processor is not yet implemented");
+    /**
+     * 服务器启动：关闭按需启动时立即启动服务端角色并等待就绪
+     */
+    public void onServerStarting() {
+        ModConfig config = ModConfig.INSTANCE;
+        if (config.general.lazyWorkerStart) {
+            return;
         }
 
-        // 先启动工作进程（它们会 bind 端口）
-        startWorkerProcesses();
+        List<String> workers = serverWorkers(config);
+        workers.forEach(processManager::acquire);
 
-        // 等待工作进程启动并绑定端口
-        try {
-            Thread.sleep(1000); // 等待 1 秒让工作进程完全启动
-        } catch (InterruptedException e) {
-            LOGGER.warn("Interrupted while waiting for workers to start", e);
+        // 并行等待所有工作进程绑定端口后上报 READY，实际地址由 ProcessManager 登记
+        long startNanos = System.nanoTime();
+        if (processManager.awaitReady(workers, config.network.connectionTimeout)) {
+            LOGGER.info("{} runtime workers ready in {}ms", workers.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } else {
+            LOGGER.warn("Not all runtime workers are ready, tasks will be deferred until they are");
         }
+    }
 
-        // 延迟连接到工作进程，在第一次使用时才建立连接
-        // 这样可以避免端口冲突问题
-        LOGGER.info("Worker processes started, channels will be connected on first use");
+    /**
+     * 集成服务器关闭：停止服务端生产者并休眠服务端角色，客户端角色不受影响
+     */
+    public synchronized void onServerStopping() {
+        server = null;
+        if (chunkPreloader != null) {
+            chunkPreloader.shutdown();
+            chunkPreloader = null;
+        }
+        if (worldGenerator != null) {
+            worldGenerator.shutdown();
+            worldGenerator = null;
+        }
+        aiTaskBatch.clear();
+        for (String worker : serverWorkers(ModConfig.INSTANCE)) {
+            processManager.hibernate(worker);
+        }
     }
 
     /**
@@ -75,114 +111,226 @@ public class RuntimeCoordinator {
         ModConfig config = ModConfig.INSTANCE;
 
         if (config.runtime.enableAIProcessor && aiChannel == null) {
-            aiChannel = new IPCChannel(ZMQ.PUSH, "tcp://" + config.network.host + ":" + config.runtime.aiProcessorPort);
+            aiChannel = new IPCChannel(ZMQ.PUSH, Endpoints.connect("ai-processor", config.runtime.aiProcessorPort));
             aiChannel.connect();
+            aiCredits = new CreditGate("ai-processor", config.runtime.aiProcessorPort, AI_CREDIT_WINDOW);
+            aiCredits.connect();
             LOGGER.info("AI processor channel connected on port {}", config.runtime.aiProcessorPort);
         }
     }
 
-    private void cleanupPorts(ModConfig config) {
-        List<Integer> portsToCheck = new ArrayList<>();
+    /**
+     * 工作进程重启后重新提交发给旧实例的任务
+     * AI 快照每个 tick 都会重新采集，不需要重放；信用窗口由 CreditGate 根据 epoch 自动恢复
+     */
+    private void onWorkerRestarted(String processId) {
+        switch (processId) {
+            case "chunk-preloader":
+                if (chunkPreloader != null) {
+                    chunkPreloader.onWorkerRestarted();
+                }
+                break;
+            case "world-generator":
+                if (worldGenerator != null) {
+                    worldGenerator.onWorkerRestarted();
+                }
+                break;
+            case "multi-renderer":
+            case "render-worker":
+                if (renderOptimizer != null) {
+                    renderOptimizer.onWorkerRestarted();
+                }
+                break;
+            default:
+                break;
+        }
+    }
 
-        if (config.runtime.enableAIProcessor) {
-            portsToCheck.add(config.runtime.aiProcessorPort);
+    /**
+     * 服务器创建世界时调用（每个维度一次），预加载和世界生成的生产者在各自工作进程就绪后创建
+     */
+    public synchronized void setChunkPreloaderServer(Object server) {
+        if (server == null || this.server == server) {
+            return;
         }
+        this.server = server;
+        ModConfig config = ModConfig.INSTANCE;
+
         if (config.runtime.enableChunkPreloader) {
-            portsToCheck.add(config.runtime.chunkPreloaderPort);
-        }
-        if (config.runtime.enableAudioProcessor) {
-            portsToCheck.add(config.runtime.audioProcessorPort);
-        }
-        if (config.runtime.enableRenderProcess) {
-            portsToCheck.add(config.runtime.renderProcessPort);
+            whenWorkerReady(ChunkPreloader.WORKER, () -> {
+                if (this.server == server && chunkPreloader == null) {
+                    chunkPreloader = new ChunkPreloader(processManager);
+                    chunkPreloader.initialize(server);
+                    LOGGER.info("Chunk preloader initialized with server");
+                }
+            });
         }
 
-        if (!portsToCheck.isEmpty()) {
-            int[] portsArray = portsToCheck.stream().mapToInt(i -> i).toArray();
-            boolean success = PortCleaner.cleanupPorts(portsArray);
-            if (success) {
-                LOGGER.info("Port cleanup completed successfully");
-            } else {
-                LOGGER.warn("Some ports could not be cleaned, workers may fail to start");
+        whenWorkerReady(WorldGenerator.WORKER, () -> {
+            if (this.server == server && worldGenerator == null) {
+                worldGenerator = new WorldGenerator(processManager);
+                worldGenerator.initialize(server);
+                LOGGER.info("World generator initialized with server");
             }
-        }
+        });
     }
-    
-    public void setChunkPreloaderServer(Object server) {
-        if (chunkPreloader != null && server != null) {
-            chunkPreloader.initialize(server);
-            LOGGER.info("Chunk preloader initialized with server");
-        }
 
-        if (worldGenerator != null && server != null) {
-            worldGenerator.initialize(server);
-            LOGGER.info("World generator initialized with server");
+    public void setRenderOptimizerClient(Object client) {
+        if (client == null || !topology.needsClientWorkers()) {
+            return;
         }
+        String worker = renderWorker(ModConfig.INSTANCE);
+        whenWorkerReady(worker, () -> {
+            if (renderOptimizer == null) {
+                renderOptimizer = new RenderOptimizer(processManager, worker);
+                renderOptimizer.initialize(client);
+                LOGGER.info("Render optimizer initialized with client");
+            }
+        });
     }
 
-    public void setRenderOptimizerClient(Object client) {
-        if (renderOptimizer == null) {
-            renderOptimizer = new RenderOptimizer();
-            LOGGER.info("Render optimizer created");
-        }
-        if (renderOptimizer != null && client != null) {
-            renderOptimizer.initialize(client);
-            LOGGER.info("Render optimizer initialized with client");
-        }
+    /**
+     * 启动（或唤醒）工作进程，就绪后在监督线程上执行 action
+     */
+    private void whenWorkerReady(String processId, Runnable action) {
+        processManager.acquire(processId);
+        processManager.whenReady(processId).thenRun(() -> {
+            synchronized (this) {
+                action.run();
+            }
+        }).exceptionally(error -> {
+            LOGGER.warn("{} did not become ready: {}", processId, error.getMessage());
+            return null;
+        });
     }
-    
-    private void startWorkerProcesses() {
+
+    /**
+     * 登记按需进程：服务端角色在任何环境都登记（客户端上供集成服务器使用），客户端角色只在客户端登记
+     */
+    private void registerWorkerProcesses() {
         ModConfig config = ModConfig.INSTANCE;
         List<String> args = new ArrayList<>();
 
-        LOGGER.info("Starting runtime worker processes...");
-
         if (config.runtime.enableAIProcessor) {
-            processManager.startProcess("ai-processor",
+            processManager.registerProcess("ai-processor",
                 "com.mindplus.optimizer.workers.AIProcessor", args);
         }
 
         if (config.runtime.enableChunkPreloader) {
-            processManager.startProcess("chunk-preloader",
+            processManager.registerProcess(ChunkPreloader.WORKER,
                 "com.mindplus.optimizer.workers.ChunkPreloader", args);
         }
 
-        // 启动世界生成器工作进程
-        processManager.startProcess("world-generator",
+        processManager.registerProcess(WorldGenerator.WORKER,
             "com.mindplus.optimizer.workers.WorldGeneratorWorker", args);
 
-        // 启动多渲染器工作进程（支持 Vulkan、DirectX 12、OpenGL、软件渲染）
+        if (!topology.needsClientWorkers()) {
+            LOGGER.info("Dedicated server, render and audio workers are not registered");
+            return;
+        }
+
+        // 多渲染器工作进程（支持 Vulkan、DirectX 12、OpenGL、软件渲染）
         if (config.runtime.enableRenderProcess) {
             List<String> renderArgs = new ArrayList<>();
             renderArgs.add(config.runtime.rendererType); // 渲染器类型
             renderArgs.add(String.valueOf(config.runtime.renderWidth)); // 渲染宽度
             renderArgs.add(String.valueOf(config.runtime.renderHeight)); // 渲染高度
 
-            processManager.startProcess("multi-renderer",
+            processManager.registerProcess("multi-renderer",
                 "com.mindplus.optimizer.workers.MultiRendererProcess", renderArgs);
         } else {
             // 降级使用旧版渲染工作进程
-            processManager.startProcess("render-worker",
+            processManager.registerProcess("render-worker",
                 "com.mindplus.optimizer.workers.RenderWorker", args);
         }
 
         if (config.runtime.enableAudioProcessor) {
-            processManager.startProcess("audio-processor",
+            processManager.registerProcess("audio-processor",
                 "com.mindplus.optimizer.workers.AudioProcessor", args);
         }
+    }
+
+    private static List<String> serverWorkers(ModConfig config) {
+        List<String> workers = new ArrayList<>();
+        if (config.runtime.enableAIProcessor) {
+            workers.add("ai-processor");
+        }
+        if (config.runtime.enableChunkPreloader) {
+            workers.add(ChunkPreloader.WORKER);
+        }
+        workers.add(WorldGenerator.WORKER);
+        return workers;
+    }
+
+    private List<String> clientWorkers(ModConfig config) {
+        List<String> workers = new ArrayList<>();
+        if (!topology.needsClientWorkers()) {
+            return workers;
+        }
+        workers.add(renderWorker(config));
+        if (config.runtime.enableAudioProcessor) {
+            workers.add("audio-processor");
+        }
+        return workers;
+    }
 
-        LOGGER.info("Runtime worker processes started");
+    private static String renderWorker(ModConfig config) {
+        return config.runtime.enableRenderProcess ? "multi-renderer" : "render-worker";
     }
     
-    public void sendAITaskAsync(byte[] taskData) {
+    /**
+     * 当前 tick 的 AI 快照缓冲区，由 MobEntityMixin 在服务器主线程追加
+     */
+    public AITaskBatch getAITaskBatch() {
+        return aiTaskBatch;
+    }
+
+    /**
+     * 在服务器 tick 结束时把本 tick 采集的快照作为一帧发送给 AI 进程
+     * AI 进程跟不上时丢弃本 tick 的快照，下一 tick 会重新采集；
+     * AI 进程 CPU 饱和或内存紧张时只保留一个在途快照，不等信用窗口耗尽就开始丢弃
+     */
+    public void flushAITasks(long tick) {
+        if (aiTaskBatch.isEmpty()) {
+            return;
+        }
+        // AI 进程还在启动或刚被唤醒时丢弃本 tick，下一 tick 会重新采集
+        if (!processManager.acquire("ai-processor")) {
+            aiTaskBatch.clear();
+            return;
+        }
+
         ensureChannelsConnected();
         if (aiChannel != null) {
-            try {
-                aiChannel.send(taskData, ZMQ.NOBLOCK);
-            } catch (Exception e) {
-                LOGGER.debug("Failed to send AI task", e);
+            if (isAIOverloaded() || !aiCredits.tryAcquire()) {
+                aiCredits.recordDropped();
+            } else {
+                try {
+                    aiTaskBatch.setTick(tick);
+                    if (!aiChannel.send(aiTaskBatch.toBytes(), ZMQ.NOBLOCK)) {
+                        aiCredits.cancel();
+                        aiCredits.recordDropped();
+                    }
+                } catch (Exception e) {
+                    aiCredits.cancel();
+                    aiCredits.recordDropped();
+                    LOGGER.debug("Failed to send AI task batch", e);
+                }
             }
         }
+        aiTaskBatch.clear();
+    }
+
+    private boolean isAIOverloaded() {
+        ResourceUsage usage = processManager.getResourceUsage("ai-processor");
+        return (usage.isCpuSaturated() || usage.isMemoryPressured()) && aiCredits.available() < AI_CREDIT_WINDOW;
+    }
+
+    /**
+     * AI 通道的信用统计，通道尚未连接时为 null
+     */
+    public CreditGate.Stats getAICreditStats() {
+        return aiCredits != null ? aiCredits.getStats() : null;
     }
     
     public ChunkPreloader getChunkPreloader() {
@@ -203,6 +351,9 @@ public class RuntimeCoordinator {
         if (aiChannel != null) {
             aiChannel.close();
         }
+        if (aiCredits != null) {
+            aiCredits.close();
+        }
         if (chunkPreloader != null) {
             chunkPreloader.shutdown();
         }
@@ -0,0 +1,51 @@
+package com.mindplus.optimizer.coordinator;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.api.FabricLoader;
+
+/**
+ * 工作进程拓扑：按 Fabric 运行环境和集成服务器状态决定需要哪些工作进程
+ * 专用服务器只需要服务端角色（区块生成各阶段、AI、预加载、世界生成），渲染和音频没有人使用；
+ * 客户端始终需要渲染和音频，服务端角色只在集成服务器（单人游戏或局域网主机）运行期间需要，
+ * 连接远程服务器时不会启动
+ */
+public final class WorkerTopology {
+    private final EnvType environment;
+    private volatile boolean serverRunning;
+
+    public WorkerTopology(EnvType environment) {
+        this.environment = environment;
+    }
+
+    public static WorkerTopology detect() {
+        return new WorkerTopology(FabricLoader.getInstance().getEnvironmentType());
+    }
+
+    public boolean isDedicatedServer() {
+        return environment == EnvType.SERVER;
+    }
+
+    /**
+     * 是否需要渲染、音频等客户端角色
+     */
+    public boolean needsClientWorkers() {
+        return environment == EnvType.CLIENT;
+    }
+
+    /**
+     * 是否需要服务端角色：本进程中有服务器（专用或集成）在运行
+     */
+    public boolean needsServerWorkers() {
+        return serverRunning;
+    }
+
+    public void setServerRunning(boolean serverRunning) {
+        this.serverRunning = serverRunning;
+    }
+
+    @Override
+    public String toString() {
+        return (isDedicatedServer() ? "dedicated server" : "client")
+            + (serverRunning ? " with running server" : "");
+    }
+}
@@ -1,36 +1,57 @@
 package com.mindplus.optimizer.generator;
 
+import com.mindplus.optimizer.communication.CreditGate;
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.config.ModConfig;
 import com.mindplus.optimizer.process.ProcessManager;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.tasks.RegionTask;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.ChunkPos;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WorldGenerator {
     private static final Logger LOGGER = LoggerFactory.getLogger("WorldGenerator");
 
+    // 没有信用时暂存的任务上限，超出后丢弃
+    private static final int MAX_DEFERRED = 4096;
+
+    public static final String WORKER = "world-generator";
+
+    private final ProcessManager processManager;
     private final IPCChannel pushChannel;
+    private final CreditGate credits;
+    private final BlockingQueue<Message> deferredTasks = new ArrayBlockingQueue<>(MAX_DEFERRED);
     private final ScheduledExecutorService scheduler;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final ConcurrentHashMap<String, Long> generatingChunks = new ConcurrentHashMap<>();
 
     private Object server;
 
-    public WorldGenerator() {
-        this.pushChannel = new IPCChannel(ZMQ.PUSH, "tcp://localhost:5570");
+    public WorldGenerator(ProcessManager processManager) {
+        this.processManager = processManager;
+        this.pushChannel = new IPCChannel(ZMQ.PUSH, Endpoints.connect(WORKER, 5570));
+        this.credits = new CreditGate(WORKER, 5570, ModConfig.INSTANCE.network.creditWindow);
         this.scheduler = Executors.newScheduledThreadPool(1);
     }
 
     public void initialize(Object server) {
         this.server = server;
         pushChannel.connect();
+        credits.connect();
         running.set(true);
 
+        // 工作进程归还信用后补发暂存的任务
+        scheduler.scheduleWithFixedDelay(this::drainDeferred, 50, 50, TimeUnit.MILLISECONDS);
+
         LOGGER.info("World generator initialized");
     }
 
@@ -42,19 +63,88 @@ public class WorldGenerator {
             ServerWorld world = (ServerWorld) server.getClass().getMethod("getOverworld").invoke(server);
             if (world == null) return;
 
-            String chunkKey = chunkX + "," + chunkZ;
-
             // 创建生成任务（不检查是否已生成，追求速度）
-            String taskData = chunkX + "," + chunkZ + "," + world.getSeed();
+            ChunkTask task = new ChunkTask(chunkX, chunkZ, world.getSeed(), ChunkTask.OVERWORLD);
+            submit(new Message(new byte[][] { task.toBytes() }, chunkX, chunkZ, 1));
+        } catch (Exception e) {
+            LOGGER.error("Error in generateChunk", e);
+        }
+    }
+
+    /**
+     * 预生成一个区域内的全部区块，一条消息只占一个信用
+     */
+    public void generateRegion(int originX, int originZ, int size) {
+        if (!running.get() || server == null) return;
+
+        try {
+            ServerWorld world = (ServerWorld) server.getClass().getMethod("getOverworld").invoke(server);
+            if (world == null) return;
+
+            RegionTask task = new RegionTask(originX, originZ, size, world.getSeed(), ChunkTask.OVERWORLD);
+            submit(new Message(new byte[][] { RegionTask.KIND, task.toBytes() }, originX, originZ, size));
+        } catch (Exception e) {
+            LOGGER.error("Error in generateRegion", e);
+        }
+    }
+
+    private void submit(Message message) {
+        // 已有暂存任务时排在后面，保持提交顺序
+        if (!deferredTasks.isEmpty() || !trySend(message)) {
+            defer(message);
+        }
+    }
+
+    /**
+     * 有信用时发送任务，只有真正发出的任务才记为生成中
+     * @return false 表示没有信用，任务需要暂存
+     */
+    private boolean trySend(Message message) {
+        // 工作进程休眠时唤醒它
+        processManager.acquire(WORKER);
+        if (!credits.tryAcquire()) {
+            return false;
+        }
 
-            try {
-                pushChannel.send(taskData.getBytes(), ZMQ.NOBLOCK);
-                generatingChunks.put(chunkKey, System.currentTimeMillis());
-            } catch (Exception e) {
-                // 静默失败
+        boolean sent;
+        try {
+            sent = pushChannel.sendMultipart(message.frames, ZMQ.NOBLOCK);
+        } catch (Exception e) {
+            sent = false;
+        }
+
+        if (!sent) {
+            credits.cancel();
+            credits.recordDropped();
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        for (int dz = 0; dz < message.size; dz++) {
+            for (int dx = 0; dx < message.size; dx++) {
+                generatingChunks.put((message.originX + dx) + "," + (message.originZ + dz), now);
+            }
+        }
+        return true;
+    }
+
+    private void defer(Message message) {
+        if (deferredTasks.offer(message)) {
+            credits.recordDeferred();
+        } else {
+            credits.recordDropped();
+        }
+    }
+
+    private void drainDeferred() {
+        if (!running.get()) return;
+
+        try {
+            Message message;
+            while ((message = deferredTasks.peek()) != null && trySend(message)) {
+                deferredTasks.poll();
             }
         } catch (Exception e) {
-            LOGGER.error("Error in generateChunk", e);
+            LOGGER.error("Error draining deferred generation tasks", e);
         }
     }
 
@@ -62,6 +152,24 @@ public class WorldGenerator {
         generatingChunks.remove(chunkKey);
     }
 
+    /**
+     * 工作进程重启，把旧实例上生成中的区块重新排队
+     */
+    public void onWorkerRestarted() {
+        List<String> chunkKeys = new ArrayList<>(generatingChunks.keySet());
+        int replayed = 0;
+        for (String chunkKey : chunkKeys) {
+            if (generatingChunks.remove(chunkKey) == null) {
+                continue;
+            }
+            int separator = chunkKey.indexOf(',');
+            generateChunk(Integer.parseInt(chunkKey.substring(0, separator)),
+                Integer.parseInt(chunkKey.substring(separator + 1)));
+            replayed++;
+        }
+        LOGGER.info("World generator worker restarted, replaying {} chunks", replayed);
+    }
+
     public boolean isGenerating(String chunkKey) {
         return generatingChunks.containsKey(chunkKey);
     }
@@ -79,18 +187,45 @@ public class WorldGenerator {
         running.set(false);
         scheduler.shutdown();
         pushChannel.close();
+        credits.close();
+        deferredTasks.clear();
         LOGGER.info("World generator shutdown");
     }
 
     public GeneratorStats getStats() {
-        return new GeneratorStats(generatingChunks.size());
+        CreditGate.Stats creditStats = credits.getStats();
+        return new GeneratorStats(generatingChunks.size(), deferredTasks.size(),
+            creditStats.deferred, creditStats.dropped);
     }
 
     public static class GeneratorStats {
         public final int generating;
+        public final int queued;
+        public final long deferred;
+        public final long dropped;
 
-        public GeneratorStats(int generating) {
+        public GeneratorStats(int generating, int queued, long deferred, long dropped) {
             this.generating = generating;
+            this.queued = queued;
+            this.deferred = deferred;
+            this.dropped = dropped;
+        }
+    }
+
+    /**
+     * 待发送的消息，覆盖以 (originX, originZ) 为西北角、边长 size 的区块
+     */
+    private static final class Message {
+        final byte[][] frames;
+        final int originX;
+        final int originZ;
+        final int size;
+
+        Message(byte[][] frames, int originX, int originZ, int size) {
+            this.frames = frames;
+            this.originX = originX;
+            this.originZ = originZ;
+            this.size = size;
         }
     }
-}
\ No newline at end of file
+}
@@ -47,8 +47,8 @@ public class ChunkGeneratorMixin {
                     ChunkPreloader.PreloadStats stats = preloader.getStats();
                     long elapsed = (System.currentTimeMillis() - startTime) / 1000;
                     double rate = elapsed > 0 ? generatedChunks / elapsed : 0;
-                    LOGGER.info("Optimization: {} chunks generated ({} chunks/sec), Preloader: {} pending", 
-                        generatedChunks, String.format("%.1f", rate), stats.pending);
+                    LOGGER.info("Optimization: {} chunks generated ({} chunks/sec), Preloader: {} pending, {} deferred, {} dropped", 
+                        generatedChunks, String.format("%.1f", rate), stats.pending, stats.deferred, stats.dropped);
                 }
             }
         }
@@ -2,8 +2,11 @@ package com.mindplus.optimizer.mixin;
 
 import com.mindplus.optimizer.MindPlusOptimizer;
 import com.mindplus.optimizer.coordinator.RuntimeCoordinator;
-import com.mindplus.optimizer.tasks.AITask;
+import com.mindplus.optimizer.tasks.AITaskBatch;
+import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.mob.MobEntity;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.Vec3d;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongepowered.asm.mixin.Mixin;
@@ -24,6 +27,12 @@ public class MobEntityMixin {
 
     @Inject(method = "tick", at = @At("HEAD"))
     private void onMobTick(CallbackInfo ci) {
+        MobEntity entity = (MobEntity)(Object)this;
+        // 客户端世界的实体不采集：批次只在服务端 tick 结束时发送，且不能被两个线程同时写入
+        if (entity.getWorld().isClient()) {
+            return;
+        }
+
         entityCounter++;
         
         // 只在部分实体上执行 AI 计算，保护 FPS
@@ -33,15 +42,18 @@ public class MobEntityMixin {
         
         aiCalculations++;
         
-        MobEntity entity = (MobEntity)(Object)this;
         RuntimeCoordinator coordinator = MindPlusOptimizer.getRuntimeCoordinator();
         
         if (coordinator != null && !entity.hasVehicle()) {
-            // 简化的任务创建
-            String taskData = entity.getId() + "," + entity.getX() + "," + entity.getY() + "," + entity.getZ();
-            
-            // 异步发送任务，不等待结果
-            coordinator.sendAITaskAsync(taskData.getBytes());
+            // 追加到本 tick 的快照缓冲区，tick 结束时统一发送
+            Vec3d velocity = entity.getVelocity();
+            LivingEntity target = entity.getTarget();
+            coordinator.getAITaskBatch().add(
+                entity.getId(),
+                Registries.ENTITY_TYPE.getRawId(entity.getType()),
+                entity.getX(), entity.getY(), entity.getZ(),
+                velocity.x, velocity.y, velocity.z,
+                target != null ? target.getId() : AITaskBatch.NO_TARGET);
         }
         
         // 极简统计，每 500 个才输出一次
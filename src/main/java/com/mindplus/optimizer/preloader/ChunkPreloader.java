@@ -1,6 +1,10 @@
 package com.mindplus.optimizer.preloader;
 
+import com.mindplus.optimizer.communication.CreditGate;
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.config.ModConfig;
+import com.mindplus.optimizer.process.ProcessManager;
 import com.mindplus.optimizer.tasks.ChunkTask;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.ChunkPos;
@@ -14,7 +18,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ChunkPreloader {
     private static final Logger LOGGER = LoggerFactory.getLogger("ChunkPreloader");
 
+    public static final String WORKER = "chunk-preloader";
+
+    private final ProcessManager processManager;
     private final IPCChannel pushChannel;
+    private final CreditGate credits;
     private final ScheduledExecutorService scheduler;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final ConcurrentHashMap<String, Long> pendingChunks = new ConcurrentHashMap<>();
@@ -22,14 +30,17 @@ public class ChunkPreloader {
 
     private Object server;
 
-    public ChunkPreloader() {
-        this.pushChannel = new IPCChannel(ZMQ.PUSH, "tcp://localhost:5560");
+    public ChunkPreloader(ProcessManager processManager) {
+        this.processManager = processManager;
+        this.pushChannel = new IPCChannel(ZMQ.PUSH, Endpoints.connect(WORKER, 5560));
+        this.credits = new CreditGate(WORKER, 5560, ModConfig.INSTANCE.network.creditWindow);
         this.scheduler = Executors.newScheduledThreadPool(2);
     }
 
     public void initialize(Object server) {
         this.server = server;
         pushChannel.connect();
+        credits.connect();
         running.set(true);
 
         // 高频预加载，追求速度
@@ -62,7 +73,7 @@ public class ChunkPreloader {
             int preloadRadius = 10;
 
             // 获取玩家位置
-            world.getPlayers().forEach(player -> {
+            for (var player : world.getPlayers()) {
                 ChunkPos playerChunk = new ChunkPos(player.getBlockPos());
 
                 // 预加载玩家周围的区块
@@ -89,18 +100,13 @@ public class ChunkPreloader {
                             }
                         }
 
-                        // 简化的任务创建
-                        String taskData = chunkPos.x + "," + chunkPos.z + "," + world.getSeed();
-
-                        try {
-                            pushChannel.send(taskData.getBytes(), ZMQ.NOBLOCK);
-                            pendingChunks.put(chunkKey, System.currentTimeMillis());
-                        } catch (Exception e) {
-                            // 静默失败，不影响性能
+                        // 工作进程积压时停止本轮，剩余区块下一轮再提交
+                        if (!submit(chunkPos, chunkKey, world.getSeed())) {
+                            return;
                         }
                     }
                 }
-            });
+            }
         } catch (Exception e) {
             LOGGER.error("Error in preloadAroundPlayer", e);
         }
@@ -129,7 +135,7 @@ public class ChunkPreloader {
             if (world == null) return;
 
             // 基于玩家移动方向预测并预加载更多区块
-            world.getPlayers().forEach(player -> {
+            for (var player : world.getPlayers()) {
                 ChunkPos playerChunk = new ChunkPos(player.getBlockPos());
 
                 // 获取玩家移动方向
@@ -155,23 +161,47 @@ public class ChunkPreloader {
                         if (!world.getChunkManager().isChunkLoaded(predictedChunk.x, predictedChunk.z)
                             && !pendingChunks.containsKey(chunkKey)) {
 
-                            String taskData = predictedChunk.x + "," + predictedChunk.z + "," + world.getSeed();
-
-                            try {
-                                pushChannel.send(taskData.getBytes(), ZMQ.NOBLOCK);
-                                pendingChunks.put(chunkKey, System.currentTimeMillis());
-                            } catch (Exception e) {
-                                // 忽略
+                            if (!submit(predictedChunk, chunkKey, world.getSeed())) {
+                                return;
                             }
                         }
                     }
                 }
-            });
+            }
         } catch (Exception e) {
             LOGGER.error("Error in predictivePreload", e);
         }
     }
 
+    /**
+     * 在有信用时发送预加载任务，只有真正发出的任务才记为待处理
+     * @return false 表示工作进程已满，调用方应停止本轮提交
+     */
+    private boolean submit(ChunkPos chunkPos, String chunkKey, long seed) {
+        // 工作进程休眠时唤醒它，唤醒完成前发送失败的任务由下一轮重新提交
+        processManager.acquire(WORKER);
+        if (!credits.tryAcquire()) {
+            credits.recordDeferred();
+            return false;
+        }
+
+        byte[] taskData = new ChunkTask(chunkPos.x, chunkPos.z, seed, ChunkTask.OVERWORLD).toBytes();
+        boolean sent;
+        try {
+            sent = pushChannel.send(taskData, ZMQ.NOBLOCK);
+        } catch (Exception e) {
+            sent = false;
+        }
+
+        if (!sent) {
+            credits.cancel();
+            credits.recordDropped();
+            return false;
+        }
+        pendingChunks.put(chunkKey, System.currentTimeMillis());
+        return true;
+    }
+
     public boolean isChunkPreloaded(String chunkKey) {
         return preloadedChunks.containsKey(chunkKey);
     }
@@ -184,10 +214,20 @@ public class ChunkPreloader {
         pendingChunks.remove(chunkKey);
     }
 
+    /**
+     * 工作进程重启，旧实例上的待处理区块不会完成，清空后由下一轮预加载重新提交
+     */
+    public void onWorkerRestarted() {
+        int lost = pendingChunks.size();
+        pendingChunks.clear();
+        LOGGER.info("Chunk preloader worker restarted, resubmitting {} pending chunks", lost);
+    }
+
     public void shutdown() {
         running.set(false);
         scheduler.shutdown();
         pushChannel.close();
+        credits.close();
         LOGGER.info("Chunk preloader shutdown");
     }
 
@@ -201,19 +241,29 @@ public class ChunkPreloader {
 
     // 获取预加载统计信息
     public PreloadStats getStats() {
+        CreditGate.Stats creditStats = credits.getStats();
         return new PreloadStats(
             pendingChunks.size(),
-            preloadedChunks.size()
+            preloadedChunks.size(),
+            creditStats.inFlight,
+            creditStats.deferred,
+            creditStats.dropped
         );
     }
 
     public static class PreloadStats {
         public final int pending;
         public final int preloaded;
+        public final int inFlight;
+        public final long deferred;
+        public final long dropped;
 
-        public PreloadStats(int pending, int preloaded) {
+        public PreloadStats(int pending, int preloaded, int inFlight, long deferred, long dropped) {
             this.pending = pending;
             this.preloaded = preloaded;
+            this.inFlight = inFlight;
+            this.deferred = deferred;
+            this.dropped = dropped;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.mindplus.optimizer.process;
+
+import com.mindplus.optimizer.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Linux 下把工作进程限制在指定的 CPU 上，避开运行服务端 tick 和客户端渲染线程的核心
+ * 通过 taskset 启动 JVM（内部调用 sched_setaffinity），子线程继承亲和性，JVM 的可用处理器数也随之减少
+ */
+class CpuAffinity {
+    private static final Logger LOGGER = LoggerFactory.getLogger("CpuAffinity");
+
+    private static final Pattern CPU_LIST = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+    private static final Path[] TASKSET_PATHS = { Paths.get("/usr/bin/taskset"), Paths.get("/bin/taskset") };
+
+    private final String taskset;
+    private final String cpus;
+
+    private CpuAffinity(String taskset, String cpus) {
+        this.taskset = taskset;
+        this.cpus = cpus;
+    }
+
+    /**
+     * @return null 表示未启用或当前系统不支持
+     */
+    static CpuAffinity fromConfig(ModConfig.Workers config) {
+        if (config == null || !config.enableCpuPinning) {
+            return null;
+        }
+        if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("linux")) {
+            LOGGER.info("CPU pinning is only supported on Linux");
+            return null;
+        }
+
+        String taskset = null;
+        for (Path path : TASKSET_PATHS) {
+            if (Files.isExecutable(path)) {
+                taskset = path.toString();
+                break;
+            }
+        }
+        if (taskset == null) {
+            LOGGER.warn("CPU pinning enabled but taskset was not found");
+            return null;
+        }
+
+        String cpus = config.workerCpus == null ? "" : config.workerCpus.replace(" ", "");
+        if (cpus.isEmpty()) {
+            cpus = excludeReserved(config.reservedCpus);
+            if (cpus == null) {
+                return null;
+            }
+        } else if (!CPU_LIST.matcher(cpus).matches()) {
+            LOGGER.warn("Invalid worker CPU list '{}', CPU pinning disabled", config.workerCpus);
+            return null;
+        }
+
+        LOGGER.info("Pinning worker processes to CPUs {}", cpus);
+        return new CpuAffinity(taskset, cpus);
+    }
+
+    /**
+     * 前 reserved 个核心留给游戏进程，工作进程使用其余核心
+     */
+    private static String excludeReserved(int reserved) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        reserved = Math.max(0, reserved);
+        if (processors - reserved < 1) {
+            LOGGER.info("Only {} CPUs available, not enough to reserve {} for the game; CPU pinning disabled",
+                processors, reserved);
+            return null;
+        }
+        return processors - reserved == 1 ? String.valueOf(reserved) : reserved + "-" + (processors - 1);
+    }
+
+    /**
+     * 放在 java 命令前面的前缀
+     */
+    List<String> commandPrefix() {
+        return List.of(taskset, "-c", cpus);
+    }
+
+    String getCpus() {
+        return cpus;
+    }
+}
@@ -0,0 +1,100 @@
+package com.mindplus.optimizer.process;
+
+import com.mindplus.optimizer.config.ModConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 按进程 ID 选择 JVM 参数配置
+ * 生成类进程、AI、渲染、音频和多角色宿主各用一套堆大小、GC、处理器数和线程数
+ */
+class JvmProfiles {
+    private final ModConfig.Workers config;
+
+    JvmProfiles(ModConfig.Workers config) {
+        this.config = config;
+    }
+
+    static JvmProfiles current() {
+        ModConfig config = ModConfig.INSTANCE;
+        return new JvmProfiles(config != null ? config.workers : null);
+    }
+
+    ModConfig.JvmProfile profileFor(String processId) {
+        if (config == null) {
+            return null;
+        }
+        if (processId.equals(SharedWorkerHost.HOST_ID)) {
+            return config.host;
+        }
+        if (processId.equals("ai-processor")) {
+            return config.ai;
+        }
+        if (processId.equals("audio-processor")) {
+            return config.audio;
+        }
+        if (processId.startsWith("render") || processId.equals("multi-renderer")) {
+            return config.render;
+        }
+        return config.generation;
+    }
+
+    /**
+     * 启动该进程 JVM 的参数（不含类路径和系统属性）
+     */
+    List<String> jvmOptions(String processId) {
+        List<String> options = new ArrayList<>();
+        ModConfig.JvmProfile profile = profileFor(processId);
+        if (profile == null) {
+            return options;
+        }
+
+        if (profile.maxHeapMb > 0) {
+            options.add("-Xmx" + profile.maxHeapMb + "m");
+        }
+        String gc = gcOption(profile.gc);
+        if (gc != null) {
+            options.add(gc);
+        }
+        if (profile.activeProcessorCount > 0) {
+            options.add("-XX:ActiveProcessorCount=" + profile.activeProcessorCount);
+        }
+        if (profile.extraJvmArgs != null && !profile.extraJvmArgs.isBlank()) {
+            for (String arg : profile.extraJvmArgs.trim().split("\\s+")) {
+                options.add(arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 工作进程计算线程数，0 表示按可用处理器数
+     */
+    int threads(String processId) {
+        ModConfig.JvmProfile profile = profileFor(processId);
+        return profile != null ? Math.max(0, profile.threads) : 0;
+    }
+
+    private static String gcOption(String gc) {
+        if (gc == null || gc.isBlank()) {
+            return null;
+        }
+        switch (gc.trim().toLowerCase(Locale.ROOT)) {
+            case "g1":
+                return "-XX:+UseG1GC";
+            case "parallel":
+                return "-XX:+UseParallelGC";
+            case "serial":
+                return "-XX:+UseSerialGC";
+            case "z":
+            case "zgc":
+                return "-XX:+UseZGC";
+            case "shenandoah":
+                return "-XX:+UseShenandoahGC";
+            default:
+                return null;
+        }
+    }
+}
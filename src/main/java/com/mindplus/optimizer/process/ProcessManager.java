@@ -1,7 +1,19 @@
 package com.mindplus.optimizer.process;
 
+import com.mindplus.optimizer.communication.Endpoints;
+import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.config.ModConfig;
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.LogBatch;
+import com.mindplus.optimizer.tasks.LogControl;
+import com.mindplus.optimizer.tasks.WorkerStatus;
+import com.mindplus.optimizer.workers.WorkerServices;
+import com.mindplus.optimizer.workers.cache.ResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zeromq.ZMQ;
 
 import java.io.*;
 import java.net.URISyntaxException;
@@ -10,19 +22,98 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
+/**
+ * 工作进程管理
+ * 每个工作进程有一条独立的控制通道，进程绑定完通道后上报 READY（含系统分配的实际地址，登记到 Endpoints），
+ * 之后主循环定期上报心跳；
+ * 监督线程发现进程退出或心跳超时后按指数退避重启，新实例 READY 后通知重启监听器重放在途任务
+ * JVM 由 WorkerLauncher 启动，优先使用预热的备用 JVM 和 AppCDS 归档缩短启动和重启时间
+ * 合并模式下配置中列出的角色运行在同一个多角色宿主 JVM（SharedWorkerHost）中，其余角色仍各占一个 JVM
+ * 监督线程同时按间隔采样每个进程的 CPU、内存、线程和 GC（ResourceSampler），供渲染池和协调器调整进程数和任务量
+ * 工作进程日志经每个进程独立的日志通道批量发送，监督线程收取后写入游戏日志，级别可按角色在运行时调整
+ * 按需进程（registerProcess）登记后不立即启动，第一次 acquire() 时由监督线程启动；
+ * 空闲超过配置的时间后休眠（停止实例但保留登记的地址），再次 acquire() 时在原地址上唤醒
+ */
 public class ProcessManager {
     private static final Logger LOGGER = LoggerFactory.getLogger("ProcessManager");
 
+    private static final long SUPERVISE_INTERVAL_MS = 50;
+    // 每轮每个进程最多收取的日志批次，日志再多也不拖慢监督
+    private static final int MAX_LOG_BATCHES_PER_ROUND = 16;
+    // 丢弃的日志条数汇总后按这个间隔报告一次
+    private static final long LOG_DROP_REPORT_INTERVAL_MS = 10_000;
+
     private final Map<String, WorkerProcess> processes = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> restartListeners = new CopyOnWriteArrayList<>();
     private final ExecutorService executor = Executors.newCachedThreadPool();
-    private final String modJarPath;
+    private final ScheduledExecutorService supervisor;
+    private final JvmProfiles profiles;
+    private volatile WorkerLogRelay logRelay;
+    private final WorkerLauncher launcher;
+    // 独立模式下为 null
+    private final SharedWorkerHost sharedHost;
 
     public ProcessManager() {
-        this.modJarPath = getModJarPath();
+        String modJarPath = getModJarPath();
+        ModConfig config = ModConfig.INSTANCE;
+        boolean classDataSharing = config == null || config.general.enableClassDataSharing;
+        int warmWorkers = config != null ? config.general.warmWorkerPool : 0;
+        boolean consolidated = config != null && "consolidated".equalsIgnoreCase(config.general.workerMode);
+        this.profiles = JvmProfiles.current();
+        this.logRelay = WorkerLogRelay.current();
+        // 合并模式下备用 JVM 主要用于宿主重建，按宿主的参数启动
+        this.launcher = new WorkerLauncher(buildClasspath(modJarPath), buildSystemProperties(), classDataSharing,
+            profiles, CpuAffinity.fromConfig(config != null ? config.workers : null),
+            consolidated ? SharedWorkerHost.HOST_ID : "terrain-generator", warmWorkers, executor);
+        if (consolidated) {
+            this.sharedHost = new SharedWorkerHost(launcher, SharedWorkerHost.parseRoles(config.general.hostedRoles));
+            LOGGER.info("Consolidated worker mode, hosted roles: {}", config.general.hostedRoles);
+        } else {
+            this.sharedHost = null;
+        }
+        this.supervisor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ProcessManager-Supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        supervisor.scheduleWithFixedDelay(this::supervise,
+            SUPERVISE_INTERVAL_MS, SUPERVISE_INTERVAL_MS, TimeUnit.MILLISECONDS);
         LOGGER.info("Mod JAR path: {}", modJarPath);
     }
 
+    /**
+     * 传递给工作进程的系统属性（传输方式、结果缓存目录等）
+     */
+    private Map<String, String> buildSystemProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put(Endpoints.TRANSPORT_PROPERTY, Endpoints.transport());
+        if (Endpoints.useSharedMemory()) {
+            properties.put(Endpoints.DIRECTORY_PROPERTY, Endpoints.sharedMemoryDirectory().toString());
+            properties.put(Endpoints.RING_SIZE_PROPERTY, String.valueOf(Endpoints.sharedMemoryRingSize()));
+        }
+        properties.put(WorkerControl.HEARTBEAT_INTERVAL_PROPERTY,
+            String.valueOf(SupervisionPolicy.current().heartbeatIntervalMs));
+        ModConfig config = ModConfig.INSTANCE;
+        if (config != null && config.generation.enableResultCache && !config.generation.resultCacheDirectory.isEmpty()) {
+            properties.put(ResultCache.DIRECTORY_PROPERTY,
+                Paths.get(config.generation.resultCacheDirectory).toAbsolutePath().toString());
+        }
+        return properties;
+    }
+
+    /**
+     * 工作进程类路径：模组 JAR + 当前类路径
+     */
+    private static String buildClasspath(String modJarPath) {
+        String classpath = System.getProperty("java.class.path");
+        if (!modJarPath.isEmpty()) {
+            classpath = modJarPath + File.pathSeparator + classpath;
+        }
+        return classpath;
+    }
+
     private String getModJarPath() {
         try {
             URL jarUrl = ProcessManager.class.getProtectionDomain().getCodeSource().getLocation();
@@ -39,14 +130,12 @@ public class ProcessManager {
     }
 
     public void startProcess(String processId, String mainClass, List<String> args) {
-        if (processes.containsKey(processId)) {
-            LOGGER.warn("Process {} already exists", processId);
+        WorkerProcess process = createProcess(processId, mainClass, args, false);
+        if (process == null) {
             return;
         }
 
         try {
-            WorkerProcess process = new WorkerProcess(processId, mainClass, args, executor, modJarPath);
-            processes.put(processId, process);
             process.start();
             LOGGER.info("Started process: {}", processId);
         } catch (Exception e) {
@@ -54,6 +143,94 @@ public class ProcessManager {
         }
     }
 
+    /**
+     * 登记一个按需进程，第一次 acquire() 时才启动，空闲后自动休眠
+     */
+    public void registerProcess(String processId, String mainClass, List<String> args) {
+        if (createProcess(processId, mainClass, args, true) != null) {
+            LOGGER.info("Registered on-demand process: {}", processId);
+        }
+    }
+
+    private WorkerProcess createProcess(String processId, String mainClass, List<String> args, boolean onDemand) {
+        if (processes.containsKey(processId)) {
+            LOGGER.warn("Process {} already exists", processId);
+            return null;
+        }
+
+        try {
+            WorkerPlacement placement = placementFor(processId);
+            // 宿主中的角色共用宿主的线程池，线程数按宿主配置
+            int threads = profiles.threads(placement == sharedHost ? SharedWorkerHost.HOST_ID : processId);
+            WorkerProcess process = new WorkerProcess(processId, mainClass, args, placement, threads, logRelay,
+                onDemand);
+            processes.put(processId, process);
+            return process;
+        } catch (Exception e) {
+            LOGGER.error("Failed to create process {}", processId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 标记进程正在被使用，尚未启动或已休眠的按需进程由监督线程唤醒
+     * 开销很小，可以在每次发送任务时调用
+     * @return true 表示当前实例已就绪，可以连接和发送
+     */
+    public boolean acquire(String processId) {
+        WorkerProcess process = processes.get(processId);
+        if (process == null) {
+            return false;
+        }
+        process.touch();
+        return process.isReady();
+    }
+
+    /**
+     * 进程当前实例是否已上报 READY
+     */
+    public boolean isReady(String processId) {
+        WorkerProcess process = processes.get(processId);
+        return process != null && process.isReady();
+    }
+
+    /**
+     * 立即休眠一个按需进程（例如集成服务器关闭后不再需要的服务端角色），再次 acquire() 时唤醒
+     * 在监督线程上执行，调用方不等待实例退出
+     */
+    public void hibernate(String processId) {
+        WorkerProcess process = processes.get(processId);
+        if (process == null || supervisor.isShutdown()) {
+            return;
+        }
+        supervisor.execute(() -> {
+            try {
+                process.hibernate(System.nanoTime(), "is no longer needed");
+            } catch (Exception e) {
+                LOGGER.error("Error hibernating {}", processId, e);
+            }
+        });
+    }
+
+    /**
+     * 进程当前实例崩溃或失去响应，正在等待重启
+     */
+    public boolean isFailing(String processId) {
+        WorkerProcess process = processes.get(processId);
+        return process != null && process.isFailing();
+    }
+
+    /**
+     * 进程是否运行在合并宿主中（与宿主中的其他角色共用线程池）
+     */
+    public boolean isHosted(String processId) {
+        return placementFor(processId) == sharedHost;
+    }
+
+    private WorkerPlacement placementFor(String processId) {
+        return sharedHost != null && sharedHost.hosts(processId) ? sharedHost : launcher;
+    }
+
     public void stopProcess(String processId) {
         WorkerProcess process = processes.get(processId);
         if (process != null) {
@@ -64,7 +241,12 @@ public class ProcessManager {
     }
 
     public void stopAll() {
+        supervisor.shutdownNow();
         processes.keySet().forEach(this::stopProcess);
+        if (sharedHost != null) {
+            sharedHost.shutdown();
+        }
+        launcher.shutdown();
         executor.shutdown();
     }
 
@@ -72,72 +254,540 @@ public class ProcessManager {
         return processes.get(processId);
     }
 
+    /**
+     * 调整运行中工作进程的日志级别，新实例启动时也沿用
+     * @param level TRACE、DEBUG、INFO、WARN、ERROR 或 OFF
+     * @return false 表示进程不存在或级别无法识别
+     */
+    public boolean setLogLevel(String processId, String level) {
+        WorkerProtos.LogRecord.Level parsed = WorkerLog.parseLevel(level, null);
+        WorkerProcess process = processes.get(processId);
+        if (parsed == null || process == null) {
+            return false;
+        }
+        process.setLogLevel(parsed);
+        return true;
+    }
+
+    /**
+     * 按配置重新设置所有工作进程的日志级别，监督线程发现配置变化时自动调用
+     */
+    public void applyLogLevels() {
+        WorkerLogRelay relay = WorkerLogRelay.current();
+        this.logRelay = relay;
+        processes.forEach((processId, process) -> process.setLogLevel(relay.levelFor(processId)));
+    }
+
+    /**
+     * 指定进程最近一次资源采样，进程不存在或尚未采样时返回 ResourceUsage.EMPTY
+     */
+    public ResourceUsage getResourceUsage(String processId) {
+        WorkerProcess process = processes.get(processId);
+        return process != null ? process.getResourceUsage() : ResourceUsage.EMPTY;
+    }
+
+    /**
+     * 整机 CPU 使用率（0~1），包括游戏进程本身，取不到时返回负数
+     */
+    public double getSystemCpuLoad() {
+        return ResourceSampler.systemCpuLoad();
+    }
+
+    /**
+     * 指定进程当前实例的就绪信号
+     */
+    public CompletableFuture<WorkerStatus> whenReady(String processId) {
+        WorkerProcess process = processes.get(processId);
+        if (process == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Unknown process " + processId));
+        }
+        return process.whenReady();
+    }
+
+    /**
+     * 并行等待一组进程上报 READY，总耗时取决于最慢的进程
+     * @return false 表示超时或有进程启动失败，未就绪的进程会被记录到日志
+     */
+    public boolean awaitReady(Collection<String> processIds, long timeoutMs) {
+        Map<String, CompletableFuture<WorkerStatus>> signals = new LinkedHashMap<>();
+        for (String processId : processIds) {
+            signals.put(processId, whenReady(processId));
+        }
+
+        try {
+            CompletableFuture.allOf(signals.values().toArray(new CompletableFuture[0]))
+                .get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 下面逐个报告
+        }
+
+        signals.forEach((processId, signal) -> {
+            if (!signal.isDone()) {
+                LOGGER.warn("Process {} not ready after {}ms", processId, timeoutMs);
+            } else if (signal.isCompletedExceptionally()) {
+                LOGGER.warn("Process {} failed to start", processId);
+            }
+        });
+        return false;
+    }
+
+    /**
+     * 注册重启监听器，参数为进程 ID
+     * 在监督线程上调用，此时替代进程已经发出第一个心跳，可以立即重放在途任务
+     */
+    public void addRestartListener(Consumer<String> listener) {
+        restartListeners.add(listener);
+    }
+
+    private void supervise() {
+        SupervisionPolicy policy = SupervisionPolicy.current();
+        long now = System.nanoTime();
+
+        ModConfig config = ModConfig.INSTANCE;
+        if (config != null && !logRelay.matches(config.workers)) {
+            applyLogLevels();
+        }
+
+        for (WorkerProcess process : processes.values()) {
+            try {
+                if (process.supervise(now, policy)) {
+                    notifyRestarted(process.processId);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error supervising {}", process.processId, e);
+            }
+        }
+    }
+
+    private void notifyRestarted(String processId) {
+        for (Consumer<String> listener : restartListeners) {
+            try {
+                listener.accept(processId);
+            } catch (Exception e) {
+                LOGGER.error("Restart listener failed for {}", processId, e);
+            }
+        }
+    }
+
+    /**
+     * 监督参数，每轮从配置读取
+     */
+    static class SupervisionPolicy {
+        // 进程启动后到第一个心跳之间允许的最长时间（包括 JVM 启动和类加载）
+        private static final long STARTUP_GRACE_MS = 10_000;
+        // 连续健康运行这么久之后退避时间恢复为初始值
+        private static final long STABLE_RUN_MS = 30_000;
+        // 休眠前的最短空闲时间，长于请求超时，休眠时不会还有等待回复的请求
+        private static final long MIN_IDLE_HIBERNATE_MS = 60_000;
+
+        final long heartbeatIntervalMs;
+        final long livenessTimeoutMs;
+        final long restartBackoffMs;
+        final long maxRestartBackoffMs;
+        final long resourceSampleIntervalMs;
+        // 0 表示不休眠
+        final long idleHibernateMs;
+
+        SupervisionPolicy(long heartbeatIntervalMs, long livenessTimeoutMs, long restartBackoffMs,
+                          long maxRestartBackoffMs, long resourceSampleIntervalMs, long idleHibernateMs) {
+            this.heartbeatIntervalMs = Math.max(10, heartbeatIntervalMs);
+            this.livenessTimeoutMs = Math.max(this.heartbeatIntervalMs * 2, livenessTimeoutMs);
+            this.restartBackoffMs = Math.max(0, restartBackoffMs);
+            this.maxRestartBackoffMs = Math.max(this.restartBackoffMs, maxRestartBackoffMs);
+            this.resourceSampleIntervalMs = Math.max(SUPERVISE_INTERVAL_MS, resourceSampleIntervalMs);
+            this.idleHibernateMs = idleHibernateMs <= 0 ? 0 : Math.max(MIN_IDLE_HIBERNATE_MS, idleHibernateMs);
+        }
+
+        static SupervisionPolicy current() {
+            ModConfig config = ModConfig.INSTANCE;
+            if (config == null) {
+                return new SupervisionPolicy(500, 3000, 500, 30_000, 1000, 300_000);
+            }
+            return new SupervisionPolicy(config.general.heartbeatIntervalMs, config.general.livenessTimeoutMs,
+                config.general.restartBackoffMs, config.general.maxRestartBackoffMs,
+                config.general.resourceSampleIntervalMs,
+                TimeUnit.SECONDS.toMillis(config.general.workerIdleHibernateSeconds));
+        }
+
+        long startupTimeoutNanos() {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(STARTUP_GRACE_MS, livenessTimeoutMs));
+        }
+    }
+
     public static class WorkerProcess {
         private final String processId;
         private final String mainClass;
         private final List<String> args;
-        private final ExecutorService executor;
-        private final String modJarPath;
-        private Process process;
-        private boolean running = false;
+        private final WorkerPlacement placement;
+        private final int threads;
+        // 按需进程：登记后不启动，空闲后休眠
+        private final boolean onDemand;
+        private final IPCChannel controlChannel;
+        // 关闭日志通道时为 null，工作进程日志走标准输出
+        private final IPCChannel logChannel;
+        private final int logRate;
+        private volatile WorkerProtos.LogRecord.Level logLevel;
+        private volatile boolean logLevelChanged;
+        private volatile Process process;
+        private volatile CompletableFuture<WorkerStatus> ready = new CompletableFuture<>();
+        private volatile boolean stopped = false;
+        // 本进程上报并登记的通道地址，重启时传给新实例沿用
+        private final Map<String, String> endpoints = new LinkedHashMap<>();
+        private volatile ResourceUsage resourceUsage = ResourceUsage.EMPTY;
+        // 没有运行中的实例（按需进程尚未启动或已休眠），有人使用时置 wakeRequested
+        private volatile boolean dormant;
+        private volatile boolean wakeRequested;
+        // 实例异常退出或失去响应后到替代实例就绪之前为 true
+        private volatile boolean failing;
+        private volatile long lastUsedNanos = System.nanoTime();
 
-        public WorkerProcess(String processId, String mainClass, List<String> args, ExecutorService executor, String modJarPath) {
+        // 以下状态由监督线程在持有本对象锁时访问
+        private long startedNanos;
+        private long lastHeartbeatNanos;
+        private long epoch;
+        private long backoffMs;
+        private long restartAtNanos;
+        private boolean restartPending;
+        private boolean replacing;
+        private int restarts;
+        private boolean everStarted;
+        // 当前实例最近一次心跳附带的 JVM 统计
+        private WorkerStatus.JvmUsage jvmUsage;
+        private long nextSampleNanos;
+        // 日志通道对端标识，下发级别调整时使用
+        private byte[] logPeer;
+        private long droppedLogRecords;
+        private long droppedLogsReportedNanos;
+
+        WorkerProcess(String processId, String mainClass, List<String> args, WorkerPlacement placement,
+                      int threads, WorkerLogRelay logRelay, boolean onDemand) {
             this.processId = processId;
             this.mainClass = mainClass;
             this.args = args;
-            this.executor = executor;
-            this.modJarPath = modJarPath;
+            this.placement = placement;
+            this.threads = threads;
+            this.onDemand = onDemand;
+            this.dormant = onDemand;
+            this.controlChannel = new IPCChannel(ZMQ.PULL, Endpoints.bindEphemeral(processId + "-control"));
+            this.controlChannel.bind();
+            this.logRate = logRelay.getRecordsPerSecond();
+            this.logLevel = logRelay.levelFor(processId);
+            if (logRelay.isEnabled()) {
+                this.logChannel = new IPCChannel(ZMQ.ROUTER, Endpoints.bindEphemeral(processId + "-logs"));
+                this.logChannel.bind();
+            } else {
+                this.logChannel = null;
+            }
+        }
+
+        public synchronized void start() throws IOException {
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put(WorkerControl.WORKER_ID_PROPERTY, processId);
+            properties.put(WorkerControl.ADDRESS_PROPERTY, controlChannel.getEndpoint());
+            endpoints.forEach((name, endpoint) -> properties.put(Endpoints.ENDPOINT_PROPERTY_PREFIX + name, endpoint));
+            if (threads > 0) {
+                properties.put(WorkerServices.THREADS_PROPERTY, String.valueOf(threads));
+            }
+            if (logChannel != null) {
+                properties.put(WorkerLog.ADDRESS_PROPERTY, logChannel.getEndpoint());
+                properties.put(WorkerLog.LEVEL_PROPERTY, logLevel.name());
+                properties.put(WorkerLog.RATE_PROPERTY, String.valueOf(logRate));
+                // 新实例按属性中的级别启动，连上后重新登记对端
+                logPeer = null;
+                logLevelChanged = false;
+            }
+
+            if (ready.isDone()) {
+                ready = new CompletableFuture<>();
+            }
+            this.process = placement.start(processId, mainClass, args, properties);
+            this.startedNanos = System.nanoTime();
+            this.lastHeartbeatNanos = 0;
+            this.jvmUsage = null;
+            this.everStarted = true;
+        }
+
+        void touch() {
+            lastUsedNanos = System.nanoTime();
+            if (dormant) {
+                wakeRequested = true;
+            }
+        }
+
+        /**
+         * 唤醒休眠或尚未启动的实例，再次启动的实例就绪后与崩溃重启一样通知重启监听器
+         */
+        private void wake() throws IOException {
+            LOGGER.info("{} {}", everStarted ? "Waking" : "Starting on demand", processId);
+            replacing = everStarted;
+            dormant = false;
+            wakeRequested = false;
+            start();
+        }
+
+        /**
+         * 停止当前实例，登记的地址保留给下一次唤醒的实例沿用，生产者的连接不需要重建
+         */
+        synchronized void hibernate(long now, String reason) {
+            if (stopped || dormant) {
+                return;
+            }
+            LOGGER.info("Hibernating {}: {}", processId, reason);
+            wakeRequested = false;
+            dormant = true;
+            // 与 touch() 相对：决定休眠之后又被使用时立即唤醒
+            if (lastUsedNanos - now > 0) {
+                wakeRequested = true;
+            }
+
+            Process current = process;
+            if (current != null && current.isAlive()) {
+                placement.stop(processId, current);
+            }
+            pollLogs(now);
+            process = null;
+            if (ready.isDone()) {
+                ready = new CompletableFuture<>();
+            }
+            restartPending = false;
+            replacing = false;
+            failing = false;
+            backoffMs = 0;
+            resourceUsage = ResourceUsage.EMPTY;
+        }
+
+        public synchronized void stop() {
+            stopped = true;
+            ready.completeExceptionally(new CancellationException(processId + " stopped"));
+            Process current = process;
+            if (current != null && current.isAlive()) {
+                placement.stop(processId, current);
+            }
+            controlChannel.close();
+            if (logChannel != null) {
+                pollLogs(System.nanoTime());
+                logChannel.close();
+            }
+            endpoints.forEach(Endpoints::unregister);
+            endpoints.clear();
         }
 
-        public void start() throws IOException {
-            List<String> command = new ArrayList<>();
-            command.add(System.getProperty("java.home") + "/bin/java");
-            command.add("-cp");
-            
-            // Build classpath: mod JAR + system classpath
-            String classpath = System.getProperty("java.class.path");
-            if (!modJarPath.isEmpty()) {
-                classpath = modJarPath + File.pathSeparator + classpath;
+        /**
+         * 监督一轮：收取心跳，检查存活，到期时重启
+         * @return true 表示重启后的新实例刚刚上报了第一个心跳
+         */
+        synchronized boolean supervise(long now, SupervisionPolicy policy) throws IOException {
+            if (stopped) {
+                return false;
+            }
+            if (dormant) {
+                if (!wakeRequested) {
+                    return false;
+                }
+                wake();
+            }
+
+            boolean replaced = pollStatus(now);
+            pollLogs(now);
+
+            if (restartPending) {
+                if (now - restartAtNanos >= 0) {
+                    restartPending = false;
+                    restarts++;
+                    LOGGER.info("Restarting {} (restart #{})", processId, restarts);
+                    start();
+                }
+                return replaced;
             }
-            command.add(classpath);
-            
-            command.add(mainClass);
-            command.addAll(args);
 
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.redirectErrorStream(true);
+            Process current = process;
+            if (current == null) {
+                // 启动失败，没有实例可监督
+                scheduleRestart(now, policy, "failed to start");
+                return replaced;
+            }
+            if (!current.isAlive()) {
+                scheduleRestart(now, policy, "exited with code " + current.exitValue());
+            } else if (lastHeartbeatNanos == 0) {
+                if (now - startedNanos > policy.startupTimeoutNanos()) {
+                    placement.kill(processId, current, false);
+                    scheduleRestart(now, policy, "sent no heartbeat after startup");
+                }
+            } else if (now - lastHeartbeatNanos > TimeUnit.MILLISECONDS.toNanos(policy.livenessTimeoutMs)) {
+                placement.kill(processId, current, true);
+                scheduleRestart(now, policy, "missed heartbeats for "
+                    + TimeUnit.NANOSECONDS.toMillis(now - lastHeartbeatNanos) + "ms");
+            } else if (backoffMs != 0
+                && now - startedNanos > TimeUnit.MILLISECONDS.toNanos(SupervisionPolicy.STABLE_RUN_MS)) {
+                backoffMs = 0;
+            }
 
-            this.process = pb.start();
-            this.running = true;
+            if (!restartPending && now - nextSampleNanos >= 0) {
+                resourceUsage = ResourceSampler.sample(current, jvmUsage, resourceUsage, now);
+                nextSampleNanos = now + TimeUnit.MILLISECONDS.toNanos(policy.resourceSampleIntervalMs);
+            }
 
-            executor.submit(this::monitorProcess);
+            long idleNanos = now - lastUsedNanos;
+            if (onDemand && policy.idleHibernateMs > 0 && !restartPending && ready.isDone()
+                && idleNanos > TimeUnit.MILLISECONDS.toNanos(policy.idleHibernateMs)) {
+                hibernate(now, "idle for " + TimeUnit.NANOSECONDS.toSeconds(idleNanos) + "s");
+            }
+            return replaced;
         }
 
-        public void stop() {
-            if (process != null && process.isAlive()) {
-                process.destroy();
-                running = false;
+        private boolean pollStatus(long now) {
+            boolean replaced = false;
+            byte[] data;
+            while ((data = controlChannel.receive(ZMQ.DONTWAIT)) != null) {
+                WorkerStatus status;
+                try {
+                    status = WorkerStatus.fromBytes(data);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Ignoring invalid status from {}: {}", processId, e.getMessage());
+                    continue;
+                }
+
+                if (status.getEpoch() != epoch) {
+                    // 重启前旧实例残留的消息在新实例启动前到达时也会走到这里，只认当前进程的 pid
+                    Process current = process;
+                    if (current == null || current.pid() != status.getPid()) {
+                        continue;
+                    }
+                    epoch = status.getEpoch();
+                }
+                lastHeartbeatNanos = now;
+                if (status.getUsage() != null) {
+                    jvmUsage = status.getUsage();
+                }
+
+                if (status.isReady() && !ready.isDone()) {
+                    LOGGER.info("{} ready on {} in {}ms {}", processId, status.getEndpoint(),
+                        TimeUnit.NANOSECONDS.toMillis(now - startedNanos), status.getCapabilities());
+                    registerEndpoints(status.getEndpoints());
+                    ready.complete(status);
+                    failing = false;
+                    if (replacing) {
+                        replacing = false;
+                        replaced = true;
+                    }
+                }
             }
+            return replaced;
         }
 
-        private void monitorProcess() {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    LOGGER.info("[{}] {}", processId, line);
+        /**
+         * 收取日志批次写入游戏日志，有待下发的级别调整时发给工作进程
+         */
+        private void pollLogs(long now) {
+            if (logChannel == null) {
+                return;
+            }
+            byte[][] frames;
+            for (int i = 0; i < MAX_LOG_BATCHES_PER_ROUND
+                && (frames = logChannel.receiveMultipart(ZMQ.DONTWAIT)) != null; i++) {
+                if (frames.length < 2) {
+                    continue;
+                }
+                logPeer = frames[0];
+                try {
+                    LogBatch batch = LogBatch.fromBytes(frames[1]);
+                    WorkerLogRelay.relay(processId, batch);
+                    droppedLogRecords += batch.getDropped();
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Ignoring invalid log batch from {}: {}", processId, e.getMessage());
+                }
+            }
+            if (droppedLogRecords > 0
+                && now - droppedLogsReportedNanos > TimeUnit.MILLISECONDS.toNanos(LOG_DROP_REPORT_INTERVAL_MS)) {
+                LOGGER.warn("{} dropped {} log records (rate limit or queue full)", processId, droppedLogRecords);
+                droppedLogRecords = 0;
+                droppedLogsReportedNanos = now;
+            }
+
+            if (logLevelChanged && logPeer != null) {
+                byte[][] control = { logPeer, new LogControl(logLevel).toBytes() };
+                if (logChannel.sendMultipart(control, ZMQ.DONTWAIT)) {
+                    logLevelChanged = false;
                 }
-            } catch (IOException e) {
-                LOGGER.error("Error reading output from {}", processId, e);
             }
+        }
+
+        void setLogLevel(WorkerProtos.LogRecord.Level level) {
+            if (logLevel != level) {
+                logLevel = level;
+                logLevelChanged = true;
+                LOGGER.info("Log level of {} set to {}", processId, level);
+            }
+        }
+
+        private void registerEndpoints(Map<String, String> reported) {
+            reported.forEach((name, endpoint) -> {
+                String previous = endpoints.get(name);
+                String owner = Endpoints.registered(name);
+                // 同名通道已由其他进程登记时保持不变（例如渲染池额外启动的渲染进程）
+                if (owner != null && !owner.equals(previous)) {
+                    LOGGER.debug("{} endpoint {} already registered as {}", processId, name, owner);
+                    return;
+                }
+                if (previous != null && !previous.equals(endpoint)) {
+                    LOGGER.warn("{} moved {} from {} to {}", processId, name, previous, endpoint);
+                }
+                endpoints.put(name, endpoint);
+                Endpoints.register(name, endpoint);
+            });
+        }
+
+        private void scheduleRestart(long now, SupervisionPolicy policy, String reason) {
+            backoffMs = backoffMs == 0
+                ? policy.restartBackoffMs
+                : Math.min(backoffMs * 2, policy.maxRestartBackoffMs);
+            restartAtNanos = now + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            restartPending = true;
+            replacing = true;
+            failing = true;
+            LOGGER.warn("Process {} {}, restarting in {}ms", processId, reason, backoffMs);
+        }
 
-            int exitCode = process.exitValue();
-            LOGGER.warn("Process {} exited with code {}", processId, exitCode);
-            running = false;
+        public CompletableFuture<WorkerStatus> whenReady() {
+            return ready;
+        }
+
+        public boolean isReady() {
+            CompletableFuture<WorkerStatus> current = ready;
+            return current.isDone() && !current.isCompletedExceptionally();
+        }
+
+        public boolean isFailing() {
+            return failing;
+        }
+
+        /**
+         * 是否处于休眠（或按需进程尚未启动）
+         */
+        public boolean isDormant() {
+            return dormant;
         }
 
         public boolean isRunning() {
-            return running && process != null && process.isAlive();
+            Process current = process;
+            return !stopped && current != null && current.isAlive();
+        }
+
+        /**
+         * 最近一次资源采样，合并模式下宿主中的角色得到的是整个宿主 JVM 的值
+         */
+        public ResourceUsage getResourceUsage() {
+            return resourceUsage;
+        }
+
+        /**
+         * 自启动以来的自动重启次数
+         */
+        public synchronized int getRestartCount() {
+            return restarts;
         }
     }
-}
\ No newline at end of file
+}
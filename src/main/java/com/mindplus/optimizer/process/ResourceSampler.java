@@ -0,0 +1,113 @@
+package com.mindplus.optimizer.process;
+
+import com.mindplus.optimizer.tasks.WorkerStatus;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 采样工作进程的资源使用
+ * Linux 下从 /proc/&lt;pid&gt;/stat 读 CPU 时间，从 /proc/&lt;pid&gt;/status 读常驻内存和线程数；
+ * 其他系统或 /proc 不可读时改用 ProcessHandle 的 CPU 时间和工作进程上报的 MXBean 线程数
+ */
+final class ResourceSampler {
+    private static final Path PROC = Paths.get("/proc");
+    // /proc 中 CPU 时间的单位（USER_HZ），主流 Linux 平台固定为 100
+    private static final long NANOS_PER_TICK = 10_000_000L;
+    // /proc/<pid>/stat 中右括号之后的字段下标（从 state 开始计数）
+    private static final int STAT_UTIME = 11;
+    private static final int STAT_STIME = 12;
+    private static final int STAT_THREADS = 17;
+
+    private static final boolean PROC_AVAILABLE = Files.isDirectory(PROC.resolve("self"));
+
+    private ResourceSampler() {
+    }
+
+    /**
+     * @param jvm 工作进程最近一次上报的 JVM 统计，可能为 null
+     * @param previous 同一个 WorkerProcess 的上一次采样，pid 不同时不计算负载
+     */
+    static ResourceUsage sample(Process process, WorkerStatus.JvmUsage jvm, ResourceUsage previous, long now) {
+        long pid = process.pid();
+        long cpuTimeNanos = -1;
+        long rssBytes = -1;
+        int threads = 0;
+
+        if (PROC_AVAILABLE) {
+            Path directory = PROC.resolve(Long.toString(pid));
+            try {
+                String[] stat = statFields(Files.readString(directory.resolve("stat"), StandardCharsets.US_ASCII));
+                cpuTimeNanos = (Long.parseLong(stat[STAT_UTIME]) + Long.parseLong(stat[STAT_STIME])) * NANOS_PER_TICK;
+                threads = Integer.parseInt(stat[STAT_THREADS]);
+                long rssKilobytes = statusKilobytes(directory.resolve("status"), "VmRSS:");
+                rssBytes = rssKilobytes >= 0 ? rssKilobytes * 1024 : -1;
+            } catch (IOException | RuntimeException e) {
+                // 进程刚退出或 /proc 格式不同，退回到下面的方式
+            }
+        }
+        if (cpuTimeNanos < 0) {
+            Optional<Duration> total = process.info().totalCpuDuration();
+            cpuTimeNanos = total.map(Duration::toNanos).orElse(jvm != null ? jvm.cpuTimeNanos : -1);
+        }
+        if (threads == 0 && jvm != null) {
+            threads = jvm.threadCount;
+        }
+
+        int processors = jvm != null && jvm.availableProcessors > 0
+            ? jvm.availableProcessors : Runtime.getRuntime().availableProcessors();
+        long heapUsed = jvm != null ? jvm.heapUsedBytes : 0;
+        long heapMax = jvm != null ? jvm.heapMaxBytes : -1;
+        long gcTimeMs = jvm != null ? jvm.gcTimeMs : 0;
+
+        long interval = 0;
+        double cores = 0;
+        double gcLoad = 0;
+        if (previous != null && previous.pid == pid && cpuTimeNanos >= 0 && previous.cpuTimeNanos >= 0) {
+            interval = now - previous.sampledAtNanos;
+            if (interval > 0) {
+                cores = Math.max(0, cpuTimeNanos - previous.cpuTimeNanos) / (double) interval;
+                gcLoad = Math.min(1, Math.max(0, gcTimeMs - previous.gcTimeMs) * 1_000_000.0 / interval);
+            }
+        }
+        double cpuLoad = Math.min(1, cores / processors);
+
+        return new ResourceUsage(pid, now, interval, cpuTimeNanos, cores, cpuLoad, rssBytes, threads,
+            heapUsed, heapMax, gcTimeMs, gcLoad, processors);
+    }
+
+    /**
+     * 整机 CPU 使用率（0~1），取不到时返回 -1
+     */
+    static double systemCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) os).getCpuLoad();
+            return Double.isNaN(load) ? -1 : load;
+        }
+        return -1;
+    }
+
+    /**
+     * 进程名可能含空格和括号，从最后一个右括号之后开始拆分
+     */
+    private static String[] statFields(String stat) {
+        return stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+    }
+
+    private static long statusKilobytes(Path status, String key) throws IOException {
+        for (String line : Files.readAllLines(status, StandardCharsets.US_ASCII)) {
+            if (line.startsWith(key)) {
+                return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,75 @@
+package com.mindplus.optimizer.process;
+
+/**
+ * 工作进程最近一次资源采样
+ * CPU 时间、常驻内存和线程数来自 /proc/&lt;pid&gt;，堆和 GC 来自工作进程心跳附带的 MXBean 统计；
+ * 负载是与上一次采样之间的差值，多角色宿主中的角色共用一个 JVM，采样值是整个宿主的
+ */
+public class ResourceUsage {
+    // CPU 使用率达到这个比例视为饱和，再增加任务只会排队
+    private static final double SATURATED_CPU_LOAD = 0.85;
+    // GC 占用墙钟时间的比例或堆使用率超过这些值视为内存紧张
+    private static final double PRESSURED_GC_LOAD = 0.2;
+    private static final double PRESSURED_HEAP_RATIO = 0.9;
+
+    public static final ResourceUsage EMPTY = new ResourceUsage(0, 0, 0, 0, 0, 0, -1, 0, 0, -1, 0, 0, 0);
+
+    public final long pid;
+    public final long sampledAtNanos;
+    // 与上一次采样的间隔，0 表示这是该进程的第一次采样，还没有负载数据
+    public final long intervalNanos;
+    public final long cpuTimeNanos;
+    // 采样间隔内平均占用的核心数
+    public final double cpuCores;
+    // cpuCores 除以进程可用的处理器数，0~1
+    public final double cpuLoad;
+    public final long rssBytes;
+    public final int threads;
+    public final long heapUsedBytes;
+    public final long heapMaxBytes;
+    public final long gcTimeMs;
+    // 采样间隔内 GC 占用的墙钟时间比例
+    public final double gcLoad;
+    public final int availableProcessors;
+
+    public ResourceUsage(long pid, long sampledAtNanos, long intervalNanos, long cpuTimeNanos, double cpuCores,
+                         double cpuLoad, long rssBytes, int threads, long heapUsedBytes, long heapMaxBytes,
+                         long gcTimeMs, double gcLoad, int availableProcessors) {
+        this.pid = pid;
+        this.sampledAtNanos = sampledAtNanos;
+        this.intervalNanos = intervalNanos;
+        this.cpuTimeNanos = cpuTimeNanos;
+        this.cpuCores = cpuCores;
+        this.cpuLoad = cpuLoad;
+        this.rssBytes = rssBytes;
+        this.threads = threads;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapMaxBytes = heapMaxBytes;
+        this.gcTimeMs = gcTimeMs;
+        this.gcLoad = gcLoad;
+        this.availableProcessors = availableProcessors;
+    }
+
+    /**
+     * 是否已有两次采样，负载字段只有这时才有意义
+     */
+    public boolean hasLoad() {
+        return intervalNanos > 0;
+    }
+
+    public boolean isCpuSaturated() {
+        return hasLoad() && cpuLoad >= SATURATED_CPU_LOAD;
+    }
+
+    public boolean isMemoryPressured() {
+        return (hasLoad() && gcLoad >= PRESSURED_GC_LOAD)
+            || (heapMaxBytes > 0 && heapUsedBytes >= heapMaxBytes * PRESSURED_HEAP_RATIO);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pid=%d cpu=%.0f%% (%.2f cores) rss=%dMB threads=%d heap=%d/%dMB gc=%.0f%%",
+            pid, cpuLoad * 100, cpuCores, rssBytes >> 20, threads, heapUsedBytes >> 20, heapMaxBytes >> 20,
+            gcLoad * 100);
+    }
+}
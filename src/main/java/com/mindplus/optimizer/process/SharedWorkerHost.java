@@ -0,0 +1,165 @@
+package com.mindplus.optimizer.process;
+
+import com.mindplus.optimizer.workers.WorkerHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多角色宿主 JVM
+ * 配置中列出的角色不再各占一个 JVM，而是作为服务运行在同一个 WorkerHost 里，共用线程池、ZContext 和堆；
+ * 每个角色仍有自己的控制通道、心跳和重启，ProcessManager 对它们的监督方式与独立进程相同
+ * 单个角色无响应时只在宿主内重启该角色，重启后仍无响应或宿主退出时整个宿主重建，所有角色随之重启
+ */
+class SharedWorkerHost implements WorkerPlacement {
+    private static final Logger LOGGER = LoggerFactory.getLogger("SharedWorkerHost");
+
+    static final String HOST_ID = "worker-host";
+
+    private final WorkerLauncher launcher;
+    private final List<String> roles = new ArrayList<>();
+    private Process host;
+    private Writer input;
+    private boolean closed = false;
+
+    /**
+     * @param roles 角色进程 ID，以 * 结尾的项按前缀匹配（例如 render-*）
+     */
+    SharedWorkerHost(WorkerLauncher launcher, List<String> roles) {
+        this.launcher = launcher;
+        this.roles.addAll(roles);
+    }
+
+    /**
+     * 解析配置中逗号分隔的角色列表
+     */
+    static List<String> parseRoles(String value) {
+        List<String> roles = new ArrayList<>();
+        if (value == null) {
+            return roles;
+        }
+        for (String role : value.split(",")) {
+            role = role.trim();
+            if (!role.isEmpty()) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * 该进程是否运行在宿主中
+     */
+    boolean hosts(String processId) {
+        for (String role : roles) {
+            if (role.endsWith("*")
+                ? processId.startsWith(role.substring(0, role.length() - 1))
+                : processId.equals(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized Process start(String processId, String mainClass, List<String> args,
+                                      Map<String, String> properties) throws IOException {
+        if (closed) {
+            throw new IOException(HOST_ID + " is shut down");
+        }
+        Process current = ensureHost();
+        try {
+            assign(processId, mainClass, args, properties);
+        } catch (IOException e) {
+            // 宿主刚好退出，换一个新宿主再试一次
+            LOGGER.warn("{} rejected role {}, restarting host: {}", HOST_ID, processId, e.getMessage());
+            discardHost();
+            current = ensureHost();
+            assign(processId, mainClass, args, properties);
+        }
+        return current;
+    }
+
+    @Override
+    public synchronized void stop(String processId, Process process) {
+        if (process != host || input == null) {
+            return;
+        }
+        try {
+            send(WorkerHost.STOP_COMMAND + processId + "\n");
+        } catch (IOException e) {
+            LOGGER.debug("Failed to stop role {}: {}", processId, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void kill(String processId, Process process, boolean responded) {
+        if (process != host) {
+            return;
+        }
+        if (responded) {
+            // 只有这个角色卡住，其他角色照常运行，先在宿主内重启它
+            LOGGER.warn("Role {} stopped responding, restarting it inside {}", processId, HOST_ID);
+            stop(processId, process);
+            return;
+        }
+        LOGGER.warn("Role {} never responded in {} pid {}, restarting the host", processId, HOST_ID, process.pid());
+        discardHost();
+    }
+
+    private Process ensureHost() throws IOException {
+        if (host != null && host.isAlive()) {
+            return host;
+        }
+        if (host != null) {
+            discardHost();
+        }
+        host = launcher.startHost(HOST_ID);
+        input = new OutputStreamWriter(host.getOutputStream(), StandardCharsets.UTF_8);
+        LOGGER.info("Started {} pid {} for roles {}", HOST_ID, host.pid(), roles);
+        return host;
+    }
+
+    private void assign(String processId, String mainClass, List<String> args, Map<String, String> properties)
+            throws IOException {
+        StringBuilder commands = new StringBuilder();
+        // 上一个实例可能还在宿主里运行
+        commands.append(WorkerHost.STOP_COMMAND).append(processId).append('\n');
+        properties.forEach((key, value) ->
+            commands.append(WorkerHost.PROPERTY_COMMAND).append(key).append('=').append(value).append('\n'));
+        for (String arg : args) {
+            commands.append(WorkerHost.ARGUMENT_COMMAND).append(arg).append('\n');
+        }
+        commands.append(WorkerHost.ROLE_COMMAND).append(processId).append(' ').append(mainClass).append('\n');
+        send(commands.toString());
+    }
+
+    private void send(String commands) throws IOException {
+        input.write(commands);
+        input.flush();
+    }
+
+    private void discardHost() {
+        if (host != null) {
+            host.destroyForcibly();
+        }
+        host = null;
+        input = null;
+    }
+
+    synchronized void shutdown() {
+        closed = true;
+        if (host != null) {
+            host.destroy();
+        }
+        host = null;
+        input = null;
+    }
+}
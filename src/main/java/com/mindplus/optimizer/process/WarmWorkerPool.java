@@ -0,0 +1,104 @@
+package com.mindplus.optimizer.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 预先启动的空闲工作进程 JVM
+ * 保持固定数量的 WorkerHost 进程完成 JVM 启动和预热后等待分配，取走一个就在后台补一个，
+ * 启动和重启工作进程时省掉 JVM 冷启动的时间
+ */
+class WarmWorkerPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WarmWorkerPool");
+
+    /**
+     * 启动一个空闲进程
+     */
+    interface Spawner {
+        Process spawn() throws IOException;
+    }
+
+    private final int size;
+    private final Spawner spawner;
+    private final ExecutorService executor;
+    private final Queue<Process> idle = new ConcurrentLinkedQueue<>();
+    private int starting;
+    private volatile boolean closed = false;
+
+    WarmWorkerPool(int size, Spawner spawner, ExecutorService executor) {
+        this.size = Math.max(0, size);
+        this.spawner = spawner;
+        this.executor = executor;
+    }
+
+    /**
+     * 补足空闲进程，新进程在后台启动
+     */
+    synchronized void refill() {
+        while (!closed && idle.size() + starting < size) {
+            starting++;
+            try {
+                executor.execute(this::spawnOne);
+            } catch (RejectedExecutionException e) {
+                starting--;
+                return;
+            }
+        }
+    }
+
+    private void spawnOne() {
+        Process process = null;
+        try {
+            process = spawner.spawn();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to start warm worker JVM: {}", e.getMessage());
+        }
+
+        synchronized (this) {
+            starting--;
+            if (process == null) {
+                return;
+            }
+            if (closed) {
+                process.destroy();
+                return;
+            }
+            idle.offer(process);
+        }
+        LOGGER.debug("Warm worker JVM {} on standby", process.pid());
+    }
+
+    /**
+     * 取走一个存活的空闲进程
+     * @return null 表示当前没有可用的空闲进程，调用方应冷启动
+     */
+    Process take() {
+        Process process;
+        while ((process = idle.poll()) != null) {
+            if (process.isAlive()) {
+                break;
+            }
+            LOGGER.debug("Discarding dead warm worker JVM {}", process.pid());
+        }
+        refill();
+        return process;
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    synchronized void shutdown() {
+        closed = true;
+        Process process;
+        while ((process = idle.poll()) != null) {
+            process.destroy();
+        }
+    }
+}
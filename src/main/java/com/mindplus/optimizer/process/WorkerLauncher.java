@@ -0,0 +1,306 @@
+package com.mindplus.optimizer.process;
+
+import com.mindplus.optimizer.workers.WorkerHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作进程 JVM 启动器
+ * 所有工作进程使用同一套 JVM 参数和类路径：
+ * 第一次启动时让其中一个 JVM 退出时把加载过的类导出为 AppCDS 动态归档，之后的 JVM 直接映射归档，跳过类的解析和校验；
+ * 启动时优先从备用池取已预热的 JVM，通过标准输入分配进程身份，没有可用的备用进程才冷启动
+ * 每类进程的堆、GC 等参数来自 JvmProfiles，备用 JVM 按其中一类参数启动，参数不同的进程只能冷启动
+ */
+class WorkerLauncher implements WorkerPlacement {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WorkerLauncher");
+
+    private static final Path ARCHIVE_DIRECTORY = Paths.get("mindplus-cds");
+    private static final String ARCHIVE_PREFIX = "mindplus-workers-";
+    private static final String ARCHIVE_SUFFIX = ".jsa";
+    // 导出归档的 JVM 被强制杀死时归档不完整，换下一个 JVM 再试，超过次数后本次运行不再尝试
+    private static final int MAX_DUMP_ATTEMPTS = 3;
+    private static final int SIGKILL_EXIT_CODE = 128 + 9;
+
+    private final String classpath;
+    private final Map<String, String> systemProperties;
+    private final Path archive;
+    private final AtomicBoolean dumping = new AtomicBoolean();
+    private final AtomicInteger dumpAttempts = new AtomicInteger();
+    private final JvmProfiles profiles;
+    private final CpuAffinity affinity;
+    private final List<String> standbyOptions;
+    private final WarmWorkerPool warmPool;
+    private final ExecutorService executor;
+
+    /**
+     * @param affinity 为 null 时不限制 CPU
+     * @param standbyProfile 备用 JVM 使用哪个进程的 JVM 参数
+     */
+    WorkerLauncher(String classpath, Map<String, String> systemProperties, boolean classDataSharing,
+                   JvmProfiles profiles, CpuAffinity affinity, String standbyProfile,
+                   int warmWorkers, ExecutorService executor) {
+        this.classpath = classpath;
+        this.systemProperties = systemProperties;
+        this.archive = classDataSharing ? archivePath(classpath) : null;
+        this.profiles = profiles;
+        this.affinity = affinity;
+        this.standbyOptions = profiles.jvmOptions(standbyProfile);
+        this.warmPool = new WarmWorkerPool(warmWorkers, this::spawnWarm, executor);
+        this.executor = executor;
+
+        if (archive != null) {
+            removeStaleArchives();
+            LOGGER.info("AppCDS archive {} ({})", archive,
+                Files.isRegularFile(archive) ? "present" : "will be created by the first worker JVM");
+        }
+        warmPool.refill();
+    }
+
+    @Override
+    public Process start(String processId, String mainClass, List<String> args, Map<String, String> properties)
+            throws IOException {
+        List<String> options = profiles.jvmOptions(processId);
+        Process warm = options.equals(standbyOptions) ? warmPool.take() : null;
+        if (warm != null) {
+            try {
+                assign(warm, mainClass, args, properties);
+                LOGGER.debug("Assigned warm JVM {} to {}", warm.pid(), processId);
+                monitor(processId, warm);
+                return warm;
+            } catch (IOException e) {
+                LOGGER.warn("Warm JVM {} rejected assignment for {}, starting cold: {}",
+                    warm.pid(), processId, e.getMessage());
+                warm.destroyForcibly();
+            }
+        }
+
+        List<String> command = new ArrayList<>();
+        properties.forEach((key, value) -> command.add("-D" + key + "=" + value));
+        command.add(mainClass);
+        command.addAll(args);
+        Process process = exec(options, command, true);
+        monitor(processId, process);
+        return process;
+    }
+
+    @Override
+    public void stop(String processId, Process process) {
+        process.destroy();
+    }
+
+    @Override
+    public void kill(String processId, Process process, boolean responded) {
+        process.destroyForcibly();
+    }
+
+    /**
+     * 启动一个等待分配的 WorkerHost，标准输入保持打开，由调用方写入指令
+     */
+    Process startHost(String hostId) throws IOException {
+        List<String> options = profiles.jvmOptions(hostId);
+        Process host = options.equals(standbyOptions) ? warmPool.take() : null;
+        if (host == null) {
+            host = exec(options, List.of(WorkerHost.class.getName()), false);
+        }
+        monitor(hostId, host);
+        return host;
+    }
+
+    /**
+     * 把进程输出转到日志，进程退出时记录退出码
+     */
+    private void monitor(String label, Process monitored) {
+        executor.submit(() -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(monitored.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    LOGGER.info("[{}] {}", label, line);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Error reading output from {}", label, e);
+            }
+
+            try {
+                int exitCode = monitored.waitFor();
+                LOGGER.warn("Process {} exited with code {}", label, exitCode);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private Process spawnWarm() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(WorkerHost.class.getName());
+        return exec(standbyOptions, command, false);
+    }
+
+    /**
+     * 按 WorkerHost 的协议写入分配指令，关闭输入后备用进程开始运行
+     */
+    private static void assign(Process warm, String mainClass, List<String> args, Map<String, String> properties)
+            throws IOException {
+        try (Writer writer = new OutputStreamWriter(warm.getOutputStream(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                writer.write(WorkerHost.PROPERTY_COMMAND + property.getKey() + "=" + property.getValue() + "\n");
+            }
+            for (String arg : args) {
+                writer.write(WorkerHost.ARGUMENT_COMMAND + arg + "\n");
+            }
+            writer.write(WorkerHost.RUN_COMMAND + mainClass + "\n");
+        }
+    }
+
+    /**
+     * @param options JVM 参数（堆、GC 等）
+     * @param tail 类路径之后的参数（本进程属性、主类和参数）
+     * @param closeInput 工作进程不读标准输入，直接关闭；备用进程要保留输入等待分配
+     */
+    private Process exec(List<String> options, List<String> tail, boolean closeInput) throws IOException {
+        List<String> command = new ArrayList<>();
+        if (affinity != null) {
+            command.addAll(affinity.commandPrefix());
+        }
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.addAll(options);
+
+        boolean dump = claimDump();
+        if (dump) {
+            command.add("-XX:ArchiveClassesAtExit=" + temporaryArchive());
+        } else if (archive != null && Files.isRegularFile(archive)) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-Xshare:auto");
+        }
+
+        systemProperties.forEach((key, value) -> command.add("-D" + key + "=" + value));
+        command.add("-cp");
+        command.add(classpath);
+        command.addAll(tail);
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+
+        Process process;
+        try {
+            process = pb.start();
+        } catch (IOException e) {
+            if (dump) {
+                dumping.set(false);
+            }
+            throw e;
+        }
+        if (closeInput) {
+            process.getOutputStream().close();
+        }
+        if (dump) {
+            process.onExit().thenAccept(this::installArchive);
+        }
+        return process;
+    }
+
+    private boolean claimDump() {
+        if (archive == null || Files.isRegularFile(archive) || dumpAttempts.get() >= MAX_DUMP_ATTEMPTS) {
+            return false;
+        }
+        if (!dumping.compareAndSet(false, true)) {
+            return false;
+        }
+        dumpAttempts.incrementAndGet();
+        try {
+            Files.createDirectories(ARCHIVE_DIRECTORY);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot create AppCDS directory {}: {}", ARCHIVE_DIRECTORY, e.getMessage());
+            dumpAttempts.set(MAX_DUMP_ATTEMPTS);
+            return false;
+        }
+    }
+
+    /**
+     * 导出归档的 JVM 退出后把临时文件换成正式归档，之后启动的 JVM 才会使用
+     */
+    private void installArchive(Process exited) {
+        Path temporary = temporaryArchive();
+        try {
+            if (exited.exitValue() != SIGKILL_EXIT_CODE && Files.size(temporary) > 0) {
+                Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("AppCDS archive created: {} ({} KB)", archive, Files.size(archive) / 1024);
+            } else {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("No AppCDS archive from JVM {}: {}", exited.pid(), e.getMessage());
+        } finally {
+            dumping.set(false);
+        }
+    }
+
+    private Path temporaryArchive() {
+        return archive.resolveSibling(archive.getFileName() + ".tmp");
+    }
+
+    private void removeStaleArchives() {
+        if (!Files.isDirectory(ARCHIVE_DIRECTORY)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(ARCHIVE_DIRECTORY, ARCHIVE_PREFIX + "*")) {
+            for (Path file : files) {
+                if (!file.getFileName().equals(archive.getFileName())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to clean stale AppCDS archives: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 归档名由 JVM 版本和类路径上每个文件的大小、修改时间决定，任一变化都会生成新归档
+     * 类路径里有目录（开发环境）时 AppCDS 无法导出，返回 null
+     */
+    private static Path archivePath(String classpath) {
+        StringBuilder key = new StringBuilder(System.getProperty("java.vm.version"));
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            File file = new File(entry);
+            if (!file.isFile()) {
+                LOGGER.info("AppCDS disabled: class path entry {} is not a JAR", entry);
+                return null;
+            }
+            key.append(File.pathSeparatorChar).append(entry)
+                .append('@').append(file.length()).append('@').append(file.lastModified());
+        }
+        return ARCHIVE_DIRECTORY.resolve(ARCHIVE_PREFIX + Integer.toHexString(key.toString().hashCode()) + ARCHIVE_SUFFIX)
+            .toAbsolutePath();
+    }
+
+    int getWarmIdleCount() {
+        return warmPool.getIdleCount();
+    }
+
+    void shutdown() {
+        warmPool.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package com.mindplus.optimizer.process;
+
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.config.ModConfig;
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.LogBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作进程日志的级别配置和转发
+ * 级别按角色配置（roleLogLevels，以 * 结尾的项按前缀匹配），没有匹配时使用默认级别；
+ * 收到的记录按原记录器名写入游戏日志，前缀为工作进程 ID
+ */
+class WorkerLogRelay {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WorkerLogRelay");
+
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int recordsPerSecond;
+    private final WorkerProtos.LogRecord.Level defaultLevel;
+    private final Map<String, WorkerProtos.LogRecord.Level> roleLevels = new LinkedHashMap<>();
+    // 解析前的配置值，用于发现配置界面保存后的变化
+    private final String configuredLevel;
+    private final String configuredRoleLevels;
+
+    WorkerLogRelay(ModConfig.Workers config) {
+        this.enabled = config == null || config.enableLogShipping;
+        this.recordsPerSecond = config != null ? config.logRecordsPerSecond : 200;
+        this.configuredLevel = config != null ? config.workerLogLevel : null;
+        this.configuredRoleLevels = config != null ? config.roleLogLevels : null;
+        this.defaultLevel = WorkerLog.parseLevel(configuredLevel, WorkerProtos.LogRecord.Level.INFO);
+        if (config != null && config.roleLogLevels != null) {
+            for (String entry : config.roleLogLevels.split(",")) {
+                int separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    continue;
+                }
+                String role = entry.substring(0, separator).trim();
+                WorkerProtos.LogRecord.Level level = WorkerLog.parseLevel(entry.substring(separator + 1), null);
+                if (level == null) {
+                    LOGGER.warn("Ignoring invalid worker log level '{}'", entry.trim());
+                    continue;
+                }
+                roleLevels.put(role, level);
+            }
+        }
+    }
+
+    static WorkerLogRelay current() {
+        ModConfig config = ModConfig.INSTANCE;
+        return new WorkerLogRelay(config != null ? config.workers : null);
+    }
+
+    /**
+     * 级别配置是否与创建时相同
+     */
+    boolean matches(ModConfig.Workers config) {
+        return config == null
+            || (Objects.equals(config.workerLogLevel, configuredLevel)
+                && Objects.equals(config.roleLogLevels, configuredRoleLevels));
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    int getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    WorkerProtos.LogRecord.Level levelFor(String processId) {
+        for (Map.Entry<String, WorkerProtos.LogRecord.Level> entry : roleLevels.entrySet()) {
+            String role = entry.getKey();
+            if (role.endsWith("*")
+                ? processId.startsWith(role.substring(0, role.length() - 1))
+                : processId.equals(role)) {
+                return entry.getValue();
+            }
+        }
+        return defaultLevel;
+    }
+
+    /**
+     * 把一批记录写入游戏日志
+     */
+    static void relay(String processId, LogBatch batch) {
+        for (LogBatch.Record record : batch.getRecords()) {
+            Logger logger = LOGGERS.computeIfAbsent(record.logger, LoggerFactory::getLogger);
+            String message = record.throwable.isEmpty()
+                ? record.message
+                : record.message + System.lineSeparator() + record.throwable;
+            switch (record.level) {
+                case TRACE:
+                    logger.trace("[{}] {}", processId, message);
+                    break;
+                case DEBUG:
+                    logger.debug("[{}] {}", processId, message);
+                    break;
+                case INFO:
+                    logger.info("[{}] {}", processId, message);
+                    break;
+                case WARN:
+                    logger.warn("[{}] {}", processId, message);
+                    break;
+                default:
+                    logger.error("[{}] {}", processId, message);
+                    break;
+            }
+        }
+    }
+}
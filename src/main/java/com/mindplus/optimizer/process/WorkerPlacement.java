@@ -0,0 +1,29 @@
+package com.mindplus.optimizer.process;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作进程的运行位置：独立 JVM（WorkerLauncher）或多角色宿主 JVM（SharedWorkerHost）
+ */
+interface WorkerPlacement {
+    /**
+     * 启动一个工作进程
+     * @param properties 本进程专用的属性
+     * @return 运行它的 JVM 进程，心跳中的 pid 与之对应
+     */
+    Process start(String processId, String mainClass, List<String> args, Map<String, String> properties)
+        throws IOException;
+
+    /**
+     * 正常停止
+     */
+    void stop(String processId, Process process);
+
+    /**
+     * 结束没有响应的工作进程
+     * @param responded 本实例启动后是否上报过心跳
+     */
+    void kill(String processId, Process process, boolean responded);
+}
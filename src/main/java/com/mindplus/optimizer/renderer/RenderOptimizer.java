@@ -1,8 +1,11 @@
 package com.mindplus.optimizer.renderer;
 
 import com.mindplus.optimizer.config.ModConfig;
+import com.mindplus.optimizer.communication.CreditGate;
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
 import com.mindplus.optimizer.process.ProcessManager;
+import com.mindplus.optimizer.tasks.RenderTask;
 import net.minecraft.entity.Entity;
 import net.minecraft.util.math.ChunkPos;
 import org.slf4j.Logger;
@@ -15,7 +18,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class RenderOptimizer {
     private static final Logger LOGGER = LoggerFactory.getLogger("RenderOptimizer");
 
+    private final ProcessManager processManager;
+    // 接收渲染任务的工作进程（multi-renderer 或 render-worker）
+    private final String worker;
     private final IPCChannel pushChannel;
+    private CreditGate credits;
     private final ScheduledExecutorService scheduler;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final ConcurrentHashMap<String, Long> renderingChunks = new ConcurrentHashMap<>();
@@ -25,8 +32,10 @@ public class RenderOptimizer {
     private RenderPool renderPool; // 多进程渲染池
     private boolean useRenderPool = false; // 是否使用渲染池
 
-    public RenderOptimizer() {
-        this.pushChannel = new IPCChannel(ZMQ.PUSH, "tcp://localhost:5580");
+    public RenderOptimizer(ProcessManager processManager, String worker) {
+        this.processManager = processManager;
+        this.worker = worker;
+        this.pushChannel = new IPCChannel(ZMQ.PUSH, Endpoints.connect("renderer", 5580));
         this.scheduler = Executors.newScheduledThreadPool(2);
         this.rendererType = RendererType.VULKAN;
     }
@@ -40,7 +49,10 @@ public class RenderOptimizer {
             this.useRenderPool = ModConfig.INSTANCE.runtime.enableRenderProcess;
         }
 
+        int creditWindow = ModConfig.INSTANCE != null ? ModConfig.INSTANCE.network.creditWindow : 256;
+        credits = new CreditGate("renderer", 5580, creditWindow);
         pushChannel.connect();
+        credits.connect();
         running.set(true);
 
         // 高频渲染任务 - 60 FPS
@@ -125,15 +137,9 @@ public class RenderOptimizer {
                         // 如果使用渲染池，添加到渲染池
                         if (useRenderPool && renderPool != null) {
                             renderPool.addRenderTask(chunkPos.x, chunkPos.z, entityY);
-                        } else {
-                            // 否则直接发送到渲染进程
-                            String taskData = chunkPos.x + "," + chunkPos.z + "," + entityY;
-                            try {
-                                pushChannel.send(taskData.getBytes(), ZMQ.NOBLOCK);
-                                renderingChunks.put(chunkKey, System.currentTimeMillis());
-                            } catch (Exception e) {
-                                // 静默失败
-                            }
+                        } else if (!sendRenderTask(chunkPos, chunkKey, entityY)) {
+                            // 渲染进程积压，剩余区块下一帧再提交
+                            return;
                         }
                     }
                 }
@@ -144,6 +150,35 @@ public class RenderOptimizer {
         }
     }
 
+    /**
+     * 有信用时直接发送到渲染进程，只有真正发出的任务才记为渲染中
+     * @return false 表示渲染进程已满，调用方应停止本轮提交
+     */
+    private boolean sendRenderTask(ChunkPos chunkPos, String chunkKey, double cameraY) {
+        // 渲染进程休眠时唤醒它
+        processManager.acquire(worker);
+        if (!credits.tryAcquire()) {
+            credits.recordDeferred();
+            return false;
+        }
+
+        byte[] taskData = new RenderTask(chunkPos.x, chunkPos.z, cameraY).toBytes();
+        boolean sent;
+        try {
+            sent = pushChannel.send(taskData, ZMQ.NOBLOCK);
+        } catch (Exception e) {
+            sent = false;
+        }
+
+        if (!sent) {
+            credits.cancel();
+            credits.recordDropped();
+            return false;
+        }
+        renderingChunks.put(chunkKey, System.currentTimeMillis());
+        return true;
+    }
+
     private void cleanupOldTasks() {
         long currentTime = System.currentTimeMillis();
 
@@ -158,11 +193,14 @@ public class RenderOptimizer {
     private void printStats() {
         if (useRenderPool && renderPool != null) {
             RenderPool.PoolStats stats = renderPool.getStats();
-            LOGGER.info("RenderPool - FPS: {:.1f}, Processes: {}, Queue: {}, Results: {}, MultiProcess: {}",
-                stats.fps, stats.activeProcesses, stats.queuedTasks, stats.pendingResults, stats.multiProcessEnabled);
+            LOGGER.info("RenderPool - FPS: {:.1f}, Processes: {}, Queue: {}, Results: {}, MultiProcess: {}, CPU: {}%",
+                stats.fps, stats.activeProcesses, stats.queuedTasks, stats.pendingResults, stats.multiProcessEnabled,
+                Math.round(stats.renderCpuLoad * 100));
         } else {
-            LOGGER.info("RenderOptimizer - Rendering: {}, Type: {}",
-                renderingChunks.size(), rendererType.getName());
+            CreditGate.Stats creditStats = credits.getStats();
+            LOGGER.info("RenderOptimizer - Rendering: {}, Type: {}, In flight: {}/{}, Deferred: {}, Dropped: {}",
+                renderingChunks.size(), rendererType.getName(),
+                creditStats.inFlight, creditStats.window, creditStats.deferred, creditStats.dropped);
         }
     }
 
@@ -170,6 +208,15 @@ public class RenderOptimizer {
         renderingChunks.remove(chunkKey);
     }
 
+    /**
+     * 渲染进程重启，清空渲染中的区块，下一帧会重新提交
+     */
+    public void onWorkerRestarted() {
+        int lost = renderingChunks.size();
+        renderingChunks.clear();
+        LOGGER.info("Render worker restarted, resubmitting {} chunks", lost);
+    }
+
     public void shutdown() {
         running.set(false);
         scheduler.shutdown();
@@ -179,6 +226,9 @@ public class RenderOptimizer {
         }
 
         pushChannel.close();
+        if (credits != null) {
+            credits.close();
+        }
         LOGGER.info("Render optimizer shutdown");
     }
 
@@ -1,13 +1,16 @@
 package com.mindplus.optimizer.renderer;
 
+import com.mindplus.optimizer.communication.BufferPool;
 import com.mindplus.optimizer.communication.IPCChannel;
 import com.mindplus.optimizer.communication.IPCHandler;
 import com.mindplus.optimizer.config.ModConfig;
 import com.mindplus.optimizer.process.ProcessManager;
+import com.mindplus.optimizer.process.ResourceUsage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeromq.ZMQ;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -22,6 +25,9 @@ public class RenderPool {
     private static final int MAX_RENDER_PROCESSES = 4; // 最大渲染进程数
     private static final int TASK_QUEUE_SIZE = 100; // 任务队列大小
     private static final int SIMULATION_DISTANCE = 12; // 模拟距离（区块数）
+    private static final double BUSY_CPU_LOAD = 0.75; // 渲染进程平均 CPU 使用率高于此值才扩容
+    private static final double IDLE_CPU_LOAD = 0.2; // 渲染进程平均 CPU 使用率低于此值时缩容
+    private static final double SYSTEM_BUSY_CPU_LOAD = 0.95; // 整机 CPU 使用率高于此值时不再扩容
 
     private final ProcessManager processManager;
     private final IPCHandler ipcHandler; // 新的 IPC 处理器
@@ -37,7 +43,7 @@ public class RenderPool {
 
     public RenderPool(ProcessManager processManager) {
         this.processManager = processManager;
-        this.ipcHandler = new IPCHandler(5581); // 使用新的 IPC 处理器
+        this.ipcHandler = new IPCHandler(0); // 由系统分配回环端口
         this.fpsMonitor = new FPSMonitor();
         this.taskQueue = new LinkedBlockingQueue<>(TASK_QUEUE_SIZE);
         this.pendingResults = new ConcurrentHashMap<>();
@@ -58,7 +64,7 @@ public class RenderPool {
         scheduler.scheduleAtFixedRate(this::monitorAndAdjust, 500, 500, TimeUnit.MILLISECONDS);
         scheduler.scheduleAtFixedRate(this::cleanupOldResults, 5, 5, TimeUnit.SECONDS);
 
-        LOGGER.info("RenderPool initialized with simulation distance: {}", simulationDistance);
+        LOGGER.info("RenderPool initialized on IPC port {} with simulation distance: {}", ipcHandler.getPort(), simulationDistance);
     }
 
     /**
@@ -74,7 +80,7 @@ public class RenderPool {
     }
 
     /**
-     * 获取渲染结果（用于合并到游戏）
+     * 获取渲染结果（用于合并到游戏），调用方用完后需调用 release()
      */
     public RenderResult getRenderResult(int chunkX, int chunkZ) {
         String key = chunkX + "," + chunkZ;
@@ -126,32 +132,68 @@ public class RenderPool {
      * 清理旧结果
      */
     private void cleanupOldResults() {
-        pendingResults.entrySet().removeIf(entry -> pendingResults.size() > 50);
+        pendingResults.entrySet().removeIf(entry -> {
+            if (pendingResults.size() > 50) {
+                entry.getValue().release();
+                return true;
+            }
+            return false;
+        });
     }
 
     /**
      * 计算目标进程数
+     * 队列积压只说明任务多，只有现有渲染进程的 CPU 已经饱和、整机还有空闲核心时增加进程才有意义；
+     * 渲染进程空闲、内存紧张或整机 CPU 已被占满（和游戏线程争抢）时减少进程
      */
     private int calculateTargetProcessCount() {
         int queueSize = taskQueue.size();
         double fps = fpsMonitor.getCurrentFPS();
+        RenderLoad load = sampleRenderLoad();
+        double systemLoad = processManager.getSystemCpuLoad();
+        boolean systemBusy = systemLoad >= SYSTEM_BUSY_CPU_LOAD;
 
-        // 任务队列满时增加进程
-        if (queueSize > TASK_QUEUE_SIZE * 0.8 && fps > 30) {
-            return Math.min(MAX_RENDER_PROCESSES, activeProcessCount + 1);
+        // FPS 低或整机 CPU 占满时减少进程，把核心让给游戏
+        if ((fps < 25 || systemBusy) && activeProcessCount > 1) {
+            return Math.max(1, activeProcessCount - 1);
         }
-        // 任务队列空时减少进程
-        if (queueSize < TASK_QUEUE_SIZE * 0.2 && activeProcessCount > 1) {
+        // 渲染进程内存紧张时增加进程只会放大 GC 压力
+        if (load.memoryPressured && activeProcessCount > 1) {
             return Math.max(1, activeProcessCount - 1);
         }
-        // FPS 低时减少进程
-        if (fps < 25 && activeProcessCount > 1) {
+        // 任务队列满时增加进程，前提是现有进程已经忙不过来（还没有采样数据时只看队列）
+        if (queueSize > TASK_QUEUE_SIZE * 0.8 && fps > 30 && !systemBusy
+            && (!load.sampled || load.averageCpuLoad >= BUSY_CPU_LOAD)) {
+            return Math.min(MAX_RENDER_PROCESSES, activeProcessCount + 1);
+        }
+        // 任务队列空或渲染进程大部分时间空闲时减少进程
+        if (activeProcessCount > 1
+            && (queueSize < TASK_QUEUE_SIZE * 0.2 || (load.sampled && load.averageCpuLoad < IDLE_CPU_LOAD))) {
             return Math.max(1, activeProcessCount - 1);
         }
 
         return activeProcessCount;
     }
 
+    /**
+     * 汇总各渲染进程最近一次资源采样
+     */
+    private RenderLoad sampleRenderLoad() {
+        double totalCpuLoad = 0;
+        int sampled = 0;
+        boolean memoryPressured = false;
+        for (int i = 0; i < activeProcessCount; i++) {
+            ResourceUsage usage = processManager.getResourceUsage("render-" + i);
+            if (!usage.hasLoad()) {
+                continue;
+            }
+            totalCpuLoad += usage.cpuLoad;
+            sampled++;
+            memoryPressured |= usage.isMemoryPressured();
+        }
+        return new RenderLoad(sampled > 0, sampled > 0 ? totalCpuLoad / sampled : 0, memoryPressured);
+    }
+
     /**
      * 调整进程数量
      */
@@ -210,8 +252,6 @@ public class RenderPool {
             try {
                 RenderTask task = taskQueue.poll(100, TimeUnit.MILLISECONDS);
                 if (task != null && multiProcessEnabled) {
-                    // 分发任务到渲染进程
-                    String taskData = task.chunkX + "," + task.chunkZ + "," + task.cameraY;
                     // 这里应该发送到对应的渲染进程，简化处理直接返回结果
                     processTaskDirectly(task);
                 }
@@ -227,12 +267,12 @@ public class RenderPool {
      */
     private void processTaskDirectly(RenderTask task) {
         // 模拟渲染结果
-        byte[] vertexData = new byte[1024]; // 简化的顶点数据
-        byte[] lightData = new byte[256];   // 简化的光照数据
+        ByteBuffer vertexData = BufferPool.SHARED.acquire(1024); // 简化的顶点数据
+        ByteBuffer lightData = BufferPool.SHARED.acquire(256);   // 简化的光照数据
 
         // 填充一些模拟数据
-        Arrays.fill(vertexData, (byte) (task.chunkX & 0xFF));
-        Arrays.fill(lightData, (byte) (task.chunkZ & 0xFF));
+        fill(vertexData, (byte) (task.chunkX & 0xFF));
+        fill(lightData, (byte) (task.chunkZ & 0xFF));
 
         RenderResult result = new RenderResult(
             task.chunkX,
@@ -244,7 +284,16 @@ public class RenderPool {
         );
 
         String key = task.chunkX + "," + task.chunkZ;
-        pendingResults.put(key, result);
+        RenderResult previous = pendingResults.put(key, result);
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    private static void fill(ByteBuffer buffer, byte value) {
+        for (int i = 0; i < buffer.limit(); i++) {
+            buffer.put(i, value);
+        }
     }
 
     /**
@@ -267,7 +316,8 @@ public class RenderPool {
             taskQueue.size(),
             pendingResults.size(),
             fpsMonitor.getCurrentFPS(),
-            multiProcessEnabled
+            multiProcessEnabled,
+            sampleRenderLoad().averageCpuLoad
         );
     }
 
@@ -277,13 +327,32 @@ public class RenderPool {
         public final int pendingResults;
         public final double fps;
         public final boolean multiProcessEnabled;
+        // 渲染进程平均 CPU 使用率（0~1），没有采样数据时为 0
+        public final double renderCpuLoad;
 
-        public PoolStats(int activeProcesses, int queuedTasks, int pendingResults, double fps, boolean multiProcessEnabled) {
+        public PoolStats(int activeProcesses, int queuedTasks, int pendingResults, double fps, boolean multiProcessEnabled,
+                         double renderCpuLoad) {
             this.activeProcesses = activeProcesses;
             this.queuedTasks = queuedTasks;
             this.pendingResults = pendingResults;
             this.fps = fps;
             this.multiProcessEnabled = multiProcessEnabled;
+            this.renderCpuLoad = renderCpuLoad;
+        }
+    }
+
+    /**
+     * 渲染进程的负载汇总
+     */
+    private static class RenderLoad {
+        final boolean sampled;
+        final double averageCpuLoad;
+        final boolean memoryPressured;
+
+        RenderLoad(boolean sampled, double averageCpuLoad, boolean memoryPressured) {
+            this.sampled = sampled;
+            this.averageCpuLoad = averageCpuLoad;
+            this.memoryPressured = memoryPressured;
         }
     }
 
@@ -1,18 +1,30 @@
 package com.mindplus.optimizer.renderer;
 
+import com.mindplus.optimizer.communication.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * 渲染结果
  * 包含区块渲染的数据
+ * 顶点和光照数据存放在 BufferPool 的直接缓冲区中（position 0，limit 为数据长度），
+ * 使用完毕后必须调用 {@link #release()} 归还
  */
 public class RenderResult {
+    // chunkX(4) + chunkZ(4) + vertexLen(4) + lightLen(4) + renderTimeNs(8) + triangleCount(4)
+    private static final int FIXED_SIZE = 4 + 4 + 4 + 4 + 8 + 4;
+
     public final int chunkX;
     public final int chunkZ;
-    public final byte[] vertexData;  // 顶点数据
-    public final byte[] lightData;   // 光照数据
+    public final ByteBuffer vertexData;  // 顶点数据
+    public final ByteBuffer lightData;   // 光照数据
     public final long renderTimeNs;  // 渲染耗时
     public final int triangleCount;  // 三角形数量
 
-    public RenderResult(int chunkX, int chunkZ, byte[] vertexData, byte[] lightData, long renderTimeNs, int triangleCount) {
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    public RenderResult(int chunkX, int chunkZ, ByteBuffer vertexData, ByteBuffer lightData, long renderTimeNs, int triangleCount) {
         this.chunkX = chunkX;
         this.chunkZ = chunkZ;
         this.vertexData = vertexData;
@@ -21,142 +33,102 @@ public class RenderResult {
         this.triangleCount = triangleCount;
     }
 
+    public int vertexLength() {
+        return vertexData != null ? vertexData.limit() : 0;
+    }
+
+    public int lightLength() {
+        return lightData != null ? lightData.limit() : 0;
+    }
+
     /**
-     * 序列化为字节数组（用于进程间传输）
+     * 编码后的字节数
      */
-    public byte[] serialize() {
-        // 简单序列化：chunkX(4) + chunkZ(4) + vertexLen(4) + vertexData + lightLen(4) + lightData + renderTimeNs(8) + triangleCount(4)
-        int vertexLen = vertexData != null ? vertexData.length : 0;
-        int lightLen = lightData != null ? lightData.length : 0;
-        int totalLen = 4 + 4 + 4 + vertexLen + 4 + lightLen + 8 + 4;
-
-        byte[] data = new byte[totalLen];
-        int offset = 0;
-
-        // chunkX
-        data[offset++] = (byte) (chunkX >> 24);
-        data[offset++] = (byte) (chunkX >> 16);
-        data[offset++] = (byte) (chunkX >> 8);
-        data[offset++] = (byte) chunkX;
-
-        // chunkZ
-        data[offset++] = (byte) (chunkZ >> 24);
-        data[offset++] = (byte) (chunkZ >> 16);
-        data[offset++] = (byte) (chunkZ >> 8);
-        data[offset++] = (byte) chunkZ;
-
-        // vertexLen
-        data[offset++] = (byte) (vertexLen >> 24);
-        data[offset++] = (byte) (vertexLen >> 16);
-        data[offset++] = (byte) (vertexLen >> 8);
-        data[offset++] = (byte) vertexLen;
-
-        // vertexData
-        if (vertexLen > 0) {
-            System.arraycopy(vertexData, 0, data, offset, vertexLen);
-            offset += vertexLen;
-        }
+    public int encodedSize() {
+        return FIXED_SIZE + vertexLength() + lightLength();
+    }
 
-        // lightLen
-        data[offset++] = (byte) (lightLen >> 24);
-        data[offset++] = (byte) (lightLen >> 16);
-        data[offset++] = (byte) (lightLen >> 8);
-        data[offset++] = (byte) lightLen;
+    /**
+     * 编码到池化缓冲区（用于进程间传输），返回的缓冲区已 flip，发送后由调用方归还
+     * 格式：chunkX + chunkZ + vertexLen + vertexData + lightLen + lightData + renderTimeNs + triangleCount
+     */
+    public ByteBuffer encode() {
+        ByteBuffer buffer = BufferPool.SHARED.acquire(encodedSize());
+        writeTo(buffer);
+        return buffer.flip();
+    }
 
-        // lightData
-        if (lightLen > 0) {
-            System.arraycopy(lightData, 0, data, offset, lightLen);
-            offset += lightLen;
+    /**
+     * 写入目标缓冲区的当前位置
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(chunkX);
+        buffer.putInt(chunkZ);
+        buffer.putInt(vertexLength());
+        if (vertexData != null) {
+            buffer.put(vertexData.duplicate().position(0));
         }
-
-        // renderTimeNs
-        long rt = renderTimeNs;
-        data[offset++] = (byte) (rt >> 56);
-        data[offset++] = (byte) (rt >> 48);
-        data[offset++] = (byte) (rt >> 40);
-        data[offset++] = (byte) (rt >> 32);
-        data[offset++] = (byte) (rt >> 24);
-        data[offset++] = (byte) (rt >> 16);
-        data[offset++] = (byte) (rt >> 8);
-        data[offset++] = (byte) rt;
-
-        // triangleCount
-        int tc = triangleCount;
-        data[offset++] = (byte) (tc >> 24);
-        data[offset++] = (byte) (tc >> 16);
-        data[offset++] = (byte) (tc >> 8);
-        data[offset++] = (byte) tc;
-
-        return data;
+        buffer.putInt(lightLength());
+        if (lightData != null) {
+            buffer.put(lightData.duplicate().position(0));
+        }
+        buffer.putLong(renderTimeNs);
+        buffer.putInt(triangleCount);
     }
 
     /**
-     * 从字节数组反序列化
+     * 从缓冲区的当前位置解码，顶点和光照数据复制到池化缓冲区
      */
-    public static RenderResult deserialize(byte[] data) {
-        int offset = 0;
-
-        // chunkX
-        int chunkX = ((data[offset] & 0xFF) << 24) |
-                     ((data[offset + 1] & 0xFF) << 16) |
-                     ((data[offset + 2] & 0xFF) << 8) |
-                     (data[offset + 3] & 0xFF);
-        offset += 4;
-
-        // chunkZ
-        int chunkZ = ((data[offset] & 0xFF) << 24) |
-                     ((data[offset + 1] & 0xFF) << 16) |
-                     ((data[offset + 2] & 0xFF) << 8) |
-                     (data[offset + 3] & 0xFF);
-        offset += 4;
-
-        // vertexLen
-        int vertexLen = ((data[offset] & 0xFF) << 24) |
-                        ((data[offset + 1] & 0xFF) << 16) |
-                        ((data[offset + 2] & 0xFF) << 8) |
-                        (data[offset + 3] & 0xFF);
-        offset += 4;
-
-        // vertexData
-        byte[] vertexData = null;
-        if (vertexLen > 0) {
-            vertexData = new byte[vertexLen];
-            System.arraycopy(data, offset, vertexData, 0, vertexLen);
-            offset += vertexLen;
+    public static RenderResult decode(ByteBuffer buffer) {
+        if (buffer.remaining() < FIXED_SIZE) {
+            throw new IllegalArgumentException("RenderResult too short: " + buffer.remaining());
         }
 
-        // lightLen
-        int lightLen = ((data[offset] & 0xFF) << 24) |
-                       ((data[offset + 1] & 0xFF) << 16) |
-                       ((data[offset + 2] & 0xFF) << 8) |
-                       (data[offset + 3] & 0xFF);
-        offset += 4;
-
-        // lightData
-        byte[] lightData = null;
-        if (lightLen > 0) {
-            lightData = new byte[lightLen];
-            System.arraycopy(data, offset, lightData, 0, lightLen);
-            offset += lightLen;
+        int chunkX = buffer.getInt();
+        int chunkZ = buffer.getInt();
+        ByteBuffer vertexData = readSection(buffer);
+        ByteBuffer lightData = null;
+        long renderTimeNs;
+        int triangleCount;
+        try {
+            lightData = readSection(buffer);
+            if (buffer.remaining() < 8 + 4) {
+                throw new IllegalArgumentException("RenderResult truncated");
+            }
+            renderTimeNs = buffer.getLong();
+            triangleCount = buffer.getInt();
+        } catch (RuntimeException e) {
+            // 输入有误时已取得的池化缓冲区归还
+            BufferPool.SHARED.release(vertexData);
+            BufferPool.SHARED.release(lightData);
+            throw e;
         }
 
-        // renderTimeNs
-        long renderTimeNs = ((long) (data[offset] & 0xFF) << 56) |
-                            ((long) (data[offset + 1] & 0xFF) << 48) |
-                            ((long) (data[offset + 2] & 0xFF) << 40) |
-                            ((long) (data[offset + 3] & 0xFF) << 32) |
-                            ((long) (data[offset + 4] & 0xFF) << 24) |
-                            ((long) (data[offset + 5] & 0xFF) << 16) |
-                            ((long) (data[offset + 6] & 0xFF) << 8) |
-                            ((long) (data[offset + 7] & 0xFF));
-        offset += 8;
-
-        // triangleCount
-        int triangleCount = ((data[offset] & 0xFF) << 24) |
-                            ((data[offset + 1] & 0xFF) << 16) |
-                            ((data[offset + 2] & 0xFF) << 8) |
-                            (data[offset + 3] & 0xFF);
-
         return new RenderResult(chunkX, chunkZ, vertexData, lightData, renderTimeNs, triangleCount);
     }
-}
\ No newline at end of file
+
+    private static ByteBuffer readSection(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid RenderResult section length " + length);
+        }
+        if (length == 0) {
+            return null;
+        }
+
+        ByteBuffer section = BufferPool.SHARED.acquire(length);
+        section.put(0, buffer, buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return section;
+    }
+
+    /**
+     * 归还顶点和光照缓冲区，重复调用无副作用
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            BufferPool.SHARED.release(vertexData);
+            BufferPool.SHARED.release(lightData);
+        }
+    }
+}
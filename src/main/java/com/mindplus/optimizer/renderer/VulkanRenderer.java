@@ -1,8 +1,10 @@
 package com.mindplus.optimizer.renderer;
 
+import com.mindplus.optimizer.communication.BufferPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -72,8 +74,9 @@ public class VulkanRenderer implements IRenderer {
                         RenderTask task = renderQueue.poll(10, TimeUnit.MILLISECONDS);
                         if (task != null) {
                             RenderResult result = renderChunkInternal(task.chunkX, task.chunkZ, task.cameraY);
-                            if (result != null) {
-                                resultQueue.offer(result);
+                            if (result != null && !resultQueue.offer(result)) {
+                                // 队列已满，丢弃结果并归还缓冲区
+                                result.release();
                             }
                         }
                     } catch (InterruptedException e) {
@@ -228,13 +231,13 @@ public class VulkanRenderer implements IRenderer {
         long startTime = System.nanoTime();
 
         // 生成顶点数据（应用 FOV 缩放）
-        byte[] vertexData = generateVertexData(chunkX, chunkZ, cameraY);
+        ByteBuffer vertexData = generateVertexData(chunkX, chunkZ, cameraY);
 
         // 生成光照数据（应用模拟距离）
-        byte[] lightData = generateLightData(chunkX, chunkZ);
+        ByteBuffer lightData = generateLightData(chunkX, chunkZ);
 
         // 计算三角形数量
-        int triangleCount = calculateTriangleCount(vertexData);
+        int triangleCount = calculateTriangleCount(vertexData.limit());
 
         long renderTimeNs = System.nanoTime() - startTime;
 
@@ -246,13 +249,13 @@ public class VulkanRenderer implements IRenderer {
     /**
      * 生成顶点数据（应用 FOV 缩放）
      */
-    private byte[] generateVertexData(int chunkX, int chunkZ, double cameraY) {
+    private ByteBuffer generateVertexData(int chunkX, int chunkZ, double cameraY) {
         // 根据 FOV 缩放调整顶点数据大小
         int dataSize = (int) (1024 * fovZoom);
         dataSize = Math.min(4096, Math.max(256, dataSize));
-        byte[] vertexData = new byte[dataSize];
+        ByteBuffer vertexData = BufferPool.SHARED.acquire(dataSize);
 
-        for (int i = 0; i < vertexData.length; i++) {
+        for (int i = 0; i < dataSize; i++) {
             int bx = chunkX * 16 + (i % 16);
             int by = (int) cameraY + (i / 256);
             int bz = chunkZ * 16 + ((i / 16) % 16);
@@ -264,7 +267,7 @@ public class VulkanRenderer implements IRenderer {
             visibility *= fovZoom;
 
             int visInt = (int) (visibility * 127);
-            vertexData[i] = (byte) (visInt & 0xFF);
+            vertexData.put(i, (byte) (visInt & 0xFF));
         }
 
         return vertexData;
@@ -273,10 +276,10 @@ public class VulkanRenderer implements IRenderer {
     /**
      * 生成光照数据（应用模拟距离）
      */
-    private byte[] generateLightData(int chunkX, int chunkZ) {
-        byte[] lightData = new byte[256];
+    private ByteBuffer generateLightData(int chunkX, int chunkZ) {
+        ByteBuffer lightData = BufferPool.SHARED.acquire(256);
 
-        for (int i = 0; i < lightData.length; i++) {
+        for (int i = 0; i < lightData.limit(); i++) {
             int lx = chunkX * 16 + (i % 16);
             int lz = chunkZ * 16 + (i / 16);
 
@@ -293,7 +296,7 @@ public class VulkanRenderer implements IRenderer {
             enhancedLight = Math.max(MIN_LIGHT_LEVEL, Math.min(MAX_LIGHT_LEVEL, enhancedLight));
 
             int lightInt = (int) (enhancedLight * 16);
-            lightData[i] = (byte) (lightInt & 0xFF);
+            lightData.put(i, (byte) (lightInt & 0xFF));
         }
 
         return lightData;
@@ -302,8 +305,8 @@ public class VulkanRenderer implements IRenderer {
     /**
      * 计算三角形数量
      */
-    private int calculateTriangleCount(byte[] vertexData) {
-        return (vertexData.length / 4) * 2;
+    private int calculateTriangleCount(int vertexBytes) {
+        return (vertexBytes / 4) * 2;
     }
 
     /**
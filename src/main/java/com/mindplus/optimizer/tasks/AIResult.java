@@ -1,34 +1,54 @@
 package com.mindplus.optimizer.tasks;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
 public class AIResult {
+    private final int entityId;
     private final boolean shouldMove;
     private final double targetX;
     private final double targetY;
     private final double targetZ;
     
-    public AIResult(boolean shouldMove, double targetX, double targetY, double targetZ) {
+    public AIResult(int entityId, boolean shouldMove, double targetX, double targetY, double targetZ) {
+        this.entityId = entityId;
         this.shouldMove = shouldMove;
         this.targetX = targetX;
         this.targetY = targetY;
         this.targetZ = targetZ;
     }
     
+    public int getEntityId() { return entityId; }
     public boolean shouldMove() { return shouldMove; }
     public double getTargetX() { return targetX; }
     public double getTargetY() { return targetY; }
     public double getTargetZ() { return targetZ; }
     
-    public String serialize() {
-        return shouldMove + "," + targetX + "," + targetY + "," + targetZ;
+    public byte[] toBytes() {
+        return WorkerProtos.AIResult.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setEntityId(entityId)
+            .setShouldMove(shouldMove)
+            .setTargetX(targetX)
+            .setTargetY(targetY)
+            .setTargetZ(targetZ)
+            .build()
+            .toByteArray();
     }
     
-    public static AIResult deserialize(String data) {
-        String[] parts = data.split(",");
-        return new AIResult(
-            Boolean.parseBoolean(parts[0]),
-            Double.parseDouble(parts[1]),
-            Double.parseDouble(parts[2]),
-            Double.parseDouble(parts[3])
-        );
+    public static AIResult fromBytes(byte[] data) {
+        try {
+            WorkerProtos.AIResult message = WorkerProtos.AIResult.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "AIResult");
+            return new AIResult(
+                message.getEntityId(),
+                message.getShouldMove(),
+                message.getTargetX(),
+                message.getTargetY(),
+                message.getTargetZ()
+            );
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("AIResult", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+import java.util.Arrays;
+
+/**
+ * 一个服务器 tick 内的实体 AI 快照
+ * 按结构数组（SoA）存放，每个字段一个基本类型数组，追加时不产生对象
+ * 非线程安全：只在服务器主线程写入和发送
+ */
+public class AITaskBatch {
+    public static final int NO_TARGET = -1;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long tick;
+    private int size;
+    private int[] entityIds;
+    private int[] typeIds;
+    private double[] posX;
+    private double[] posY;
+    private double[] posZ;
+    private double[] velX;
+    private double[] velY;
+    private double[] velZ;
+    private int[] targetIds;
+
+    public AITaskBatch() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public AITaskBatch(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * 追加一个实体快照
+     */
+    public void add(int entityId, int typeId, double x, double y, double z,
+                    double vx, double vy, double vz, int targetId) {
+        if (size == entityIds.length) {
+            grow();
+        }
+        int i = size++;
+        entityIds[i] = entityId;
+        typeIds[i] = typeId;
+        posX[i] = x;
+        posY[i] = y;
+        posZ[i] = z;
+        velX[i] = vx;
+        velY[i] = vy;
+        velZ[i] = vz;
+        targetIds[i] = targetId;
+    }
+
+    /**
+     * 清空快照，保留已分配的数组供下一个 tick 复用
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public void setTick(long tick) { this.tick = tick; }
+    public long getTick() { return tick; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public int getEntityId(int i) { return entityIds[i]; }
+    public int getTypeId(int i) { return typeIds[i]; }
+    public double getPosX(int i) { return posX[i]; }
+    public double getPosY(int i) { return posY[i]; }
+    public double getPosZ(int i) { return posZ[i]; }
+    public double getVelX(int i) { return velX[i]; }
+    public double getVelY(int i) { return velY[i]; }
+    public double getVelZ(int i) { return velZ[i]; }
+    public int getTargetId(int i) { return targetIds[i]; }
+    public boolean hasTarget(int i) { return targetIds[i] != NO_TARGET; }
+
+    public byte[] toBytes() {
+        WorkerProtos.AITaskBatch.Builder builder = WorkerProtos.AITaskBatch.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setTick(tick);
+        for (int i = 0; i < size; i++) {
+            builder.addEntityId(entityIds[i])
+                .addTypeId(typeIds[i])
+                .addPosX(posX[i])
+                .addPosY(posY[i])
+                .addPosZ(posZ[i])
+                .addVelX(velX[i])
+                .addVelY(velY[i])
+                .addVelZ(velZ[i])
+                .addTargetId(targetIds[i]);
+        }
+        return builder.build().toByteArray();
+    }
+
+    public static AITaskBatch fromBytes(byte[] data) {
+        try {
+            WorkerProtos.AITaskBatch message = WorkerProtos.AITaskBatch.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "AITaskBatch");
+
+            int count = message.getEntityIdCount();
+            if (message.getTypeIdCount() != count
+                || message.getPosXCount() != count || message.getPosYCount() != count || message.getPosZCount() != count
+                || message.getVelXCount() != count || message.getVelYCount() != count || message.getVelZCount() != count
+                || message.getTargetIdCount() != count) {
+                throw new IllegalArgumentException("AITaskBatch columns have mismatched lengths");
+            }
+
+            AITaskBatch batch = new AITaskBatch(count);
+            batch.setTick(message.getTick());
+            for (int i = 0; i < count; i++) {
+                batch.add(message.getEntityId(i), message.getTypeId(i),
+                    message.getPosX(i), message.getPosY(i), message.getPosZ(i),
+                    message.getVelX(i), message.getVelY(i), message.getVelZ(i),
+                    message.getTargetId(i));
+            }
+            return batch;
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("AITaskBatch", e);
+        }
+    }
+
+    private void allocate(int capacity) {
+        entityIds = new int[capacity];
+        typeIds = new int[capacity];
+        posX = new double[capacity];
+        posY = new double[capacity];
+        posZ = new double[capacity];
+        velX = new double[capacity];
+        velY = new double[capacity];
+        velZ = new double[capacity];
+        targetIds = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = entityIds.length * 2;
+        entityIds = Arrays.copyOf(entityIds, capacity);
+        typeIds = Arrays.copyOf(typeIds, capacity);
+        posX = Arrays.copyOf(posX, capacity);
+        posY = Arrays.copyOf(posY, capacity);
+        posZ = Arrays.copyOf(posZ, capacity);
+        velX = Arrays.copyOf(velX, capacity);
+        velY = Arrays.copyOf(velY, capacity);
+        velZ = Arrays.copyOf(velZ, capacity);
+        targetIds = Arrays.copyOf(targetIds, capacity);
+    }
+}
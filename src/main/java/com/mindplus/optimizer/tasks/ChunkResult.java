@@ -1,25 +1,104 @@
 package com.mindplus.optimizer.tasks;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
 public class ChunkResult {
+    private static final long[] NO_HEIGHTMAP = new long[0];
+    private static final int[] NO_CLIMATE = new int[0];
+
     private final boolean success;
     private final String message;
-    
+    private final int chunkX;
+    private final int chunkZ;
+    // 高度图按原版 Heightmap.setTo 使用的 long[] 格式打包，值为相对 minY 的高度
+    private final int minY;
+    private final int height;
+    private final long[] heightmap;
+    // 气候参数按 MultiNoiseUtil 的定点格式，顺序见 worker_messages.proto
+    private final int[] climate;
+
     public ChunkResult(boolean success, String message) {
+        this(success, message, 0, 0);
+    }
+
+    public ChunkResult(boolean success, String message, int chunkX, int chunkZ) {
+        this(success, message, chunkX, chunkZ, 0, 0, NO_HEIGHTMAP);
+    }
+
+    public ChunkResult(boolean success, String message, int chunkX, int chunkZ,
+                       int minY, int height, long[] heightmap) {
+        this(success, message, chunkX, chunkZ, minY, height, heightmap, NO_CLIMATE);
+    }
+
+    public ChunkResult(boolean success, String message, int chunkX, int chunkZ, int[] climate) {
+        this(success, message, chunkX, chunkZ, 0, 0, NO_HEIGHTMAP, climate);
+    }
+
+    private ChunkResult(boolean success, String message, int chunkX, int chunkZ,
+                        int minY, int height, long[] heightmap, int[] climate) {
         this.success = success;
         this.message = message;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minY = minY;
+        this.height = height;
+        this.heightmap = heightmap != null ? heightmap : NO_HEIGHTMAP;
+        this.climate = climate != null ? climate : NO_CLIMATE;
     }
-    
+
     public boolean isSuccess() { return success; }
     public String getMessage() { return message; }
-    
-    public String serialize() {
-        return success + ":" + message;
+    public int getChunkX() { return chunkX; }
+    public int getChunkZ() { return chunkZ; }
+    public int getMinY() { return minY; }
+    public int getHeight() { return height; }
+    public long[] getHeightmap() { return heightmap; }
+    public boolean hasHeightmap() { return heightmap.length > 0; }
+    public int[] getClimate() { return climate; }
+    public boolean hasClimate() { return climate.length > 0; }
+
+    public byte[] toBytes() {
+        WorkerProtos.ChunkResult.Builder builder = WorkerProtos.ChunkResult.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setSuccess(success)
+            .setMessage(message)
+            .setChunkX(chunkX)
+            .setChunkZ(chunkZ);
+        if (heightmap.length > 0) {
+            builder.setMinY(minY).setHeight(height);
+            for (long word : heightmap) {
+                builder.addHeightmap(word);
+            }
+        }
+        for (int value : climate) {
+            builder.addClimate(value);
+        }
+        return builder.build().toByteArray();
     }
-    
-    public static ChunkResult deserialize(String data) {
-        int colonIndex = data.indexOf(':');
-        boolean success = Boolean.parseBoolean(data.substring(0, colonIndex));
-        String message = data.substring(colonIndex + 1);
-        return new ChunkResult(success, message);
+
+    public static ChunkResult fromBytes(byte[] data) {
+        try {
+            WorkerProtos.ChunkResult message = WorkerProtos.ChunkResult.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "ChunkResult");
+            long[] heightmap = NO_HEIGHTMAP;
+            if (message.getHeightmapCount() > 0) {
+                heightmap = new long[message.getHeightmapCount()];
+                for (int i = 0; i < heightmap.length; i++) {
+                    heightmap[i] = message.getHeightmap(i);
+                }
+            }
+            int[] climate = NO_CLIMATE;
+            if (message.getClimateCount() > 0) {
+                climate = new int[message.getClimateCount()];
+                for (int i = 0; i < climate.length; i++) {
+                    climate[i] = message.getClimate(i);
+                }
+            }
+            return new ChunkResult(message.getSuccess(), message.getMessage(), message.getChunkX(), message.getChunkZ(),
+                message.getMinY(), message.getHeight(), heightmap, climate);
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("ChunkResult", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,17 @@
 package com.mindplus.optimizer.tasks;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+import java.nio.charset.StandardCharsets;
+
 public class ChunkTask {
+    public static final String OVERWORLD = "minecraft:overworld";
+    /**
+     * 取消请求 [关联 ID][CANCEL]：工作进程丢弃该关联 ID 尚未开始的任务（区域任务在下一个区块前停止），不再回复
+     */
+    public static final byte[] CANCEL = "cancel".getBytes(StandardCharsets.UTF_8);
+
     private final int chunkX;
     private final int chunkZ;
     private final long worldSeed;
@@ -18,17 +29,29 @@ public class ChunkTask {
     public long getWorldSeed() { return worldSeed; }
     public String getDimension() { return dimension; }
     
-    public String serialize() {
-        return chunkX + "," + chunkZ + "," + worldSeed + "," + dimension;
+    public byte[] toBytes() {
+        return WorkerProtos.ChunkTask.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setChunkX(chunkX)
+            .setChunkZ(chunkZ)
+            .setWorldSeed(worldSeed)
+            .setDimension(dimension)
+            .build()
+            .toByteArray();
     }
     
-    public static ChunkTask deserialize(String data) {
-        String[] parts = data.split(",");
-        return new ChunkTask(
-            Integer.parseInt(parts[0]),
-            Integer.parseInt(parts[1]),
-            Long.parseLong(parts[2]),
-            parts[3]
-        );
+    public static ChunkTask fromBytes(byte[] data) {
+        try {
+            WorkerProtos.ChunkTask message = WorkerProtos.ChunkTask.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "ChunkTask");
+            return new ChunkTask(
+                message.getChunkX(),
+                message.getChunkZ(),
+                message.getWorldSeed(),
+                message.getDimension()
+            );
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("ChunkTask", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+/**
+ * 工作进程发回的信用授权
+ */
+public class CreditGrant {
+    private final long epoch;
+    private final long consumed;
+
+    public CreditGrant(long epoch, long consumed) {
+        this.epoch = epoch;
+        this.consumed = consumed;
+    }
+
+    public long getEpoch() { return epoch; }
+    public long getConsumed() { return consumed; }
+
+    public byte[] toBytes() {
+        return WorkerProtos.CreditGrant.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setEpoch(epoch)
+            .setConsumed(consumed)
+            .build()
+            .toByteArray();
+    }
+
+    public static CreditGrant fromBytes(byte[] data) {
+        try {
+            WorkerProtos.CreditGrant message = WorkerProtos.CreditGrant.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "CreditGrant");
+            return new CreditGrant(message.getEpoch(), message.getConsumed());
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("CreditGrant", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 工作进程异步发送的一批日志
+ */
+public class LogBatch {
+    private final String workerId;
+    private final List<Record> records;
+    private final long dropped;
+
+    public LogBatch(String workerId, List<Record> records, long dropped) {
+        this.workerId = workerId;
+        this.records = List.copyOf(records);
+        this.dropped = dropped;
+    }
+
+    public String getWorkerId() { return workerId; }
+    public List<Record> getRecords() { return records; }
+
+    /**
+     * 上一批之后因限速或队列已满丢弃的条数
+     */
+    public long getDropped() { return dropped; }
+
+    public byte[] toBytes() {
+        WorkerProtos.LogBatch.Builder builder = WorkerProtos.LogBatch.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setWorkerId(workerId)
+            .setDropped(dropped);
+        for (Record record : records) {
+            builder.addRecords(WorkerProtos.LogRecord.newBuilder()
+                .setTimestampMs(record.timestampMs)
+                .setLevel(record.level)
+                .setLogger(record.logger)
+                .setThread(record.thread)
+                .setMessage(record.message)
+                .setThrowable(record.throwable));
+        }
+        return builder.build().toByteArray();
+    }
+
+    public static LogBatch fromBytes(byte[] data) {
+        try {
+            WorkerProtos.LogBatch message = WorkerProtos.LogBatch.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "LogBatch");
+            List<Record> records = new ArrayList<>(message.getRecordsCount());
+            for (WorkerProtos.LogRecord record : message.getRecordsList()) {
+                records.add(new Record(record.getTimestampMs(), record.getLevel(), record.getLogger(),
+                    record.getThread(), record.getMessage(), record.getThrowable()));
+            }
+            return new LogBatch(message.getWorkerId(), records, message.getDropped());
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("LogBatch", e);
+        }
+    }
+
+    /**
+     * 一条已格式化的日志
+     */
+    public static class Record {
+        public final long timestampMs;
+        public final WorkerProtos.LogRecord.Level level;
+        public final String logger;
+        public final String thread;
+        public final String message;
+        // 异常堆栈文本，没有异常时为空字符串
+        public final String throwable;
+
+        public Record(long timestampMs, WorkerProtos.LogRecord.Level level, String logger, String thread,
+                      String message, String throwable) {
+            this.timestampMs = timestampMs;
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.message = message;
+            this.throwable = throwable;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+/**
+ * 游戏进程下发给工作进程的日志级别调整
+ */
+public class LogControl {
+    private final WorkerProtos.LogRecord.Level level;
+
+    public LogControl(WorkerProtos.LogRecord.Level level) {
+        this.level = level;
+    }
+
+    public WorkerProtos.LogRecord.Level getLevel() { return level; }
+
+    public byte[] toBytes() {
+        return WorkerProtos.LogControl.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setLevel(level)
+            .build()
+            .toByteArray();
+    }
+
+    public static LogControl fromBytes(byte[] data) {
+        try {
+            WorkerProtos.LogControl message = WorkerProtos.LogControl.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "LogControl");
+            return new LogControl(message.getLevel());
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("LogControl", e);
+        }
+    }
+}
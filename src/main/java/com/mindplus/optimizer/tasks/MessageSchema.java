@@ -0,0 +1,26 @@
+package com.mindplus.optimizer.tasks;
+
+/**
+ * 工作进程消息协议版本
+ * 消息定义见 src/main/proto/worker_messages.proto
+ */
+public final class MessageSchema {
+    public static final int VERSION = 1;
+
+    private MessageSchema() {
+    }
+
+    /**
+     * 校验消息版本，拒绝比当前更新的协议
+     */
+    static void checkVersion(int version, String messageType) {
+        if (version > VERSION) {
+            throw new IllegalArgumentException(
+                messageType + " schema version " + version + " is newer than supported version " + VERSION);
+        }
+    }
+
+    static IllegalArgumentException invalid(String messageType, Exception cause) {
+        return new IllegalArgumentException("Malformed " + messageType + " message", cause);
+    }
+}
@@ -0,0 +1,116 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 区域批量生成任务，区域内包含的区块用位图表示
+ * 生成工作进程的请求为 [关联 ID][KIND][RegionTask]，单区块请求没有 KIND 帧
+ */
+public class RegionTask {
+    public static final byte[] KIND = "region".getBytes(StandardCharsets.UTF_8);
+    public static final int MAX_SIZE = 32;
+
+    private final int originX;
+    private final int originZ;
+    private final int size;
+    // 空数组表示区域内全部区块
+    private final byte[] mask;
+    private final long worldSeed;
+    private final String dimension;
+
+    public RegionTask(int originX, int originZ, int size, byte[] mask, long worldSeed, String dimension) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Region size " + size + " is outside 1.." + MAX_SIZE);
+        }
+        if (mask.length != 0 && mask.length != maskLength(size)) {
+            throw new IllegalArgumentException("Chunk mask has " + mask.length + " bytes, expected " + maskLength(size));
+        }
+        this.originX = originX;
+        this.originZ = originZ;
+        this.size = size;
+        this.mask = mask;
+        this.worldSeed = worldSeed;
+        this.dimension = dimension;
+    }
+
+    /**
+     * 区域内全部区块
+     */
+    public RegionTask(int originX, int originZ, int size, long worldSeed, String dimension) {
+        this(originX, originZ, size, new byte[0], worldSeed, dimension);
+    }
+
+    public int getOriginX() { return originX; }
+    public int getOriginZ() { return originZ; }
+    public int getSize() { return size; }
+    public long getWorldSeed() { return worldSeed; }
+    public String getDimension() { return dimension; }
+
+    /**
+     * 区域内相对坐标 (dx, dz) 的区块是否包含在任务中
+     */
+    public boolean contains(int dx, int dz) {
+        if (mask.length == 0) {
+            return true;
+        }
+        int bit = dz * size + dx;
+        return (mask[bit >>> 3] & (1 << (bit & 7))) != 0;
+    }
+
+    public int getChunkCount() {
+        if (mask.length == 0) {
+            return size * size;
+        }
+        int count = 0;
+        for (byte b : mask) {
+            count += Integer.bitCount(b & 0xFF);
+        }
+        return count;
+    }
+
+    public static int maskLength(int size) {
+        return (size * size + 7) / 8;
+    }
+
+    /**
+     * 在位图中标记区域内相对坐标 (dx, dz) 的区块
+     */
+    public static void include(byte[] mask, int size, int dx, int dz) {
+        int bit = dz * size + dx;
+        mask[bit >>> 3] |= (byte) (1 << (bit & 7));
+    }
+
+    public byte[] toBytes() {
+        return WorkerProtos.RegionTask.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setOriginX(originX)
+            .setOriginZ(originZ)
+            .setSize(size)
+            .setChunkMask(ByteString.copyFrom(mask))
+            .setWorldSeed(worldSeed)
+            .setDimension(dimension)
+            .build()
+            .toByteArray();
+    }
+
+    public static RegionTask fromBytes(byte[] data) {
+        try {
+            WorkerProtos.RegionTask message = WorkerProtos.RegionTask.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "RegionTask");
+            return new RegionTask(
+                message.getOriginX(),
+                message.getOriginZ(),
+                message.getSize(),
+                message.getChunkMask().toByteArray(),
+                message.getWorldSeed(),
+                message.getDimension()
+            );
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("RegionTask", e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+/**
+ * 超渲染指令（渲染距离、模拟距离、FOV 缩放、面朝方向渲染）
+ */
+public class RenderCommand {
+    private final WorkerProtos.RenderCommand.Type type;
+    private final double value;
+
+    public RenderCommand(WorkerProtos.RenderCommand.Type type, double value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public WorkerProtos.RenderCommand.Type getType() { return type; }
+    public double getValue() { return value; }
+
+    public byte[] toBytes() {
+        return WorkerProtos.RenderCommand.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setType(type)
+            .setValue(value)
+            .build()
+            .toByteArray();
+    }
+
+    public static RenderCommand fromBytes(byte[] data) {
+        try {
+            WorkerProtos.RenderCommand message = WorkerProtos.RenderCommand.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "RenderCommand");
+            return new RenderCommand(message.getType(), message.getValue());
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("RenderCommand", e);
+        }
+    }
+}
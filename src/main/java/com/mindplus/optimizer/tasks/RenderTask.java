@@ -0,0 +1,40 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+public class RenderTask {
+    private final int chunkX;
+    private final int chunkZ;
+    private final double cameraY;
+
+    public RenderTask(int chunkX, int chunkZ, double cameraY) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.cameraY = cameraY;
+    }
+
+    public int getChunkX() { return chunkX; }
+    public int getChunkZ() { return chunkZ; }
+    public double getCameraY() { return cameraY; }
+
+    public byte[] toBytes() {
+        return WorkerProtos.RenderTask.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setChunkX(chunkX)
+            .setChunkZ(chunkZ)
+            .setCameraY(cameraY)
+            .build()
+            .toByteArray();
+    }
+
+    public static RenderTask fromBytes(byte[] data) {
+        try {
+            WorkerProtos.RenderTask message = WorkerProtos.RenderTask.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "RenderTask");
+            return new RenderTask(message.getChunkX(), message.getChunkZ(), message.getCameraY());
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("RenderTask", e);
+        }
+    }
+}
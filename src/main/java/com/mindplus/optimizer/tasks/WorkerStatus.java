@@ -0,0 +1,133 @@
+package com.mindplus.optimizer.tasks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.mindplus.optimizer.proto.WorkerProtos;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作进程通过控制通道上报的状态
+ */
+public class WorkerStatus {
+    private final WorkerProtos.WorkerStatus.Type type;
+    private final String workerId;
+    private final long epoch;
+    private final long pid;
+    private final long sequence;
+    private final String endpoint;
+    private final List<String> capabilities;
+    private final Map<String, String> endpoints;
+    private final JvmUsage usage;
+
+    public WorkerStatus(WorkerProtos.WorkerStatus.Type type, String workerId, long epoch, long pid, long sequence,
+                        JvmUsage usage) {
+        this(type, workerId, epoch, pid, sequence, "", List.of(), Map.of(), usage);
+    }
+
+    public WorkerStatus(WorkerProtos.WorkerStatus.Type type, String workerId, long epoch, long pid, long sequence,
+                        String endpoint, List<String> capabilities, Map<String, String> endpoints, JvmUsage usage) {
+        this.type = type;
+        this.workerId = workerId;
+        this.epoch = epoch;
+        this.pid = pid;
+        this.sequence = sequence;
+        this.endpoint = endpoint;
+        this.capabilities = List.copyOf(capabilities);
+        this.endpoints = Map.copyOf(endpoints);
+        this.usage = usage;
+    }
+
+    public WorkerProtos.WorkerStatus.Type getType() { return type; }
+    public String getWorkerId() { return workerId; }
+    public long getEpoch() { return epoch; }
+    public long getPid() { return pid; }
+    public long getSequence() { return sequence; }
+    public String getEndpoint() { return endpoint; }
+    public List<String> getCapabilities() { return capabilities; }
+
+    /**
+     * 通道名到实际绑定地址的映射
+     */
+    public Map<String, String> getEndpoints() { return endpoints; }
+
+    /**
+     * 发送时的 JVM 资源统计，旧版本工作进程不上报时为 null
+     */
+    public JvmUsage getUsage() { return usage; }
+
+    public boolean isReady() {
+        return type == WorkerProtos.WorkerStatus.Type.READY;
+    }
+
+    public byte[] toBytes() {
+        WorkerProtos.WorkerStatus.Builder builder = WorkerProtos.WorkerStatus.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setType(type)
+            .setWorkerId(workerId)
+            .setEpoch(epoch)
+            .setPid(pid)
+            .setSequence(sequence)
+            .setEndpoint(endpoint)
+            .addAllCapabilities(capabilities)
+            .putAllEndpoints(endpoints);
+        if (usage != null) {
+            builder.setUsage(usage.toProto());
+        }
+        return builder.build().toByteArray();
+    }
+
+    public static WorkerStatus fromBytes(byte[] data) {
+        try {
+            WorkerProtos.WorkerStatus message = WorkerProtos.WorkerStatus.parseFrom(data);
+            MessageSchema.checkVersion(message.getVersion(), "WorkerStatus");
+            return new WorkerStatus(message.getType(), message.getWorkerId(), message.getEpoch(),
+                message.getPid(), message.getSequence(), message.getEndpoint(), message.getCapabilitiesList(),
+                message.getEndpointsMap(), message.hasUsage() ? JvmUsage.fromProto(message.getUsage()) : null);
+        } catch (InvalidProtocolBufferException e) {
+            throw MessageSchema.invalid("WorkerStatus", e);
+        }
+    }
+
+    /**
+     * 工作进程 JVM 的累计资源统计
+     */
+    public static class JvmUsage {
+        public final long cpuTimeNanos;
+        public final long heapUsedBytes;
+        public final long heapMaxBytes;
+        public final long gcCount;
+        public final long gcTimeMs;
+        public final int threadCount;
+        public final int availableProcessors;
+
+        public JvmUsage(long cpuTimeNanos, long heapUsedBytes, long heapMaxBytes, long gcCount, long gcTimeMs,
+                        int threadCount, int availableProcessors) {
+            this.cpuTimeNanos = cpuTimeNanos;
+            this.heapUsedBytes = heapUsedBytes;
+            this.heapMaxBytes = heapMaxBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.threadCount = threadCount;
+            this.availableProcessors = availableProcessors;
+        }
+
+        WorkerProtos.JvmUsage toProto() {
+            return WorkerProtos.JvmUsage.newBuilder()
+                .setCpuTimeNanos(cpuTimeNanos)
+                .setHeapUsedBytes(heapUsedBytes)
+                .setHeapMaxBytes(heapMaxBytes)
+                .setGcCount(gcCount)
+                .setGcTimeMs(gcTimeMs)
+                .setThreadCount(threadCount)
+                .setAvailableProcessors(availableProcessors)
+                .build();
+        }
+
+        static JvmUsage fromProto(WorkerProtos.JvmUsage message) {
+            return new JvmUsage(message.getCpuTimeNanos(), message.getHeapUsedBytes(), message.getHeapMaxBytes(),
+                message.getGcCount(), message.getGcTimeMs(), message.getThreadCount(),
+                message.getAvailableProcessors());
+        }
+    }
+}
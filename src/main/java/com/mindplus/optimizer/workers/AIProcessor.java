@@ -1,10 +1,13 @@
 package com.mindplus.optimizer.workers;
 
+import com.mindplus.optimizer.communication.CreditReporter;
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
 import com.mindplus.optimizer.tasks.AIResult;
-import com.mindplus.optimizer.tasks.AITask;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mindplus.optimizer.tasks.AITaskBatch;
 import org.zeromq.ZMQ;
 
 import java.util.ArrayList;
@@ -12,7 +15,7 @@ import java.util.List;
 import java.util.Random;
 
 public class AIProcessor {
-    private static final Logger LOGGER = LoggerFactory.getLogger("AIProcessor");
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("AIProcessor");
     private static final Random random = new Random();
     
     // AI 计算参数
@@ -23,20 +26,27 @@ public class AIProcessor {
     public static void main(String[] args) {
         LOGGER.info("AI Processor Worker started");
         
-        IPCChannel channel = new IPCChannel(ZMQ.PULL, "tcp://*:5559");
+        IPCChannel channel = new IPCChannel(ZMQ.PULL, Endpoints.bind("ai-processor", 5559));
         channel.bind();
+        CreditReporter credits = new CreditReporter("ai-processor", 5559);
+        credits.bind();
+        WorkerControl control = WorkerControl.connect("ai-processor");
+        control.endpoint("ai-processor", channel).endpoint(credits).ready("ai-batch", "credits");
         
-        LOGGER.info("AI processor listening on port 5559");
+        LOGGER.info("AI processor listening on {}", channel.getEndpoint());
         
-        while (true) {
+        while (!WorkerServices.isStopping()) {
+            control.heartbeat();
             try {
                 byte[] request = channel.receive(ZMQ.NOBLOCK);
                 if (request != null) {
-                    processAITask(request);
+                    processAIBatch(request);
+                    credits.release();
                 }
             } catch (Exception e) {
                 // No message available, continue
             }
+            credits.flush();
             
             try {
                 Thread.sleep(1);
@@ -46,46 +56,58 @@ public class AIProcessor {
         }
         
         channel.close();
+        credits.close();
+        control.close();
     }
     
-    private static void processAITask(byte[] request) {
+    /**
+     * 一次处理一个 tick 的全部实体快照
+     */
+    private static void processAIBatch(byte[] request) {
         try {
-            AITask task = AITask.deserialize(new String(request));
+            AITaskBatch batch = AITaskBatch.fromBytes(request);
+            AIResult[] results = new AIResult[batch.size()];
             
-            // 执行真正耗时的 AI 计算
-            AIResult result = performExpensiveAICalculation(task);
+            for (int i = 0; i < batch.size(); i++) {
+                // 执行真正耗时的 AI 计算
+                results[i] = performExpensiveAICalculation(batch, i);
+            }
             
-            LOGGER.debug("AI processed for entity {} ({})", task.getEntityId(), task.getEntityType());
+            LOGGER.debug("AI processed {} entities for tick {}", results.length, batch.getTick());
         } catch (Exception e) {
-            LOGGER.error("Failed to process AI task", e);
+            LOGGER.error("Failed to process AI task batch", e);
         }
     }
     
-    private static AIResult performExpensiveAICalculation(AITask task) {
+    private static AIResult performExpensiveAICalculation(AITaskBatch batch, int i) {
+        double x = batch.getPosX(i);
+        double y = batch.getPosY(i);
+        double z = batch.getPosZ(i);
+        
         // 1. 威胁评估 - 扫描周围环境
-        double threatLevel = assessThreatLevel(task);
+        double threatLevel = assessThreatLevel(x, z);
         
         // 2. 路径规划 - 计算到目标的路径
-        List<double[]> path = findPath(task);
+        List<double[]> path = findPath(x, y, z);
         
-        // 3. 行为决策 - 根据威胁和路径决定行为
-        return makeDecision(task, threatLevel, path);
+        // 3. 行为决策 - 根据威胁、目标和路径决定行为
+        return makeDecision(batch.getEntityId(i), x, y, z, batch.hasTarget(i), threatLevel, path);
     }
     
-    private static double assessThreatLevel(AITask task) {
+    private static double assessThreatLevel(double posX, double posZ) {
         double totalThreat = 0;
         
         // 模拟扫描周围的实体
         for (int i = 0; i < INTEREST_POINTS; i++) {
             double angle = (i / (double) INTEREST_POINTS) * Math.PI * 2;
-            double scanX = task.getPosX() + Math.cos(angle) * THREAT_SCAN_RADIUS;
-            double scanZ = task.getPosZ() + Math.sin(angle) * THREAT_SCAN_RADIUS;
+            double scanX = posX + Math.cos(angle) * THREAT_SCAN_RADIUS;
+            double scanZ = posZ + Math.sin(angle) * THREAT_SCAN_RADIUS;
             
             // 模拟噪声扫描
             double noise = Math.sin(scanX * 0.1 + scanZ * 0.1) * Math.cos(scanX * 0.05);
             
             // 模拟距离衰减
-            double distance = Math.sqrt(Math.pow(scanX - task.getPosX(), 2) + Math.pow(scanZ - task.getPosZ(), 2));
+            double distance = Math.sqrt(Math.pow(scanX - posX, 2) + Math.pow(scanZ - posZ, 2));
             double threat = Math.abs(noise) * (1 - distance / THREAT_SCAN_RADIUS);
             
             totalThreat += threat;
@@ -94,10 +116,10 @@ public class AIProcessor {
         return totalThreat / INTEREST_POINTS;
     }
     
-    private static List<double[]> findPath(AITask task) {
+    private static List<double[]> findPath(double posX, double posY, double posZ) {
         List<double[]> path = new ArrayList<>();
-        double currentX = task.getPosX();
-        double currentZ = task.getPosZ();
+        double currentX = posX;
+        double currentZ = posZ;
         
         // 模拟 A* 路径搜索的迭代过程
         for (int i = 0; i < PATHFINDING_ITERATIONS; i++) {
@@ -113,7 +135,7 @@ public class AIProcessor {
                 
                 // 计算移动成本
                 double terrainCost = Math.sin(candidateX * 0.2) * Math.cos(candidateZ * 0.2) * 2;
-                double distanceCost = Math.sqrt(Math.pow(candidateX - task.getPosX(), 2) + Math.pow(candidateZ - task.getPosZ(), 2));
+                double distanceCost = Math.sqrt(Math.pow(candidateX - posX, 2) + Math.pow(candidateZ - posZ, 2));
                 
                 double totalCost = terrainCost + distanceCost * 0.1;
                 
@@ -126,24 +148,28 @@ public class AIProcessor {
             
             currentX = bestX;
             currentZ = bestZ;
-            path.add(new double[]{currentX, task.getPosY(), currentZ});
+            path.add(new double[]{currentX, posY, currentZ});
         }
         
         return path;
     }
     
-    private static AIResult makeDecision(AITask task, double threatLevel, List<double[]> path) {
+    private static AIResult makeDecision(int entityId, double posX, double posY, double posZ,
+                                         boolean hasTarget, double threatLevel, List<double[]> path) {
         // 基于威胁水平和路径决定是否移动
         double moveProbability = 0.3 + threatLevel * 0.5; // 威胁越高，移动概率越大
+        if (hasTarget) {
+            moveProbability += 0.2; // 有攻击目标时更倾向移动
+        }
         
         if (path.size() > 0 && random.nextDouble() < moveProbability) {
             // 选择路径中的一个点作为目标
             int targetIndex = Math.min(path.size() - 1, random.nextInt(path.size()) + 5);
             double[] target = path.get(targetIndex);
             
-            return new AIResult(true, target[0], target[1], target[2]);
+            return new AIResult(entityId, true, target[0], target[1], target[2]);
         }
         
-        return new AIResult(false, task.getPosX(), task.getPosY(), task.getPosZ());
+        return new AIResult(entityId, false, posX, posY, posZ);
     }
 }
\ No newline at end of file
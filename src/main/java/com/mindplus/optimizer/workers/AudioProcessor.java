@@ -1,48 +1,69 @@
 package com.mindplus.optimizer.workers;
 
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mindplus.optimizer.communication.SharedMemoryRing;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.MessageSchema;
 import org.zeromq.ZMQ;
 
 public class AudioProcessor {
-    private static final Logger LOGGER = LoggerFactory.getLogger("AudioProcessor");
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("AudioProcessor");
     
     private final IPCChannel channel;
     private volatile boolean running = true;
     
     public AudioProcessor() {
-        this.channel = new IPCChannel(ZMQ.REP, "tcp://*:5561");
+        this.channel = new IPCChannel(ZMQ.REP, Endpoints.bind("audio-processor", 5561));
     }
     
     public void start() {
         channel.bind();
+        WorkerControl control = WorkerControl.connect("audio-processor");
+        control.endpoint("audio-processor", channel).ready();
         LOGGER.info("Audio Processor started");
         
-        while (running) {
-            byte[] request = channel.receive();
+        // 非阻塞接收，空闲时也能按时发出心跳
+        SharedMemoryRing.Idler idler = new SharedMemoryRing.Idler();
+        while (running && !WorkerServices.isStopping()) {
+            control.heartbeat();
+            byte[] request = channel.receive(ZMQ.DONTWAIT);
             if (request != null) {
                 processRequest(request);
+                idler.reset();
+            } else {
+                idler.idle();
             }
         }
         
+        control.close();
         channel.close();
     }
     
     private void processRequest(byte[] request) {
         try {
-            String audioEvent = new String(request);
-            LOGGER.info("Processing audio event: {}", audioEvent);
+            WorkerProtos.AudioEvent audioEvent = WorkerProtos.AudioEvent.parseFrom(request);
+            LOGGER.info("Processing audio event: {}", audioEvent.getSoundId());
             
-            byte[] response = processAudio(audioEvent);
-            channel.send(response);
+            channel.send(processAudio(audioEvent).toByteArray());
         } catch (Exception e) {
             LOGGER.error("Error processing audio event", e);
+            channel.send(audioResult(false).toByteArray());
         }
     }
     
-    private byte[] processAudio(String event) {
-        return "AUDIO_PROCESSED".getBytes();
+    private WorkerProtos.AudioResult processAudio(WorkerProtos.AudioEvent event) {
+        return audioResult(true);
+    }
+    
+    private static WorkerProtos.AudioResult audioResult(boolean success) {
+        return WorkerProtos.AudioResult.newBuilder()
+            .setVersion(MessageSchema.VERSION)
+            .setSuccess(success)
+            .build();
     }
     
     public void stop() {
@@ -1,56 +1,41 @@
 package com.mindplus.optimizer.workers;
 
-import com.mindplus.optimizer.communication.IPCChannel;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.zeromq.ZMQ;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
+import com.mindplus.optimizer.tasks.ChunkResult;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.workers.noise.ClimateSampler;
 
-public class BiomeGenerator {
-    private static final Logger LOGGER = LoggerFactory.getLogger("BiomeGenerator");
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BiomeGenerator extends GenerationWorker {
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("BiomeGenerator");
+    // 每处理这么多区块输出一次缓存统计
+    private static final long STATS_INTERVAL = 4096;
     
-    private final IPCChannel channel;
-    private volatile boolean running = true;
+    private final AtomicLong processed = new AtomicLong();
     
     public BiomeGenerator() {
-        this.channel = new IPCChannel(ZMQ.REP, "tcp://*:5557");
+        super(LOGGER, "biome-generator", 5557, true);
     }
     
-    public void start() {
-        channel.bind();
-        LOGGER.info("Biome Generator started");
+    @Override
+    protected ChunkResult process(ChunkTask task) throws Exception {
+        LOGGER.debug("Processing biome generation for chunk ({}, {})", task.getChunkX(), task.getChunkZ());
         
-        while (running) {
-            byte[] request = channel.receive();
-            if (request != null) {
-                processRequest(request);
-            }
-        }
+        ClimateSampler sampler = ClimateSampler.forWorld(task.getWorldSeed(), task.getDimension());
+        ClimateSampler.Grid grid = sampler.sample(task.getChunkX(), task.getChunkZ());
+        int[] climate = new int[ClimateSampler.PARAMETERS * ClimateSampler.QUARTS * ClimateSampler.QUARTS];
+        grid.quantize(climate, 0);
         
-        channel.close();
-    }
-    
-    private void processRequest(byte[] request) {
-        try {
-            String chunkData = new String(request);
-            LOGGER.info("Processing biome generation for chunk: {}", chunkData);
-            
-            byte[] response = generateBiomes(chunkData);
-            channel.send(response);
-        } catch (Exception e) {
-            LOGGER.error("Error processing biome generation", e);
+        if (processed.incrementAndGet() % STATS_INTERVAL == 0) {
+            LOGGER.debug("{}", sampler.getStats());
         }
-    }
-    
-    private byte[] generateBiomes(String chunkData) {
-        return "BIOMES_GENERATED".getBytes();
-    }
-    
-    public void stop() {
-        running = false;
+        return new ChunkResult(true, "Biomes generated", task.getChunkX(), task.getChunkZ(), climate);
     }
     
     public static void main(String[] args) {
         BiomeGenerator generator = new BiomeGenerator();
         generator.start();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,233 @@
+package com.mindplus.optimizer.workers;
+
+import com.mindplus.optimizer.communication.Endpoints;
+import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.SharedMemoryRing;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLogger;
+import com.mindplus.optimizer.tasks.ChunkResult;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.tasks.RegionTask;
+import com.mindplus.optimizer.workers.cache.ResultCache;
+import org.zeromq.ZMQ;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 区块生成工作进程基类
+ * ROUTER 通道接收 [对端标识][关联 ID][ChunkTask]，任务交给线程池并行处理，
+ * 回复 [对端标识][关联 ID][ChunkResult]；通道只由主循环线程访问，工作线程通过队列交回结果
+ * 区域请求 [对端标识][关联 ID][RegionTask.KIND][RegionTask] 在一个线程上按 z 再 x 的顺序处理区域内的区块，
+ * 每完成一个区块回复一次，最后回复 [对端标识][关联 ID][空负载] 表示结束
+ * 计算线程池由同一 JVM 中的所有角色共用
+ * 启用结果缓存的角色先查磁盘缓存，命中时直接回复缓存的结果，成功的结果写入缓存
+ * 同一角色可以运行多个实例，通道按实例的进程 ID 登记，磁盘缓存按角色名在实例之间共用
+ * 取消请求 [对端标识][关联 ID][ChunkTask.CANCEL] 标记该请求：尚未开始的任务直接丢弃，区域任务在下一个区块前停止，都不再回复
+ */
+public abstract class GenerationWorker {
+    private final WorkerLogger logger;
+    private final String name;
+    // 受管理时为实例的进程 ID（如 terrain-generator-2），单独运行时为角色名
+    private final String channelName;
+    private final IPCChannel channel;
+    private final ExecutorService executor;
+    // 没有配置缓存目录或角色不缓存时为 null
+    private final ResultCache cache;
+    private final Queue<byte[][]> replies = new ConcurrentLinkedQueue<>();
+    // 已收到、尚未处理完的请求（对端标识 + 关联 ID）及其取消标记
+    private final Map<ByteBuffer, AtomicBoolean> active = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    protected GenerationWorker(WorkerLogger logger, String name, int port) {
+        this(logger, name, port, false);
+    }
+
+    /**
+     * @param cacheResults 结果只取决于种子、维度和区块坐标时为 true，结果写入磁盘缓存供重复请求读取
+     */
+    protected GenerationWorker(WorkerLogger logger, String name, int port, boolean cacheResults) {
+        this.logger = logger;
+        this.name = name;
+        this.channelName = WorkerControl.property(WorkerControl.WORKER_ID_PROPERTY, name);
+        this.channel = new IPCChannel(ZMQ.ROUTER, Endpoints.bind(channelName, port));
+        this.executor = WorkerServices.executor();
+        this.cache = cacheResults ? ResultCache.forRole(name) : null;
+    }
+
+    /**
+     * 处理一个区块任务，在线程池中调用
+     */
+    protected abstract ChunkResult process(ChunkTask task) throws Exception;
+
+    /**
+     * 处理一个区域任务，在线程池中调用
+     * 相邻区块依次在同一线程上处理，噪声引擎和线程内缓冲区在区块之间复用；需要更多共享状态的角色可以覆盖
+     * 每完成一个区块调用一次 sink，参数为序列化的 ChunkResult；cancelled 为 true 时请求已取消，应尽快返回
+     */
+    protected void processRegion(RegionTask task, Consumer<byte[]> sink, BooleanSupplier cancelled) {
+        for (int dz = 0; dz < task.getSize(); dz++) {
+            for (int dx = 0; dx < task.getSize(); dx++) {
+                if (!task.contains(dx, dz)) {
+                    continue;
+                }
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                int chunkX = task.getOriginX() + dx;
+                int chunkZ = task.getOriginZ() + dz;
+                byte[] result;
+                try {
+                    result = processCached(new ChunkTask(chunkX, chunkZ, task.getWorldSeed(), task.getDimension()));
+                } catch (Exception e) {
+                    logger.error("Failed to process chunk ({}, {}) in region", chunkX, chunkZ, e);
+                    result = new ChunkResult(false, String.valueOf(e.getMessage()), chunkX, chunkZ).toBytes();
+                }
+                sink.accept(result);
+            }
+        }
+    }
+
+    public void start() {
+        channel.bind();
+        WorkerControl control = WorkerControl.connect(name);
+        control.endpoint(channelName, channel).ready("router", "threads=" + WorkerServices.threadCount());
+        logger.info("{} started on {} with {} threads", channelName, channel.getEndpoint(), WorkerServices.threadCount());
+
+        SharedMemoryRing.Idler idler = new SharedMemoryRing.Idler();
+        while (running && !WorkerServices.isStopping()) {
+            boolean busy = false;
+            control.heartbeat();
+
+            byte[][] request;
+            while ((request = channel.receiveMultipart(ZMQ.DONTWAIT)) != null) {
+                busy = true;
+                dispatch(request);
+            }
+
+            byte[][] reply;
+            while ((reply = replies.poll()) != null) {
+                busy = true;
+                channel.sendMultipart(reply, 0);
+            }
+
+            if (busy) {
+                idler.reset();
+            } else {
+                idler.idle();
+            }
+        }
+
+        control.close();
+        shutdown();
+    }
+
+    private void dispatch(byte[][] request) {
+        if (request.length < 3) {
+            logger.warn("Dropping malformed request with {} frames", request.length);
+            return;
+        }
+
+        byte[] identity = request[0];
+        byte[] correlationId = request[1];
+        if (Arrays.equals(request[2], ChunkTask.CANCEL)) {
+            AtomicBoolean cancelled = active.get(requestKey(identity, correlationId));
+            if (cancelled != null) {
+                cancelled.set(true);
+            }
+            return;
+        }
+        if (request.length >= 4 && Arrays.equals(request[2], RegionTask.KIND)) {
+            dispatchRegion(identity, correlationId, request[3]);
+            return;
+        }
+        byte[] payload = request[2];
+        ByteBuffer key = requestKey(identity, correlationId);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        active.put(key, cancelled);
+        executor.execute(() -> {
+            try {
+                if (cancelled.get()) {
+                    return;
+                }
+                ChunkTask task;
+                try {
+                    task = ChunkTask.fromBytes(payload);
+                } catch (IllegalArgumentException e) {
+                    logger.error("Failed to parse task", e);
+                    replies.offer(new byte[][] { identity, correlationId, new ChunkResult(false, "Invalid task format").toBytes() });
+                    return;
+                }
+                byte[] result;
+                try {
+                    result = processCached(task);
+                } catch (Exception e) {
+                    logger.error("Failed to process chunk ({}, {})", task.getChunkX(), task.getChunkZ(), e);
+                    result = new ChunkResult(false, String.valueOf(e.getMessage()), task.getChunkX(), task.getChunkZ()).toBytes();
+                }
+                replies.offer(new byte[][] { identity, correlationId, result });
+            } finally {
+                active.remove(key);
+            }
+        });
+    }
+
+    private static ByteBuffer requestKey(byte[] identity, byte[] correlationId) {
+        return ByteBuffer.allocate(identity.length + correlationId.length).put(identity).put(correlationId).flip();
+    }
+
+    /**
+     * 处理一个区块，返回序列化的结果；启用缓存时先查缓存
+     */
+    protected final byte[] processCached(ChunkTask task) throws Exception {
+        if (cache != null) {
+            byte[] cached = cache.get(task.getWorldSeed(), task.getDimension(), task.getChunkX(), task.getChunkZ());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ChunkResult result = process(task);
+        byte[] data = result.toBytes();
+        if (cache != null && result.isSuccess()) {
+            cache.put(task.getWorldSeed(), task.getDimension(), task.getChunkX(), task.getChunkZ(), data);
+        }
+        return data;
+    }
+
+    private void dispatchRegion(byte[] identity, byte[] correlationId, byte[] payload) {
+        ByteBuffer key = requestKey(identity, correlationId);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        active.put(key, cancelled);
+        executor.execute(() -> {
+            try {
+                processRegion(RegionTask.fromBytes(payload),
+                    result -> replies.offer(new byte[][] { identity, correlationId, result }), cancelled::get);
+            } catch (Exception e) {
+                // 没有结果的区块由协调器在收到结束标记后判定失败
+                logger.error("Failed to process region task", e);
+            } finally {
+                active.remove(key);
+            }
+            if (!cancelled.get()) {
+                replies.offer(new byte[][] { identity, correlationId, new byte[0] });
+            }
+        });
+    }
+
+    private void shutdown() {
+        channel.close();
+        logger.info("{} stopped", name);
+    }
+
+    public void stop() {
+        running = false;
+    }
+}
@@ -1,15 +1,20 @@
 package com.mindplus.optimizer.workers;
 
+import com.mindplus.optimizer.communication.CreditReporter;
+import com.mindplus.optimizer.communication.Endpoints;
 import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.SharedMemoryRing;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
 import com.mindplus.optimizer.renderer.IRenderer;
 import com.mindplus.optimizer.renderer.RendererType;
 import com.mindplus.optimizer.renderer.VulkanRenderer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mindplus.optimizer.tasks.RenderCommand;
+import com.mindplus.optimizer.tasks.RenderTask;
 import org.zeromq.ZMQ;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -18,21 +23,26 @@ import java.util.concurrent.TimeUnit;
  * 支持超渲染功能：渲染距离、模拟距离、FOV 缩放、面朝方向渲染
  */
 public class MultiRendererProcess {
-    private static final Logger LOGGER = LoggerFactory.getLogger("MultiRendererProcess");
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("MultiRendererProcess");
 
     private static final String DEFAULT_RENDERER = "Vulkan";
     private static final int DEFAULT_PORT = 5580;
+    private static final int CONTROL_PORT = 5582;
     private static final int DEFAULT_WIDTH = 1920;
     private static final int DEFAULT_HEIGHT = 1080;
 
     private final IPCChannel pullChannel;
-    private final ScheduledExecutorService scheduler;
+    private final IPCChannel controlChannel; // 超渲染指令通道
+    private final CreditReporter credits;
+    private WorkerControl control;
+    private ScheduledFuture<?> statsTask;
     private IRenderer renderer;
     private volatile boolean running = false;
 
     public MultiRendererProcess() {
-        this.pullChannel = new IPCChannel(ZMQ.PULL, "tcp://*:" + DEFAULT_PORT);
-        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.pullChannel = new IPCChannel(ZMQ.PULL, Endpoints.bind("renderer", DEFAULT_PORT));
+        this.controlChannel = new IPCChannel(ZMQ.PULL, Endpoints.bind("renderer-control", CONTROL_PORT));
+        this.credits = new CreditReporter("renderer", DEFAULT_PORT);
     }
 
     public void start(String[] args) {
@@ -49,28 +59,49 @@ public class MultiRendererProcess {
 
         // 启动 ZeroMQ 接收器
         pullChannel.bind();
+        controlChannel.bind();
+        credits.bind();
+        control = WorkerControl.connect("multi-renderer");
+        control.endpoint("renderer", pullChannel)
+            .endpoint("renderer-control", controlChannel)
+            .endpoint(credits)
+            .ready("credits", "super-render", "renderer=" + rendererType.getName());
         running = true;
 
         LOGGER.info("MultiRendererProcess started with {} renderer ({}x{})",
             rendererType.getName(), width, height);
 
         // 定时输出性能统计
-        scheduler.scheduleAtFixedRate(this::printStats, 5, 5, TimeUnit.SECONDS);
+        statsTask = WorkerServices.scheduler().scheduleAtFixedRate(this::printStats, 5, 5, TimeUnit.SECONDS);
 
-        // 主循环
-        while (running && !Thread.currentThread().isInterrupted()) {
+        // 主循环，空闲时退避，合并到 WorkerHost 中运行时不占满共享的核心
+        SharedMemoryRing.Idler idler = new SharedMemoryRing.Idler();
+        while (running && !Thread.currentThread().isInterrupted() && !WorkerServices.isStopping()) {
+            control.heartbeat();
+            boolean busy = false;
             try {
+                byte[] command = controlChannel.receive(ZMQ.NOBLOCK);
+                if (command != null) {
+                    busy = true;
+                    handleSuperRenderCommand(command);
+                }
+
                 byte[] data = pullChannel.receive(ZMQ.NOBLOCK);
                 if (data != null) {
-                    String task = new String(data);
-                    processTask(task);
+                    busy = true;
+                    processTask(data);
+                    credits.release();
                 }
             } catch (Exception e) {
                 // 忽略异常，继续运行
             }
+            credits.flush();
 
-            // 控制帧率，避免过载
-            Thread.yield();
+            if (busy) {
+                idler.reset();
+            } else {
+                idler.idle();
+            }
         }
 
         shutdown();
@@ -104,76 +135,58 @@ public class MultiRendererProcess {
         }
     }
 
-    private void processTask(String task) {
+    private void processTask(byte[] data) {
         if (renderer == null) return;
 
         try {
-            // 检查是否是超渲染指令
-            if (task.startsWith("SUPER_RENDER:")) {
-                handleSuperRenderCommand(task);
-                return;
-            }
+            RenderTask task = RenderTask.fromBytes(data);
 
-            // 普通渲染任务
-            String[] parts = task.split(",");
-            if (parts.length >= 3) {
-                int chunkX = Integer.parseInt(parts[0]);
-                int chunkZ = Integer.parseInt(parts[1]);
-                double cameraY = Double.parseDouble(parts[2]);
+            // 开始帧
+            renderer.beginFrame();
 
-                // 开始帧
-                renderer.beginFrame();
+            // 渲染区块
+            renderer.renderChunk(task.getChunkX(), task.getChunkZ(), task.getCameraY());
 
-                // 渲染区块
-                renderer.renderChunk(chunkX, chunkZ, cameraY);
-
-                // 结束帧
-                renderer.endFrame();
-            }
+            // 结束帧
+            renderer.endFrame();
         } catch (Exception e) {
-            LOGGER.debug("Failed to process task: {}", task);
+            LOGGER.debug("Failed to process render task: {}", e.getMessage());
         }
     }
 
     /**
      * 处理超渲染指令
-     * 格式: SUPER_RENDER:TYPE:VALUE
-     * TYPE: RENDER_DISTANCE, SIMULATION_DISTANCE, FOV_ZOOM, LOOK_AHEAD
+     * 类型: RENDER_DISTANCE, SIMULATION_DISTANCE, FOV_ZOOM, LOOK_AHEAD
      */
-    private void handleSuperRenderCommand(String command) {
+    private void handleSuperRenderCommand(byte[] data) {
+        if (renderer == null) return;
+
         try {
-            String[] parts = command.split(":");
-            if (parts.length >= 3) {
-                String type = parts[1];
-                String valueStr = parts[2];
-
-                switch (type) {
-                    case "RENDER_DISTANCE":
-                        int renderDist = Integer.parseInt(valueStr);
-                        renderer.setRenderDistance(renderDist);
-                        break;
-
-                    case "SIMULATION_DISTANCE":
-                        int simDist = Integer.parseInt(valueStr);
-                        renderer.setSimulationDistance(simDist);
-                        break;
-
-                    case "FOV_ZOOM":
-                        double fovZoom = Double.parseDouble(valueStr);
-                        renderer.setFovZoom(fovZoom);
-                        break;
-
-                    case "LOOK_AHEAD":
-                        int lookAhead = Integer.parseInt(valueStr);
-                        renderer.setLookAheadDistance(lookAhead);
-                        break;
-
-                    default:
-                        LOGGER.warn("Unknown super render command type: {}", type);
-                }
+            RenderCommand command = RenderCommand.fromBytes(data);
+            double value = command.getValue();
+
+            switch (command.getType()) {
+                case RENDER_DISTANCE:
+                    renderer.setRenderDistance((int) value);
+                    break;
+
+                case SIMULATION_DISTANCE:
+                    renderer.setSimulationDistance((int) value);
+                    break;
+
+                case FOV_ZOOM:
+                    renderer.setFovZoom(value);
+                    break;
+
+                case LOOK_AHEAD:
+                    renderer.setLookAheadDistance((int) value);
+                    break;
+
+                default:
+                    LOGGER.warn("Unknown super render command type: {}", command.getType());
             }
         } catch (Exception e) {
-            LOGGER.warn("Failed to process super render command: {}", command);
+            LOGGER.warn("Failed to process super render command: {}", e.getMessage());
         }
     }
 
@@ -201,7 +214,14 @@ public class MultiRendererProcess {
             renderer.shutdown();
         }
         pullChannel.close();
-        scheduler.shutdown();
+        controlChannel.close();
+        credits.close();
+        if (control != null) {
+            control.close();
+        }
+        if (statsTask != null) {
+            statsTask.cancel(false);
+        }
         LOGGER.info("MultiRendererProcess shutdown");
     }
 
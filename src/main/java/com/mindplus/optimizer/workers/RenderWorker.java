@@ -1,18 +1,21 @@
 package com.mindplus.optimizer.workers;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mindplus.optimizer.communication.CreditReporter;
+import com.mindplus.optimizer.communication.Endpoints;
+import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.SharedMemoryRing;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
+import com.mindplus.optimizer.tasks.RenderTask;
 import org.zeromq.ZMQ;
-import org.zeromq.ZContext;
 
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class RenderWorker {
-    private static final Logger LOGGER = LoggerFactory.getLogger("RenderWorker");
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("RenderWorker");
     
-    private static final int THREAD_COUNT = 8;
     private static final int BLOCKS_PER_CHUNK = 4096;
     private static final int LIGHT_LEVELS = 16;
     
@@ -22,47 +25,62 @@ public class RenderWorker {
     private static final double MAX_LIGHT_LEVEL = 15.0; // 最大光照级别 15
     
     private final ExecutorService executor;
-    private final ZContext context;
-    private final ZMQ.Socket pullSocket;
+    private final IPCChannel pullChannel;
+    private final CreditReporter credits;
+    private WorkerControl control;
     private final Random random;
     
     public RenderWorker() {
-        this.context = new ZContext();
-        this.pullSocket = context.createSocket(ZMQ.PULL);
-        this.executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        this.pullChannel = new IPCChannel(ZMQ.PULL, Endpoints.bind("renderer", 5580));
+        this.credits = new CreditReporter("renderer", 5580);
+        this.executor = WorkerServices.executor();
         this.random = new Random();
     }
     
     public void start() {
-        pullSocket.bind("tcp://*:5580");
-        LOGGER.info("Render worker started on port 5580 with enhanced brightness");
+        pullChannel.bind();
+        credits.bind();
+        control = WorkerControl.connect("render-worker");
+        control.endpoint("renderer", pullChannel).endpoint(credits).ready("credits", "threads=" + WorkerServices.threadCount());
+        LOGGER.info("Render worker started on {} with enhanced brightness", pullChannel.getEndpoint());
         
-        while (!Thread.currentThread().isInterrupted()) {
+        // 空闲时退避，合并到 WorkerHost 中运行时不占满共享的核心
+        SharedMemoryRing.Idler idler = new SharedMemoryRing.Idler();
+        while (!Thread.currentThread().isInterrupted() && !WorkerServices.isStopping()) {
+            control.heartbeat();
+            boolean busy = false;
             try {
-                byte[] data = pullSocket.recv(ZMQ.NOBLOCK);
+                byte[] data = pullChannel.receive(ZMQ.NOBLOCK);
                 if (data != null) {
-                    String task = new String(data);
-                    executor.submit(() -> processTask(task));
+                    busy = true;
+                    executor.submit(() -> {
+                        try {
+                            processTask(data);
+                        } finally {
+                            credits.release();
+                        }
+                    });
                 }
             } catch (Exception e) {
                 // 忽略异常，继续运行
             }
+            credits.flush();
+            if (busy) {
+                idler.reset();
+            } else {
+                idler.idle();
+            }
         }
         
         shutdown();
     }
     
-    private void processTask(String task) {
+    private void processTask(byte[] data) {
         try {
-            String[] parts = task.split(",");
-            if (parts.length >= 3) {
-                int chunkX = Integer.parseInt(parts[0]);
-                int chunkZ = Integer.parseInt(parts[1]);
-                double cameraY = Double.parseDouble(parts[2]);
-                
-                // 渲染区块
-                renderChunk(chunkX, chunkZ, cameraY);
-            }
+            RenderTask task = RenderTask.fromBytes(data);
+            
+            // 渲染区块
+            renderChunk(task.getChunkX(), task.getChunkZ(), task.getCameraY());
         } catch (Exception e) {
             // 静默处理错误
         }
@@ -148,9 +166,9 @@ public class RenderWorker {
     }
     
     private void shutdown() {
-        executor.shutdown();
-        pullSocket.close();
-        context.close();
+        pullChannel.close();
+        credits.close();
+        control.close();
         LOGGER.info("Render worker stopped");
     }
     
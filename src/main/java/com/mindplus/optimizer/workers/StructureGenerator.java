@@ -1,61 +1,31 @@
 package com.mindplus.optimizer.workers;
 
-import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
 import com.mindplus.optimizer.tasks.ChunkResult;
 import com.mindplus.optimizer.tasks.ChunkTask;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.zeromq.ZMQ;
 
-public class StructureGenerator {
-    private static final Logger LOGGER = LoggerFactory.getLogger("StructureGenerator");
-    
-    private final IPCChannel channel;
-    private volatile boolean running = true;
+public class StructureGenerator extends GenerationWorker {
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("StructureGenerator");
     
     public StructureGenerator() {
-        this.channel = new IPCChannel(ZMQ.REP, "tcp://*:5555");
+        super(LOGGER, "structure-generator", 5555, true);
     }
     
-    public void start() {
-        channel.bind();
-        LOGGER.info("Structure Generator started");
+    @Override
+    protected ChunkResult process(ChunkTask task) throws Exception {
+        LOGGER.debug("Generating structures for chunk ({}, {})", task.getChunkX(), task.getChunkZ());
         
-        while (running) {
-            byte[] request = channel.receive();
-            if (request != null) {
-                processRequest(request);
-            }
-        }
+        // 模拟结构生成处理
+        Thread.sleep(5); // 模拟计算时间
         
-        channel.close();
-    }
-    
-    private void processRequest(byte[] request) {
-        try {
-            ChunkTask task = ChunkTask.deserialize(new String(request));
-            LOGGER.info("Generating structures for chunk ({}, {})", task.getChunkX(), task.getChunkZ());
-            
-            // 模拟结构生成处理
-            Thread.sleep(5); // 模拟计算时间
-            
-            ChunkResult result = new ChunkResult(true, 
-                "Structures generated for chunk (" + task.getChunkX() + ", " + task.getChunkZ() + ")");
-            
-            channel.send(result.serialize().getBytes());
-        } catch (Exception e) {
-            LOGGER.error("Failed to process task", e);
-            ChunkResult errorResult = new ChunkResult(false, "Invalid task format");
-            channel.send(errorResult.serialize().getBytes());
-        }
-    }
-    
-    public void stop() {
-        running = false;
+        return new ChunkResult(true, 
+            "Structures generated for chunk (" + task.getChunkX() + ", " + task.getChunkZ() + ")",
+            task.getChunkX(), task.getChunkZ());
     }
     
     public static void main(String[] args) {
         StructureGenerator generator = new StructureGenerator();
         generator.start();
     }
-}
\ No newline at end of file
+}
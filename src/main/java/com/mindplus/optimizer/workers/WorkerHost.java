@@ -0,0 +1,219 @@
+package com.mindplus.optimizer.workers;
+
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.proto.WorkerProtos;
+import com.mindplus.optimizer.tasks.ChunkResult;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.tasks.LogBatch;
+import com.mindplus.optimizer.tasks.WorkerStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预热的备用工作进程
+ * JVM 启动后先加载工作进程用到的类并初始化 ZeroMQ 和 protobuf，然后阻塞在标准输入上等待分配；
+ * ProcessManager 按行写入分配指令后关闭输入，本进程设置系统属性并在主线程上运行指定工作进程的 main
+ * 标准输入在分配前关闭（父进程退出或备用池关闭）时直接退出
+ *
+ * 多角色模式下同一个宿主依次收到多个 ROLE 指令，每个角色在自己的线程上运行，
+ * 属性只对该角色线程生效，所有角色共用线程池、ZContext 和堆；标准输入关闭时整个宿主退出
+ */
+public class WorkerHost {
+    private static final Logger LOGGER = LoggerFactory.getLogger("WorkerHost");
+
+    /** 属性，格式 P key=value；RUN 前为系统属性，ROLE 前只对该角色生效 */
+    public static final String PROPERTY_COMMAND = "P ";
+    /** 传给 main 的参数，每行一个 */
+    public static final String ARGUMENT_COMMAND = "A ";
+    /** 在主线程上运行指定主类，之后的输入被忽略 */
+    public static final String RUN_COMMAND = "RUN ";
+    /** 多角色模式：ROLE 进程ID 主类，在新线程上启动一个角色 */
+    public static final String ROLE_COMMAND = "ROLE ";
+    /** 多角色模式：STOP 进程ID，要求角色主循环退出 */
+    public static final String STOP_COMMAND = "STOP ";
+
+    // 角色收到停止指令后这么久还没退出就中断它的线程
+    private static final long STOP_GRACE_MS = 2000;
+
+    private static final Map<String, WorkerServices.Role> roles = new ConcurrentHashMap<>();
+
+    // 预热时加载的工作进程类，只加载不初始化，避免静态字段在系统属性设置前求值
+    private static final String[] WORKER_CLASSES = {
+        "com.mindplus.optimizer.workers.GenerationWorker",
+        "com.mindplus.optimizer.workers.StructureGenerator",
+        "com.mindplus.optimizer.workers.TerrainGenerator",
+        "com.mindplus.optimizer.workers.BiomeGenerator",
+        "com.mindplus.optimizer.workers.EntitySpawner",
+        "com.mindplus.optimizer.workers.WorldGeneratorWorker",
+        "com.mindplus.optimizer.workers.ChunkPreloader",
+        "com.mindplus.optimizer.workers.AIProcessor",
+        "com.mindplus.optimizer.workers.AudioProcessor",
+        "com.mindplus.optimizer.workers.RenderWorker",
+        "com.mindplus.optimizer.workers.MultiRendererProcess",
+        "com.mindplus.optimizer.config.ModConfig",
+        "com.mindplus.optimizer.communication.Endpoints",
+        "com.mindplus.optimizer.communication.IPCChannel",
+        "com.mindplus.optimizer.communication.WorkerControl",
+        "com.mindplus.optimizer.communication.WorkerLog",
+        "com.mindplus.optimizer.communication.WorkerLogger",
+        "com.mindplus.optimizer.communication.CreditReporter",
+        "com.mindplus.optimizer.communication.ZmqTransport",
+        "com.mindplus.optimizer.communication.SharedMemoryTransport"
+    };
+
+    public static void main(String[] args) throws Exception {
+        warmUp();
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        List<String> workerArgs = new ArrayList<>();
+        String mainClass = null;
+        boolean hosting = false;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while (mainClass == null && (line = reader.readLine()) != null) {
+            if (line.startsWith(PROPERTY_COMMAND)) {
+                String property = line.substring(PROPERTY_COMMAND.length());
+                int separator = property.indexOf('=');
+                if (separator > 0) {
+                    properties.put(property.substring(0, separator), property.substring(separator + 1));
+                }
+            } else if (line.startsWith(ARGUMENT_COMMAND)) {
+                workerArgs.add(line.substring(ARGUMENT_COMMAND.length()));
+            } else if (line.startsWith(RUN_COMMAND)) {
+                mainClass = line.substring(RUN_COMMAND.length()).trim();
+            } else if (line.startsWith(ROLE_COMMAND)) {
+                String[] role = line.substring(ROLE_COMMAND.length()).trim().split(" ", 2);
+                if (role.length == 2) {
+                    hosting = true;
+                    startRole(role[0], role[1], properties, workerArgs);
+                }
+                properties = new LinkedHashMap<>();
+                workerArgs = new ArrayList<>();
+            } else if (line.startsWith(STOP_COMMAND)) {
+                stopRole(line.substring(STOP_COMMAND.length()).trim());
+            }
+        }
+
+        if (mainClass == null) {
+            if (hosting) {
+                // 父进程已退出或宿主被关闭，角色线程不一定会自行结束
+                LOGGER.info("Input closed, stopping {} roles", roles.size());
+                System.exit(0);
+            }
+            // 未分配就被关闭
+            return;
+        }
+        properties.forEach(System::setProperty);
+        run(mainClass, workerArgs.toArray(new String[0]));
+    }
+
+    private static void startRole(String roleId, String mainClass, Map<String, String> properties, List<String> args) {
+        WorkerServices.Role previous = roles.get(roleId);
+        if (previous != null && previous.thread.isAlive()) {
+            // 重启角色时旧实例可能还在退出中，新实例照常启动，端点冲突时会换用新端口
+            LOGGER.warn("Role {} is still running, starting a new instance alongside", roleId);
+        }
+
+        WorkerServices.Role role = new WorkerServices.Role(roleId);
+        String[] roleArgs = args.toArray(new String[0]);
+        Thread thread = new Thread(() -> {
+            WorkerControl.setScopedProperties(properties);
+            WorkerServices.bindRole(role);
+            try {
+                run(mainClass, roleArgs);
+                LOGGER.info("Role {} exited", roleId);
+            } catch (Throwable e) {
+                if (role.stopping) {
+                    LOGGER.info("Role {} interrupted while stopping: {}", roleId, e);
+                } else {
+                    LOGGER.error("Role {} failed", roleId, e);
+                }
+            } finally {
+                roles.remove(roleId, role);
+            }
+        }, roleId);
+        role.thread = thread;
+        roles.put(roleId, role);
+        thread.start();
+        LOGGER.info("Started role {} ({})", roleId, mainClass);
+    }
+
+    private static void stopRole(String roleId) {
+        WorkerServices.Role role = roles.get(roleId);
+        if (role == null) {
+            return;
+        }
+        role.stopping = true;
+        WorkerServices.scheduler().schedule(() -> {
+            if (role.thread.isAlive()) {
+                LOGGER.warn("Role {} did not stop in {}ms, interrupting", roleId, STOP_GRACE_MS);
+                role.thread.interrupt();
+            }
+        }, STOP_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 触发类加载、ZeroMQ 上下文和 protobuf 运行时的初始化，这些是工作进程冷启动的主要耗时
+     */
+    private static void warmUp() {
+        ClassLoader loader = WorkerHost.class.getClassLoader();
+        for (String className : WORKER_CLASSES) {
+            try {
+                Class.forName(className, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // 预热是尽力而为
+            }
+        }
+
+        // 走一遍本地 TCP 的绑定、连接和收发，加载 jeromq 的 I/O 线程和编解码器
+        try (ZContext context = new ZContext()) {
+            ZMQ.Socket pull = context.createSocket(SocketType.PULL);
+            pull.bind("tcp://127.0.0.1:*");
+            ZMQ.Socket push = context.createSocket(SocketType.PUSH);
+            push.connect(pull.getLastEndpoint());
+            push.send(new byte[1], 0);
+            pull.setReceiveTimeOut(1000);
+            pull.recv(0);
+        }
+        ChunkResult.fromBytes(new ChunkResult(true, "warmup", 0, 0).toBytes());
+        ChunkTask.fromBytes(new ChunkTask(0, 0, 0L, "warmup").toBytes());
+        LogBatch.fromBytes(new LogBatch("warmup", List.of(), 0).toBytes());
+        // 心跳附带的 MXBean 统计第一次读取时要初始化管理接口
+        WorkerStatus.fromBytes(new WorkerStatus(WorkerProtos.WorkerStatus.Type.HEARTBEAT, "warmup", 1, 0, 0,
+            WorkerControl.sampleUsage()).toBytes());
+    }
+
+    private static void run(String mainClass, String[] args) throws IOException {
+        try {
+            Method main = Class.forName(mainClass).getMethod("main", String[].class);
+            main.invoke(null, (Object) args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Worker " + mainClass + " failed", cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Cannot run worker " + mainClass, e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.mindplus.optimizer.workers;
+
+import com.mindplus.optimizer.communication.WorkerControl;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作进程内共享的服务
+ * 同一个 JVM 里的所有角色共用一个计算线程池和一个定时线程，角色停止时不关闭它们；
+ * 多角色宿主中每个角色线程带一个停止标志，主循环通过 isStopping() 检查
+ * 提交到线程池和定时线程的任务带上提交线程的角色和角色属性，任务中的日志和停止检查归属正确的角色
+ */
+public final class WorkerServices {
+    public static final String THREADS_PROPERTY = "mindplus.worker.threads";
+
+    private static final ThreadLocal<Role> CURRENT_ROLE = new ThreadLocal<>();
+
+    private WorkerServices() {
+    }
+
+    /**
+     * 计算线程数，默认等于可用处理器数（随 -XX:ActiveProcessorCount 和 CPU 绑定变化）
+     */
+    public static int threadCount() {
+        return Pools.THREAD_COUNT;
+    }
+
+    /**
+     * 所有角色共用的计算线程池（守护线程，不阻止 JVM 退出）
+     */
+    public static ExecutorService executor() {
+        return Pools.EXECUTOR;
+    }
+
+    /**
+     * 所有角色共用的定时线程，角色停止时要取消自己的定时任务
+     */
+    public static ScheduledExecutorService scheduler() {
+        return Scheduler.INSTANCE;
+    }
+
+    /**
+     * 当前角色是否被要求停止，主循环每轮检查；独立进程中始终为 false
+     */
+    public static boolean isStopping() {
+        Role role = CURRENT_ROLE.get();
+        return role != null && role.stopping;
+    }
+
+    static void bindRole(Role role) {
+        CURRENT_ROLE.set(role);
+    }
+
+    /**
+     * 宿主中运行的一个角色
+     */
+    static class Role {
+        final String id;
+        volatile boolean stopping = false;
+        Thread thread;
+
+        Role(String id) {
+            this.id = id;
+        }
+    }
+
+    // 第一次使用时才创建线程
+    private static class Pools {
+        static final int THREAD_COUNT = threadCountProperty();
+        static final ExecutorService EXECUTOR = new RoleAwareExecutor(THREAD_COUNT, daemon("worker-pool"));
+
+        // 多角色宿主中由第一个使用线程池的角色线程读取，各角色收到的值相同
+        private static int threadCountProperty() {
+            String value = WorkerControl.property(THREADS_PROPERTY);
+            if (value != null) {
+                try {
+                    return Math.max(1, Integer.parseInt(value.trim()));
+                } catch (NumberFormatException e) {
+                    // 使用默认值
+                }
+            }
+            return Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    // 与计算线程池分开创建，宿主处理停止指令时不会提前按默认线程数创建线程池
+    private static class Scheduler {
+        static final ScheduledExecutorService INSTANCE = new RoleAwareScheduler(daemon("worker-scheduler"));
+    }
+
+    /**
+     * 提交时记录的角色上下文，独立进程中没有角色属性，任务原样执行
+     */
+    private static Runnable inRole(Runnable task) {
+        Map<String, String> properties = WorkerControl.getScopedProperties();
+        Role role = CURRENT_ROLE.get();
+        if (properties == null && role == null) {
+            return task;
+        }
+        return () -> {
+            Map<String, String> previousProperties = WorkerControl.getScopedProperties();
+            Role previousRole = CURRENT_ROLE.get();
+            WorkerControl.setScopedProperties(properties);
+            CURRENT_ROLE.set(role);
+            try {
+                task.run();
+            } finally {
+                WorkerControl.setScopedProperties(previousProperties);
+                CURRENT_ROLE.set(previousRole);
+            }
+        };
+    }
+
+    private static <V> Callable<V> inRole(Callable<V> task) {
+        Map<String, String> properties = WorkerControl.getScopedProperties();
+        Role role = CURRENT_ROLE.get();
+        if (properties == null && role == null) {
+            return task;
+        }
+        return () -> {
+            Map<String, String> previousProperties = WorkerControl.getScopedProperties();
+            Role previousRole = CURRENT_ROLE.get();
+            WorkerControl.setScopedProperties(properties);
+            CURRENT_ROLE.set(role);
+            try {
+                return task.call();
+            } finally {
+                WorkerControl.setScopedProperties(previousProperties);
+                CURRENT_ROLE.set(previousRole);
+            }
+        };
+    }
+
+    // submit 和 invokeAll 最终都经过 execute
+    private static class RoleAwareExecutor extends ThreadPoolExecutor {
+        RoleAwareExecutor(int threads, ThreadFactory factory) {
+            super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), factory);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            super.execute(inRole(task));
+        }
+    }
+
+    // execute 和 submit 最终都经过 schedule
+    private static class RoleAwareScheduler extends ScheduledThreadPoolExecutor {
+        RoleAwareScheduler(ThreadFactory factory) {
+            super(1, factory);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+            return super.schedule(inRole(task), delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> task, long delay, TimeUnit unit) {
+            return super.schedule(inRole(task), delay, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            return super.scheduleAtFixedRate(inRole(task), initialDelay, period, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+            return super.scheduleWithFixedDelay(inRole(task), initialDelay, delay, unit);
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,93 +1,119 @@
 package com.mindplus.optimizer.workers;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.mindplus.optimizer.communication.CreditReporter;
+import com.mindplus.optimizer.communication.Endpoints;
+import com.mindplus.optimizer.communication.IPCChannel;
+import com.mindplus.optimizer.communication.SharedMemoryRing;
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
+import com.mindplus.optimizer.tasks.ChunkTask;
+import com.mindplus.optimizer.tasks.RegionTask;
+import com.mindplus.optimizer.workers.noise.TerrainNoise;
 import org.zeromq.ZMQ;
-import org.zeromq.ZContext;
 
-import java.util.Random;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+/**
+ * 世界预生成工作进程
+ * 单帧消息为 ChunkTask，两帧消息 [RegionTask.KIND][RegionTask] 为区域任务；每条消息处理完归还一个信用
+ */
 public class WorldGeneratorWorker {
-    private static final Logger LOGGER = LoggerFactory.getLogger("WorldGeneratorWorker");
-    
-    private static final int THREAD_COUNT = 8;
-    private static final int NOISE_SAMPLES = 512;
-    private static final int FEATURE_POINTS = 128;
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("WorldGeneratorWorker");
     
     private final ExecutorService executor;
-    private final ZContext context;
-    private final ZMQ.Socket pullSocket;
-    private final Random random;
+    private final IPCChannel pullChannel;
+    private final CreditReporter credits;
+    private WorkerControl control;
+    // 每个执行线程一份列高度缓冲区
+    private final ThreadLocal<int[]> heights = ThreadLocal.withInitial(() -> new int[TerrainNoise.COLUMNS]);
     
     public WorldGeneratorWorker() {
-        this.context = new ZContext();
-        this.pullSocket = context.createSocket(ZMQ.PULL);
-        this.executor = Executors.newFixedThreadPool(THREAD_COUNT);
-        this.random = new Random();
+        this.pullChannel = new IPCChannel(ZMQ.PULL, Endpoints.bind("world-generator", 5570));
+        this.credits = new CreditReporter("world-generator", 5570);
+        this.executor = WorkerServices.executor();
     }
     
     public void start() {
-        pullSocket.bind("tcp://*:5570");
-        LOGGER.info("World generator worker started on port 5570");
+        pullChannel.bind();
+        credits.bind();
+        control = WorkerControl.connect("world-generator");
+        control.endpoint("world-generator", pullChannel).endpoint(credits).ready("credits", "threads=" + WorkerServices.threadCount());
+        LOGGER.info("World generator worker started on {}", pullChannel.getEndpoint());
         
-        while (!Thread.currentThread().isInterrupted()) {
+        // 空闲时退避，合并到 WorkerHost 中运行时不占满共享的核心
+        SharedMemoryRing.Idler idler = new SharedMemoryRing.Idler();
+        while (!Thread.currentThread().isInterrupted() && !WorkerServices.isStopping()) {
+            control.heartbeat();
+            boolean busy = false;
             try {
-                byte[] data = pullSocket.recv(ZMQ.NOBLOCK);
-                if (data != null) {
-                    String task = new String(data);
-                    executor.submit(() -> processTask(task));
+                byte[][] frames = pullChannel.receiveMultipart(ZMQ.NOBLOCK);
+                if (frames != null) {
+                    busy = true;
+                    executor.submit(() -> {
+                        try {
+                            if (frames.length >= 2 && Arrays.equals(frames[0], RegionTask.KIND)) {
+                                processRegion(frames[1]);
+                            } else {
+                                processTask(frames[0]);
+                            }
+                        } finally {
+                            credits.release();
+                        }
+                    });
                 }
             } catch (Exception e) {
                 // 忽略异常，继续运行
             }
+            credits.flush();
+            if (busy) {
+                idler.reset();
+            } else {
+                idler.idle();
+            }
         }
         
         shutdown();
     }
     
-    private void processTask(String task) {
+    private void processTask(byte[] data) {
         try {
-            String[] parts = task.split(",");
-            if (parts.length >= 3) {
-                int chunkX = Integer.parseInt(parts[0]);
-                int chunkZ = Integer.parseInt(parts[1]);
-                long seed = Long.parseLong(parts[2]);
-                
-                // 生成区块噪声和特征点
-                generateChunkData(chunkX, chunkZ, seed);
-            }
+            ChunkTask task = ChunkTask.fromBytes(data);
+            
+            // 预先计算区块地形，引擎和缓冲区在线程内复用
+            generateChunkData(task.getChunkX(), task.getChunkZ(), task.getWorldSeed(), task.getDimension());
         } catch (Exception e) {
             // 静默处理错误
         }
     }
     
-    private void generateChunkData(int chunkX, int chunkZ, long seed) {
-        // 生成噪声样本
-        for (int i = 0; i < NOISE_SAMPLES; i++) {
-            double nx = (chunkX * 16 + random.nextDouble() * 16) / 256.0;
-            double nz = (chunkZ * 16 + random.nextDouble() * 16) / 256.0;
-            
-            // 简单的噪声计算
-            double value = Math.sin(nx * seed * 0.01) * Math.cos(nz * seed * 0.01);
-        }
-        
-        // 生成特征点
-        for (int i = 0; i < FEATURE_POINTS; i++) {
-            double fx = chunkX * 16 + random.nextDouble() * 16;
-            double fz = chunkZ * 16 + random.nextDouble() * 16;
+    private void processRegion(byte[] data) {
+        try {
+            RegionTask task = RegionTask.fromBytes(data);
             
-            // 简单的特征计算
-            double feature = Math.sqrt((fx - chunkX * 8) * (fx - chunkX * 8) + 
-                                       (fz - chunkZ * 8) * (fz - chunkZ * 8));
+            // 按 z 再 x 的顺序计算，相邻区块共用边界上的角点
+            for (int dz = 0; dz < task.getSize(); dz++) {
+                for (int dx = 0; dx < task.getSize(); dx++) {
+                    if (task.contains(dx, dz)) {
+                        generateChunkData(task.getOriginX() + dx, task.getOriginZ() + dz,
+                            task.getWorldSeed(), task.getDimension());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to process region task", e);
         }
     }
     
+    private void generateChunkData(int chunkX, int chunkZ, long seed, String dimension) {
+        TerrainNoise.forWorld(seed, dimension).fillHeights(chunkX, chunkZ, heights.get(), 0);
+    }
+    
     private void shutdown() {
-        executor.shutdown();
-        pullSocket.close();
-        context.close();
+        pullChannel.close();
+        credits.close();
+        control.close();
         LOGGER.info("World generator worker stopped");
     }
     
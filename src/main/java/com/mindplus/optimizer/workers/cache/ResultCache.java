@@ -0,0 +1,238 @@
+package com.mindplus.optimizer.workers.cache;
+
+import com.mindplus.optimizer.communication.WorkerControl;
+import com.mindplus.optimizer.communication.WorkerLog;
+import com.mindplus.optimizer.communication.WorkerLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成结果的磁盘缓存
+ * 每个角色的结果按 (种子, 维度, 区域) 存放在 <目录>/<角色>/<种子>/<维度>/r.<x>.<z>.mpc，一个区域 32x32 个区块；
+ * 文件头之后是 1024 项的索引（每项一个 long：高 32 位为偏移，低 32 位为长度，0 表示没有），之后依次追加序列化的结果
+ * 读取通过只读内存映射，重复请求只是页缓存读取；写入时持有文件锁追加数据，再写索引项，
+ * 读者看到索引项时数据已经写完，多个工作进程可以同时读写同一个文件
+ * 生成算法的输出改变时递增 FORMAT_VERSION，旧版本的文件被清空重建
+ */
+public final class ResultCache {
+    private static final WorkerLogger LOGGER = WorkerLog.getLogger("ResultCache");
+
+    public static final String DIRECTORY_PROPERTY = "mindplus.cache.dir";
+
+    private static final int MAGIC = 0x4D505243;
+    private static final int FORMAT_VERSION = 1;
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int HEADER_SIZE = 16;
+    private static final int INDEX_SIZE = REGION_SIZE * REGION_SIZE * Long.BYTES;
+    private static final int DATA_START = HEADER_SIZE + INDEX_SIZE;
+    // 每个角色同时打开的区域文件数
+    private static final int MAX_OPEN_FILES = 64;
+
+    private static final Map<String, ResultCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Map<String, RegionFile> files = new LinkedHashMap<>(MAX_OPEN_FILES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RegionFile> eldest) {
+            if (size() > MAX_OPEN_FILES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+    private volatile boolean failed;
+
+    private ResultCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 某个角色的缓存，没有配置缓存目录时返回 null
+     */
+    public static ResultCache forRole(String role) {
+        String root = WorkerControl.property(DIRECTORY_PROPERTY);
+        if (root == null || root.isEmpty()) {
+            return null;
+        }
+        return CACHES.computeIfAbsent(role, key -> new ResultCache(Paths.get(root, key)));
+    }
+
+    /**
+     * 读取一个区块的结果，没有缓存时返回 null
+     */
+    public byte[] get(long seed, String dimension, int chunkX, int chunkZ) {
+        if (failed) {
+            return null;
+        }
+        try {
+            RegionFile file = file(seed, dimension, chunkX, chunkZ, false);
+            return file != null ? file.read(slot(chunkX, chunkZ)) : null;
+        } catch (ClosedChannelException e) {
+            // 文件刚被移出打开列表，按未命中处理
+            return null;
+        } catch (IOException e) {
+            disable("read", e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入一个区块的结果，已有结果时保留原来的
+     */
+    public void put(long seed, String dimension, int chunkX, int chunkZ, byte[] data) {
+        if (failed) {
+            return;
+        }
+        try {
+            file(seed, dimension, chunkX, chunkZ, true).write(slot(chunkX, chunkZ), data);
+        } catch (ClosedChannelException e) {
+            // 文件刚被移出打开列表，放弃这次写入
+        } catch (IOException e) {
+            disable("write", e);
+        }
+    }
+
+    private RegionFile file(long seed, String dimension, int chunkX, int chunkZ, boolean create) throws IOException {
+        int regionX = chunkX >> REGION_SHIFT;
+        int regionZ = chunkZ >> REGION_SHIFT;
+        String key = Long.toHexString(seed) + "/" + dimension + "/" + regionX + "," + regionZ;
+        synchronized (files) {
+            RegionFile file = files.get(key);
+            if (file != null) {
+                return file;
+            }
+            Path path = directory.resolve(Long.toHexString(seed)).resolve(dimension.replace(':', '_'))
+                .resolve("r." + regionX + "." + regionZ + ".mpc");
+            if (!create && !Files.exists(path)) {
+                return null;
+            }
+            file = RegionFile.open(path);
+            files.put(key, file);
+            return file;
+        }
+    }
+
+    private static int slot(int chunkX, int chunkZ) {
+        return ((chunkZ & (REGION_SIZE - 1)) << REGION_SHIFT) | (chunkX & (REGION_SIZE - 1));
+    }
+
+    /**
+     * 磁盘错误时停用缓存，生成照常进行
+     */
+    private void disable(String operation, IOException e) {
+        if (!failed) {
+            failed = true;
+            LOGGER.warn("Disabling result cache in {} after failed {}: {}", directory, operation, e.toString());
+        }
+    }
+
+    /**
+     * 一个区域文件
+     */
+    private static final class RegionFile {
+        private final FileChannel channel;
+        private volatile MappedByteBuffer mapped;
+
+        private RegionFile(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        static RegionFile open(Path path) throws IOException {
+            Files.createDirectories(path.getParent());
+            FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try (FileLock lock = channel.lock()) {
+                if (!hasValidHeader(channel)) {
+                    // 新文件或旧版本：清空并写入文件头和空索引
+                    channel.truncate(0);
+                    ByteBuffer header = ByteBuffer.allocate(DATA_START);
+                    header.putInt(MAGIC).putInt(FORMAT_VERSION).rewind();
+                    channel.write(header, 0);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new RegionFile(channel);
+        }
+
+        private static boolean hasValidHeader(FileChannel channel) throws IOException {
+            if (channel.size() < DATA_START) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header, 0);
+            header.flip();
+            return header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION;
+        }
+
+        byte[] read(int slot) throws IOException {
+            MappedByteBuffer view = mapped;
+            long entry = view.getLong(HEADER_SIZE + slot * Long.BYTES);
+            if (entry == 0) {
+                return null;
+            }
+            int offset = (int) (entry >>> 32);
+            int length = (int) entry;
+            if ((long) offset + length > view.capacity()) {
+                // 其他进程追加了数据，重新映射到当前长度
+                view = remap();
+                if ((long) offset + length > view.capacity()) {
+                    return null;
+                }
+            }
+            byte[] data = new byte[length];
+            view.get(offset, data);
+            return data;
+        }
+
+        synchronized void write(int slot, byte[] data) throws IOException {
+            long indexPosition = HEADER_SIZE + (long) slot * Long.BYTES;
+            try (FileLock lock = channel.lock()) {
+                ByteBuffer entry = ByteBuffer.allocate(Long.BYTES);
+                channel.read(entry, indexPosition);
+                entry.flip();
+                if (entry.getLong() != 0) {
+                    return;
+                }
+                long offset = channel.size();
+                if (offset + data.length > Integer.MAX_VALUE) {
+                    return;
+                }
+                channel.write(ByteBuffer.wrap(data), offset);
+                entry.clear();
+                entry.putLong((offset << 32) | data.length).flip();
+                channel.write(entry, indexPosition);
+            }
+        }
+
+        private synchronized MappedByteBuffer remap() throws IOException {
+            MappedByteBuffer view = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped = view;
+            return view;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+    }
+}
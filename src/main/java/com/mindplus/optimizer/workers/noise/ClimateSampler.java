@@ -0,0 +1,198 @@
+package com.mindplus.optimizer.workers.noise;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多噪声气候采样器
+ * 每个区块按四分之一分辨率（每 4 格一个点）采样温度、湿度、大陆性、侵蚀度和怪异度，
+ * 网格为 5x5，最后一行一列与东、南两侧的区块共用；最近的区块网格保存在 LRU 中，
+ * 重复查询直接命中，新区块的边界点从已缓存的相邻区块复制而不重新计算
+ * 同一种子和维度的采样器在进程内共用
+ */
+public final class ClimateSampler {
+    public static final int TEMPERATURE = 0;
+    public static final int HUMIDITY = 1;
+    public static final int CONTINENTALNESS = 2;
+    public static final int EROSION = 3;
+    public static final int WEIRDNESS = 4;
+    public static final int PARAMETERS = 5;
+    // 每个区块一边的四分之一分辨率采样点数
+    public static final int QUARTS = 4;
+
+    private static final int QUART_SIZE = 4;
+    private static final int LATTICE = QUARTS + 1;
+    // 每个世界缓存的区块网格数
+    private static final int CACHE_CHUNKS = 256;
+    private static final int MAX_SAMPLERS = 16;
+
+    private static final Map<String, ClimateSampler> SAMPLERS = new ConcurrentHashMap<>();
+    private static volatile ClimateSampler last;
+
+    private final long seed;
+    private final String dimension;
+    private final OctaveNoise[] noises = new OctaveNoise[PARAMETERS];
+    private final Map<Long, Grid> cache = new LinkedHashMap<>(CACHE_CHUNKS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Grid> eldest) {
+            return size() > CACHE_CHUNKS;
+        }
+    };
+    // 以下计数由 cache 的锁保护
+    private long hits;
+    private long misses;
+    private long sharedPoints;
+    private long computedPoints;
+
+    private ClimateSampler(long seed, String dimension) {
+        this.seed = seed;
+        this.dimension = dimension;
+        long worldSeed = seed ^ dimension.hashCode();
+        // 频率与原版各参数噪声的首个倍频相近，温度湿度变化最慢，怪异度最快
+        noises[TEMPERATURE] = new OctaveNoise(OctaveNoise.random(worldSeed, 11), 3, 1.0 / 1024, 0.5);
+        noises[HUMIDITY] = new OctaveNoise(OctaveNoise.random(worldSeed, 12), 3, 1.0 / 1024, 0.5);
+        noises[CONTINENTALNESS] = new OctaveNoise(OctaveNoise.random(worldSeed, 13), 4, 1.0 / 512, 0.5);
+        noises[EROSION] = new OctaveNoise(OctaveNoise.random(worldSeed, 14), 3, 1.0 / 512, 0.5);
+        noises[WEIRDNESS] = new OctaveNoise(OctaveNoise.random(worldSeed, 15), 3, 1.0 / 128, 0.5);
+    }
+
+    /**
+     * 指定世界的采样器，不存在时创建
+     */
+    public static ClimateSampler forWorld(long seed, String dimension) {
+        ClimateSampler sampler = last;
+        if (sampler != null && sampler.seed == seed && sampler.dimension.equals(dimension)) {
+            return sampler;
+        }
+        if (SAMPLERS.size() >= MAX_SAMPLERS) {
+            SAMPLERS.clear();
+        }
+        sampler = SAMPLERS.computeIfAbsent(seed + "/" + dimension, key -> new ClimateSampler(seed, dimension));
+        last = sampler;
+        return sampler;
+    }
+
+    /**
+     * 一个区块的气候网格，已缓存时直接返回
+     */
+    public Grid sample(int chunkX, int chunkZ) {
+        Grid west;
+        Grid east;
+        Grid north;
+        Grid south;
+        synchronized (cache) {
+            Grid cached = cache.get(key(chunkX, chunkZ));
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            west = cache.get(key(chunkX - 1, chunkZ));
+            east = cache.get(key(chunkX + 1, chunkZ));
+            north = cache.get(key(chunkX, chunkZ - 1));
+            south = cache.get(key(chunkX, chunkZ + 1));
+        }
+
+        Grid grid = new Grid();
+        int shared = 0;
+        int baseX = chunkX * QUARTS * QUART_SIZE;
+        int baseZ = chunkZ * QUARTS * QUART_SIZE;
+        for (int qz = 0; qz < LATTICE; qz++) {
+            for (int qx = 0; qx < LATTICE; qx++) {
+                if (qx == 0 && west != null) {
+                    grid.copy(qx, qz, west, QUARTS, qz);
+                } else if (qx == QUARTS && east != null) {
+                    grid.copy(qx, qz, east, 0, qz);
+                } else if (qz == 0 && north != null) {
+                    grid.copy(qx, qz, north, qx, QUARTS);
+                } else if (qz == QUARTS && south != null) {
+                    grid.copy(qx, qz, south, qx, 0);
+                } else {
+                    double x = baseX + qx * QUART_SIZE;
+                    double z = baseZ + qz * QUART_SIZE;
+                    for (int parameter = 0; parameter < PARAMETERS; parameter++) {
+                        grid.values[index(parameter, qx, qz)] = noises[parameter].sample(x, z);
+                    }
+                    continue;
+                }
+                shared++;
+            }
+        }
+
+        synchronized (cache) {
+            misses++;
+            sharedPoints += shared;
+            computedPoints += LATTICE * LATTICE - shared;
+            Grid existing = cache.putIfAbsent(key(chunkX, chunkZ), grid);
+            return existing != null ? existing : grid;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (cache) {
+            return new Stats(hits, misses, sharedPoints, computedPoints, cache.size());
+        }
+    }
+
+    private static Long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static int index(int parameter, int qx, int qz) {
+        return (parameter * LATTICE + qz) * LATTICE + qx;
+    }
+
+    /**
+     * 一个区块 5x5 个采样点的五个气候参数，按参数、z、x 顺序存放
+     */
+    public static final class Grid {
+        private final double[] values = new double[PARAMETERS * LATTICE * LATTICE];
+
+        public double get(int parameter, int qx, int qz) {
+            return values[index(parameter, qx, qz)];
+        }
+
+        /**
+         * 按原版 MultiNoiseUtil.toLong 的定点格式导出区块内 4x4 个采样点（不含共用的边），
+         * 按参数、z、x 顺序写入 out[offset, offset + 80)
+         */
+        public void quantize(int[] out, int offset) {
+            int index = offset;
+            for (int parameter = 0; parameter < PARAMETERS; parameter++) {
+                for (int qz = 0; qz < QUARTS; qz++) {
+                    for (int qx = 0; qx < QUARTS; qx++) {
+                        out[index++] = (int) (values[index(parameter, qx, qz)] * 10000.0);
+                    }
+                }
+            }
+        }
+
+        private void copy(int qx, int qz, Grid source, int sourceX, int sourceZ) {
+            for (int parameter = 0; parameter < PARAMETERS; parameter++) {
+                values[index(parameter, qx, qz)] = source.values[index(parameter, sourceX, sourceZ)];
+            }
+        }
+    }
+
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long sharedPoints;
+        public final long computedPoints;
+        public final int cachedChunks;
+
+        public Stats(long hits, long misses, long sharedPoints, long computedPoints, int cachedChunks) {
+            this.hits = hits;
+            this.misses = misses;
+            this.sharedPoints = sharedPoints;
+            this.computedPoints = computedPoints;
+            this.cachedChunks = cachedChunks;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Climate - Hits: %d, Misses: %d, Shared points: %d, Computed points: %d, Cached: %d",
+                hits, misses, sharedPoints, computedPoints, cachedChunks);
+        }
+    }
+}
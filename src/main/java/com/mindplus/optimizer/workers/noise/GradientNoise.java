@@ -0,0 +1,106 @@
+package com.mindplus.optimizer.workers.noise;
+
+import java.util.SplittableRandom;
+
+/**
+ * 种子初始化的梯度噪声（改进 Perlin 噪声），值域约为 [-1, 1]
+ * 置换表重复一份避免取模，梯度用位运算选取，采样不分配对象；实例不可变，可在多个线程共用
+ */
+public final class GradientNoise {
+    // 2D 梯度：8 个方向
+    private static final double[] GRADIENT_X = { 1, -1, 1, -1, 1, -1, 0, 0 };
+    private static final double[] GRADIENT_Z = { 1, 1, -1, -1, 0, 0, 1, -1 };
+
+    private final int[] permutation = new int[512];
+    // 随机原点偏移，让不同种子在坐标原点附近的值也不相同
+    private final double originX;
+    private final double originY;
+    private final double originZ;
+
+    public GradientNoise(SplittableRandom random) {
+        this.originX = random.nextDouble() * 256;
+        this.originY = random.nextDouble() * 256;
+        this.originZ = random.nextDouble() * 256;
+        for (int i = 0; i < 256; i++) {
+            permutation[i] = i;
+        }
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        System.arraycopy(permutation, 0, permutation, 256, 256);
+    }
+
+    public double sample(double x, double y, double z) {
+        x += originX;
+        y += originY;
+        z += originZ;
+        int xi = floor(x);
+        int yi = floor(y);
+        int zi = floor(z);
+        double xf = x - xi;
+        double yf = y - yi;
+        double zf = z - zi;
+        int[] p = permutation;
+        int a = p[xi & 255] + (yi & 255);
+        int b = p[(xi + 1) & 255] + (yi & 255);
+        int aa = p[a] + (zi & 255);
+        int ab = p[a + 1] + (zi & 255);
+        int ba = p[b] + (zi & 255);
+        int bb = p[b + 1] + (zi & 255);
+
+        double u = fade(xf);
+        double v = fade(yf);
+        double w = fade(zf);
+        double x00 = lerp(u, grad(p[aa], xf, yf, zf), grad(p[ba], xf - 1, yf, zf));
+        double x10 = lerp(u, grad(p[ab], xf, yf - 1, zf), grad(p[bb], xf - 1, yf - 1, zf));
+        double x01 = lerp(u, grad(p[aa + 1], xf, yf, zf - 1), grad(p[ba + 1], xf - 1, yf, zf - 1));
+        double x11 = lerp(u, grad(p[ab + 1], xf, yf - 1, zf - 1), grad(p[bb + 1], xf - 1, yf - 1, zf - 1));
+        return lerp(w, lerp(v, x00, x10), lerp(v, x01, x11));
+    }
+
+    public double sample(double x, double z) {
+        x += originX;
+        z += originZ;
+        int xi = floor(x);
+        int zi = floor(z);
+        double xf = x - xi;
+        double zf = z - zi;
+        int[] p = permutation;
+        int a = p[xi & 255] + (zi & 255);
+        int b = p[(xi + 1) & 255] + (zi & 255);
+
+        double u = fade(xf);
+        double w = fade(zf);
+        double z0 = lerp(u, grad(p[a], xf, zf), grad(p[b], xf - 1, zf));
+        double z1 = lerp(u, grad(p[a + 1], xf, zf - 1), grad(p[b + 1], xf - 1, zf - 1));
+        return lerp(w, z0, z1);
+    }
+
+    private static double grad(int hash, double x, double y, double z) {
+        int h = hash & 15;
+        double u = h < 8 ? x : y;
+        double v = h < 4 ? y : (h == 12 || h == 14 ? x : z);
+        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
+    }
+
+    private static double grad(int hash, double x, double z) {
+        int h = hash & 7;
+        return GRADIENT_X[h] * x + GRADIENT_Z[h] * z;
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    static int floor(double value) {
+        int truncated = (int) value;
+        return value < truncated ? truncated - 1 : truncated;
+    }
+}
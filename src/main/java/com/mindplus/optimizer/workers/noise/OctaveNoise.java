@@ -0,0 +1,60 @@
+package com.mindplus.optimizer.workers.noise;
+
+import java.util.SplittableRandom;
+
+/**
+ * 多个倍频叠加的梯度噪声（分形布朗运动），结果除以各层振幅之和，值域约为 [-1, 1]
+ */
+public final class OctaveNoise {
+    private final GradientNoise[] octaves;
+    private final double[] frequencies;
+    private final double[] amplitudes;
+
+    /**
+     * @param frequency 第一层的频率（每格），之后每层翻倍
+     * @param persistence 每层振幅相对上一层的比例
+     */
+    public OctaveNoise(SplittableRandom random, int octaveCount, double frequency, double persistence) {
+        this.octaves = new GradientNoise[octaveCount];
+        this.frequencies = new double[octaveCount];
+        this.amplitudes = new double[octaveCount];
+        double amplitude = 1;
+        double total = 0;
+        for (int i = 0; i < octaveCount; i++) {
+            octaves[i] = new GradientNoise(random);
+            frequencies[i] = frequency;
+            amplitudes[i] = amplitude;
+            total += amplitude;
+            frequency *= 2;
+            amplitude *= persistence;
+        }
+        for (int i = 0; i < octaveCount; i++) {
+            amplitudes[i] /= total;
+        }
+    }
+
+    public double sample(double x, double y, double z) {
+        double value = 0;
+        for (int i = 0; i < octaves.length; i++) {
+            double frequency = frequencies[i];
+            value += octaves[i].sample(x * frequency, y * frequency, z * frequency) * amplitudes[i];
+        }
+        return value;
+    }
+
+    public double sample(double x, double z) {
+        double value = 0;
+        for (int i = 0; i < octaves.length; i++) {
+            double frequency = frequencies[i];
+            value += octaves[i].sample(x * frequency, z * frequency) * amplitudes[i];
+        }
+        return value;
+    }
+
+    /**
+     * 由世界种子和用途派生出独立的随机源，不同用途的噪声互不相关
+     */
+    public static SplittableRandom random(long seed, long salt) {
+        return new SplittableRandom(seed ^ (salt * 0x9E3779B97F4A7C15L));
+    }
+}
@@ -0,0 +1,272 @@
+package com.mindplus.optimizer.workers.noise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 地形噪声引擎
+ * 地表高度由低频的大陆噪声和较高频的丘陵噪声叠加，密度 = (地表高度 - y) / SQUASH + 3D 噪声，密度大于 0 为实心；
+ * 3D 噪声只在水平 4 格、垂直 8 格的粗网格角点上计算（一个区块 5x5 列角点，同一列的角点连续存放），
+ * 远离地表、噪声不可能改变正负的角点跳过 3D 噪声，格内三线性插值后自上而下找出每列最高的实心方块
+ * 高度图按原版 Heightmap 的格式打包：索引为 x + z * 16，值为最高实心方块之上一格相对世界底部的高度，
+ * 每个值占 ceil(log2(世界高度 + 1)) 位，值不跨 long，服务端可以直接交给 Heightmap.setTo
+ * 同一种子和维度的引擎在进程内共用；计算用的缓冲区每个线程一份，计算过程不分配对象
+ * 同一线程按 z 再 x 的顺序计算相邻区块时（区域任务），西侧一列和北侧一行角点直接取自前面算过的区块
+ */
+public final class TerrainNoise {
+    public static final int CHUNK_SIZE = 16;
+    public static final int COLUMNS = CHUNK_SIZE * CHUNK_SIZE;
+
+    private static final int CELL_WIDTH = 4;
+    private static final int CELL_HEIGHT = 8;
+    private static final int CORNERS = CHUNK_SIZE / CELL_WIDTH + 1;
+    private static final double INV_CELL_WIDTH = 1.0 / CELL_WIDTH;
+    private static final double INV_CELL_HEIGHT = 1.0 / CELL_HEIGHT;
+    // 地表附近 3D 噪声能影响正负的高度范围（方块）
+    private static final double SQUASH = 16;
+    private static final double DENSITY_AMPLITUDE = 1.0;
+    // 进程内最多缓存的引擎数
+    private static final int MAX_ENGINES = 16;
+    // 保存南侧边界角点的区块列数，不小于区域任务的最大边长
+    private static final int STRIP_SLOTS = 32;
+
+    private static final Map<String, TerrainNoise> ENGINES = new ConcurrentHashMap<>();
+    // 最近使用的引擎，同一世界的连续请求不需要查表
+    private static volatile TerrainNoise last;
+
+    private final long seed;
+    private final String dimension;
+    private final int minY;
+    private final int height;
+    private final int baseSurface;
+    private final double continentAmplitude;
+    private final double hillAmplitude;
+    private final int cellsY;
+    private final int bitsPerEntry;
+    private final OctaveNoise continents;
+    private final OctaveNoise hills;
+    private final OctaveNoise density;
+    private final ThreadLocal<Scratch> scratch;
+
+    private TerrainNoise(long seed, String dimension) {
+        this.seed = seed;
+        this.dimension = dimension;
+        switch (dimension) {
+            case "minecraft:the_nether":
+                this.minY = 0;
+                this.height = 128;
+                this.baseSurface = 64;
+                this.continentAmplitude = 24;
+                this.hillAmplitude = 12;
+                break;
+            case "minecraft:the_end":
+                this.minY = 0;
+                this.height = 256;
+                this.baseSurface = 56;
+                this.continentAmplitude = 16;
+                this.hillAmplitude = 8;
+                break;
+            default:
+                this.minY = -64;
+                this.height = 384;
+                this.baseSurface = 64;
+                this.continentAmplitude = 48;
+                this.hillAmplitude = 16;
+                break;
+        }
+        this.cellsY = height / CELL_HEIGHT;
+        this.bitsPerEntry = 32 - Integer.numberOfLeadingZeros(height);
+
+        long worldSeed = seed ^ dimension.hashCode();
+        this.continents = new OctaveNoise(OctaveNoise.random(worldSeed, 1), 4, 1.0 / 512, 0.5);
+        this.hills = new OctaveNoise(OctaveNoise.random(worldSeed, 2), 3, 1.0 / 96, 0.5);
+        this.density = new OctaveNoise(OctaveNoise.random(worldSeed, 3), 3, 1.0 / 64, 0.5);
+        int stride = cellsY + 1;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(stride));
+    }
+
+    /**
+     * 指定世界的引擎，不存在时创建
+     */
+    public static TerrainNoise forWorld(long seed, String dimension) {
+        TerrainNoise engine = last;
+        if (engine != null && engine.seed == seed && engine.dimension.equals(dimension)) {
+            return engine;
+        }
+        if (ENGINES.size() >= MAX_ENGINES) {
+            ENGINES.clear();
+        }
+        engine = ENGINES.computeIfAbsent(seed + "/" + dimension, key -> new TerrainNoise(seed, dimension));
+        last = engine;
+        return engine;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBitsPerEntry() {
+        return bitsPerEntry;
+    }
+
+    /**
+     * 计算一个区块的打包高度图
+     */
+    public long[] generateHeightmap(int chunkX, int chunkZ) {
+        Scratch buffers = scratch.get();
+        fillHeights(chunkX, chunkZ, buffers.heights, 0);
+        long[] packed = new long[packedLength(bitsPerEntry)];
+        pack(buffers.heights, 0, bitsPerEntry, packed);
+        return packed;
+    }
+
+    /**
+     * 计算一个区块每列的高度（相对世界底部），写入 heights[offset, offset + 256)
+     */
+    public void fillHeights(int chunkX, int chunkZ, int[] heights, int offset) {
+        Scratch buffers = scratch.get();
+        double[] corners = buffers.corners;
+        int stride = cellsY + 1;
+        int baseX = chunkX * CHUNK_SIZE;
+        int baseZ = chunkZ * CHUNK_SIZE;
+
+        // 上一个区块在西侧时它的东侧一列就是本区块的西侧一列；北侧区块的南侧一行保存在条带中
+        boolean shareWest = buffers.hasLast && buffers.lastX == chunkX - 1 && buffers.lastZ == chunkZ;
+        int slot = chunkX & (STRIP_SLOTS - 1);
+        int stripBase = slot * CORNERS * stride;
+        boolean shareNorth = buffers.stripValid[slot]
+            && buffers.stripX[slot] == chunkX && buffers.stripZ[slot] == chunkZ - 1;
+
+        for (int cz = 0; cz < CORNERS; cz++) {
+            double z = baseZ + cz * CELL_WIDTH;
+            for (int cx = 0; cx < CORNERS; cx++) {
+                int index = (cz * CORNERS + cx) * stride;
+                if (cz == 0 && shareNorth) {
+                    System.arraycopy(buffers.strip, stripBase + cx * stride, corners, index, stride);
+                    continue;
+                }
+                if (cx == 0 && shareWest) {
+                    System.arraycopy(corners, (cz * CORNERS + CORNERS - 1) * stride, corners, index, stride);
+                    continue;
+                }
+                double x = baseX + cx * CELL_WIDTH;
+                double surface = baseSurface + continents.sample(x, z) * continentAmplitude
+                    + hills.sample(x, z) * hillAmplitude;
+                for (int cy = 0; cy < stride; cy++, index++) {
+                    double y = minY + cy * CELL_HEIGHT;
+                    double shape = (surface - y) / SQUASH;
+                    // 离地表足够远时 3D 噪声改变不了正负
+                    if (shape > DENSITY_AMPLITUDE || shape < -DENSITY_AMPLITUDE) {
+                        corners[index] = shape;
+                    } else {
+                        corners[index] = shape + density.sample(x, y, z) * DENSITY_AMPLITUDE;
+                    }
+                }
+            }
+        }
+
+        System.arraycopy(corners, (CORNERS - 1) * CORNERS * stride, buffers.strip, stripBase, CORNERS * stride);
+        buffers.stripValid[slot] = true;
+        buffers.stripX[slot] = chunkX;
+        buffers.stripZ[slot] = chunkZ;
+        buffers.hasLast = true;
+        buffers.lastX = chunkX;
+        buffers.lastZ = chunkZ;
+
+        for (int lz = 0; lz < CHUNK_SIZE; lz++) {
+            int cz = lz / CELL_WIDTH;
+            double fz = (lz % CELL_WIDTH) * INV_CELL_WIDTH;
+            for (int lx = 0; lx < CHUNK_SIZE; lx++) {
+                int cx = lx / CELL_WIDTH;
+                double fx = (lx % CELL_WIDTH) * INV_CELL_WIDTH;
+                int c00 = (cz * CORNERS + cx) * stride;
+                int c10 = c00 + stride;
+                int c01 = c00 + CORNERS * stride;
+                int c11 = c01 + stride;
+                heights[offset + lz * CHUNK_SIZE + lx] = columnHeight(corners, c00, c10, c01, c11, fx, fz);
+            }
+        }
+    }
+
+    /**
+     * 自上而下逐格查找，整格都是空气时跳过
+     */
+    private int columnHeight(double[] corners, int c00, int c10, int c01, int c11, double fx, double fz) {
+        double upper = bilerp(fx, fz, corners[c00 + cellsY], corners[c10 + cellsY],
+            corners[c01 + cellsY], corners[c11 + cellsY]);
+        for (int cy = cellsY - 1; cy >= 0; cy--) {
+            double lower = bilerp(fx, fz, corners[c00 + cy], corners[c10 + cy], corners[c01 + cy], corners[c11 + cy]);
+            if (lower > 0 || upper > 0) {
+                for (int k = CELL_HEIGHT - 1; k >= 0; k--) {
+                    if (lower + (upper - lower) * (k * INV_CELL_HEIGHT) > 0) {
+                        return cy * CELL_HEIGHT + k + 1;
+                    }
+                }
+            }
+            upper = lower;
+        }
+        // 最底层始终是基岩
+        return 1;
+    }
+
+    private static double bilerp(double fx, double fz, double v00, double v10, double v01, double v11) {
+        double v0 = v00 + (v10 - v00) * fx;
+        double v1 = v01 + (v11 - v01) * fx;
+        return v0 + (v1 - v0) * fz;
+    }
+
+    /**
+     * 一个区块的打包高度图需要的 long 数
+     */
+    public static int packedLength(int bitsPerEntry) {
+        int valuesPerLong = 64 / bitsPerEntry;
+        return (COLUMNS + valuesPerLong - 1) / valuesPerLong;
+    }
+
+    /**
+     * 按原版 PackedIntegerArray 的布局打包 values[offset, offset + 256)
+     */
+    public static void pack(int[] values, int offset, int bitsPerEntry, long[] packed) {
+        int valuesPerLong = 64 / bitsPerEntry;
+        long mask = (1L << bitsPerEntry) - 1;
+        int index = 0;
+        for (int i = 0; i < packed.length; i++) {
+            long word = 0;
+            for (int j = 0; j < valuesPerLong && index < COLUMNS; j++, index++) {
+                word |= (values[offset + index] & mask) << (j * bitsPerEntry);
+            }
+            packed[i] = word;
+        }
+    }
+
+    public static int unpack(long[] packed, int bitsPerEntry, int index) {
+        int valuesPerLong = 64 / bitsPerEntry;
+        long word = packed[index / valuesPerLong];
+        return (int) ((word >>> ((index % valuesPerLong) * bitsPerEntry)) & ((1L << bitsPerEntry) - 1));
+    }
+
+    /**
+     * 每个线程的计算缓冲区
+     */
+    private static final class Scratch {
+        final double[] corners;
+        final int[] heights = new int[COLUMNS];
+        // 最近算过的区块南侧一行角点，按区块 x 坐标取模存放
+        final double[] strip;
+        final boolean[] stripValid = new boolean[STRIP_SLOTS];
+        final int[] stripX = new int[STRIP_SLOTS];
+        final int[] stripZ = new int[STRIP_SLOTS];
+        boolean hasLast;
+        int lastX;
+        int lastZ;
+
+        Scratch(int stride) {
+            this.corners = new double[CORNERS * CORNERS * stride];
+            this.strip = new double[STRIP_SLOTS * CORNERS * stride];
+        }
+    }
+}